@@ -0,0 +1,46 @@
+package peersim.benchmark;
+
+import java.util.Properties;
+
+import peersim.config.Configuration;
+import peersim.core.Network;
+import peersim.core.Node;
+
+/**
+ * Sets up the static PeerSim state shared by the benchmarks. The
+ * configuration can be set only once per JVM, so it does not depend on the
+ * benchmark parameters; the network is resized with {@link #network} instead.
+ * JMH runs every parameter combination in a fresh fork by default.
+ */
+final class BenchmarkConfig {
+
+	/** Protocol of the linkable used by the benchmarks */
+	static final String LINKABLE = "protocol.link";
+
+	private static boolean initialized = false;
+
+	private BenchmarkConfig() {}
+
+	static synchronized void init() {
+		if (initialized)
+			return;
+		Properties p = new Properties();
+		p.setProperty("random.seed", "1234567890");
+		p.setProperty("network.size", "0");
+		p.setProperty("protocol.link", "peersim.core.IdleProtocol");
+		p.setProperty("protocol.noop", NoOpProtocol.class.getName());
+		// FullNextCycle prefix that visits the nodes in random order
+		p.setProperty("shuffled.shuffle", "");
+		Configuration.setConfig(p);
+		initialized = true;
+	}
+
+	/** Resets the network to <code>size</code> clones of the prototype. */
+	static void network(int size) {
+		init();
+		Network.reset();
+		Network.setCapacity(size);
+		for (int i = 0; i < size; i++)
+			Network.add((Node)Network.prototype.clone());
+	}
+}
@@ -0,0 +1,42 @@
+package peersim.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import peersim.cdsim.CDState;
+import peersim.cdsim.FullNextCycle;
+
+/**
+ * One cycle of the cycle driven engine over protocols that do nothing, that
+ * is, the scheduling overhead paid by every cycle driven simulation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FullNextCycleBenchmark {
+
+	@Param({"1000", "100000", "1000000"})
+	public int size;
+
+	/** Node order: "seq", or "shuffle" as with the shuffle parameter */
+	@Param({"seq", "shuffle"})
+	public String order;
+
+	private FullNextCycle cycle;
+
+	@Setup
+	public void setup() {
+		BenchmarkConfig.network(size);
+		CDState.setCycle(0);
+		cycle = new FullNextCycle(order.equals("shuffle") ? "shuffled" : "sequential");
+	}
+
+	@Benchmark
+	public boolean execute() {
+		return cycle.execute();
+	}
+}
@@ -0,0 +1,46 @@
+package peersim.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import peersim.graph.GraphAlgorithms;
+import peersim.graph.GraphFactory;
+import peersim.graph.NeighbourListGraph;
+
+/**
+ * Breadth first search from a single node with {@link GraphAlgorithms#dist},
+ * as used by the graph observers, over a k-out random graph.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphAlgorithmsBenchmark {
+
+	@Param({"1000", "100000"})
+	public int size;
+
+	@Param({"2", "20"})
+	public int degree;
+
+	private NeighbourListGraph g;
+	private final GraphAlgorithms ga = new GraphAlgorithms();
+	private int source = 0;
+
+	@Setup
+	public void setup() {
+		g = new NeighbourListGraph(size, true);
+		GraphFactory.wireKOut(g, degree, new Random(42));
+	}
+
+	@Benchmark
+	public int[] dist() {
+		source = (source + 1) % size;
+		ga.dist(g, source);
+		return ga.d;
+	}
+}
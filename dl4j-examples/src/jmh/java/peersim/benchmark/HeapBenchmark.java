@@ -0,0 +1,48 @@
+package peersim.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import peersim.edsim.Heap;
+
+/**
+ * Event queue of the event driven simulator: a batch of adds followed by
+ * draining the heap with removeFirst.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeapBenchmark {
+
+	/** Number of events in the heap */
+	@Param({"1000", "100000", "1000000"})
+	public int size;
+
+	private long[] times;
+	private Heap heap;
+
+	@Setup
+	public void setup() {
+		BenchmarkConfig.init();
+		Random r = new Random(42);
+		times = new long[size];
+		for (int i = 0; i < size; i++)
+			times[i] = r.nextInt(1 << 20);
+		heap = new Heap();
+	}
+
+	/** Adds {@link #size} events, then removes all of them. */
+	@Benchmark
+	public void addRemoveFirst(Blackhole bh) {
+		for (int i = 0; i < size; i++)
+			heap.add(times[i], null, null, (byte)0, i & 0xff);
+		for (int i = 0; i < size; i++)
+			bh.consume(heap.removeFirst().time);
+	}
+}
@@ -0,0 +1,73 @@
+package peersim.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import peersim.core.IdleProtocol;
+import peersim.core.Network;
+import peersim.core.Node;
+
+/**
+ * Neighbor operations of {@link IdleProtocol}, the static linkable used by
+ * the gossip configurations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdleProtocolBenchmark {
+
+	@Param({"2", "20", "100"})
+	public int degree;
+
+	private Node[] nodes;
+	private IdleProtocol full;
+	private int[] probes;
+	private int next = 0;
+
+	@Setup
+	public void setup() {
+		BenchmarkConfig.network(4 * degree);
+		nodes = new Node[Network.size()];
+		for (int i = 0; i < nodes.length; i++)
+			nodes[i] = Network.get(i);
+		full = new IdleProtocol(BenchmarkConfig.LINKABLE);
+		for (int i = 0; i < degree; i++)
+			full.addNeighbor(nodes[i]);
+		Random r = new Random(42);
+		probes = new int[1024];
+		for (int i = 0; i < probes.length; i++)
+			probes[i] = r.nextInt(nodes.length);
+	}
+
+	private int probe() {
+		next = (next + 1) & (probes.length - 1);
+		return probes[next];
+	}
+
+	/** Builds a neighbor list of {@link #degree} nodes from scratch. */
+	@Benchmark
+	public IdleProtocol addNeighbors() {
+		IdleProtocol p = new IdleProtocol(BenchmarkConfig.LINKABLE);
+		for (int i = 0; i < degree; i++)
+			p.addNeighbor(nodes[i]);
+		return p;
+	}
+
+	/** Membership test, hitting the list about one time out of four. */
+	@Benchmark
+	public boolean contains() {
+		return full.contains(nodes[probe()]);
+	}
+
+	/** Random neighbor selection, as done by GadgetProtocol.selectNeighbor. */
+	@Benchmark
+	public void getRandomNeighbor(Blackhole bh) {
+		bh.consume(full.getNeighbor(probe() % full.degree()));
+	}
+}
@@ -0,0 +1,155 @@
+package peersim.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import weka.core.matrix.CholeskyDecomposition;
+import weka.core.matrix.Matrix;
+
+/**
+ * Dense kernels of {@link Matrix}: multiplication, transpose multiplication,
+ * Cholesky decomposition and solve, each next to the plain JAMA loops that
+ * were used before the blocked kernels (the <code>jama*</code> methods).
+ * The common pool parallelism can be set with
+ * <code>-Djava.util.concurrent.ForkJoinPool.common.parallelism=N</code>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MatrixBenchmark {
+
+	/** Dimension of the square matrices */
+	@Param({"100", "500", "1000"})
+	public int size;
+
+	private Matrix a;
+	private Matrix b;
+	private Matrix spd;
+	private Matrix rhs;
+	private CholeskyDecomposition chol;
+
+	@Setup
+	public void setup() {
+		Random r = new Random(42);
+		a = new Matrix(size, size);
+		b = new Matrix(size, size);
+		for (int i = 0; i < size; i++)
+			for (int j = 0; j < size; j++) {
+				a.set(i, j, r.nextGaussian());
+				b.set(i, j, r.nextGaussian());
+			}
+		spd = a.transposeTimes(a);
+		for (int i = 0; i < size; i++)
+			spd.set(i, i, spd.get(i, i) + size);
+		rhs = new Matrix(size, size);
+		for (int i = 0; i < size; i++)
+			for (int j = 0; j < size; j++)
+				rhs.set(i, j, r.nextGaussian());
+		chol = spd.chol();
+	}
+
+	@Benchmark
+	public Matrix times() {
+		return a.times(b);
+	}
+
+	@Benchmark
+	public Matrix jamaTimes() {
+		return jamaTimes(a, b);
+	}
+
+	@Benchmark
+	public Matrix transposeTimes() {
+		return a.transposeTimes(b);
+	}
+
+	@Benchmark
+	public Matrix jamaTransposeTimes() {
+		return jamaTimes(a.transpose(), b);
+	}
+
+	@Benchmark
+	public Matrix cholesky() {
+		return new CholeskyDecomposition(spd).getL();
+	}
+
+	@Benchmark
+	public double[][] jamaCholesky() {
+		return jamaCholesky(spd);
+	}
+
+	@Benchmark
+	public Matrix choleskySolve() {
+		return chol.solve(rhs);
+	}
+
+	@Benchmark
+	public double[][] jamaCholeskySolve() {
+		return jamaSolve(chol.getL().getArray(), rhs.getArrayCopy());
+	}
+
+	/** Matrix.times as in JAMA */
+	private static Matrix jamaTimes(Matrix x, Matrix y) {
+		int m = x.getRowDimension(), n = x.getColumnDimension(), p = y.getColumnDimension();
+		double[][] A = x.getArray(), B = y.getArray();
+		double[][] C = new double[m][p];
+		double[] Bcolj = new double[n];
+		for (int j = 0; j < p; j++) {
+			for (int k = 0; k < n; k++)
+				Bcolj[k] = B[k][j];
+			for (int i = 0; i < m; i++) {
+				double[] Arowi = A[i];
+				double s = 0;
+				for (int k = 0; k < n; k++)
+					s += Arowi[k] * Bcolj[k];
+				C[i][j] = s;
+			}
+		}
+		return new Matrix(C, m, p);
+	}
+
+	/** The CholeskyDecomposition constructor as in JAMA */
+	private static double[][] jamaCholesky(Matrix x) {
+		double[][] A = x.getArray();
+		int n = x.getRowDimension();
+		double[][] L = new double[n][n];
+		for (int j = 0; j < n; j++) {
+			double[] Lrowj = L[j];
+			double d = 0.0;
+			for (int k = 0; k < j; k++) {
+				double[] Lrowk = L[k];
+				double s = 0.0;
+				for (int i = 0; i < k; i++)
+					s += Lrowk[i] * Lrowj[i];
+				Lrowj[k] = s = (A[j][k] - s) / L[k][k];
+				d = d + s * s;
+			}
+			d = A[j][j] - d;
+			L[j][j] = Math.sqrt(Math.max(d, 0.0));
+		}
+		return L;
+	}
+
+	/** CholeskyDecomposition.solve as in JAMA */
+	private static double[][] jamaSolve(double[][] L, double[][] X) {
+		int n = L.length, nx = X[0].length;
+		for (int k = 0; k < n; k++)
+			for (int j = 0; j < nx; j++) {
+				for (int i = 0; i < k; i++)
+					X[k][j] -= X[i][j] * L[k][i];
+				X[k][j] /= L[k][k];
+			}
+		for (int k = n - 1; k >= 0; k--)
+			for (int j = 0; j < nx; j++) {
+				for (int i = k + 1; i < n; i++)
+					X[k][j] -= X[i][j] * L[i][k];
+				X[k][j] /= L[k][k];
+			}
+		return X;
+	}
+}
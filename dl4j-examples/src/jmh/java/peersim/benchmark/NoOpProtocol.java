@@ -0,0 +1,22 @@
+package peersim.benchmark;
+
+import peersim.cdsim.CDProtocol;
+import peersim.core.Node;
+
+/**
+ * A cycle driven protocol that does nothing, used to measure the overhead
+ * of the cycle driven engine itself.
+ */
+public class NoOpProtocol implements CDProtocol {
+
+	public NoOpProtocol(String prefix) {}
+
+	public void nextCycle(Node node, int protocolID) {}
+
+	public Object clone() {
+		NoOpProtocol p = null;
+		try { p = (NoOpProtocol)super.clone(); }
+		catch( CloneNotSupportedException e ) {} // never happens
+		return p;
+	}
+}
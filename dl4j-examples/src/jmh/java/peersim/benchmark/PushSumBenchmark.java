@@ -0,0 +1,57 @@
+package peersim.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The model averaging step of GadgetProtocol.pushsum1: the parameter
+ * vectors of two peers are summed in place, halved, and written back to
+ * both models. The plain array version is the one used with the
+ * SPegasosGadget weight vectors.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PushSumBenchmark {
+
+	/** Number of model parameters */
+	@Param({"100", "10000", "1000000"})
+	public int dimension;
+
+	private INDArray mine;
+	private INDArray peer;
+	private double[] mineArray;
+	private double[] peerArray;
+
+	@Setup
+	public void setup() {
+		Nd4j.getRandom().setSeed(42);
+		mine = Nd4j.rand(1, dimension);
+		peer = Nd4j.rand(1, dimension);
+		mineArray = mine.data().asDouble();
+		peerArray = peer.data().asDouble();
+	}
+
+	@Benchmark
+	public INDArray pushsum1() {
+		INDArray weights = mine.addi(peer).divi(2);
+		peer.assign(weights);
+		return weights;
+	}
+
+	@Benchmark
+	public double[] pushsum1Array() {
+		for (int i = 0; i < dimension; i++) {
+			double w = (mineArray[i] + peerArray[i]) / 2;
+			mineArray[i] = w;
+			peerArray[i] = w;
+		}
+		return mineArray;
+	}
+}
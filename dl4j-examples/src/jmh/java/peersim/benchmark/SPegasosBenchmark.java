@@ -0,0 +1,84 @@
+package peersim.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import weka.classifiers.functions.SPegasosGadget;
+import weka.core.Attribute;
+import weka.core.FastVector;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SparseInstance;
+
+/**
+ * One stochastic sub-gradient step of {@link SPegasosGadget} on a sparse
+ * instance, the per-example work of a GADGET node.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SPegasosBenchmark {
+
+	/** Number of features, 47236 is the RCV1/CCAT dimension */
+	@Param({"1000", "47236"})
+	public int dimension;
+
+	/** Non-zero features per instance */
+	@Param({"10", "100"})
+	public int nnz;
+
+	private SPegasosGadget classifier;
+	private Instance[] instances;
+	private int next = 0;
+
+	@Setup
+	public void setup() throws Exception {
+		FastVector atts = new FastVector(dimension + 1);
+		for (int i = 0; i < dimension; i++)
+			atts.addElement(new Attribute("f" + i));
+		FastVector classes = new FastVector(2);
+		classes.addElement("-1");
+		classes.addElement("1");
+		atts.addElement(new Attribute("class", classes));
+		Instances data = new Instances("bench", atts, 0);
+		data.setClassIndex(dimension);
+
+		Random r = new Random(42);
+		instances = new Instance[256];
+		for (int n = 0; n < instances.length; n++) {
+			double[] values = new double[nnz + 1];
+			int[] indices = new int[nnz + 1];
+			int last = -1;
+			for (int j = 0; j < nnz; j++) {
+				// sorted distinct indices, spread over the whole dimension
+				last += 1 + r.nextInt(Math.max(1, (dimension - last - 1) / (nnz - j)));
+				indices[j] = last;
+				values[j] = r.nextDouble();
+			}
+			indices[nnz] = dimension;
+			values[nnz] = r.nextInt(2);
+			Instance inst = new SparseInstance(1.0, values, indices, dimension + 1);
+			inst.setDataset(data);
+			instances[n] = inst;
+		}
+
+		classifier = new SPegasosGadget();
+		classifier.setDontNormalize(true);
+		classifier.setDontReplaceMissing(true);
+		classifier.m_dimension = dimension + 1;
+		classifier.buildClassifier(data);
+	}
+
+	@Benchmark
+	public double updateClassifier() throws Exception {
+		next = (next + 1) & (instances.length - 1);
+		classifier.m_t++;
+		classifier.updateClassifier(instances[next]);
+		return classifier.m_obj_value;
+	}
+}
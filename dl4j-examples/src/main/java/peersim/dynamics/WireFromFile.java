@@ -24,6 +24,7 @@ import java.io.FileReader;
 import java.io.LineNumberReader;
 import java.util.StringTokenizer;
 import peersim.graph.Graph;
+import peersim.graph.GraphIO;
 import peersim.core.*;
 import peersim.config.Configuration;
 
@@ -37,6 +38,11 @@ import peersim.config.Configuration;
 * All node IDs larger than the actual network size will be discarded, but
 * it does not trigger an error. Lines starting with a "#" character and
 * empty lines are ignored.
+* <p>
+* Files in the binary format of {@link GraphIO#writeBinary} (for example
+* saved by {@link peersim.reports.GraphPrinter} with format "binary") are
+* recognized automatically and memory mapped instead of parsed, so large
+* topologies can be generated once and then loaded instantly.
 */
 public class WireFromFile extends WireGraph {
 
@@ -95,6 +101,11 @@ public WireFromFile(String prefix) {
 public void wire(Graph g) {
 try
 {
+	if( GraphIO.isBinary(file) )
+	{
+		wireBinary(g);
+		return;
+	}
 	FileReader fr = new FileReader(file);
 	LineNumberReader lnr = new LineNumberReader(fr);
 	String line;
@@ -133,4 +144,35 @@ catch( IOException e )
 }
 }
 
+
+// --------------------------------------------------------------------
+
+/**
+* Wires the graph from a file in the binary format of
+* {@link GraphIO#writeBinary}, applying the same range checks and the same
+* limit {@value #PAR_K} as for the text format.
+*/
+private void wireBinary(Graph g) throws IOException {
+
+	Graph fg = GraphIO.readBinary(file);
+	final int size = Network.size();
+	boolean wasOutOfRange = fg.size() > size;
+	final int n = Math.min(fg.size(),size);
+	for(int from=0; from<n; ++from)
+	{
+		int i=0;
+		for(Integer to: fg.getNeighbours(from))
+		{
+			if( i++ >= k ) break;
+			if( to < 0 || to >= size )
+				wasOutOfRange = true;
+			else
+				g.setEdge(from,to);
+		}
+	}
+	if( wasOutOfRange )
+		System.err.println("WireFromFile warning: in "+file+" "+
+			"some nodes were out of range and so ignored.");
+}
+
 }
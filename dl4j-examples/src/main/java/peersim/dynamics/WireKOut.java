@@ -45,6 +45,18 @@ public class WireKOut extends WireGraph {
  */
 private static final String PAR_DEGREE = "k";
 
+/**
+ * Number of threads used to generate the graph. Defaults to 1, which selects
+ * the original serial generator. With more threads {@link GraphFactory#wireKOutParallel}
+ * is used instead, seeded from {@link CommonState#r}. The graph is then
+ * deterministic for a given random seed irrespective of the number of threads.
+ * If the overlay is wired undirected (parameter "undir") the parallel
+ * generator runs on a single thread, since setting an undirected edge
+ * touches both ends.
+ * @config
+ */
+private static final String PAR_THREADS = "threads";
+
 //--------------------------------------------------------------------------
 //Fields
 //--------------------------------------------------------------------------
@@ -54,6 +66,11 @@ private static final String PAR_DEGREE = "k";
  */
 private final int k;
 
+/**
+ * The number of threads used to generate the graph.
+ */
+private final int threads;
+
 //--------------------------------------------------------------------------
 //Initialization
 //--------------------------------------------------------------------------
@@ -67,16 +84,25 @@ public WireKOut(String prefix)
 {
 	super(prefix);
 	k = Configuration.getInt(prefix + "." + PAR_DEGREE);
+	threads = Configuration.getInt(prefix + "." + PAR_THREADS, 1);
 }
 
 //--------------------------------------------------------------------------
 //Methods
 //--------------------------------------------------------------------------
 
-/** Calls {@link GraphFactory#wireKOut}. */
+/**
+ * Calls {@link GraphFactory#wireKOut}, or
+ * {@link GraphFactory#wireKOutParallel} if {@value #PAR_THREADS} is larger
+ * than 1.
+ */
 public void wire(Graph g) {
 
-	GraphFactory.wireKOut(g,k,CommonState.r);
+	if( threads > 1 )
+		GraphFactory.wireKOutParallel(g,k,CommonState.r.nextLong(),
+			undir ? 1 : threads);
+	else
+		GraphFactory.wireKOut(g,k,CommonState.r);
 }
 
 }
@@ -42,6 +42,15 @@ public class WireRingLattice extends WireGraph {
  */
 private static final String PAR_K = "k";
 
+/**
+ * Number of threads used to generate the graph. Defaults to 1. With more
+ * threads {@link GraphFactory#wireRingLatticeParallel} is used, which
+ * generates the same graph. If the overlay is wired undirected (parameter
+ * "undir") a single thread is used.
+ * @config
+ */
+private static final String PAR_THREADS = "threads";
+
 // --------------------------------------------------------------------------
 // Fields
 // --------------------------------------------------------------------------
@@ -50,6 +59,11 @@ private static final String PAR_K = "k";
  */
 private final int k;
 
+/**
+ * The number of threads used to generate the graph.
+ */
+private final int threads;
+
 // --------------------------------------------------------------------------
 // Initialization
 // --------------------------------------------------------------------------
@@ -63,16 +77,24 @@ public WireRingLattice(String prefix)
 {
 	super(prefix);
 	k = Configuration.getInt(prefix + "." + PAR_K);
+	threads = Configuration.getInt(prefix + "." + PAR_THREADS, 1);
 }
 
 //--------------------------------------------------------------------------
 //Public methods
 //--------------------------------------------------------------------------
 
-/** calls {@link GraphFactory#wireRingLattice}. */
+/**
+ * calls {@link GraphFactory#wireRingLattice}, or
+ * {@link GraphFactory#wireRingLatticeParallel} if {@value #PAR_THREADS} is
+ * larger than 1.
+ */
 public void wire(Graph g)
 {
-	GraphFactory.wireRingLattice(g, k);
+	if( threads > 1 )
+		GraphFactory.wireRingLatticeParallel(g, k, undir ? 1 : threads);
+	else
+		GraphFactory.wireRingLattice(g, k);
 }
 
 //--------------------------------------------------------------------------
@@ -50,6 +50,18 @@ private static final String PAR_BETA = "beta";
  */
 private static final String PAR_DEGREE = "k";
 
+/**
+ * Number of threads used to generate the graph. Defaults to 1, which selects
+ * the original serial generator. With more threads {@link GraphFactory#wireWSParallel}
+ * is used instead, seeded from {@link CommonState#r}. The graph is then
+ * deterministic for a given random seed irrespective of the number of threads.
+ * If the overlay is wired undirected (parameter "undir") the parallel
+ * generator runs on a single thread, since setting an undirected edge
+ * touches both ends.
+ * @config
+ */
+private static final String PAR_THREADS = "threads";
+
 /**
  * The degree of the regular graph
  */
@@ -60,6 +72,11 @@ private final int k;
  */
 private final double beta;
 
+/**
+ * The number of threads used to generate the graph.
+ */
+private final int threads;
+
 
 // ==================== initialization ==============================
 //===================================================================
@@ -75,6 +92,7 @@ public WireWS(String prefix) {
 	super(prefix);
 	k = Configuration.getInt(prefix+"."+PAR_DEGREE);
 	beta = Configuration.getDouble(prefix+"."+PAR_BETA);
+	threads = Configuration.getInt(prefix+"."+PAR_THREADS, 1);
 }
 
 
@@ -82,10 +100,17 @@ public WireWS(String prefix) {
 // ===================================================================
 
 
-/** calls {@link GraphFactory#wireWS}.*/
+/**
+ * calls {@link GraphFactory#wireWS}, or {@link GraphFactory#wireWSParallel}
+ * if {@value #PAR_THREADS} is larger than 1.
+ */
 public void wire(Graph g) {
 
-	GraphFactory.wireWS(g,k,beta,CommonState.r);
+	if( threads > 1 )
+		GraphFactory.wireWSParallel(g,k,beta,CommonState.r.nextLong(),
+			undir ? 1 : threads);
+	else
+		GraphFactory.wireWS(g,k,beta,CommonState.r);
 }
 
 }
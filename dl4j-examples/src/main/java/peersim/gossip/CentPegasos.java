@@ -109,6 +109,9 @@ public class CentPegasos {
 		long epochs = Long.parseLong(args[3]);
 		int numRun = Integer.parseInt(args[4]);
 		int dimension = Integer.parseInt(args[5]);
+		// Optional: read-ahead depth and sampling with (1) or without (0) replacement
+		int prefetchDepth = args.length > 6 ? Integer.parseInt(args[6]) : 4;
+		boolean replace = args.length > 7 ? Integer.parseInt(args[7]) != 0 : true;
 		// Init some variables
 		double readInitTimeInDouble;
 		double trainTimeInDouble = 0.0;
@@ -180,19 +183,16 @@ public class CentPegasos {
 		
 		// Need a random list of file names from the 
 
-		Random r = new Random();
+		// Files are read and parsed ahead on a background thread
+		ShardPrefetcher prefetcher = new ShardPrefetcher(listOfFiles, prefetchDepth,
+				replace, new Random().nextLong());
+		try {
 	    for (int iter = 0; iter < epochs; iter++) {
 	    	
-			int cur_index = r.nextInt((numfiles - 0) + 1);
-			// Load file
-			System.out.println(cur_index);
-			
-			// Read the data
+			// Read the data; this only waits if the reader falls behind
 			startTime = System.nanoTime();
-			String curFilePath = listOfFiles[cur_index%numfiles].toString();
-			System.out.println("Loading " + curFilePath);
-			curSource = new DataSource(curFilePath);
-			curDataset = curSource.getDataSet();
+			curDataset = prefetcher.next();
+			System.out.println("Loaded " + prefetcher.lastShardName());
 			readInitTimePerIter = System.nanoTime() - startTime;
 			readInitTimeInDouble += (double)readInitTimePerIter / (double)1e9;
 			
@@ -241,5 +241,8 @@ public class CentPegasos {
 	          }
 	         
 	}
+		} finally {
+			prefetcher.close();
+		}
 	}
 }
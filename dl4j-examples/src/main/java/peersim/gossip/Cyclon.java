@@ -0,0 +1,351 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package peersim.gossip;
+
+import peersim.cdsim.CDProtocol;
+import peersim.config.Configuration;
+import peersim.config.FastConfig;
+import peersim.config.IllegalParameterException;
+import peersim.core.CommonState;
+import peersim.core.Linkable;
+import peersim.core.Node;
+import peersim.edsim.EDProtocol;
+import peersim.transport.Transport;
+
+/**
+ * Class Cyclon
+ * A gossip based peer sampling service implementing {@link Linkable}, based on
+ * the paper:
+ * S. Voulgaris, D. Gavidia, M. van Steen
+ * CYCLON: Inexpensive Membership Management for Unstructured P2P Overlays
+ * <p>
+ * Every node keeps a bounded view of {@value #PAR_CACHE} entries, each tagged
+ * with an age. In each cycle the node ages its view, picks the oldest entry as
+ * the shuffle partner, and swaps up to {@value #PAR_SHUFFLE} entries with it
+ * (including a fresh entry for itself). The oldest entry is always removed
+ * from the view when it is contacted, so links to failed nodes are purged
+ * after at most {@value #PAR_CACHE} cycles without any failure detector.
+ * <p>
+ * When the protocol has a {@value #PAR_TRANSPORT} configured, the exchange
+ * is carried out with request/reply messages and the protocol can be run by
+ * the {@link peersim.edsim.EDSimulator} through {@link peersim.edsim.CDScheduler}.
+ * Otherwise the exchange is performed atomically in {@link #nextCycle}, as
+ * usual in the cycle driven model.
+ * <p>
+ * Learning protocols such as {@link GadgetProtocol} simply use it as their
+ * linkable and then draw near-uniform random peers from a continuously
+ * refreshed view instead of a static overlay.
+ */
+public class Cyclon implements CDProtocol, EDProtocol, Linkable {
+
+	/**
+	 * View size. Defaults to {@value #DEFAULT_CACHE}.
+	 * @config
+	 */
+	private static final String PAR_CACHE = "cache";
+	/**
+	 * Number of entries exchanged in a shuffle. Defaults to half of
+	 * {@value #PAR_CACHE}.
+	 * @config
+	 */
+	private static final String PAR_SHUFFLE = "shuffle";
+	/**
+	 * Transport used in the event driven model. Read through
+	 * {@link FastConfig#hasTransport}.
+	 * @config
+	 */
+	private static final String PAR_TRANSPORT = "transport";
+
+	private static final int DEFAULT_CACHE = 20;
+
+	/** View size */
+	private final int cacheSize;
+	/** Shuffle length */
+	private final int shuffleLength;
+
+	/** Neighbors in the view; the first {@link #len} slots are used */
+	private Node[] view;
+	/** Age of each entry in {@link #view} */
+	private int[] age;
+	/** Actual number of neighbors in the view */
+	private int len;
+
+	/** Entries sent in the last shuffle, replaced first by the reply */
+	private Node[] sent;
+	/** Number of entries in {@link #sent} */
+	private int sentLen;
+
+	/**
+	 * Message carrying a subset of a view. The same class is used for the
+	 * request and the reply of a shuffle.
+	 */
+	private static class ShuffleMessage {
+		final Node sender;
+		final Node[] nodes;
+		final int[] ages;
+		final boolean request;
+
+		ShuffleMessage(Node sender, Node[] nodes, int[] ages, boolean request) {
+			this.sender = sender;
+			this.nodes = nodes;
+			this.ages = ages;
+			this.request = request;
+		}
+	}
+
+	/**
+	 * Default constructor for configurable objects.
+	 */
+	public Cyclon(String prefix) {
+		cacheSize = Configuration.getInt(prefix + "." + PAR_CACHE, DEFAULT_CACHE);
+		shuffleLength = Configuration.getInt(prefix + "." + PAR_SHUFFLE,
+				Math.max(1, cacheSize / 2));
+		if (cacheSize < 1)
+			throw new IllegalParameterException(prefix + "." + PAR_CACHE,
+					"View size must be positive");
+		if (shuffleLength < 1 || shuffleLength > cacheSize)
+			throw new IllegalParameterException(prefix + "." + PAR_SHUFFLE,
+					"Shuffle length must be between 1 and " + PAR_CACHE);
+		view = new Node[cacheSize];
+		age = new int[cacheSize];
+		sent = new Node[shuffleLength];
+		len = 0;
+		sentLen = 0;
+	}
+
+	/**
+	 * Clone an existing instance. The view of the clone is a copy of the
+	 * view of this instance.
+	 */
+	public Object clone() {
+		Cyclon c = null;
+		try { c = (Cyclon)super.clone(); }
+		catch( CloneNotSupportedException e ) {} // never happens
+		c.view = new Node[cacheSize];
+		c.age = new int[cacheSize];
+		c.sent = new Node[shuffleLength];
+		System.arraycopy(view, 0, c.view, 0, len);
+		System.arraycopy(age, 0, c.age, 0, len);
+		c.sentLen = 0;
+		return c;
+	}
+
+	// ---------------------------------------------------------------------
+	// Linkable
+	// ---------------------------------------------------------------------
+
+	public int degree() {
+		return len;
+	}
+
+	public Node getNeighbor(int i) {
+		if (i < 0 || i >= len)
+			throw new IndexOutOfBoundsException("i=" + i + " degree=" + len);
+		return view[i];
+	}
+
+	/**
+	 * Adds the node with age 0. Throws {@link IndexOutOfBoundsException} if
+	 * the view is already full.
+	 */
+	public boolean addNeighbor(Node neighbour) {
+		if (contains(neighbour))
+			return false;
+		if (len == cacheSize)
+			throw new IndexOutOfBoundsException("View is full: " + PAR_CACHE
+					+ "=" + cacheSize);
+		view[len] = neighbour;
+		age[len] = 0;
+		len++;
+		return true;
+	}
+
+	public boolean contains(Node neighbor) {
+		return indexOf(neighbor) >= 0;
+	}
+
+	/** The view is a fixed size array, there is nothing to compress. */
+	public void pack() {}
+
+	public void onKill() {
+		view = null;
+		age = null;
+		sent = null;
+		len = 0;
+		sentLen = 0;
+	}
+
+	// ---------------------------------------------------------------------
+	// Shuffling
+	// ---------------------------------------------------------------------
+
+	/**
+	 * Starts a shuffle with the oldest neighbor. Neighbors that are not up are
+	 * dropped when selected. In the event driven model the reply is handled
+	 * by {@link #processEvent}.
+	 */
+	public void nextCycle(Node node, int pid) {
+		for (int i = 0; i < len; i++)
+			age[i]++;
+
+		Node peer = null;
+		while (len > 0 && peer == null) {
+			int oldest = oldest();
+			peer = view[oldest];
+			remove(oldest);
+			if (!peer.isUp())
+				peer = null;
+		}
+		if (peer == null)
+			return;
+
+		ShuffleMessage request = subset(node, shuffleLength - 1, true);
+
+		if (FastConfig.hasTransport(pid)) {
+			Transport t = (Transport)node.getProtocol(
+					FastConfig.getTransport(pid));
+			t.send(node, peer, request, pid);
+		}
+		else {
+			Cyclon other = (Cyclon)peer.getProtocol(pid);
+			ShuffleMessage reply = other.subset(peer, shuffleLength, false);
+			other.merge(peer, request);
+			merge(node, reply);
+		}
+	}
+
+	/**
+	 * Handles shuffle requests and replies in the event driven model.
+	 */
+	public void processEvent(Node node, int pid, Object event) {
+		ShuffleMessage msg = (ShuffleMessage)event;
+		if (msg.request) {
+			ShuffleMessage reply = subset(node, shuffleLength, false);
+			Transport t = (Transport)node.getProtocol(
+					FastConfig.getTransport(pid));
+			t.send(node, msg.sender, reply, pid);
+		}
+		merge(node, msg);
+	}
+
+	/**
+	 * Selects <code>k</code> random entries of the view and remembers them
+	 * in {@link #sent}. If <code>includeSelf</code> is true, a fresh entry
+	 * for <code>node</code> is added to the message.
+	 */
+	private ShuffleMessage subset(Node node, int k, boolean includeSelf) {
+		k = Math.min(k, len);
+		int n = k + (includeSelf ? 1 : 0);
+		Node[] nodes = new Node[n];
+		int[] ages = new int[n];
+		// partial Fisher-Yates over the first k slots of the view
+		for (int i = 0; i < k; i++) {
+			int j = i + CommonState.r.nextInt(len - i);
+			swap(i, j);
+			nodes[i] = view[i];
+			ages[i] = age[i];
+			sent[i] = view[i];
+		}
+		sentLen = k;
+		if (includeSelf) {
+			nodes[k] = node;
+			ages[k] = 0;
+		}
+		return new ShuffleMessage(node, nodes, ages, includeSelf);
+	}
+
+	/**
+	 * Merges the received entries into the view. Entries pointing to
+	 * <code>node</code> itself or already in the view are discarded. Empty
+	 * slots are filled first, then entries sent in the last shuffle are
+	 * replaced.
+	 */
+	private void merge(Node node, ShuffleMessage msg) {
+		if (view == null)
+			return;
+		int s = 0;
+		for (int i = 0; i < msg.nodes.length; i++) {
+			Node n = msg.nodes[i];
+			if (n == node || !n.isUp())
+				continue;
+			int idx = indexOf(n);
+			if (idx >= 0) {
+				if (msg.ages[i] < age[idx])
+					age[idx] = msg.ages[i];
+				continue;
+			}
+			if (len < cacheSize) {
+				view[len] = n;
+				age[len] = msg.ages[i];
+				len++;
+				continue;
+			}
+			while (s < sentLen && (idx = indexOf(sent[s])) < 0)
+				s++;
+			if (s == sentLen)
+				break;
+			view[idx] = n;
+			age[idx] = msg.ages[i];
+			s++;
+		}
+		sentLen = 0;
+	}
+
+	// ---------------------------------------------------------------------
+
+	private int indexOf(Node n) {
+		for (int i = 0; i < len; i++) {
+			if (view[i] == n)
+				return i;
+		}
+		return -1;
+	}
+
+	private int oldest() {
+		int best = 0;
+		for (int i = 1; i < len; i++) {
+			if (age[i] > age[best])
+				best = i;
+		}
+		return best;
+	}
+
+	private void remove(int i) {
+		len--;
+		view[i] = view[len];
+		age[i] = age[len];
+		view[len] = null;
+	}
+
+	private void swap(int i, int j) {
+		Node n = view[i];
+		view[i] = view[j];
+		view[j] = n;
+		int a = age[i];
+		age[i] = age[j];
+		age[j] = a;
+	}
+
+	public String toString() {
+		if (view == null) return "DEAD!";
+		StringBuffer buffer = new StringBuffer();
+		buffer.append("len=" + len + " maxlen=" + cacheSize + " [");
+		for (int i = 0; i < len; ++i) {
+			buffer.append(view[i].getIndex() + "(" + age[i] + ") ");
+		}
+		return buffer.append("]").toString();
+	}
+}
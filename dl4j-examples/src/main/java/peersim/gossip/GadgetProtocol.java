@@ -45,6 +45,7 @@ import java.io.FileReader;
 import java.io.LineNumberReader;
 import peersim.gossip.PegasosNode;
 import weka.classifiers.Classifier;
+import weka.classifiers.functions.SPegasosGadget;
 import weka.core.Instances;
 import weka.core.converters.ConverterUtils.DataSource;
 import peersim.config.Configuration;
@@ -84,6 +85,24 @@ public class GadgetProtocol implements CDProtocol {
 	 * @config
 	 */
 	private static final String PAR_ITERATION = "iter";
+	/**
+	 * Threshold on the relative change of the model parameters between two
+	 * cycles, ||w_t - w_{t-1}|| / ||w_{t-1}||. Defaults to {@link #EPSILON_VAL}.
+	 * @config
+	 */
+	private static final String PAR_EPSILON = "epsilon";
+	/**
+	 * Threshold on the relative change of the test loss between two cycles,
+	 * used to detect a loss plateau. Defaults to {@link #EPSILON_VAL}.
+	 * @config
+	 */
+	private static final String PAR_LOSS_TOL = "losstol";
+	/**
+	 * Number of consecutive stable cycles after which a node is marked as
+	 * converged. Defaults to {@link #CONVERGENCE_COUNT}.
+	 * @config
+	 */
+	private static final String PAR_PATIENCE = "patience";
 	
 	public static boolean flag = false;
 	
@@ -103,8 +122,6 @@ public class GadgetProtocol implements CDProtocol {
 	
 	public static double[][] optimalB;
 	
-	public static int end = 0;
-	
 	public static boolean pushsumobserverflag = false;
 	public static final int CONVERGENCE_COUNT = 10;
 	
@@ -114,6 +131,12 @@ public class GadgetProtocol implements CDProtocol {
 	
 	private String protocol;
 
+	/** Threshold on the relative parameter change, see {@link #PAR_EPSILON} */
+	private double epsilon;
+	/** Threshold on the relative loss change, see {@link #PAR_LOSS_TOL} */
+	private double lossTol;
+	/** Stable cycles needed to converge, see {@link #PAR_PATIENCE} */
+	private int patience;
 
 	
 	private String resourcepath;
@@ -134,6 +157,9 @@ public class GadgetProtocol implements CDProtocol {
 		lid = FastConfig.getLinkable(CommonState.getPid());
 		
 		protocol = Configuration.getString(prefix + "." + "prot", "pushsum1");
+		epsilon = Configuration.getDouble(prefix + "." + PAR_EPSILON, EPSILON_VAL);
+		lossTol = Configuration.getDouble(prefix + "." + PAR_LOSS_TOL, EPSILON_VAL);
+		patience = Configuration.getInt(prefix + "." + PAR_PATIENCE, CONVERGENCE_COUNT);
 		
 	}
 
@@ -245,6 +271,8 @@ public class GadgetProtocol implements CDProtocol {
 	
 	private void pushsum1(Node node, PegasosNode pn, int pid) {
 		PegasosNode peer = (PegasosNode)selectNeighbor(node, pid);
+		if (peer == null)
+			return;
 	    System.out.println("Node "+pn.getID()+" is gossiping with Node "+peer.getID()+"....");
 	    // Function to average two weight vectors
 	    INDArray weights = pn.model.params().addi(peer.model.params());
@@ -267,6 +295,34 @@ public class GadgetProtocol implements CDProtocol {
 
 
 	}
+	/**
+	 * Marks the node as converged once its model has been stable for
+	 * {@link #patience} consecutive cycles. A cycle is stable if both the
+	 * relative change of the parameters and the relative change of the loss
+	 * are below their thresholds. When a {@link SPegasosGadget} is attached,
+	 * its own {@link SPegasosGadget#num_converge_iters} counter is also
+	 * accepted. Converged nodes stop training, but can still be picked as
+	 * peers by others, and are counted by {@link PushSumObserver}.
+	 */
+	private void checkConvergence(PegasosNode pn, double loss) {
+		INDArray params = pn.model.params();
+		boolean stable = false;
+		if (pn.prevParams != null) {
+			double prevNorm = pn.prevParams.norm2Number().doubleValue();
+			double delta = params.distance2(pn.prevParams) / Math.max(prevNorm, Double.MIN_VALUE);
+			double lossDelta = Math.abs(loss - pn.prevLoss) / Math.max(Math.abs(pn.prevLoss), Double.MIN_VALUE);
+			stable = delta <= epsilon && lossDelta <= lossTol;
+		}
+		pn.prevParams = params.dup();
+		pn.prevLoss = loss;
+		pn.stableCycles = stable ? pn.stableCycles + 1 : 0;
+		
+		if (pn.stableCycles >= patience || (pn.pegasosClassifier != null 
+				&& pn.pegasosClassifier.num_converge_iters >= patience)) {
+			pn.converged = 1;
+		}
+	}
+
 	protected List<Node> getPeers(Node node) {
 		Linkable linkable = (Linkable) node.getProtocol(lid);
 		if (linkable.degree() > 0) {
@@ -312,13 +368,14 @@ public class GadgetProtocol implements CDProtocol {
 				
 				
 				
-				// Check if the algorithm has converged
-				  
 				pn.model.fit(pn.trainIter);
 				pushsum1(node, pn, pid);
 				DataSetLossCalculator lossCalc = new DataSetLossCalculator(pn.testIter, true);
 				double loss = lossCalc.calculateScore(pn.model);
 				System.out.println("Loss: " + loss);
+				
+				// Check if the algorithm has converged
+				checkConvergence(pn, loss);
 			} catch (Exception e) {
 				
 				e.printStackTrace();
@@ -371,11 +428,15 @@ public class GadgetProtocol implements CDProtocol {
 	 */
 	protected Node selectNeighbor(Node node, int pid) {
 		Linkable linkable = (Linkable) node.getProtocol(lid);
-		if (linkable.degree() > 0) 
-			return linkable.getNeighbor(
+		// With a dynamic linkable such as Cyclon the view may still hold
+		// links to failed nodes, so retry a few times before giving up
+		for (int i = 0; i < linkable.degree(); i++) {
+			Node peer = linkable.getNeighbor(
 					CommonState.r.nextInt(linkable.degree()));
-		else
-			return null;
+			if (canDeliverRequest(peer))
+				return peer;
+		}
+		return null;
 	}
 
 	public static void writeIntoFile(String millis) {
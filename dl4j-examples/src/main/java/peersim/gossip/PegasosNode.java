@@ -52,6 +52,7 @@ import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.nn.weights.WeightInit;
 import org.deeplearning4j.optimize.listeners.ScoreIterationListener;
 import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
 import org.nd4j.linalg.learning.config.Nesterovs;
 import org.nd4j.linalg.lossfunctions.LossFunctions.LossFunction;
@@ -207,6 +208,10 @@ public class PegasosNode implements Node {
 	int numfiles;
 	double wtnorm = 0.0;
 	public long readInitTime = 0;
+	/** Convergence tracking, see {@link GadgetProtocol} */
+	INDArray prevParams = null;
+	double prevLoss = Double.NaN;
+	int stableCycles = 0;
 	// ================ constructor and initialization =================
 	// =================================================================
 
@@ -51,6 +51,15 @@ public class PushSumObserver implements Control {
      */
     private static final String PAR_PROT = "protocol";
 
+    /**
+     * Fraction of the nodes that must have converged (see
+     * {@link PegasosNode#converged}) before the simulation is stopped.
+     * Defaults to 1, that is, all nodes.
+     * 
+     * @config
+     */
+    private static final String PAR_FRACTION = "fraction";
+
     // /////////////////////////////////////////////////////////////////////
     // Fields
     // /////////////////////////////////////////////////////////////////////
@@ -66,6 +75,12 @@ public class PushSumObserver implements Control {
      * from config property {@link #PAR_ACCURACY}.
      */
     int network_size;
+
+    /**
+     * Fraction of converged nodes needed to stop; obtained from config
+     * property {@link #PAR_FRACTION}.
+     */
+    private final double fraction;
     
 
     // /////////////////////////////////////////////////////////////////////
@@ -79,6 +94,10 @@ public class PushSumObserver implements Control {
         this.name = name;
         
         network_size = Configuration.getInt("network.size");
+        fraction = Configuration.getDouble(name + "." + PAR_FRACTION, 1.0);
+        if (fraction <= 0 || fraction > 1)
+            throw new IllegalParameterException(name + "." + PAR_FRACTION,
+                "Fraction must be in (0,1]");
     }
     
 
@@ -91,13 +110,24 @@ public class PushSumObserver implements Control {
      * printed are defined by {@link IncrementalStats#toString}. The current
      * timestamp is also printed as a first field.
      * 
-     * @return if the standard deviation is less than the given
-     *         {@value #PAR_ACCURACY}.
+     * @return if at least {@value #PAR_FRACTION} of the nodes have
+     *         converged.
      */
     public boolean execute() {
 
-    	if(GadgetProtocol.end == network_size) return true;
-    	return false;
+        int size = Math.min(network_size, Network.size());
+        int converged = 0;
+        for (int i = 0; i < size; i++) {
+            if (((PegasosNode) Network.get(i)).converged == 1)
+                converged++;
+        }
+        if (converged >= Math.ceil(fraction * size)) {
+            System.out.println(name + ": " + converged + " of " + size
+                + " nodes converged at cycle " + CommonState.getTime()
+                + ", stopping");
+            return true;
+        }
+        return false;
     }
     
 }
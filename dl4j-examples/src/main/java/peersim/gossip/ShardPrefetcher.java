@@ -0,0 +1,159 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin St, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+package peersim.gossip;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import weka.core.Instances;
+import weka.core.converters.ConverterUtils.DataSource;
+
+/**
+ * Class ShardPrefetcher
+ * Reads data shards (one file per shard, as in the train folders of
+ * {@link CentPegasos} and {@link PegasosNode}) on a background thread and
+ * keeps up to <code>depth</code> parsed {@link Instances} in a bounded queue,
+ * so that the training loop does not wait for disk I/O and parsing.
+ * <p>
+ * Shards are sampled either with replacement (a random shard each time) or
+ * without replacement (a random permutation of all shards, reshuffled after
+ * every pass). The sampling uses its own {@link Random} seeded at
+ * construction, so the sequence of shards is reproducible.
+ */
+public class ShardPrefetcher {
+
+	private final File[] shards;
+	private final boolean replace;
+	private final Random r;
+
+	/** Parsed shards, or the exception or error raised while reading one */
+	private final BlockingQueue<Object> queue;
+	private final Thread worker;
+	private volatile boolean closed = false;
+
+	/** Name of the file returned by the last call to {@link #next} */
+	private String lastName = null;
+
+	/**
+	 * Starts reading ahead.
+	 * @param shards the shard files
+	 * @param depth maximum number of parsed shards waiting in the queue
+	 * @param replace sample shards with replacement if true
+	 * @param seed seed of the shard sampling
+	 */
+	public ShardPrefetcher(File[] shards, int depth, boolean replace, long seed) {
+		if (shards == null || shards.length == 0)
+			throw new IllegalArgumentException("No shards to read");
+		if (depth < 1)
+			throw new IllegalArgumentException("Read-ahead depth must be positive: " + depth);
+		this.shards = shards.clone();
+		this.replace = replace;
+		this.r = new Random(seed);
+		this.queue = new ArrayBlockingQueue<Object>(depth);
+		worker = new Thread(new Runnable() {
+			public void run() { readAhead(); }
+		}, "ShardPrefetcher");
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * Returns the next shard, waiting only if the reader has fallen behind.
+	 * @throws Exception the exception raised while reading the shard
+	 * @throws Error the error raised while reading the shard
+	 */
+	public Instances next() throws Exception {
+		if (closed)
+			throw new IllegalStateException("ShardPrefetcher is closed");
+		Object o = queue.take();
+		if (o instanceof Exception)
+			throw (Exception)o;
+		if (o instanceof Error)
+			throw (Error)o;
+		Shard s = (Shard)o;
+		lastName = s.name;
+		return s.data;
+	}
+
+	/** Returns the file name of the shard returned by the last {@link #next}. */
+	public String lastShardName() {
+		return lastName;
+	}
+
+	/** Stops the background reader. Pending shards are discarded. */
+	public void close() {
+		closed = true;
+		worker.interrupt();
+		queue.clear();
+	}
+
+	// ---------------------------------------------------------------------
+
+	/** A parsed shard and its file name */
+	private static class Shard {
+		final String name;
+		final Instances data;
+
+		Shard(String name, Instances data) {
+			this.name = name;
+			this.data = data;
+		}
+	}
+
+	private void readAhead() {
+		int[] order = new int[shards.length];
+		for (int i = 0; i < order.length; i++)
+			order[i] = i;
+		int pos = order.length;
+		try {
+			while (!closed) {
+				int idx;
+				if (replace) {
+					idx = r.nextInt(shards.length);
+				}
+				else {
+					if (pos == order.length) {
+						shuffle(order);
+						pos = 0;
+					}
+					idx = order[pos++];
+				}
+				Object item;
+				try {
+					String path = shards[idx].toString();
+					item = new Shard(path, new DataSource(path).getDataSet());
+				} catch (Throwable t) {
+					// handed to the consumer, so that next() never waits on a dead reader
+					item = t;
+				}
+				queue.put(item);
+			}
+		} catch (InterruptedException e) {
+			// closed
+		}
+	}
+
+	private void shuffle(int[] a) {
+		for (int i = a.length - 1; i > 0; i--) {
+			int j = r.nextInt(i + 1);
+			int t = a[i];
+			a[i] = a[j];
+			a[j] = t;
+		}
+	}
+}
@@ -19,6 +19,10 @@
 package peersim.graph;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
 * Contains static methods for wiring certain kinds of graphs. The general
@@ -278,6 +282,211 @@ public static Graph wireScaleFreeBA( Graph g, int k, Random r ) {
 	return g;
 }
 
+// ===================== parallel generators ========================
+// ==================================================================
+
+/**
+* Number of consecutive nodes that are generated with the same random
+* generator by the parallel methods. Each block gets its own generator
+* seeded from the given seed and the block index, so the result does not
+* depend on the number of threads.
+*/
+private static final int BLOCK = 1 << 12;
+
+/** Generates the fixed number of edge targets of nodes [from,to). */
+private interface BlockGenerator {
+	void generate(int from, int to, Random r, int[] targets);
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Parallel version of {@link #wireRingLattice(Graph,int)}. The resulting
+* graph is identical to that of the serial version.
+* @param g the graph to be wired
+* @param k lattice parameter
+* @param threads number of threads to use
+* @return returns g for convenience
+*/
+public static Graph wireRingLatticeParallel(Graph g, final int k, int threads) {
+
+	final int n = g.size();
+	final int pred = k/2;
+	final int succ = k-pred;
+	return wireParallel(g, k, 0, threads, new BlockGenerator() {
+		public void generate(int from, int to, Random r, int[] targets) {
+			int e = from*k;
+			for(int i=from; i<to; ++i)
+			for(int j=-pred; j<=succ; ++j)
+			{
+				if( j==0 ) continue;
+				targets[e++] = ((i+j)%n+n)%n;
+			}
+		}
+	});
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Parallel version of {@link #wireWS(Graph,int,double,Random)}, generating
+* the same model. The graph is deterministic for a given seed irrespective
+* of the number of threads, but it differs from the graph generated by the
+* serial version with the same seed.
+* @param g the graph to be wired
+* @param k lattice parameter: this is the out-degree of a node in the
+* ring lattice before rewiring
+* @param p the probability of rewiring each 
+* @param seed seed of the random generators
+* @param threads number of threads to use
+* @return returns g for convenience
+*/
+public static Graph wireWSParallel( Graph g, int k, final double p,
+		long seed, int threads ) {
+
+	final int n = g.size();
+	final int half = k/2;
+	final int deg = 2*half;
+	return wireParallel(g, deg, seed, threads, new BlockGenerator() {
+		public void generate(int from, int to, Random r, int[] targets) {
+			int e = from*deg;
+			for(int i=from; i<to; ++i)
+			for(int j=-half; j<=half; ++j)
+			{
+				if( j==0 ) continue;
+				int newedge = ((i+j)%n+n)%n;
+				if( r.nextDouble() < p )
+				{
+					newedge = r.nextInt(n-1);
+					if( newedge >= i ) newedge++; // random _other_ node
+				}
+				targets[e++] = newedge;
+			}
+		}
+	});
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Parallel version of {@link #wireKOut(Graph,int,Random)}, generating
+* the same model: k distinct random targets for each node, without loop
+* edges. The graph is deterministic for a given seed irrespective
+* of the number of threads, but it differs from the graph generated by the
+* serial version with the same seed.
+* @param g the graph to be wired
+* @param k samples to be drawn for each node
+* @param seed seed of the random generators
+* @param threads number of threads to use
+* @return returns g for convenience
+*/
+public static Graph wireKOutParallel( Graph g, int k, long seed, int threads ) {
+
+	final int n = g.size();
+	if( n < 2 ) return g;
+	if( n <= k ) k=n-1;
+	final int kk = k;
+	return wireParallel(g, k, seed, threads, new BlockGenerator() {
+		public void generate(int from, int to, Random r, int[] targets) {
+			for(int i=from; i<to; ++i)
+			{
+				final int base = i*kk;
+				int j=0;
+				while(j<kk)
+				{
+					int t = r.nextInt(n-1);
+					if( t >= i ) t++; // random _other_ node
+					boolean dup = false;
+					for(int l=base; l<base+j && !dup; ++l)
+						dup = targets[l]==t;
+					if( !dup ) targets[base+(j++)] = t;
+				}
+			}
+		}
+	});
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Runs the generator over blocks of {@link #BLOCK} nodes on a thread pool,
+* then adds the generated edges to the graph. If the graph is directed,
+* the edges of different source nodes are independent so they are added in
+* parallel too, otherwise they are added by the calling thread.
+*/
+private static Graph wireParallel(final Graph g, final int deg, long seed,
+		int threads, final BlockGenerator gen) {
+
+	final int n = g.size();
+	if( n == 0 || deg == 0 ) return g;
+	if( (long)n*deg > Integer.MAX_VALUE )
+		throw new IllegalArgumentException(
+			"Too many edges to generate: "+n+"*"+deg);
+	final int[] targets = new int[n*deg];
+	final int blocks = (n+BLOCK-1)/BLOCK;
+	final long[] seeds = new long[blocks];
+	Random sr = new Random(seed);
+	for(int b=0; b<blocks; ++b) seeds[b] = sr.nextLong();
+
+	final boolean direct = g.directed();
+	List<Runnable> tasks = new ArrayList<Runnable>(blocks);
+	for(int b=0; b<blocks; ++b)
+	{
+		final int from = b*BLOCK;
+		final int to = Math.min(n,from+BLOCK);
+		final long s = seeds[b];
+		tasks.add(new Runnable() {
+			public void run() {
+				gen.generate(from, to, new Random(s), targets);
+				if( direct )
+					for(int i=from; i<to; ++i)
+					for(int e=i*deg; e<(i+1)*deg; ++e)
+						g.setEdge(i,targets[e]);
+			}
+		});
+	}
+	runAll(tasks, threads);
+
+	if( !direct )
+		for(int i=0; i<n; ++i)
+		for(int e=i*deg; e<(i+1)*deg; ++e)
+			g.setEdge(i,targets[e]);
+	return g;
+}
+
+// -------------------------------------------------------------------
+
+/** Runs the tasks on a fixed pool and waits for all of them. */
+private static void runAll(List<Runnable> tasks, int threads) {
+
+	if( threads <= 1 || tasks.size() <= 1 )
+	{
+		for(Runnable t: tasks) t.run();
+		return;
+	}
+	ExecutorService pool = Executors.newFixedThreadPool(
+		Math.min(threads,tasks.size()));
+	try
+	{
+		List<Future<?>> futures = new ArrayList<Future<?>>(tasks.size());
+		for(Runnable t: tasks) futures.add(pool.submit(t));
+		for(Future<?> f: futures) f.get();
+	}
+	catch( InterruptedException e )
+	{
+		Thread.currentThread().interrupt();
+		throw new RuntimeException(e);
+	}
+	catch( ExecutionException e )
+	{
+		throw new RuntimeException(e.getCause());
+	}
+	finally
+	{
+		pool.shutdown();
+	}
+}
+
 // -------------------------------------------------------------------
 /*
 public static void main(String[] pars) {
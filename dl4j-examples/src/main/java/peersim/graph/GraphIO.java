@@ -230,6 +230,92 @@ public static void writeChaco( Graph g, PrintStream out ) {
 
 // -------------------------------------------------------------------
 
+/**
+* Magic number of the binary edge list format, the latin 1 coded "PGB1"
+* string.
+* @see #writeBinary
+*/
+public static final int BINARY_MAGIC = 0x50474231;
+
+/**
+* Saves the graph in a compact binary edge list format that can be memory
+* mapped by {@link #readBinary}. The format is a compressed sparse row
+* representation, all numbers in big endian:
+* <ul>
+* <li> the int {@link #BINARY_MAGIC},</li>
+* <li> an int of flags, bit 0 is set if the graph is directed,</li>
+* <li> the number of nodes n (int) and the number of edges m (long),</li>
+* <li> n+1 offsets (long), the neighbors of node i are at positions
+*     offset[i] to offset[i+1]-1 of the target array,</li>
+* <li> m targets (int).</li>
+* </ul>
+* Undirected graphs are saved with both directions of every edge.
+*/
+public static void writeBinary( Graph g, OutputStream out ) throws IOException {
+
+	final int n = g.size();
+	long m = 0;
+	for(int i=0; i<n; ++i) m += g.degree(i);
+
+	DataOutputStream dos = new DataOutputStream(
+		new BufferedOutputStream(out, 1 << 16));
+	dos.writeInt(BINARY_MAGIC);
+	dos.writeInt(g.directed()?1:0);
+	dos.writeInt(n);
+	dos.writeLong(m);
+	long offset = 0;
+	dos.writeLong(offset);
+	for(int i=0; i<n; ++i)
+	{
+		offset += g.degree(i);
+		dos.writeLong(offset);
+	}
+	for(int i=0; i<n; ++i)
+	{
+		for(Integer j: g.getNeighbours(i)) dos.writeInt(j);
+	}
+	dos.flush();
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Returns true if the file starts with {@link #BINARY_MAGIC}, that is, if it
+* can be read by {@link #readBinary}.
+*/
+public static boolean isBinary( String file ) throws IOException {
+
+	DataInputStream dis = new DataInputStream(new FileInputStream(file));
+	try
+	{
+		return dis.readInt() == BINARY_MAGIC;
+	}
+	catch( EOFException e )
+	{
+		return false;
+	}
+	finally
+	{
+		dis.close();
+	}
+}
+
+// -------------------------------------------------------------------
+
+/**
+* Reads a graph saved by {@link #writeBinary}. The file is memory mapped
+* and the returned graph reads it directly, so loading is practically
+* instantaneous and the edges do not occupy heap space. The returned graph
+* is read only.
+* @see MappedGraph
+*/
+public static Graph readBinary( String file ) throws IOException {
+
+	return new MappedGraph(file);
+}
+
+// -------------------------------------------------------------------
+
 /**
 * Read a graph in newscast graph format.
 * The format depends on mode, the parameter.
@@ -0,0 +1,165 @@
+/*
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License version 2 as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *
+ */
+
+package peersim.graph;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+* A read only graph backed by a memory mapped file in the binary edge list
+* format of {@link GraphIO#writeBinary}. The neighbor lists are not copied
+* to the heap, they are read from the mapping when needed.
+*/
+public class MappedGraph implements Graph {
+
+
+// ====================== private fields ========================
+// ==============================================================
+
+/** Size of the header before the offsets, in bytes */
+private static final int HEADER = 4+4+4+8;
+
+private final boolean directed;
+
+private final int n;
+
+/** n+1 offsets into {@link #targets} */
+private final LongBuffer offsets;
+
+/** Edge targets, possibly split into several mappings */
+private final IntBuffer[] targets;
+
+/** Number of targets in each element of {@link #targets} but the last */
+private static final int CHUNK = 1 << 28;
+
+
+// ====================== public constructors ===================
+// ==============================================================
+
+/**
+* Maps the given file.
+* @throws IOException if the file can not be read or it is not in the
+* binary format
+*/
+public MappedGraph( String file ) throws IOException {
+
+	RandomAccessFile raf = new RandomAccessFile(file,"r");
+	try
+	{
+		FileChannel ch = raf.getChannel();
+		ByteBuffer head = ch.map(FileChannel.MapMode.READ_ONLY,0,HEADER);
+		if( head.getInt() != GraphIO.BINARY_MAGIC )
+			throw new IOException(file+" is not a binary graph file");
+		directed = (head.getInt() & 1) != 0;
+		n = head.getInt();
+		final long m = head.getLong();
+		final long tstart = HEADER+8L*(n+1);
+		if( ch.size() < tstart+4L*m )
+			throw new IOException(file+" is truncated");
+		
+		offsets = ch.map(FileChannel.MapMode.READ_ONLY,HEADER,8L*(n+1)
+			).asLongBuffer();
+		targets = new IntBuffer[(int)((m+CHUNK-1)/CHUNK)];
+		for(int c=0; c<targets.length; ++c)
+		{
+			long len = Math.min(CHUNK,m-(long)c*CHUNK);
+			targets[c] = ch.map(FileChannel.MapMode.READ_ONLY,
+				tstart+4L*c*CHUNK,4L*len).asIntBuffer();
+		}
+	}
+	finally
+	{
+		// the mappings remain valid after closing the channel
+		raf.close();
+	}
+}
+
+
+// ======================= Graph implementations ================
+// ==============================================================
+
+
+public boolean isEdge(int i, int j) {
+	
+	final long end = offsets.get(i+1);
+	for(long e=offsets.get(i); e<end; ++e)
+		if( target(e) == j ) return true;
+	return false;
+}
+
+// ---------------------------------------------------------------
+
+public Collection<Integer> getNeighbours(int i) {
+	
+	final long start = offsets.get(i);
+	final int deg = (int)(offsets.get(i+1)-start);
+	Integer[] result = new Integer[deg];
+	for(int e=0; e<deg; ++e) result[e] = target(start+e);
+	return Collections.unmodifiableList(Arrays.asList(result));
+}
+
+// ---------------------------------------------------------------
+
+/** Returns null always */
+public Object getNode(int i) { return null; }
+	
+// ---------------------------------------------------------------
+
+/** Returns null always */
+public Object getEdge(int i, int j) { return null; }
+
+// ---------------------------------------------------------------
+
+public int size() { return n; }
+
+// --------------------------------------------------------------------
+	
+public boolean directed() { return directed; }
+
+// --------------------------------------------------------------------
+
+/** not supported */
+public boolean setEdge( int i, int j ) {
+	
+	throw new UnsupportedOperationException();
+}
+
+// ---------------------------------------------------------------
+
+/** not supported */
+public boolean clearEdge( int i, int j ) {
+	
+	throw new UnsupportedOperationException();
+}
+
+// ---------------------------------------------------------------
+
+public int degree(int i) { return (int)(offsets.get(i+1)-offsets.get(i)); }
+
+// ---------------------------------------------------------------
+
+/**
+* Returns the target of the e-th edge in the file.
+*/
+private int target(long e) {
+	
+	return targets[(int)(e/CHUNK)].get((int)(e%CHUNK));
+}
+
+}
@@ -51,12 +51,14 @@ private static final String PAR_BASENAME = "outf";
 * Embedder, "netmeter" to be used with Sergi Valverde's netmeter and also
 * with pajek,
 * "edgelist" that dumps one (directed) node pair in each line for each edge,
-* "gml" that is a generic format of many graph tools, and "dot" that can
-* be used with the graphviz package.
+* "gml" that is a generic format of many graph tools, "dot" that can
+* be used with the graphviz package, and "binary", a compact format that
+* {@link peersim.dynamics.WireFromFile} can memory map.
 * @see GraphIO#writeEdgeList
 * @see GraphIO#writeChaco
 * @see GraphIO#writeNeighborList
 * @see GraphIO#writeNetmeter
+* @see GraphIO#writeBinary
 * @config
 */
 private static final String PAR_FORMAT = "format";
@@ -125,6 +127,8 @@ try {
 		GraphIO.writeGML(g, pstr);
 	else if( format.equals("dot") )
 		GraphIO.writeDOT(g, pstr);
+	else if( format.equals("binary") )
+		GraphIO.writeBinary(g, pstr);
 	else
 		System.err.println(name+": unsupported format "+format);
 	
@@ -151,6 +151,12 @@ import weka.filters.unsupervised.attribute.Remove;
  *  The class index. (default = last)
  * </pre>
  * 
+ * <pre>
+ * -vertical
+ *  Count support by intersecting per-item bitsets instead of
+ *  scanning the data. (default = no)
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * @author Eibe Frank (eibe@cs.waikato.ac.nz)
@@ -237,6 +243,12 @@ public class Apriori extends AbstractAssociator implements OptionHandler,
   /** Flag indicating whether class association rules are mined. */
   protected boolean m_car;
 
+  /** Count support on per-item bitsets instead of scanning the data? */
+  protected boolean m_verticalCounting;
+
+  /** The per-item bitsets, while building. */
+  protected transient VerticalSupportCounter m_verticalCounter;
+
   /**
    * Returns a string describing this associator
    * 
@@ -314,6 +326,7 @@ public class Apriori extends AbstractAssociator implements OptionHandler,
     m_outputItemSets = false;
     m_car = false;
     m_classIndex = -1;
+    m_verticalCounting = false;
   }
 
   /**
@@ -449,6 +462,10 @@ public class Apriori extends AbstractAssociator implements OptionHandler,
     } else
       m_instances = instances;
 
+    if (m_verticalCounting && !m_car) {
+      m_verticalCounter = new VerticalSupportCounter(m_instances);
+    }
+
     if (m_car && m_numRules == Integer.MAX_VALUE) {
       // Set desired minimum support
       m_minSupport = lowerBoundMinSupportToUse;
@@ -584,6 +601,9 @@ public class Apriori extends AbstractAssociator implements OptionHandler,
         /* (necSupport >= lowerBoundNumInstancesSupport) */
         /* (Utils.grOrEq(m_minSupport, m_lowerBoundMinSupport)) */&& (necSupport >= 1));
     m_minSupport += m_delta;
+
+    // Save memory
+    m_verticalCounter = null;
   }
 
   private void pruneRulesForUpperBoundSupport() {
@@ -690,6 +710,9 @@ public class Apriori extends AbstractAssociator implements OptionHandler,
         + "= no)", "V", 0, "-V"));
     newVector.addElement(new Option(string9, "A", 0, "-A"));
     newVector.addElement(new Option(string10, "c", 1, "-c <the class index>"));
+    newVector.addElement(new Option("\tCount support by intersecting per-item "
+        + "bitsets instead of\n\tscanning the data. (default = no)",
+        "vertical", 0, "-vertical"));
 
     return newVector.elements();
   }
@@ -763,6 +786,12 @@ public class Apriori extends AbstractAssociator implements OptionHandler,
    *  The class index. (default = last)
    * </pre>
    * 
+   * <pre>
+   * -vertical
+   *  Count support by intersecting per-item bitsets instead of
+   *  scanning the data. (default = no)
+   * </pre>
+   * 
    * <!-- options-end -->
    * 
    * @param options the list of options as an array of strings
@@ -813,6 +842,7 @@ public class Apriori extends AbstractAssociator implements OptionHandler,
     m_car = Utils.getFlag('A', options);
     m_verbose = Utils.getFlag('V', options);
     setRemoveAllMissingCols(Utils.getFlag('R', options));
+    m_verticalCounting = Utils.getFlag("vertical", options);
   }
 
   /**
@@ -822,7 +852,7 @@ public class Apriori extends AbstractAssociator implements OptionHandler,
    */
   public String[] getOptions() {
 
-    String[] options = new String[20];
+    String[] options = new String[21];
     int current = 0;
 
     if (m_outputItemSets) {
@@ -853,6 +883,8 @@ public class Apriori extends AbstractAssociator implements OptionHandler,
       options[current++] = "-V";
     options[current++] = "-c";
     options[current++] = "" + m_classIndex;
+    if (m_verticalCounting)
+      options[current++] = "-vertical";
 
     while (current < options.length) {
       options[current++] = "";
@@ -1382,6 +1414,55 @@ public class Apriori extends AbstractAssociator implements OptionHandler,
     return "If enabled the algorithm will be run in verbose mode.";
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String verticalCountingTipText() {
+    return "If enabled, the support of item sets is counted by intersecting "
+        + "compressed bitsets that hold the transactions of each item, "
+        + "instead of scanning all transactions for every candidate. Much "
+        + "faster on wide, sparse data. Not used for class association rules.";
+  }
+
+  /**
+   * Sets whether support is counted on per-item bitsets.
+   * 
+   * @param flag true if support is counted on per-item bitsets
+   */
+  public void setVerticalCounting(boolean flag) {
+
+    m_verticalCounting = flag;
+  }
+
+  /**
+   * Gets whether support is counted on per-item bitsets.
+   * 
+   * @return true if support is counted on per-item bitsets
+   */
+  public boolean getVerticalCounting() {
+
+    return m_verticalCounting;
+  }
+
+  /**
+   * Sets the counters of the given item sets, either by scanning the
+   * instances or by intersecting the per-item bitsets.
+   * 
+   * @param kSets the item sets to count
+   * @param necSupport the minimum support
+   */
+  private void upDateCounters(FastVector kSets, int necSupport) {
+
+    if (m_verticalCounter != null) {
+      m_verticalCounter.upDateCounters(kSets, necSupport);
+    } else {
+      AprioriItemSet.upDateCounters(kSets, m_instances);
+    }
+  }
+
   /**
    * Method that finds all large itemsets for the given set of instances.
    * 
@@ -1400,7 +1481,7 @@ public class Apriori extends AbstractAssociator implements OptionHandler,
     necMaxSupport = (int) (m_upperBoundMinSupport * m_instances.numInstances() + 0.5);
 
     kSets = AprioriItemSet.singletons(m_instances);
-    AprioriItemSet.upDateCounters(kSets, m_instances);
+    upDateCounters(kSets, necSupport);
     kSets = AprioriItemSet.deleteItemSets(kSets, necSupport,
         m_instances.numInstances());
     if (kSets.size() == 0)
@@ -1414,7 +1495,7 @@ public class Apriori extends AbstractAssociator implements OptionHandler,
           kMinusOneSets.size());
       m_hashtables.addElement(hashtable);
       kSets = AprioriItemSet.pruneItemSets(kSets, hashtable);
-      AprioriItemSet.upDateCounters(kSets, m_instances);
+      upDateCounters(kSets, necSupport);
       kSets = AprioriItemSet.deleteItemSets(kSets, necSupport,
           m_instances.numInstances());
       i++;
@@ -0,0 +1,274 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+/*
+ *    CompressedBitSet.java
+ *
+ */
+
+package weka.associations;
+
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+
+import java.io.Serializable;
+
+/**
+ * A compressed set of non-negative ints (e.g. transaction indices), stored
+ * like a roaring bitmap: the values are grouped into chunks of 65536 by their
+ * upper 16 bits, and each chunk is kept either as a sorted array of the lower
+ * 16 bits (sparse chunks) or as a plain bitmap (dense chunks). Intersections
+ * only visit chunks present in both sets.<p>
+ *
+ * Values have to be added in increasing order.
+ *
+ * @version $Revision$
+ */
+public class CompressedBitSet
+  implements Serializable, RevisionHandler {
+
+  /** for serialization */
+  private static final long serialVersionUID = 6150960420318640612L;
+
+  /** The largest number of values kept in an array chunk. */
+  protected static final int ARRAY_LIMIT = 4096;
+
+  /** The number of longs in a bitmap chunk. */
+  protected static final int BITMAP_LENGTH = 1024;
+
+  /** The upper 16 bits of the values in each chunk, increasing. */
+  protected int[] m_keys = new int[4];
+
+  /** The chunks: either a char[] of lower bits or a long[] bitmap. */
+  protected Object[] m_chunks = new Object[4];
+
+  /** The number of values in each chunk. */
+  protected int[] m_cardinalities = new int[4];
+
+  /** The number of chunks. */
+  protected int m_numChunks;
+
+  /** The number of values. */
+  protected int m_cardinality;
+
+  /**
+   * Adds a value, which must be larger than all values added before.
+   *
+   * @param value the value to add
+   */
+  public void add(int value) {
+
+    int key = value >>> 16;
+    char low = (char) value;
+    if ((m_numChunks == 0) || (m_keys[m_numChunks - 1] != key)) {
+      if (m_numChunks == m_keys.length) {
+	grow();
+      }
+      m_keys[m_numChunks] = key;
+      m_chunks[m_numChunks] = new char[16];
+      m_cardinalities[m_numChunks] = 0;
+      m_numChunks++;
+    }
+    int last = m_numChunks - 1;
+    int card = m_cardinalities[last];
+    if (m_chunks[last] instanceof long[]) {
+      long[] bitmap = (long[]) m_chunks[last];
+      bitmap[low >>> 6] |= 1L << low;
+    } else {
+      char[] array = (char[]) m_chunks[last];
+      if (card == ARRAY_LIMIT) {
+	long[] bitmap = toBitmap(array, card);
+	bitmap[low >>> 6] |= 1L << low;
+	m_chunks[last] = bitmap;
+      } else {
+	if (card == array.length) {
+	  char[] newArray = new char[Math.min(ARRAY_LIMIT, 2 * card)];
+	  System.arraycopy(array, 0, newArray, 0, card);
+	  array = newArray;
+	  m_chunks[last] = array;
+	}
+	array[card] = low;
+      }
+    }
+    m_cardinalities[last]++;
+    m_cardinality++;
+  }
+
+  /**
+   * Returns the number of values in this set.
+   *
+   * @return the cardinality
+   */
+  public int cardinality() {
+
+    return m_cardinality;
+  }
+
+  /**
+   * Returns the intersection of this and the given set.
+   *
+   * @param other the other set
+   * @return a new set holding the values in both sets
+   */
+  public CompressedBitSet and(CompressedBitSet other) {
+
+    CompressedBitSet result = new CompressedBitSet();
+    int i = 0, j = 0;
+    while ((i < m_numChunks) && (j < other.m_numChunks)) {
+      if (m_keys[i] < other.m_keys[j]) {
+	i++;
+      } else if (m_keys[i] > other.m_keys[j]) {
+	j++;
+      } else {
+	result.addChunk(m_keys[i], m_chunks[i], m_cardinalities[i],
+	    other.m_chunks[j], other.m_cardinalities[j]);
+	i++;
+	j++;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Appends the intersection of two chunks as a new chunk.
+   *
+   * @param key the upper 16 bits of the chunk
+   * @param first the first chunk
+   * @param firstCard the number of values in the first chunk
+   * @param second the second chunk
+   * @param secondCard the number of values in the second chunk
+   */
+  protected void addChunk(int key, Object first, int firstCard,
+			  Object second, int secondCard) {
+
+    Object chunk;
+    int card;
+    if ((first instanceof long[]) && (second instanceof long[])) {
+      long[] a = (long[]) first, b = (long[]) second;
+      long[] bitmap = new long[BITMAP_LENGTH];
+      card = 0;
+      for (int k = 0; k < BITMAP_LENGTH; k++) {
+	bitmap[k] = a[k] & b[k];
+	card += Long.bitCount(bitmap[k]);
+      }
+      chunk = (card > ARRAY_LIMIT) ? bitmap : toArray(bitmap, card);
+    } else if ((first instanceof long[]) || (second instanceof long[])) {
+      long[] bitmap = (long[]) ((first instanceof long[]) ? first : second);
+      char[] array = (char[]) ((first instanceof long[]) ? second : first);
+      int arrayCard = (first instanceof long[]) ? secondCard : firstCard;
+      char[] values = new char[arrayCard];
+      card = 0;
+      for (int k = 0; k < arrayCard; k++) {
+	char v = array[k];
+	if ((bitmap[v >>> 6] & (1L << v)) != 0) {
+	  values[card++] = v;
+	}
+      }
+      chunk = values;
+    } else {
+      char[] a = (char[]) first, b = (char[]) second;
+      char[] values = new char[Math.min(firstCard, secondCard)];
+      card = 0;
+      int i = 0, j = 0;
+      while ((i < firstCard) && (j < secondCard)) {
+	if (a[i] < b[j]) {
+	  i++;
+	} else if (a[i] > b[j]) {
+	  j++;
+	} else {
+	  values[card++] = a[i];
+	  i++;
+	  j++;
+	}
+      }
+      chunk = values;
+    }
+    if (card == 0) {
+      return;
+    }
+    if (m_numChunks == m_keys.length) {
+      grow();
+    }
+    m_keys[m_numChunks] = key;
+    m_chunks[m_numChunks] = chunk;
+    m_cardinalities[m_numChunks] = card;
+    m_numChunks++;
+    m_cardinality += card;
+  }
+
+  /**
+   * Converts an array chunk into a bitmap chunk.
+   *
+   * @param array the sorted lower bits
+   * @param card the number of values
+   * @return the bitmap
+   */
+  protected static long[] toBitmap(char[] array, int card) {
+
+    long[] bitmap = new long[BITMAP_LENGTH];
+    for (int k = 0; k < card; k++) {
+      bitmap[array[k] >>> 6] |= 1L << array[k];
+    }
+    return bitmap;
+  }
+
+  /**
+   * Converts a bitmap chunk into an array chunk.
+   *
+   * @param bitmap the bitmap
+   * @param card the number of bits set
+   * @return the sorted lower bits
+   */
+  protected static char[] toArray(long[] bitmap, int card) {
+
+    char[] array = new char[card];
+    int n = 0;
+    for (int k = 0; k < BITMAP_LENGTH; k++) {
+      long word = bitmap[k];
+      while (word != 0) {
+	array[n++] = (char) ((k << 6) + Long.numberOfTrailingZeros(word));
+	word &= word - 1;
+      }
+    }
+    return array;
+  }
+
+  /**
+   * Doubles the capacity for chunks.
+   */
+  protected void grow() {
+
+    int size = 2 * m_keys.length;
+    int[] keys = new int[size];
+    Object[] chunks = new Object[size];
+    int[] cards = new int[size];
+    System.arraycopy(m_keys, 0, keys, 0, m_numChunks);
+    System.arraycopy(m_chunks, 0, chunks, 0, m_numChunks);
+    System.arraycopy(m_cardinalities, 0, cards, 0, m_numChunks);
+    m_keys = keys;
+    m_chunks = chunks;
+    m_cardinalities = cards;
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return		the revision
+   */
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -29,12 +29,19 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import weka.core.Attribute;
 import weka.core.Capabilities;
@@ -121,6 +128,10 @@ import weka.core.TechnicalInformation.Type;
  *  Use OR instead of AND for must contain list(s). Use in conjunction
  *  with -transactions and/or -rules</pre>
  * 
+ * <pre> -num-slots &lt;num&gt;
+ *  Number of execution slots for mining the conditional trees
+ *  of the items in the header table. (default 1 - i.e. no parallelism)</pre>
+ * 
  <!-- options-end -->
  *
  * @author Mark Hall (mhall{[at]}pentaho{[dot]}com)
@@ -1462,6 +1473,9 @@ public class FPGrowth extends AbstractAssociator
   /** If set, then only output rules containing these itmes */
   protected String m_rulesMustContain = "";
   
+  /** The number of threads to use for mining the tree */
+  protected int m_numExecutionSlots = 1;
+  
   /**
    * Returns default capabilities of the classifier.
    *
@@ -1686,7 +1700,7 @@ public class FPGrowth extends AbstractAssociator
       int recursionLevel, FrequentBinaryItemSet conditionalItems, int minSupport) {
     
     if (!tree.isEmpty(recursionLevel)) {
-      if (m_maxItems > 0 && recursionLevel >= m_maxItems) {
+      if (m_maxItems > 0 && conditionalItems.numberOfItems() >= m_maxItems) {
         // don't mine any further
         return;
       }
@@ -1754,6 +1768,133 @@ public class FPGrowth extends AbstractAssociator
     }
   }
   
+  /**
+   * Find large item sets in the FP-tree, mining the conditional tree of each
+   * item in the header table on a separate thread. Each conditional tree is
+   * built from the prefix paths of the item's nodes, with a header table
+   * that iterates in the same order as the one of the full tree, so the
+   * item sets are found in the same order as by mineTree().
+   * 
+   * @param tree the root of the tree to mine
+   * @param largeItemSets holds the large item sets found
+   * @param minSupport the minimum acceptable support
+   * @throws Exception if mining fails
+   */
+  protected void mineTreeInParallel(final FPTreeRoot tree, 
+      FrequentItemSets largeItemSets, final int minSupport) throws Exception {
+    
+    if (tree.isEmpty(0)) {
+      return;
+    }
+    
+    // position of each item in the header table
+    final Map<BinaryItem, Integer> headerOrder = 
+      new HashMap<BinaryItem, Integer>();
+    for (BinaryItem item : tree.getHeaderTable().keySet()) {
+      headerOrder.put(item, headerOrder.size());
+    }
+    
+    final int numTransactions = largeItemSets.getNumberOfTransactions();
+    ArrayList<Future<FrequentItemSets>> results = 
+      new ArrayList<Future<FrequentItemSets>>();
+    ExecutorService executor = 
+      Executors.newFixedThreadPool(m_numExecutionSlots);
+    try {
+      for (Map.Entry<BinaryItem, FPTreeRoot.Header> entry : 
+        tree.getHeaderTable().entrySet()) {
+        final BinaryItem item = entry.getKey();
+        final FPTreeRoot.Header itemHeader = entry.getValue();
+        final int support = itemHeader.getProjectedCounts().getCount(0);
+        if (support < minSupport) {
+          continue;
+        }
+        
+        results.add(executor.submit(new Callable<FrequentItemSets>() {
+          public FrequentItemSets call() {
+            FrequentItemSets found = new FrequentItemSets(numTransactions);
+            FrequentBinaryItemSet conditional = 
+              new FrequentBinaryItemSet(new ArrayList<BinaryItem>(), 0);
+            conditional.addItem(item);
+            conditional.setSupport(support);
+            found.addItemSet(conditional);
+            
+            FPTreeRoot conditionalTree = 
+              buildConditionalTree(tree, itemHeader, headerOrder);
+            mineTree(conditionalTree, found, 0, conditional, minSupport);
+            return found;
+          }
+        }));
+      }
+      
+      for (Future<FrequentItemSets> result : results) {
+        try {
+          Iterator<FrequentBinaryItemSet> i = result.get().iterator();
+          while (i.hasNext()) {
+            largeItemSets.addItemSet(i.next());
+          }
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof Exception) {
+            throw (Exception) e.getCause();
+          }
+          throw e;
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+  
+  /**
+   * Builds the conditional tree of an item: the prefix paths of all nodes
+   * of the item, weighted with the node counts. The header table of the
+   * new tree iterates in the given order.
+   * 
+   * @param tree the full tree
+   * @param itemHeader the header entry of the item
+   * @param headerOrder the position of each item in the header table
+   * @return the conditional tree
+   */
+  protected FPTreeRoot buildConditionalTree(FPTreeRoot tree, 
+      FPTreeRoot.Header itemHeader, final Map<BinaryItem, Integer> headerOrder) {
+    
+    ArrayList<ArrayList<BinaryItem>> paths = 
+      new ArrayList<ArrayList<BinaryItem>>();
+    ArrayList<Integer> counts = new ArrayList<Integer>();
+    Set<BinaryItem> present = new HashSet<BinaryItem>();
+    for (FPTreeNode n : itemHeader.getHeaderList()) {
+      int currentCount = n.getProjectedCount(0);
+      if (currentCount > 0) {
+        ArrayList<BinaryItem> path = new ArrayList<BinaryItem>();
+        FPTreeNode temp = n.getParent();
+        while (temp != tree) {
+          path.add(temp.getItem());
+          present.add(temp.getItem());
+          temp = temp.getParent();
+        }
+        Collections.reverse(path);
+        paths.add(path);
+        counts.add(currentCount);
+      }
+    }
+    
+    ArrayList<BinaryItem> items = new ArrayList<BinaryItem>(present);
+    Collections.sort(items, new Comparator<BinaryItem>() {
+      public int compare(BinaryItem a, BinaryItem b) {
+        return headerOrder.get(a).compareTo(headerOrder.get(b));
+      }
+    });
+    FPTreeRoot result = new FPTreeRoot();
+    result.m_headerTable = new LinkedHashMap<BinaryItem, FPTreeRoot.Header>();
+    for (BinaryItem item : items) {
+      result.m_headerTable.put(item, new FPTreeRoot.Header());
+    }
+    for (int i = 0; i < paths.size(); i++) {
+      result.addItemSet(paths.get(i), counts.get(i));
+    }
+    
+    return result;
+  }
+  
   /**
    * Construct a new FPGrowth object.
    */
@@ -1775,6 +1916,7 @@ public class FPGrowth extends AbstractAssociator
     m_transactionsMustContain = "";
     m_rulesMustContain = "";
     m_mustContainOR = false;
+    m_numExecutionSlots = 1;
   }
   
   /**
@@ -2047,6 +2189,40 @@ public class FPGrowth extends AbstractAssociator
     return m_mustContainOR;
   }
   
+  /**
+   * Tip text for this property suitable for displaying
+   * in the GUI.
+   * 
+   * @return the tip text for this property.
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of execution slots (threads) to use for mining the " +
+    		"conditional trees of the items in the header table. The same " +
+    		"item sets are found in the same order as with a single slot.";
+  }
+  
+  /**
+   * Set the number of execution slots (threads) to use.
+   * 
+   * @param slots the number of slots to use
+   * @throws Exception if the number of slots is smaller than 1
+   */
+  public void setNumExecutionSlots(int slots) throws Exception {
+    if (slots < 1) {
+      throw new Exception("Number of execution slots needs to be >= 1!");
+    }
+    m_numExecutionSlots = slots;
+  }
+  
+  /**
+   * Get the number of execution slots (threads) to use.
+   * 
+   * @return the number of slots to use
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+  
   /**
    * Returns the tip text for this property
    * @return tip text for this property suitable for
@@ -2245,6 +2421,10 @@ public class FPGrowth extends AbstractAssociator
     newVector.add(new Option(string9, "rules", 1, "-rules <comma separated list " +
     		"of attribute names>"));
     newVector.add(new Option(string10, "use-or", 0, "-use-or"));
+    newVector.add(new Option("\tNumber of execution slots for mining the " +
+    		"conditional trees\n\tof the items in the header table. " +
+    		"(default 1 - i.e. no parallelism)", "num-slots", 1, 
+    		"-num-slots <num>"));
     
     return newVector.elements();
   }
@@ -2299,6 +2479,10 @@ public class FPGrowth extends AbstractAssociator
    *  Use OR instead of AND for must contain list(s). Use in conjunction
    *  with -transactions and/or -rules</pre>
    * 
+   * <pre> -num-slots &lt;num&gt;
+   *  Number of execution slots for mining the conditional trees
+   *  of the items in the header table. (default 1 - i.e. no parallelism)</pre>
+   * 
    <!-- options-end -->
    *
    * @param options the list of options as an array of strings
@@ -2316,6 +2500,7 @@ public class FPGrowth extends AbstractAssociator
     String deltaString = Utils.getOption("D", options);
     String transactionsString = Utils.getOption("transactions", options);
     String rulesString = Utils.getOption("rules", options);
+    String numSlotsString = Utils.getOption("num-slots", options);
 
     if (positiveIndexString.length() != 0) {
       setPositiveIndex(Integer.parseInt(positiveIndexString));
@@ -2360,6 +2545,10 @@ public class FPGrowth extends AbstractAssociator
     
     setUseORForMustContainList(Utils.getFlag("use-or", options));
     
+    if (numSlotsString.length() != 0) {
+      setNumExecutionSlots(Integer.parseInt(numSlotsString));
+    }
+    
     setFindAllRulesForSupportLevel(Utils.getFlag('S', options));
   }
   
@@ -2395,6 +2584,8 @@ public class FPGrowth extends AbstractAssociator
       options.add("-use-or");
     }
     
+    options.add("-num-slots"); options.add("" + getNumExecutionSlots());
+    
     return options.toArray(new String[1]);
   }
   
@@ -2532,7 +2723,12 @@ public class FPGrowth extends AbstractAssociator
       // mine the tree
       FrequentBinaryItemSet conditionalItems = 
         new FrequentBinaryItemSet(new ArrayList<BinaryItem>(), 0);
-      mineTree(tree, largeItemSets, 0, conditionalItems, currentSupportAsInstances);      
+      if (m_numExecutionSlots > 1) {
+        mineTreeInParallel(tree, largeItemSets, currentSupportAsInstances);
+      } else {
+        mineTree(tree, largeItemSets, 0, conditionalItems, 
+            currentSupportAsInstances);
+      }
 
       m_largeItemSets = largeItemSets;
 //      System.err.println("Number of large item sets: " + m_largeItemSets.size());
@@ -66,6 +66,11 @@ import java.util.Vector;
  *  Expressed as a multiple of the number of
  *  attributes in the data set. (default = 1)</pre>
  * 
+ * <pre> -num-slots &lt;num&gt;
+ *  Number of execution slots for evaluating the
+ *  subsets of an expansion.
+ *  (default 1 - i.e. no parallelism)</pre>
+ * 
  <!-- options-end -->
  *
  * @author Mark Hall (mhall@cs.waikato.ac.nz)
@@ -298,6 +303,9 @@ public class BestFirst
 
   /** holds the maximum size of the lookup cache for evaluated subsets */
   protected int m_cacheSize;
+
+  /** the number of threads used to evaluate the subsets of an expansion */
+  protected int m_numExecutionSlots;
   
   /**
    * Returns a string describing this search method
@@ -329,7 +337,7 @@ public class BestFirst
    *
    **/
   public Enumeration listOptions () {
-    Vector newVector = new Vector(4);
+    Vector newVector = new Vector(5);
     
     newVector.addElement(new Option("\tSpecify a starting set of attributes." 
 				    + "\n\tEg. 1,3,5-7."
@@ -346,6 +354,10 @@ public class BestFirst
 				    +"\n\tExpressed as a multiple of the number of"
 				    +"\n\tattributes in the data set. (default = 1)",
 				    "S", 1, "-S <num>"));
+    newVector.addElement(new Option("\tNumber of execution slots for evaluating the"
+				    +"\n\tsubsets of an expansion."
+				    +"\n\t(default 1 - i.e. no parallelism)",
+				    "num-slots", 1, "-num-slots <num>"));
 				    
     return  newVector.elements();
   }
@@ -373,6 +385,11 @@ public class BestFirst
    *  Expressed as a multiple of the number of
    *  attributes in the data set. (default = 1)</pre>
    * 
+   * <pre> -num-slots &lt;num&gt;
+   *  Number of execution slots for evaluating the
+   *  subsets of an expansion.
+   *  (default 1 - i.e. no parallelism)</pre>
+   * 
    <!-- options-end -->
    *
    * @param options the list of options as an array of strings
@@ -409,6 +426,11 @@ public class BestFirst
       setLookupCacheSize(Integer.parseInt(optionString));
     }
 
+    optionString = Utils.getOption("num-slots", options);
+    if (optionString.length() != 0) {
+      setNumExecutionSlots(Integer.parseInt(optionString));
+    }
+
     m_debug = Utils.getFlag('Z', options);
   }
 
@@ -446,6 +468,40 @@ public class BestFirst
       +"(default = 1).";
   }
 
+  /**
+   * Set the number of execution slots (threads) used to evaluate the
+   * subsets of an expansion.
+   *
+   * @param numSlots the number of execution slots
+   * @throws Exception if the number is smaller than 1
+   */
+  public void setNumExecutionSlots(int numSlots) throws Exception {
+    if (numSlots < 1) {
+      throw new Exception("Number of execution slots needs to be >= 1!");
+    }
+    m_numExecutionSlots = numSlots;
+  }
+
+  /**
+   * Get the number of execution slots (threads) used to evaluate the
+   * subsets of an expansion.
+   *
+   * @return the number of execution slots
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
+  /**
+   * Returns the tip text for this property
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of threads that evaluate the new subsets of an "
+      +"expansion in parallel (each with its own copy of the evaluator).";
+  }
+
   /**
    * Returns the tip text for this property
    * @return tip text for this property suitable for
@@ -551,7 +607,7 @@ public class BestFirst
    * @return an array of strings suitable for passing to setOptions()
    */
   public String[] getOptions () {
-    String[] options = new String[6];
+    String[] options = new String[8];
     int current = 0;
 
     if (!(getStartSet().equals(""))) {
@@ -562,6 +618,8 @@ public class BestFirst
     options[current++] = "" + m_searchDirection;
     options[current++] = "-N";
     options[current++] = "" + m_maxStale;
+    options[current++] = "-num-slots";
+    options[current++] = "" + m_numExecutionSlots;
 
     while (current < options.length) {
       options[current++] = "";
@@ -683,8 +741,10 @@ public class BestFirst
       m_classIndex = data.classIndex();
     }
 
-    SubsetEvaluator ASEvaluator = (SubsetEvaluator)ASEval;
     m_numAttribs = data.numAttributes();
+    SubsetEvaluatorPool ASEvaluator = 
+      new SubsetEvaluatorPool((SubsetEvaluator)ASEval, m_numExecutionSlots,
+			      (m_cacheSize + 1) * m_numAttribs);
     int i, j;
     int best_size = 0;
     int size = 0;
@@ -737,142 +797,164 @@ public class BestFirst
       }
     }
 
-    // evaluate the initial subset
-    best_merit = ASEvaluator.evaluateSubset(best_group);
-    // add the initial group to the list and the hash table
-    Object [] best = new Object[1];
-    best[0] = best_group.clone();
-    bfList.addToList(best, best_merit);
-    BitSet tt = (BitSet)best_group.clone();
-    String hashC = tt.toString();
-    lookup.put(hashC, new Double(best_merit));
-
-    while (stale < m_maxStale) {
-      added = false;
-
-      if (m_searchDirection == SELECTION_BIDIRECTIONAL) {
-	// bi-directional search
-        done = 2;
-        sd = SELECTION_FORWARD;
-      } else {
-	done = 1;
-      }
+    try {
+      // evaluate the initial subset
+      best_merit = ASEvaluator.evaluateSubset(best_group);
+      // add the initial group to the list and the hash table
+      Object [] best = new Object[1];
+      best[0] = best_group.clone();
+      bfList.addToList(best, best_merit);
+      BitSet tt = (BitSet)best_group.clone();
+      String hashC = tt.toString();
+      lookup.put(hashC, new Double(best_merit));
+
+      while (stale < m_maxStale) {
+	added = false;
+
+	if (m_searchDirection == SELECTION_BIDIRECTIONAL) {
+	  // bi-directional search
+	  done = 2;
+	  sd = SELECTION_FORWARD;
+	} else {
+	  done = 1;
+	}
 
-      // finished search?
-      if (bfList.size() == 0) {
-	stale = m_maxStale;
-	break;
-      }
+	// finished search?
+	if (bfList.size() == 0) {
+	  stale = m_maxStale;
+	  break;
+	}
 
-      // copy the attribute set at the head of the list
-      tl = bfList.getLinkAt(0);
-      temp_group = (BitSet)(tl.getData()[0]);
-      temp_group = (BitSet)temp_group.clone();
-      // remove the head of the list
-      bfList.removeLinkAt(0);
-      // count the number of bits set (attributes)
-      int kk;
-
-      for (kk = 0, size = 0; kk < m_numAttribs; kk++) {
-	if (temp_group.get(kk)) {
-	  size++;
+	// copy the attribute set at the head of the list
+	tl = bfList.getLinkAt(0);
+	temp_group = (BitSet)(tl.getData()[0]);
+	temp_group = (BitSet)temp_group.clone();
+	// remove the head of the list
+	bfList.removeLinkAt(0);
+	// count the number of bits set (attributes)
+	int kk;
+
+	for (kk = 0, size = 0; kk < m_numAttribs; kk++) {
+	  if (temp_group.get(kk)) {
+	    size++;
+	  }
 	}
-      }
 
-      do {
-	for (i = 0; i < m_numAttribs; i++) {
-	  if (sd == SELECTION_FORWARD) {
-	    z = ((i != m_classIndex) && (!temp_group.get(i)));
-	  } else {
-	    z = ((i != m_classIndex) && (temp_group.get(i)));
+	do {
+	  // evaluate the new subsets of this expansion at once
+	  Vector<BitSet> candidates = new Vector<BitSet>();
+	  for (i = 0; i < m_numAttribs; i++) {
+	    if (sd == SELECTION_FORWARD) {
+	      z = ((i != m_classIndex) && (!temp_group.get(i)));
+	    } else {
+	      z = ((i != m_classIndex) && (temp_group.get(i)));
+	    }
+	    if (z) {
+	      tt = (BitSet)temp_group.clone();
+	      tt.flip(i);
+	      if (lookup.containsKey(tt.toString()) == false) {
+		candidates.addElement(tt);
+	      }
+	    }
 	  }
-          
-	  if (z) {
-	    // set the bit (attribute to add/delete)
+	  SubsetEvaluatorPool.prefetch(ASEvaluator, candidates);
+
+	  for (i = 0; i < m_numAttribs; i++) {
 	    if (sd == SELECTION_FORWARD) {
-	      temp_group.set(i);
-	      size++;
+	      z = ((i != m_classIndex) && (!temp_group.get(i)));
 	    } else {
-	      temp_group.clear(i);
-	      size--;
+	      z = ((i != m_classIndex) && (temp_group.get(i)));
 	    }
+          
+	    if (z) {
+	      // set the bit (attribute to add/delete)
+	      if (sd == SELECTION_FORWARD) {
+		temp_group.set(i);
+		size++;
+	      } else {
+		temp_group.clear(i);
+		size--;
+	      }
 
-	    /* if this subset has been seen before, then it is already 
-	       in the list (or has been fully expanded) */
-	    tt = (BitSet)temp_group.clone();
-	    hashC = tt.toString();
+	      /* if this subset has been seen before, then it is already 
+		 in the list (or has been fully expanded) */
+	      tt = (BitSet)temp_group.clone();
+	      hashC = tt.toString();
 	    
-	    if (lookup.containsKey(hashC) == false) {
-	      merit = ASEvaluator.evaluateSubset(temp_group);
-	      m_totalEvals++;
+	      if (lookup.containsKey(hashC) == false) {
+		merit = ASEvaluator.evaluateSubset(temp_group);
+		m_totalEvals++;
 	      
-	      // insert this one in the hashtable
-	      if (insertCount > m_cacheSize * m_numAttribs) {
-		lookup = new Hashtable(m_cacheSize * m_numAttribs);
-		insertCount = 0;
+		// insert this one in the hashtable
+		if (insertCount > m_cacheSize * m_numAttribs) {
+		  lookup = new Hashtable(m_cacheSize * m_numAttribs);
+		  insertCount = 0;
+		}
+		hashC = tt.toString();
+		lookup.put(hashC, new Double(merit));
+		insertCount++;
+	      } else {
+		merit = ((Double)lookup.get(hashC)).doubleValue();
+		cacheHits++;  
 	      }
-	      hashC = tt.toString();
-    	      lookup.put(hashC, new Double(merit));
-    	      insertCount++;
-	    } else {
-	      merit = ((Double)lookup.get(hashC)).doubleValue();
-	      cacheHits++;  
-	    }
 	    
-	    // insert this one in the list
-	    Object[] add = new Object[1];
-	    add[0] = tt.clone();
-	    bfList.addToList(add, merit);
+	      // insert this one in the list
+	      Object[] add = new Object[1];
+	      add[0] = tt.clone();
+	      bfList.addToList(add, merit);
 	    
-	    if (m_debug) {
-	      System.out.print("Group: ");
-	      printGroup(tt, m_numAttribs);
-	      System.out.println("Merit: " + merit);
-	    }
+	      if (m_debug) {
+		System.out.print("Group: ");
+		printGroup(tt, m_numAttribs);
+		System.out.println("Merit: " + merit);
+	      }
 
-	    // is this better than the best?
-	    if (sd == SELECTION_FORWARD) {
-	      z = ((merit - best_merit) > 0.00001);
-	    } else {
-	      if (merit == best_merit) {
-		z = (size < best_size);
+	      // is this better than the best?
+	      if (sd == SELECTION_FORWARD) {
+		z = ((merit - best_merit) > 0.00001);
 	      } else {
-		z = (merit >  best_merit);
-	      } 
-	    }
+		if (merit == best_merit) {
+		  z = (size < best_size);
+		} else {
+		  z = (merit >  best_merit);
+		} 
+	      }
 
-	    if (z) {
-	      added = true;
-	      stale = 0;
-	      best_merit = merit;
-	      //		best_size = (size + best_size);
-	      best_size = size;
-	      best_group = (BitSet)(temp_group.clone());
-	    }
+	      if (z) {
+		added = true;
+		stale = 0;
+		best_merit = merit;
+		//		best_size = (size + best_size);
+		best_size = size;
+		best_group = (BitSet)(temp_group.clone());
+	      }
 
-	    // unset this addition(deletion)
-	    if (sd == SELECTION_FORWARD) {
-	      temp_group.clear(i);
-	      size--;
-	    } else {
-	      temp_group.set(i);
-	      size++;
+	      // unset this addition(deletion)
+	      if (sd == SELECTION_FORWARD) {
+		temp_group.clear(i);
+		size--;
+	      } else {
+		temp_group.set(i);
+		size++;
+	      }
 	    }
 	  }
-	}
 
-	if (done == 2) {
-	  sd = SELECTION_BACKWARD;
-	}
+	  if (done == 2) {
+	    sd = SELECTION_BACKWARD;
+	  }
 
-	done--;
-      } while (done > 0);
+	  done--;
+	} while (done > 0);
 
-      /* if we haven't added a new attribute subset then full expansion 
-	 of this node hasen't resulted in anything better */
-      if (!added) {
-	stale++;
+	/* if we haven't added a new attribute subset then full expansion 
+	   of this node hasen't resulted in anything better */
+	if (!added) {
+	  stale++;
+	}
       }
+    } finally {
+      ASEvaluator.shutdown();
     }
 
     m_bestMerit = best_merit;
@@ -891,6 +973,7 @@ public class BestFirst
     m_classIndex = -1;
     m_totalEvals = 0;
     m_cacheSize = 1;
+    m_numExecutionSlots = 1;
     m_debug = false;
   }
 
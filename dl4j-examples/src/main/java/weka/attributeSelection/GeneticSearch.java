@@ -102,6 +102,11 @@ import java.util.Vector;
  *  Set the random number seed.
  *  (default = 1)</pre>
  * 
+ * <pre> -num-slots &lt;num&gt;
+ *  Number of execution slots for evaluating the
+ *  members of a population.
+ *  (default 1 - i.e. no parallelism)</pre>
+ * 
  <!-- options-end -->
  *
  * @author Mark Hall (mhall@cs.waikato.ac.nz)
@@ -178,6 +183,9 @@ public class GeneticSearch
   /** holds the generation reports */
   private StringBuffer m_generationReports;
 
+  /** the number of threads used to evaluate the population members */
+  private int m_numExecutionSlots;
+
   // Inner class
   /**
    * A bitset for the genetic algorithm
@@ -307,7 +315,7 @@ public class GeneticSearch
    * @return an enumeration of all the available options.
    **/
   public Enumeration listOptions () {
-    Vector newVector = new Vector(6);
+    Vector newVector = new Vector(8);
 
     newVector.addElement(new Option("\tSpecify a starting set of attributes." 
                                     + "\n\tEg. 1,3,5-7."
@@ -339,6 +347,10 @@ public class GeneticSearch
     newVector.addElement(new Option("\tSet the random number seed."
                                     +"\n\t(default = 1)" 
                                     , "S", 1, "-S <seed>"));
+    newVector.addElement(new Option("\tNumber of execution slots for evaluating the"
+                                    +"\n\tmembers of a population."
+                                    +"\n\t(default 1 - i.e. no parallelism)" 
+                                    , "num-slots", 1, "-num-slots <num>"));
     return  newVector.elements();
   }
 
@@ -380,6 +392,11 @@ public class GeneticSearch
    *  Set the random number seed.
    *  (default = 1)</pre>
    * 
+   * <pre> -num-slots &lt;num&gt;
+   *  Number of execution slots for evaluating the
+   *  members of a population.
+   *  (default 1 - i.e. no parallelism)</pre>
+   * 
    <!-- options-end -->
    *
    * @param options the list of options as an array of strings
@@ -426,6 +443,11 @@ public class GeneticSearch
     if (optionString.length() != 0) {
       setSeed(Integer.parseInt(optionString));
     }
+
+    optionString = Utils.getOption("num-slots", options);
+    if (optionString.length() != 0) {
+      setNumExecutionSlots(Integer.parseInt(optionString));
+    }
   }
 
   /**
@@ -434,7 +456,7 @@ public class GeneticSearch
    * @return an array of strings suitable for passing to setOptions()
    */
   public String[] getOptions () {
-    String[] options = new String[14];
+    String[] options = new String[16];
     int current = 0;
 
     if (!(getStartSet().equals(""))) {
@@ -453,6 +475,8 @@ public class GeneticSearch
     options[current++] = "" + getReportFrequency();
     options[current++] = "-S";
     options[current++] = "" + getSeed();
+    options[current++] = "-num-slots";
+    options[current++] = "" + getNumExecutionSlots();
 
     while (current < options.length) {
       options[current++] = "";
@@ -460,6 +484,38 @@ public class GeneticSearch
     return  options;
   }
 
+  /**
+   * Returns the tip text for this property
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of threads that evaluate the new members of a "
+      +"population in parallel (each with its own copy of the evaluator).";
+  }
+
+  /**
+   * set the number of execution slots (threads) used to evaluate the
+   * members of a population
+   * @param numSlots the number of execution slots
+   * @throws Exception if the number is smaller than 1
+   */
+  public void setNumExecutionSlots(int numSlots) throws Exception {
+    if (numSlots < 1) {
+      throw new Exception("Number of execution slots needs to be >= 1!");
+    }
+    m_numExecutionSlots = numSlots;
+  }
+
+  /**
+   * get the number of execution slots (threads) used to evaluate the
+   * members of a population
+   * @return the number of execution slots
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
   /**
    * Returns the tip text for this property
    * @return tip text for this property suitable for
@@ -784,7 +840,6 @@ public class GeneticSearch
       m_classIndex = data.classIndex();
     }
 
-    SubsetEvaluator ASEvaluator = (SubsetEvaluator)ASEval;
     m_numAttribs = data.numAttributes();
 
     m_startRange.setUpper(m_numAttribs-1);
@@ -792,38 +847,45 @@ public class GeneticSearch
       m_starting = m_startRange.getSelection();
     }
 
-    // initial random population
-    m_lookupTable = new Hashtable(m_lookupTableSize);
-    m_random = new Random(m_seed);
-    m_population = new GABitSet [m_popSize];
-
-    // set up random initial population
-    initPopulation();
-    evaluatePopulation(ASEvaluator);
-    populationStatistics();
-    scalePopulation();
-    checkBest();
-    m_generationReports.append(populationReport(0));
-
-    boolean converged;
-    for (int i=1;i<=m_maxGenerations;i++) {
-      generation();
+    SubsetEvaluatorPool ASEvaluator = 
+      new SubsetEvaluatorPool((SubsetEvaluator)ASEval, m_numExecutionSlots,
+                              m_popSize);
+    try {
+      // initial random population
+      m_lookupTable = new Hashtable(m_lookupTableSize);
+      m_random = new Random(m_seed);
+      m_population = new GABitSet [m_popSize];
+
+      // set up random initial population
+      initPopulation();
       evaluatePopulation(ASEvaluator);
       populationStatistics();
       scalePopulation();
-      // find the best pop member and check for convergence
-      converged = checkBest();
-
-      if ((i == m_maxGenerations) || 
-          ((i % m_reportFrequency) == 0) ||
-          (converged == true)) {
-        m_generationReports.append(populationReport(i));
-        if (converged == true) {
-          break;
+      checkBest();
+      m_generationReports.append(populationReport(0));
+
+      boolean converged;
+      for (int i=1;i<=m_maxGenerations;i++) {
+        generation();
+        evaluatePopulation(ASEvaluator);
+        populationStatistics();
+        scalePopulation();
+        // find the best pop member and check for convergence
+        converged = checkBest();
+
+        if ((i == m_maxGenerations) || 
+            ((i % m_reportFrequency) == 0) ||
+            (converged == true)) {
+          m_generationReports.append(populationReport(i));
+          if (converged == true) {
+            break;
+          }
         }
       }
+      return attributeList(m_best.getChromosome());
+    } finally {
+      ASEvaluator.shutdown();
     }
-    return attributeList(m_best.getChromosome());
    }
 
   /**
@@ -1081,6 +1143,16 @@ public class GeneticSearch
     int i;
     double merit;
 
+    // evaluate the new population members at once
+    Vector<BitSet> candidates = new Vector<BitSet>();
+    for (i=0;i<m_popSize;i++) {
+      if (m_lookupTable.containsKey(m_population[i]
+                                    .getChromosome()) == false) {
+        candidates.addElement(m_population[i].getChromosome());
+      }
+    }
+    SubsetEvaluatorPool.prefetch(ASEvaluator, candidates);
+
     for (i=0;i<m_popSize;i++) {
       // if its not in the lookup table then evaluate and insert
       if (m_lookupTable.containsKey(m_population[i]
@@ -1293,6 +1365,7 @@ public class GeneticSearch
     m_starting = null;
     m_startRange = new Range();
     m_seed = 1;
+    m_numExecutionSlots = 1;
   }
   
   /**
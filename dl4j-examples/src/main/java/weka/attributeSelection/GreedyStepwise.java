@@ -66,6 +66,11 @@ import java.util.Vector;
  * <pre> -N &lt;num to select&gt;
  *  Specify number of attributes to select</pre>
  * 
+ * <pre> -num-slots &lt;num&gt;
+ *  Number of execution slots for evaluating the
+ *  candidate subsets of a step.
+ *  (default 1 - i.e. no parallelism)</pre>
+ * 
  <!-- options-end -->
  *
  * @author Mark Hall
@@ -137,6 +142,9 @@ public class GreedyStepwise
       search as long as the merit does not degrade */
   protected boolean m_conservativeSelection = false;
 
+  /** The number of threads used to evaluate the candidates of a step */
+  protected int m_numExecutionSlots = 1;
+
   /**
    * Constructor
    */
@@ -351,12 +359,44 @@ public class GreedyStepwise
     return m_conservativeSelection;
   }
 
+  /**
+   * Returns the tip text for this property
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of threads that evaluate the candidate subsets of "
+      +"a step in parallel (each with its own copy of the evaluator).";
+  }
+
+  /**
+   * Set the number of execution slots (threads) used to evaluate the
+   * candidate subsets of a step
+   * @param numSlots the number of execution slots
+   * @throws Exception if the number is smaller than 1
+   */
+  public void setNumExecutionSlots(int numSlots) throws Exception {
+    if (numSlots < 1) {
+      throw new Exception("Number of execution slots needs to be >= 1!");
+    }
+    m_numExecutionSlots = numSlots;
+  }
+
+  /**
+   * Get the number of execution slots (threads) used to evaluate the
+   * candidate subsets of a step
+   * @return the number of execution slots
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
   /**
    * Returns an enumeration describing the available options.
    * @return an enumeration of all the available options.
    **/
   public Enumeration listOptions () {
-    Vector newVector = new Vector(5);
+    Vector newVector = new Vector(7);
 
     newVector.addElement(new Option("\tUse conservative forward search"
 				    ,"-C", 0, "-C"));
@@ -383,6 +423,13 @@ public class GreedyStepwise
 			     ,"N",1
 			     , "-N <num to select>"));
 
+    newVector
+      .addElement(new Option("\tNumber of execution slots for evaluating the"
+			     + "\n\tcandidate subsets of a step."
+			     + "\n\t(default 1 - i.e. no parallelism)"
+			     ,"num-slots",1
+			     , "-num-slots <num>"));
+
     return newVector.elements();
 
   }
@@ -415,6 +462,11 @@ public class GreedyStepwise
    * <pre> -N &lt;num to select&gt;
    *  Specify number of attributes to select</pre>
    * 
+   * <pre> -num-slots &lt;num&gt;
+   *  Number of execution slots for evaluating the
+   *  candidate subsets of a step.
+   *  (default 1 - i.e. no parallelism)</pre>
+   * 
    <!-- options-end -->
    *
    * @param options the list of options as an array of strings
@@ -447,6 +499,13 @@ public class GreedyStepwise
     if (optionString.length() != 0) {
       setNumToSelect(Integer.parseInt(optionString));
     }
+
+    optionString = Utils.getOption("num-slots", options);
+    if (optionString.length() != 0) {
+      setNumExecutionSlots(Integer.parseInt(optionString));
+    } else {
+      setNumExecutionSlots(1);
+    }
   }
 
   /**
@@ -455,7 +514,7 @@ public class GreedyStepwise
    * @return an array of strings suitable for passing to setOptions()
    */
   public String[] getOptions () {
-    String[] options = new String[9];
+    String[] options = new String[11];
     int current = 0;
     
     if (getSearchBackwards()) {
@@ -480,6 +539,9 @@ public class GreedyStepwise
     options[current++] = "-N";
     options[current++] = ""+getNumToSelect();
 
+    options[current++] = "-num-slots";
+    options[current++] = ""+getNumExecutionSlots();
+
     while (current < options.length) {
       options[current++] = "";
     }
@@ -621,7 +683,9 @@ public class GreedyStepwise
       m_classIndex = m_Instances.classIndex();
     }
 
-    SubsetEvaluator ASEvaluator = (SubsetEvaluator)m_ASEval;
+    SubsetEvaluatorPool ASEvaluator = 
+      new SubsetEvaluatorPool((SubsetEvaluator)m_ASEval, 
+			      m_numExecutionSlots, 0);
 
     if (m_rankedAtts == null) {
       m_rankedAtts = new double[m_numAttribs][2];
@@ -645,74 +709,95 @@ public class GreedyStepwise
       }
     }
 
-    // Evaluate the initial subset
-    best_merit = ASEvaluator.evaluateSubset(m_best_group);
+    try {
+      // Evaluate the initial subset
+      best_merit = ASEvaluator.evaluateSubset(m_best_group);
 
-    // main search loop
-    boolean done = false;
-    boolean addone = false;
-    boolean z;
-    while (!done) {
-      temp_group = (BitSet)m_best_group.clone();
-      temp_best = best_merit;
-      if (m_doRank) {
-	temp_best = -Double.MAX_VALUE;
-      }
-      done = true;
-      addone = false;
-      for (i=0;i<m_numAttribs;i++) {
-	if (m_backward) {
-	  z = ((i != m_classIndex) && (temp_group.get(i)));
-	} else {
-	  z = ((i != m_classIndex) && (!temp_group.get(i)));
+      // main search loop
+      boolean done = false;
+      boolean addone = false;
+      boolean z;
+      while (!done) {
+	temp_group = (BitSet)m_best_group.clone();
+	temp_best = best_merit;
+	if (m_doRank) {
+	  temp_best = -Double.MAX_VALUE;
 	}
-	if (z) {
-	  // set/unset the bit
-	  if (m_backward) {
-	    temp_group.clear(i);
-	  } else {
-	    temp_group.set(i);
-	  }
-	  temp_merit = ASEvaluator.evaluateSubset(temp_group);
+	done = true;
+	addone = false;
+
+	// evaluate the candidates of this step at once
+	Vector<BitSet> candidates = new Vector<BitSet>();
+	for (i=0;i<m_numAttribs;i++) {
 	  if (m_backward) {
-	    z = (temp_merit >= temp_best);
+	    z = ((i != m_classIndex) && (temp_group.get(i)));
 	  } else {
-            if (m_conservativeSelection) {
-              z = (temp_merit >= temp_best);
-            } else {
-              z = (temp_merit > temp_best);
-            }
+	    z = ((i != m_classIndex) && (!temp_group.get(i)));
 	  }
-
 	  if (z) {
-            temp_best = temp_merit;
-            temp_index = i;
-            addone = true;
-            done = false;
+	    BitSet candidate = (BitSet)temp_group.clone();
+	    candidate.flip(i);
+	    candidates.addElement(candidate);
 	  }
+	}
+	SubsetEvaluatorPool.prefetch(ASEvaluator, candidates);
 
-	  // unset this addition/deletion
+	for (i=0;i<m_numAttribs;i++) {
 	  if (m_backward) {
-	    temp_group.set(i);
+	    z = ((i != m_classIndex) && (temp_group.get(i)));
 	  } else {
-	    temp_group.clear(i);
+	    z = ((i != m_classIndex) && (!temp_group.get(i)));
 	  }
-	  if (m_doRank) {
-	    done = false;
+	  if (z) {
+	    // set/unset the bit
+	    if (m_backward) {
+	      temp_group.clear(i);
+	    } else {
+	      temp_group.set(i);
+	    }
+	    temp_merit = ASEvaluator.evaluateSubset(temp_group);
+	    if (m_backward) {
+	      z = (temp_merit >= temp_best);
+	    } else {
+	      if (m_conservativeSelection) {
+		z = (temp_merit >= temp_best);
+	      } else {
+		z = (temp_merit > temp_best);
+	      }
+	    }
+
+	    if (z) {
+	      temp_best = temp_merit;
+	      temp_index = i;
+	      addone = true;
+	      done = false;
+	    }
+
+	    // unset this addition/deletion
+	    if (m_backward) {
+	      temp_group.set(i);
+	    } else {
+	      temp_group.clear(i);
+	    }
+	    if (m_doRank) {
+	      done = false;
+	    }
 	  }
 	}
-      }
-      if (addone) {
-	if (m_backward) {
-	  m_best_group.clear(temp_index);
-	} else {
-	  m_best_group.set(temp_index);
+	if (addone) {
+	  if (m_backward) {
+	    m_best_group.clear(temp_index);
+	  } else {
+	    m_best_group.set(temp_index);
+	  }
+	  best_merit = temp_best;
+	  m_rankedAtts[m_rankedSoFar][0] = temp_index;
+	  m_rankedAtts[m_rankedSoFar][1] = best_merit;
+	  m_rankedSoFar++;
 	}
-	best_merit = temp_best;
-	m_rankedAtts[m_rankedSoFar][0] = temp_index;
-	m_rankedAtts[m_rankedSoFar][1] = best_merit;
-	m_rankedSoFar++;
       }
+    } finally {
+      ASEvaluator.shutdown();
     }
     m_bestMerit = best_merit;
     return attributeList(m_best_group);
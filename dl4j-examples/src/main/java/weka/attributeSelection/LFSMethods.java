@@ -30,6 +30,7 @@ import weka.core.Utils;
 import java.io.Serializable;
 import java.util.BitSet;
 import java.util.Hashtable;
+import java.util.Vector;
 
 /**
  * @author Martin Guetlein (martin.guetlein@gmail.com)
@@ -104,6 +105,17 @@ public class LFSMethods
     double[] merit = new double[data.numAttributes()];
     BitSet group = new BitSet(data.numAttributes());
 
+    // evaluate the single attributes at once
+    Vector<BitSet> candidates = new Vector<BitSet>();
+    for (int k = 0; k < data.numAttributes(); k++) {
+      if (k != data.classIndex()) {
+        BitSet candidate = new BitSet(data.numAttributes());
+        candidate.set(k);
+        candidates.addElement(candidate);
+      }
+    }
+    SubsetEvaluatorPool.prefetch(evaluator, candidates);
+
     for (int k = 0; k < data.numAttributes(); k++) {
       if (k != data.classIndex()) {
         group.set(k);
@@ -237,6 +249,21 @@ public class LFSMethods
         thisK = k;
       }
 
+      // evaluate the new candidates of this step at once
+      Vector<BitSet> candidates = new Vector<BitSet>();
+      for (int i = 0; i < thisK; i++) {
+        if ((ranking[i] == data.classIndex()) || tempGroup.get(ranking[i])) {
+          continue;
+        }
+
+        BitSet candidate = (BitSet) tempGroup.clone();
+        candidate.set(ranking[i]);
+        if (!alreadyExpanded.containsKey(candidate.toString())) {
+          candidates.addElement(candidate);
+        }
+      }
+      SubsetEvaluatorPool.prefetch(evaluator, candidates);
+
       //temporarilly add attributes to current set
       for (int i = 0; i < thisK; i++) {
         if ((ranking[i] == data.classIndex()) || tempGroup.get(ranking[i])) {
@@ -441,6 +468,22 @@ public class LFSMethods
         thisK = k;
       }
 
+      // evaluate the new candidates of this step at once
+      Vector<BitSet> candidates = new Vector<BitSet>();
+      for (int i = 0; i < thisK; i++) {
+        if ((ranking[i] == data.classIndex())
+            || (backward != tempGroup.get(ranking[i]))) {
+          continue;
+        }
+
+        BitSet candidate = (BitSet) tempGroup.clone();
+        candidate.flip(ranking[i]);
+        if (!alreadyExpanded.containsKey(candidate.toString())) {
+          candidates.addElement(candidate);
+        }
+      }
+      SubsetEvaluatorPool.prefetch(evaluator, candidates);
+
       //temporarilly add/remove attributes to/from current set
       for (int i = 0; i < thisK; i++) {
         if (ranking[i] == data.classIndex()) {
@@ -81,6 +81,11 @@ import java.util.Vector;
   *  Expressed as a multiple of the number of
   *  attributes in the data set. (default = 1)</pre>
   * 
+  * <pre> -num-slots &lt;num&gt;
+  *  Number of execution slots for evaluating the
+  *  candidate subsets of a step.
+  *  (default 1 - i.e. no parallelism)</pre>
+  * 
   * <pre> -Z
   *  verbose on/off</pre>
   * 
@@ -156,6 +161,9 @@ public class LinearForwardSelection
   /** holds the maximum size of the lookup cache for evaluated subsets */
   protected int m_cacheSize;
 
+  /** the number of threads used to evaluate the candidates of a step */
+  protected int m_numExecutionSlots;
+
   /**
    * Constructor
    */
@@ -218,7 +226,7 @@ public class LinearForwardSelection
    *
    */
   public Enumeration listOptions() {
-    Vector newVector = new Vector(8);
+    Vector newVector = new Vector(9);
 
     newVector.addElement(new Option("\tSpecify a starting set of attributes." +
                                     "\n\tEg. 1,3,5-7.", "P", 1, "-P <start set>"));
@@ -239,6 +247,11 @@ public class LinearForwardSelection
                                     "\tSize of lookup cache for evaluated subsets." +
                                     "\n\tExpressed as a multiple of the number of" +
                                     "\n\tattributes in the data set. (default = 1)", "S", 1, "-S <num>"));
+    newVector.addElement(new Option(
+                                    "\tNumber of execution slots for evaluating the" +
+                                    "\n\tcandidate subsets of a step." +
+                                    "\n\t(default 1 - i.e. no parallelism)", "num-slots", 1,
+                                    "-num-slots <num>"));
     newVector.addElement(new Option("\tverbose on/off", "Z", 0, "-Z"));
 
     return newVector.elements();
@@ -280,6 +293,11 @@ public class LinearForwardSelection
    * the number of attributes in the data set. (default = 1).
    * <p>
    *
+   * -num-slots <num> <br>
+   * Number of execution slots for evaluating the candidate subsets of a step.
+   * (default 1 - i.e. no parallelism).
+   * <p>
+   *
    * -Z <br>
    * verbose on/off.
    * <p>
@@ -338,6 +356,12 @@ public class LinearForwardSelection
       setLookupCacheSize(Integer.parseInt(optionString));
     }
 
+    optionString = Utils.getOption("num-slots", options);
+
+    if (optionString.length() != 0) {
+      setNumExecutionSlots(Integer.parseInt(optionString));
+    }
+
     m_verbose = Utils.getFlag('Z', options);
   }
 
@@ -377,6 +401,44 @@ public class LinearForwardSelection
       "(default = 1).";
   }
 
+  /**
+   * Set the number of execution slots (threads) used to evaluate the
+   * candidate subsets of a step.
+   *
+   * @param numSlots
+   *            the number of execution slots
+   * @exception Exception
+   *                if the number is smaller than 1
+   */
+  public void setNumExecutionSlots(int numSlots) throws Exception {
+    if (numSlots < 1) {
+      throw new Exception("Number of execution slots needs to be >= 1!");
+    }
+
+    m_numExecutionSlots = numSlots;
+  }
+
+  /**
+   * Get the number of execution slots (threads) used to evaluate the
+   * candidate subsets of a step.
+   *
+   * @return the number of execution slots
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of threads that evaluate the candidate subsets of a " +
+      "step in parallel (each with its own copy of the evaluator).";
+  }
+
   /**
    * Returns the tip text for this property
    *
@@ -613,7 +675,7 @@ public class LinearForwardSelection
    * @return an array of strings suitable for passing to setOptions()
    */
   public String[] getOptions() {
-    String[] options = new String[13];
+    String[] options = new String[15];
     int current = 0;
 
     if (!(getStartSet().equals(""))) {
@@ -634,6 +696,8 @@ public class LinearForwardSelection
     options[current++] = "" + m_numUsedAttributes;
     options[current++] = "-T";
     options[current++] = "" + m_linearSelectionType;
+    options[current++] = "-num-slots";
+    options[current++] = "" + m_numExecutionSlots;
 
     if (m_verbose)
       options[current++] = "-Z";
@@ -786,27 +850,34 @@ public class LinearForwardSelection
     }
 
     LFSMethods LFS = new LFSMethods();
+    SubsetEvaluatorPool evaluator =
+      new SubsetEvaluatorPool((SubsetEvaluator) ASEval, m_numExecutionSlots,
+                              (m_cacheSize + 1) * m_numAttribs);
 
-    int[] ranking;
+    try {
+      int[] ranking;
 
-    if (m_performRanking) {
-      ranking = LFS.rankAttributes(data, (SubsetEvaluator) ASEval, m_verbose);
-    } else {
-      ranking = new int[m_numAttribs];
+      if (m_performRanking) {
+        ranking = LFS.rankAttributes(data, evaluator, m_verbose);
+      } else {
+        ranking = new int[m_numAttribs];
 
-      for (int i = 0; i < ranking.length; i++) {
-        ranking[i] = i;
+        for (int i = 0; i < ranking.length; i++) {
+          ranking[i] = i;
+        }
       }
-    }
 
-    if (m_forwardSearchMethod == SEARCH_METHOD_FORWARD) {
-      LFS.forwardSearch(m_cacheSize, start_group, ranking, m_numUsedAttributes,
-                        m_linearSelectionType == TYPE_FIXED_WIDTH, m_maxStale, -1, data,
-                        (SubsetEvaluator) ASEval, m_verbose);
-    } else if (m_forwardSearchMethod == SEARCH_METHOD_FLOATING) {
-      LFS.floatingForwardSearch(m_cacheSize, start_group, ranking,
-                                m_numUsedAttributes, m_linearSelectionType == TYPE_FIXED_WIDTH,
-                                m_maxStale, data, (SubsetEvaluator) ASEval, m_verbose);
+      if (m_forwardSearchMethod == SEARCH_METHOD_FORWARD) {
+        LFS.forwardSearch(m_cacheSize, start_group, ranking, m_numUsedAttributes,
+                          m_linearSelectionType == TYPE_FIXED_WIDTH, m_maxStale, -1, data,
+                          evaluator, m_verbose);
+      } else if (m_forwardSearchMethod == SEARCH_METHOD_FLOATING) {
+        LFS.floatingForwardSearch(m_cacheSize, start_group, ranking,
+                                  m_numUsedAttributes, m_linearSelectionType == TYPE_FIXED_WIDTH,
+                                  m_maxStale, data, evaluator, m_verbose);
+      }
+    } finally {
+      evaluator.shutdown();
     }
 
     m_totalEvals = LFS.getNumEvalsTotal();
@@ -829,6 +900,7 @@ public class LinearForwardSelection
     m_classIndex = -1;
     m_totalEvals = 0;
     m_cacheSize = 1;
+    m_numExecutionSlots = 1;
     m_verbose = false;
   }
 
@@ -0,0 +1,275 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+/*
+ *    SubsetEvaluatorPool.java
+ *
+ */
+
+package weka.attributeSelection;
+
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Wraps a subset evaluator for the search methods. Merits are remembered
+ * in a cache keyed by the subset, so that no subset is evaluated twice
+ * (as long as the cache is not full), and all the candidates of an
+ * expansion step can be evaluated at once on several execution slots with
+ * <code>evaluateSubsets(BitSet[])</code>. Every slot uses its own copy of
+ * the (built) evaluator, so evaluators do not need to be thread safe. <p/>
+ *
+ * The search methods evaluate the candidates of a step in one call to
+ * <code>prefetch(SubsetEvaluator, List)</code> and then go through them
+ * in their usual order, taking the merits from the cache. The result of a
+ * search therefore does not depend on the number of execution slots, as
+ * long as the evaluator is deterministic.
+ *
+ * @version $Revision$
+ */
+public class SubsetEvaluatorPool
+  implements SubsetEvaluator, RevisionHandler {
+
+  /** the evaluator that is wrapped */
+  protected SubsetEvaluator m_Evaluator;
+
+  /** the number of execution slots */
+  protected int m_NumExecutionSlots;
+
+  /** the evaluators of the execution slots (created when first needed) */
+  protected SubsetEvaluator[] m_Evaluators;
+
+  /** the thread pool (created when first needed) */
+  protected ExecutorService m_Executor;
+
+  /** the merits of the subsets evaluated so far */
+  protected HashMap<BitSet, Double> m_Cache = new HashMap<BitSet, Double>();
+
+  /** the maximum number of cached merits (0 = unlimited) */
+  protected int m_MaxCacheSize;
+
+  /** the number of subsets that were evaluated */
+  protected int m_NumEvaluations;
+
+  /**
+   * Wraps the given evaluator.
+   *
+   * @param evaluator the built subset evaluator
+   * @param numSlots the number of execution slots
+   * @param maxCacheSize the maximum number of cached merits, the cache is
+   * emptied when it would grow beyond (0 = unlimited)
+   */
+  public SubsetEvaluatorPool(SubsetEvaluator evaluator, int numSlots,
+			     int maxCacheSize) {
+    m_Evaluator = evaluator;
+    m_NumExecutionSlots = Math.max(1, numSlots);
+    m_MaxCacheSize = maxCacheSize;
+  }
+
+  /**
+   * Evaluates a subset, or returns its merit from the cache.
+   *
+   * @param subset the subset to evaluate
+   * @return the merit of the subset
+   * @throws Exception if the subset could not be evaluated
+   */
+  public double evaluateSubset(BitSet subset) throws Exception {
+    Double merit = m_Cache.get(subset);
+    if (merit != null) {
+      return merit.doubleValue();
+    }
+    double result = m_Evaluator.evaluateSubset(subset);
+    m_NumEvaluations++;
+    makeRoom(1);
+    m_Cache.put((BitSet) subset.clone(), Double.valueOf(result));
+    return result;
+  }
+
+  /**
+   * Evaluates several subsets; those that are not cached are evaluated in
+   * parallel if there is more than one execution slot.
+   *
+   * @param subsets the subsets to evaluate
+   * @return the merits of the subsets
+   * @throws Exception if a subset could not be evaluated
+   */
+  public double[] evaluateSubsets(BitSet[] subsets) throws Exception {
+    double[] merits = new double[subsets.length];
+    HashMap<BitSet, Integer> pending = new HashMap<BitSet, Integer>();
+    List<BitSet> todo = new ArrayList<BitSet>();
+    for (int i = 0; i < subsets.length; i++) {
+      Double merit = m_Cache.get(subsets[i]);
+      if (merit != null) {
+	merits[i] = merit.doubleValue();
+      } else if (!pending.containsKey(subsets[i])) {
+	pending.put(subsets[i], Integer.valueOf(todo.size()));
+	todo.add((BitSet) subsets[i].clone());
+      }
+    }
+    if (todo.size() == 0) {
+      return merits;
+    }
+
+    double[] results;
+    if ((m_NumExecutionSlots > 1) && (todo.size() > 1)
+	&& (m_Evaluator instanceof ASEvaluation)) {
+      results = evaluateParallel(todo);
+    } else {
+      results = new double[todo.size()];
+      for (int i = 0; i < results.length; i++) {
+	results[i] = m_Evaluator.evaluateSubset(todo.get(i));
+      }
+    }
+    m_NumEvaluations += todo.size();
+
+    makeRoom(todo.size());
+    for (int i = 0; i < results.length; i++) {
+      m_Cache.put(todo.get(i), Double.valueOf(results[i]));
+    }
+    for (int i = 0; i < subsets.length; i++) {
+      Integer index = pending.get(subsets[i]);
+      if (index != null) {
+	merits[i] = results[index.intValue()];
+      }
+    }
+    return merits;
+  }
+
+  /**
+   * Evaluates the subsets on the execution slots.
+   *
+   * @param todo the subsets to evaluate
+   * @return the merits of the subsets
+   * @throws Exception if a subset could not be evaluated
+   */
+  protected double[] evaluateParallel(final List<BitSet> todo)
+    throws Exception {
+
+    if (m_Evaluators == null) {
+      ASEvaluation[] copies = ASEvaluation.makeCopies((ASEvaluation)
+						      m_Evaluator,
+						      m_NumExecutionSlots - 1);
+      m_Evaluators = new SubsetEvaluator[m_NumExecutionSlots];
+      m_Evaluators[0] = m_Evaluator;
+      for (int i = 1; i < m_NumExecutionSlots; i++) {
+	m_Evaluators[i] = (SubsetEvaluator) copies[i - 1];
+      }
+      m_Executor = Executors.newFixedThreadPool(m_NumExecutionSlots);
+    }
+
+    final double[] results = new double[todo.size()];
+    final AtomicInteger next = new AtomicInteger();
+    int numTasks = Math.min(m_NumExecutionSlots, todo.size());
+    Future<?>[] futures = new Future<?>[numTasks];
+    for (int t = 0; t < numTasks; t++) {
+      final SubsetEvaluator evaluator = m_Evaluators[t];
+      futures[t] = m_Executor.submit(new Callable<Object>() {
+	  public Object call() throws Exception {
+	    int i;
+	    while ((i = next.getAndIncrement()) < results.length) {
+	      results[i] = evaluator.evaluateSubset(todo.get(i));
+	    }
+	    return null;
+	  }
+	});
+    }
+    for (int t = 0; t < numTasks; t++) {
+      try {
+	futures[t].get();
+      } catch (ExecutionException e) {
+	next.set(results.length);
+	if (e.getCause() instanceof Exception) {
+	  throw (Exception) e.getCause();
+	}
+	throw e;
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Empties the cache if the given number of merits would not fit in.
+   *
+   * @param num the number of merits to add
+   */
+  protected void makeRoom(int num) {
+    if ((m_MaxCacheSize > 0) && (m_Cache.size() + num > m_MaxCacheSize)) {
+      m_Cache.clear();
+    }
+  }
+
+  /**
+   * Evaluates the given subsets in one go if the evaluator is a pool, so
+   * that the following calls of <code>evaluateSubset(BitSet)</code> for
+   * these subsets are answered from the cache. Does nothing for other
+   * evaluators.
+   *
+   * @param evaluator the evaluator used by the search
+   * @param subsets the candidate subsets (BitSets) of the next step
+   * @throws Exception if a subset could not be evaluated
+   */
+  public static void prefetch(SubsetEvaluator evaluator, List<BitSet> subsets)
+    throws Exception {
+
+    if (evaluator instanceof SubsetEvaluatorPool) {
+      SubsetEvaluatorPool pool = (SubsetEvaluatorPool) evaluator;
+      if ((pool.m_NumExecutionSlots > 1) && (subsets.size() > 1)) {
+	pool.evaluateSubsets(subsets.toArray(new BitSet[subsets.size()]));
+      }
+    }
+  }
+
+  /**
+   * Returns the number of subsets that have been evaluated.
+   *
+   * @return the number of evaluations
+   */
+  public int getNumEvaluations() {
+    return m_NumEvaluations;
+  }
+
+  /**
+   * Stops the threads of the execution slots and releases the copies of
+   * the evaluator.
+   */
+  public void shutdown() {
+    if (m_Executor != null) {
+      m_Executor.shutdownNow();
+      m_Executor = null;
+    }
+    m_Evaluators = null;
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return		the revision
+   */
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
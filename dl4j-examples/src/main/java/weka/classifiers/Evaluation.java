@@ -40,13 +40,20 @@ import java.lang.reflect.Method;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
 import weka.classifiers.evaluation.NominalPrediction;
+import weka.classifiers.evaluation.ScoreHistogram;
 import weka.classifiers.evaluation.ThresholdCurve;
 import weka.classifiers.pmml.consumer.PMMLClassifier;
 import weka.classifiers.xml.XMLClassifier;
+import weka.core.BatchPredictor;
 import weka.core.Drawable;
 import weka.core.FastVector;
 import weka.core.Instance;
@@ -114,6 +121,16 @@ import weka.estimators.KernelEstimator;
  * 1).
  * <p/>
  * 
+ * -num-slots number <br/>
+ * Number of folds of the cross-validation that are processed in parallel
+ * (default: 1).
+ * <p/>
+ * 
+ * -threshold-bins number <br/>
+ * Collects histograms with the given number of bins instead of all
+ * predictions for the ROC areas (default: 0, i.e., all predictions).
+ * <p/>
+ * 
  * -m filename <br/>
  * The name of a file containing a cost matrix.
  * <p/>
@@ -311,6 +328,12 @@ public class Evaluation implements Summarizable, RevisionHandler {
    */
   protected static final double MIN_SF_PROB = Double.MIN_VALUE;
 
+  /**
+   * The number of test instances handed to a BatchPredictor at a time, which
+   * bounds the copy of the test set (and the predictions) held at once.
+   */
+  protected static final int BATCH_PREDICTION_SIZE = 1000;
+
   /** Total entropy of prior predictions */
   protected double m_SumPriorEntropy;
 
@@ -320,12 +343,24 @@ public class Evaluation implements Summarizable, RevisionHandler {
   /** The list of predictions that have been generated (for computing AUC) */
   private FastVector m_Predictions;
 
+  /**
+   * The histogram of the predicted probabilities that is collected instead of
+   * the predictions if m_NumThresholdBins is greater than 0
+   */
+  protected ScoreHistogram m_ScoreHistogram;
+
+  /** The number of bins of the score histogram (0 = collect predictions) */
+  protected int m_NumThresholdBins = 0;
+
   /**
    * enables/disables the use of priors, e.g., if no training set is present in
    * case of de-serialized schemes
    */
   protected boolean m_NoPriors = false;
 
+  /** The number of folds processed in parallel by a cross-validation */
+  protected int m_NumExecutionSlots = 1;
+
   /**
    * Initializes all the counters for the evaluation. Use
    * <code>useNoPriors()</code> if the dataset is the test set and you can't
@@ -396,7 +431,11 @@ public class Evaluation implements Summarizable, RevisionHandler {
   public double areaUnderROC(int classIndex) {
 
     // Check if any predictions have been collected
-    if (m_Predictions == null) {
+    if (m_ScoreHistogram != null) {
+      ThresholdCurve tc = new ThresholdCurve();
+      Instances result = tc.getCurve(m_ScoreHistogram, classIndex);
+      return ThresholdCurve.getROCArea(result);
+    } else if (m_Predictions == null) {
       return Instance.missingValue();
     } else {
       ThresholdCurve tc = new ThresholdCurve();
@@ -405,6 +444,30 @@ public class Evaluation implements Summarizable, RevisionHandler {
     }
   }
 
+  /**
+   * Returns the area under the precision-recall curve for those predictions
+   * that have been collected in the evaluateClassifier(Classifier, Instances)
+   * method. Returns Instance.missingValue() if the area is not available.
+   * 
+   * @param classIndex the index of the class to consider as "positive"
+   * @return the area under the precision-recall curve or not a number
+   */
+  public double areaUnderPRC(int classIndex) {
+
+    // Check if any predictions have been collected
+    if (m_ScoreHistogram != null) {
+      ThresholdCurve tc = new ThresholdCurve();
+      Instances result = tc.getCurve(m_ScoreHistogram, classIndex);
+      return ThresholdCurve.getPRCArea(result);
+    } else if (m_Predictions == null) {
+      return Instance.missingValue();
+    } else {
+      ThresholdCurve tc = new ThresholdCurve();
+      Instances result = tc.getCurve(m_Predictions, classIndex);
+      return ThresholdCurve.getPRCArea(result);
+    }
+  }
+
   /**
    * Calculates the weighted (by class size) AUC.
    * 
@@ -432,6 +495,34 @@ public class Evaluation implements Summarizable, RevisionHandler {
     return aucTotal / classCountSum;
   }
 
+  /**
+   * Calculates the weighted (by class size) area under the precision-recall
+   * curve.
+   * 
+   * @return the weighted PRC area.
+   */
+  public double weightedAreaUnderPRC() {
+    double[] classCounts = new double[m_NumClasses];
+    double classCountSum = 0;
+
+    for (int i = 0; i < m_NumClasses; i++) {
+      for (int j = 0; j < m_NumClasses; j++) {
+        classCounts[i] += m_ConfusionMatrix[i][j];
+      }
+      classCountSum += classCounts[i];
+    }
+
+    double prcTotal = 0;
+    for (int i = 0; i < m_NumClasses; i++) {
+      double temp = areaUnderPRC(i);
+      if (!Instance.isMissingValue(temp)) {
+        prcTotal += (temp * classCounts[i]);
+      }
+    }
+
+    return prcTotal / classCountSum;
+  }
+
   /**
    * Returns a copy of the confusion matrix.
    * 
@@ -491,17 +582,296 @@ public class Evaluation implements Summarizable, RevisionHandler {
     }
 
     // Do the folds
-    for (int i = 0; i < numFolds; i++) {
-      Instances train = data.trainCV(numFolds, i, random);
-      setPriors(train);
-      Classifier copiedClassifier = Classifier.makeCopy(classifier);
-      copiedClassifier.buildClassifier(train);
-      Instances test = data.testCV(numFolds, i);
-      evaluateModel(copiedClassifier, test, forPredictionsPrinting);
+    if ((m_NumExecutionSlots > 1) && (numFolds > 1)) {
+      crossValidateModelParallel(classifier, data, numFolds, random,
+        forPredictionsPrinting);
+    } else {
+      for (int i = 0; i < numFolds; i++) {
+        Instances train = data.trainCV(numFolds, i, random);
+        setPriors(train);
+        Classifier copiedClassifier = Classifier.makeCopy(classifier);
+        copiedClassifier.buildClassifier(train);
+        Instances test = data.testCV(numFolds, i);
+        evaluateModel(copiedClassifier, test, forPredictionsPrinting);
+      }
     }
     m_NumFolds = numFolds;
   }
 
+  /**
+   * Runs the folds of a cross-validation on up to
+   * <code>m_NumExecutionSlots</code> threads. The training sets are drawn in
+   * fold order from <code>random</code>, exactly as in the sequential case.
+   * Each thread builds its own copy of the classifier and only collects the
+   * predictions for its test fold; the statistics are then updated from these
+   * predictions in fold order, so that the result is identical to a
+   * sequential run with the same seed.
+   * 
+   * @param classifier the classifier with any options set.
+   * @param data the randomized (and stratified) data
+   * @param numFolds the number of folds for the cross-validation
+   * @param random random number generator for randomization
+   * @param forPredictionsPrinting see
+   *          {@link #crossValidateModel(Classifier, Instances, int, Random, Object...)}
+   * @throws Exception if a classifier could not be generated successfully
+   */
+  protected void crossValidateModelParallel(Classifier classifier,
+    Instances data, int numFolds, Random random,
+    Object... forPredictionsPrinting) throws Exception {
+
+    boolean keepModels = (forPredictionsPrinting.length > 0);
+    Instances[] train = new Instances[numFolds];
+    FoldTask[] tasks = new FoldTask[numFolds];
+    for (int i = 0; i < numFolds; i++) {
+      train[i] = data.trainCV(numFolds, i, random);
+      tasks[i] =
+        new FoldTask(Classifier.makeCopy(classifier), train[i], data.testCV(
+          numFolds, i), keepModels);
+    }
+
+    ExecutorService executor =
+      Executors.newFixedThreadPool(Math.min(m_NumExecutionSlots, numFolds));
+    try {
+      Future<?>[] results = new Future<?>[numFolds];
+      for (int i = 0; i < numFolds; i++) {
+        results[i] = executor.submit(tasks[i]);
+      }
+      for (int i = 0; i < numFolds; i++) {
+        try {
+          results[i].get();
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof Exception) {
+            throw (Exception) e.getCause();
+          }
+          throw e;
+        }
+        setPriors(train[i]);
+        train[i] = null;
+        evaluateFold(tasks[i], forPredictionsPrinting);
+        tasks[i] = null;
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Updates the statistics with the predictions collected for a single fold.
+   * 
+   * @param fold the processed fold
+   * @param forPredictionsPrinting see
+   *          {@link #evaluateModel(Classifier, Instances, Object...)}
+   * @throws Exception if the predictions could not be evaluated
+   */
+  private void evaluateFold(FoldTask fold, Object... forPredictionsPrinting)
+    throws Exception {
+
+    StringBuffer buff = null;
+    Range attsToOutput = null;
+    boolean printDist = false;
+
+    if (forPredictionsPrinting.length > 0) {
+      buff = (StringBuffer) forPredictionsPrinting[0];
+      attsToOutput = (Range) forPredictionsPrinting[1];
+      printDist = ((Boolean) forPredictionsPrinting[2]).booleanValue();
+    }
+
+    Instances test = fold.m_Test;
+    for (int i = 0; i < test.numInstances(); i++) {
+      if (m_ClassIsNominal) {
+        evaluateModelOnceAndRecordPrediction(fold.m_Distributions[i],
+          test.instance(i));
+      } else {
+        evaluateModelOnce(fold.m_Predictions[i], test.instance(i));
+      }
+      if (buff != null) {
+        buff.append(predictionText(fold.m_Classifier, test.instance(i), i,
+          attsToOutput, printDist));
+      }
+    }
+  }
+
+  /**
+   * Builds the classifier of a single cross-validation fold and collects its
+   * predictions on the test fold.
+   */
+  private static class FoldTask implements Callable<Object> {
+
+    /** the classifier to build */
+    protected Classifier m_Classifier;
+
+    /** the training fold */
+    protected Instances m_Train;
+
+    /** the test fold */
+    protected Instances m_Test;
+
+    /** whether to keep the model after the predictions have been made */
+    protected boolean m_KeepModel;
+
+    /** the predicted distributions (nominal class) */
+    protected double[][] m_Distributions;
+
+    /** the predicted values (numeric class) */
+    protected double[] m_Predictions;
+
+    /**
+     * Initializes the task.
+     * 
+     * @param classifier a fresh copy of the classifier
+     * @param train the training fold
+     * @param test the test fold
+     * @param keepModel true if the model is needed afterwards
+     */
+    public FoldTask(Classifier classifier, Instances train, Instances test,
+      boolean keepModel) {
+      m_Classifier = classifier;
+      m_Train = train;
+      m_Test = test;
+      m_KeepModel = keepModel;
+    }
+
+    /**
+     * Builds the classifier and predicts the test fold.
+     * 
+     * @return always null
+     * @throws Exception if building or predicting fails
+     */
+    public Object call() throws Exception {
+      boolean nominal = m_Test.classAttribute().isNominal();
+
+      m_Classifier.buildClassifier(m_Train);
+      m_Train = null;
+      if (nominal) {
+        m_Distributions = new double[m_Test.numInstances()][];
+      } else {
+        m_Predictions = new double[m_Test.numInstances()];
+      }
+      for (int i = 0; i < m_Test.numInstances(); i++) {
+        Instance classMissing = (Instance) m_Test.instance(i).copy();
+        classMissing.setDataset(m_Test);
+        classMissing.setClassMissing();
+        if (nominal) {
+          m_Distributions[i] =
+            m_Classifier.distributionForInstance(classMissing);
+        } else {
+          m_Predictions[i] = m_Classifier.classifyInstance(classMissing);
+        }
+      }
+      if (!m_KeepModel) {
+        m_Classifier = null;
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Sets the number of folds that are processed in parallel by
+   * crossValidateModel. The results do not depend on this setting.
+   * 
+   * @param numSlots the number of execution slots (1 = sequential)
+   */
+  public void setNumExecutionSlots(int numSlots) {
+    m_NumExecutionSlots = Math.max(1, numSlots);
+  }
+
+  /**
+   * Gets the number of folds that are processed in parallel by
+   * crossValidateModel.
+   * 
+   * @return the number of execution slots
+   */
+  public int getNumExecutionSlots() {
+    return m_NumExecutionSlots;
+  }
+
+  /**
+   * Sets the number of bins of the histograms of predicted probabilities that
+   * are collected instead of the predictions. With histograms, the memory
+   * needed for the areas under the ROC and precision-recall curves no longer
+   * grows with the number of test instances; the ROC areas are then exact up
+   * to the order of instances that fall into the same bin (see
+   * {@link ScoreHistogram#getROCAreaErrorBound(int)}). Has to be set before
+   * any predictions are evaluated.
+   * 
+   * @param numBins the number of bins (0 = collect all predictions)
+   */
+  public void setNumThresholdBins(int numBins) {
+    m_NumThresholdBins = Math.max(0, numBins);
+  }
+
+  /**
+   * Gets the number of bins of the histograms of predicted probabilities that
+   * are collected instead of the predictions.
+   * 
+   * @return the number of bins (0 = all predictions are collected)
+   */
+  public int getNumThresholdBins() {
+    return m_NumThresholdBins;
+  }
+
+  /**
+   * Adds the statistics collected by another evaluation object to this one,
+   * e.g., the results of shards of a test set that were evaluated separately
+   * or in parallel. Both objects must have been initialized with the same
+   * header (and priors) and the same number of threshold bins.
+   * 
+   * @param evaluation the evaluation to merge into this one
+   * @throws Exception if the evaluations are not compatible
+   */
+  public void aggregate(Evaluation evaluation) throws Exception {
+
+    if ((evaluation.m_NumClasses != m_NumClasses)
+      || (evaluation.m_ClassIsNominal != m_ClassIsNominal)
+      || (evaluation.m_NumThresholdBins != m_NumThresholdBins)) {
+      throw new Exception("Evaluations not compatible!");
+    }
+
+    m_Incorrect += evaluation.m_Incorrect;
+    m_Correct += evaluation.m_Correct;
+    m_Unclassified += evaluation.m_Unclassified;
+    m_MissingClass += evaluation.m_MissingClass;
+    m_WithClass += evaluation.m_WithClass;
+    if (m_ClassIsNominal) {
+      for (int i = 0; i < m_NumClasses; i++) {
+        for (int j = 0; j < m_NumClasses; j++) {
+          m_ConfusionMatrix[i][j] += evaluation.m_ConfusionMatrix[i][j];
+        }
+      }
+    }
+    m_TotalCost += evaluation.m_TotalCost;
+    m_SumErr += evaluation.m_SumErr;
+    m_SumAbsErr += evaluation.m_SumAbsErr;
+    m_SumSqrErr += evaluation.m_SumSqrErr;
+    m_SumClass += evaluation.m_SumClass;
+    m_SumSqrClass += evaluation.m_SumSqrClass;
+    m_SumPredicted += evaluation.m_SumPredicted;
+    m_SumSqrPredicted += evaluation.m_SumSqrPredicted;
+    m_SumClassPredicted += evaluation.m_SumClassPredicted;
+    m_SumPriorAbsErr += evaluation.m_SumPriorAbsErr;
+    m_SumPriorSqrErr += evaluation.m_SumPriorSqrErr;
+    m_SumKBInfo += evaluation.m_SumKBInfo;
+    m_SumPriorEntropy += evaluation.m_SumPriorEntropy;
+    m_SumSchemeEntropy += evaluation.m_SumSchemeEntropy;
+    for (int i = 0; i < m_MarginCounts.length; i++) {
+      m_MarginCounts[i] += evaluation.m_MarginCounts[i];
+    }
+
+    if (evaluation.m_ScoreHistogram != null) {
+      if (m_ScoreHistogram == null) {
+        m_ScoreHistogram =
+          new ScoreHistogram(m_NumClasses, m_NumThresholdBins);
+      }
+      m_ScoreHistogram.add(evaluation.m_ScoreHistogram);
+    }
+    if (evaluation.m_Predictions != null) {
+      if (m_Predictions == null) {
+        m_Predictions = new FastVector();
+      }
+      m_Predictions.appendElements(evaluation.m_Predictions);
+    }
+  }
+
   /**
    * Performs a (stratified if class is nominal) cross-validation for a
    * classifier on a set of instances.
@@ -564,6 +934,16 @@ public class Evaluation implements Summarizable, RevisionHandler {
    * 1).
    * <p/>
    * 
+   * -num-slots number <br/>
+   * Number of folds of the cross-validation that are processed in parallel
+   * (default: 1).
+   * <p/>
+   * 
+   * -threshold-bins number <br/>
+   * Collects histograms with the given number of bins instead of all
+   * predictions for the ROC areas (default: 0, i.e., all predictions).
+   * <p/>
+   * 
    * -m filename <br/>
    * The name of a file containing a cost matrix.
    * <p/>
@@ -715,6 +1095,16 @@ public class Evaluation implements Summarizable, RevisionHandler {
    * 1).
    * <p/>
    * 
+   * -num-slots number <br/>
+   * Number of folds of the cross-validation that are processed in parallel
+   * (default: 1).
+   * <p/>
+   * 
+   * -threshold-bins number <br/>
+   * Collects histograms with the given number of bins instead of all
+   * predictions for the ROC areas (default: 0, i.e., all predictions).
+   * <p/>
+   * 
    * -m file with cost matrix <br/>
    * The name of a file containing a cost matrix.
    * <p/>
@@ -780,7 +1170,8 @@ public class Evaluation implements Summarizable, RevisionHandler {
     throws Exception {
 
     Instances train = null, tempTrain, test = null, template = null;
-    int seed = 1, folds = 10, classIndex = -1;
+    int seed = 1, folds = 10, classIndex = -1, numSlots = 1;
+    int thresholdBins = 0;
     boolean noCrossValidation = false;
     String trainFileName, testFileName, sourceClass, classIndexString, seedString, foldsString, objectInputFileName, objectOutputFileName, attributeRangeString;
     boolean noOutput = false, printClassifications = false, trainStatistics =
@@ -887,6 +1278,14 @@ public class Evaluation implements Summarizable, RevisionHandler {
       if (seedString.length() != 0) {
         seed = Integer.parseInt(seedString);
       }
+      String numSlotsString = Utils.getOption("num-slots", options);
+      if (numSlotsString.length() != 0) {
+        numSlots = Integer.parseInt(numSlotsString);
+      }
+      String thresholdBinsString = Utils.getOption("threshold-bins", options);
+      if (thresholdBinsString.length() != 0) {
+        thresholdBins = Integer.parseInt(thresholdBinsString);
+      }
       if (trainFileName.length() == 0) {
         if (objectInputFileName.length() == 0) {
           throw new Exception("No training file and no object "
@@ -1086,6 +1485,9 @@ public class Evaluation implements Summarizable, RevisionHandler {
       new Evaluation(new Instances(template, 0), costMatrix);
     Evaluation testingEvaluation =
       new Evaluation(new Instances(template, 0), costMatrix);
+    testingEvaluation.setNumExecutionSlots(numSlots);
+    trainingEvaluation.setNumThresholdBins(thresholdBins);
+    testingEvaluation.setNumThresholdBins(thresholdBins);
 
     // disable use of priors if no training file given
     if (!trainSetPresent) {
@@ -1380,8 +1782,12 @@ public class Evaluation implements Summarizable, RevisionHandler {
           + "' is unknown!");
       }
       ThresholdCurve tc = new ThresholdCurve();
-      Instances result =
-        tc.getCurve(testingEvaluation.predictions(), labelIndex);
+      Instances result;
+      if (testingEvaluation.scoreHistogram() != null) {
+        result = tc.getCurve(testingEvaluation.scoreHistogram(), labelIndex);
+      } else {
+        result = tc.getCurve(testingEvaluation.predictions(), labelIndex);
+      }
       DataSink.write(thresholdFile, result);
     }
 
@@ -1476,9 +1882,32 @@ public class Evaluation implements Summarizable, RevisionHandler {
 
     // Need to be able to collect predictions if appropriate (for AUC)
 
+    // classifiers that can predict a whole batch at once (e.g. in parallel)
+    // get the test instances (with missing class) in chunks, so that only a
+    // bounded part of the test set is copied at a time
+    double[][] batchPredictions = null;
+    int batchStart = 0;
+
     for (int i = 0; i < data.numInstances(); i++) {
-      predictions[i] =
-        evaluateModelOnceAndRecordPrediction(classifier, data.instance(i));
+      if (classifier instanceof BatchPredictor) {
+        if ((batchPredictions == null)
+          || (i == batchStart + batchPredictions.length)) {
+          batchStart = i;
+          Instances classMissing = new Instances(data, i,
+            Math.min(BATCH_PREDICTION_SIZE, data.numInstances() - i));
+          for (int j = 0; j < classMissing.numInstances(); j++) {
+            classMissing.instance(j).setClassMissing();
+          }
+          batchPredictions =
+            ((BatchPredictor) classifier).distributionsForInstances(classMissing);
+        }
+        predictions[i] =
+          evaluateModelOnceAndRecordPrediction(batchPredictions[i - batchStart],
+            data.instance(i));
+      } else {
+        predictions[i] =
+          evaluateModelOnceAndRecordPrediction(classifier, data.instance(i));
+      }
       if (buff != null) {
         buff.append(predictionText(classifier, data.instance(i), i,
           attsToOutput, printDist));
@@ -1506,17 +1935,13 @@ public class Evaluation implements Summarizable, RevisionHandler {
     classMissing.setDataset(instance.dataset());
     classMissing.setClassMissing();
     if (m_ClassIsNominal) {
-      if (m_Predictions == null) {
-        m_Predictions = new FastVector();
-      }
       double[] dist = classifier.distributionForInstance(classMissing);
       pred = Utils.maxIndex(dist);
       if (dist[(int) pred] <= 0) {
         pred = Instance.missingValue();
       }
       updateStatsForClassifier(dist, instance);
-      m_Predictions.addElement(new NominalPrediction(instance.classValue(),
-        dist, instance.weight()));
+      recordPrediction(dist, instance);
     } else {
       pred = classifier.classifyInstance(classMissing);
       updateStatsForPredictor(pred, instance);
@@ -1590,16 +2015,12 @@ public class Evaluation implements Summarizable, RevisionHandler {
     Instance instance) throws Exception {
     double pred;
     if (m_ClassIsNominal) {
-      if (m_Predictions == null) {
-        m_Predictions = new FastVector();
-      }
       pred = Utils.maxIndex(dist);
       if (dist[(int) pred] <= 0) {
         pred = Instance.missingValue();
       }
       updateStatsForClassifier(dist, instance);
-      m_Predictions.addElement(new NominalPrediction(instance.classValue(),
-        dist, instance.weight()));
+      recordPrediction(dist, instance);
     } else {
       pred = dist[0];
       updateStatsForPredictor(pred, instance);
@@ -1636,6 +2057,43 @@ public class Evaluation implements Summarizable, RevisionHandler {
     return m_Predictions;
   }
 
+  /**
+   * Returns the histogram of the predicted probabilities that has been
+   * collected instead of the predictions.
+   * 
+   * @return the histogram, null if the predictions are collected (see
+   *         <code>setNumThresholdBins(int)</code>) or if no predictions have
+   *         been evaluated yet
+   */
+  public ScoreHistogram scoreHistogram() {
+
+    return m_ScoreHistogram;
+  }
+
+  /**
+   * Collects a prediction for the threshold curves, either in the list of
+   * predictions or in the histogram of predicted probabilities.
+   * 
+   * @param dist the predicted distribution
+   * @param instance the test instance
+   */
+  private void recordPrediction(double[] dist, Instance instance) {
+
+    if (m_NumThresholdBins > 0) {
+      if (m_ScoreHistogram == null) {
+        m_ScoreHistogram =
+          new ScoreHistogram(m_NumClasses, m_NumThresholdBins);
+      }
+      m_ScoreHistogram.add(instance.classValue(), dist, instance.weight());
+    } else {
+      if (m_Predictions == null) {
+        m_Predictions = new FastVector();
+      }
+      m_Predictions.addElement(new NominalPrediction(instance.classValue(),
+        dist, instance.weight()));
+    }
+  }
+
   /**
    * Wraps a static classifier in enough source to test using the weka class
    * libraries.
@@ -3427,6 +3885,15 @@ public class Evaluation implements Summarizable, RevisionHandler {
     optionsText
       .append("\tSets random number seed for cross-validation or percentage split\n");
     optionsText.append("\t(default: 1).\n");
+    optionsText.append("-num-slots <number of threads>\n");
+    optionsText
+      .append("\tSets number of folds of a cross-validation processed in\n");
+    optionsText.append("\tparallel (default: 1).\n");
+    optionsText.append("-threshold-bins <number of bins>\n");
+    optionsText
+      .append("\tCollects histograms with the given number of bins instead\n");
+    optionsText
+      .append("\tof all predictions for the ROC areas (default: 0).\n");
     optionsText.append("-m <name of file with cost matrix>\n");
     optionsText.append("\tSets file with cost matrix.\n");
     optionsText.append("-l <name of input file>\n");
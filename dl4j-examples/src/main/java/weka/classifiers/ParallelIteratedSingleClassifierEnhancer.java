@@ -0,0 +1,412 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+/*
+ *    ParallelIteratedSingleClassifierEnhancer.java
+ *
+ */
+
+package weka.classifiers;
+
+import weka.core.BatchPredictor;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Option;
+import weka.core.Utils;
+
+import java.util.Enumeration;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Abstract utility class for handling settings common to meta classifiers
+ * that build an ensemble in parallel from a single base learner.<p>
+ *
+ * Subclasses supply the training set of each member through
+ * <code>getTrainingSet(int)</code>, which is always called from the thread
+ * that builds the ensemble and in member order, so that random numbers are
+ * drawn exactly as in the sequential case. The members themselves are then
+ * built on up to <code>numExecutionSlots</code> threads. Base learners must
+ * not modify the training set they are given.<p>
+ *
+ * Batch predictions are computed by letting each thread evaluate a disjoint
+ * range of members and then averaging the predictions in member order, which
+ * gives the same result as distributionForInstance and never uses a member
+ * from two threads at once.
+ */
+public abstract class ParallelIteratedSingleClassifierEnhancer
+  extends IteratedSingleClassifierEnhancer implements BatchPredictor {
+
+  /** for serialization */
+  private static final long serialVersionUID = -5026378741833046436L;
+
+  /** The maximum number of predictions buffered in a batch. */
+  protected static final int MAX_BATCH_CELLS = 1 << 20;
+
+  /** The number of threads to use for building and predicting. */
+  protected int m_numExecutionSlots = 1;
+
+  /**
+   * Returns an enumeration describing the available options.
+   *
+   * @return an enumeration of all the available options.
+   */
+  public Enumeration listOptions() {
+
+    Vector newVector = new Vector(2);
+
+    newVector.addElement(new Option(
+	      "\tNumber of execution slots.\n"
+	      + "\t(default 1 - i.e. no parallelism)",
+	      "num-slots", 1, "-num-slots <num>"));
+
+    Enumeration enu = super.listOptions();
+    while (enu.hasMoreElements()) {
+      newVector.addElement(enu.nextElement());
+    }
+    return newVector.elements();
+  }
+
+  /**
+   * Parses a given list of options. Valid options are:<p>
+   *
+   * -W classname <br>
+   * Specify the full class name of the base learner.<p>
+   *
+   * -I num <br>
+   * Set the number of iterations (default 10). <p>
+   *
+   * -num-slots num <br>
+   * Set the number of execution slots (default 1). <p>
+   *
+   * Options after -- are passed to the designated classifier.<p>
+   *
+   * @param options the list of options as an array of strings
+   * @exception Exception if an option is not supported
+   */
+  public void setOptions(String[] options) throws Exception {
+
+    String numSlots = Utils.getOption("num-slots", options);
+    if (numSlots.length() != 0) {
+      setNumExecutionSlots(Integer.parseInt(numSlots));
+    } else {
+      setNumExecutionSlots(1);
+    }
+
+    super.setOptions(options);
+  }
+
+  /**
+   * Gets the current settings of the classifier.
+   *
+   * @return an array of strings suitable for passing to setOptions
+   */
+  public String [] getOptions() {
+
+    String [] superOptions = super.getOptions();
+    String [] options = new String [superOptions.length + 2];
+
+    int current = 0;
+    options[current++] = "-num-slots";
+    options[current++] = "" + getNumExecutionSlots();
+
+    System.arraycopy(superOptions, 0, options, current,
+		     superOptions.length);
+
+    return options;
+  }
+
+  /**
+   * Returns the tip text for this property
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of execution slots (threads) to use for "
+      + "constructing the ensemble and for batch predictions.";
+  }
+
+  /**
+   * Sets the number of execution slots (threads) to use.
+   *
+   * @param numSlots the number of slots to use
+   */
+  public void setNumExecutionSlots(int numSlots) {
+
+    m_numExecutionSlots = numSlots;
+  }
+
+  /**
+   * Gets the number of execution slots (threads) to use.
+   *
+   * @return the number of slots to use
+   */
+  public int getNumExecutionSlots() {
+
+    return m_numExecutionSlots;
+  }
+
+  /**
+   * Stump method for building the classifiers.
+   *
+   * @param data the training data to be used for generating the
+   * ensemble.
+   * @exception Exception if the classifier could not be built successfully
+   */
+  public void buildClassifier(Instances data) throws Exception {
+
+    if (m_numExecutionSlots < 1) {
+      throw new Exception("Number of execution slots needs to be >= 1!");
+    }
+    super.buildClassifier(data);
+  }
+
+  /**
+   * Returns the training set for a member of the ensemble. Called in member
+   * order from the building thread; any per-member setup (e.g. the seed of
+   * the member) is done here. The member may be replaced in
+   * <code>m_Classifiers</code> before returning.
+   *
+   * @param iteration the index of the member
+   * @return the training set of the member
+   * @exception Exception if the training set could not be generated
+   */
+  protected abstract Instances getTrainingSet(int iteration) throws Exception;
+
+  /**
+   * Builds the members of the ensemble, in parallel if more than one
+   * execution slot is available. At most twice as many training sets as
+   * there are slots are kept around at any time.
+   *
+   * @exception Exception if one of the members could not be built
+   */
+  protected void buildClassifiers() throws Exception {
+
+    if ((m_numExecutionSlots < 2) || (m_Classifiers.length < 2)) {
+      for (int i = 0; i < m_Classifiers.length; i++) {
+	Instances train = getTrainingSet(i);
+	m_Classifiers[i].buildClassifier(train);
+      }
+      return;
+    }
+
+    ExecutorService executor = newExecutorService();
+    try {
+      int window = 2 * m_numExecutionSlots;
+      Future<?>[] results = new Future<?>[m_Classifiers.length];
+      for (int i = 0; i < m_Classifiers.length; i++) {
+	if (i >= window) {
+	  waitFor(results[i - window]);
+	}
+	final Instances train = getTrainingSet(i);
+	final Classifier current = m_Classifiers[i];
+	final int iteration = i;
+	results[i] = executor.submit(new Callable<Object>() {
+	  public Object call() throws Exception {
+	    current.buildClassifier(train);
+	    if (m_Debug) {
+	      System.err.println("Built member " + (iteration + 1) + " of "
+		  + m_Classifiers.length);
+	    }
+	    return null;
+	  }
+	});
+      }
+      for (int i = 0; i < results.length; i++) {
+	waitFor(results[i]);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Calculates the class membership probabilities for the given test
+   * instances, using up to <code>numExecutionSlots</code> threads.
+   *
+   * @param insts the instances to be classified
+   * @return the predicted distributions
+   * @exception Exception if the distributions can't be computed successfully
+   */
+  public double[][] distributionsForInstances(Instances insts)
+    throws Exception {
+
+    double[][] result = new double[insts.numInstances()][];
+
+    if ((m_numExecutionSlots < 2) || (m_Classifiers.length < 2)) {
+      for (int i = 0; i < result.length; i++) {
+	result[i] = distributionForInstance(insts.instance(i));
+      }
+      return result;
+    }
+
+    int block = batchSize(insts);
+    ExecutorService executor = newExecutorService();
+    try {
+      for (int from = 0; from < result.length; from += block) {
+	int to = Math.min(result.length, from + block);
+	double[][][] preds = memberPredictions(executor, insts, from, to, null);
+	for (int i = from; i < to; i++) {
+	  result[i] = averagePredictions(insts.instance(i), preds, i - from);
+	}
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    return result;
+  }
+
+  /**
+   * Averages the predictions of the members for an instance, in member
+   * order, exactly like distributionForInstance does.
+   *
+   * @param instance the instance
+   * @param preds the predictions, indexed by member and instance
+   * @param index the index of the instance in the predictions
+   * @return the averaged (and normalized) prediction
+   */
+  protected double[] averagePredictions(Instance instance, double[][][] preds,
+					int index) {
+
+    double [] sums = new double [instance.numClasses()];
+    boolean numeric = instance.classAttribute().isNumeric();
+
+    for (int i = 0; i < m_NumIterations; i++) {
+      double[] newProbs = preds[i][index];
+      if (numeric) {
+	sums[0] += newProbs[0];
+      } else {
+	for (int j = 0; j < newProbs.length; j++)
+	  sums[j] += newProbs[j];
+      }
+    }
+    if (numeric) {
+      sums[0] /= (double)m_NumIterations;
+    } else if (!Utils.eq(Utils.sum(sums), 0)) {
+      Utils.normalize(sums);
+    }
+    return sums;
+  }
+
+  /**
+   * Computes the predictions of all members for a range of instances. The
+   * members are split into contiguous ranges, one per thread.
+   *
+   * @param executor the executor to run on
+   * @param insts the instances
+   * @param from the first instance (inclusive)
+   * @param to the last instance (exclusive)
+   * @param skip if not null, <code>skip[member][instance]</code> flags
+   * predictions that are not needed (left null)
+   * @return the predictions, indexed by member and instance - from; for a
+   * numeric class each array holds the predicted value
+   * @exception Exception if a prediction fails
+   */
+  protected double[][][] memberPredictions(ExecutorService executor,
+					   final Instances insts,
+					   final int from, final int to,
+					   final boolean[][] skip)
+    throws Exception {
+
+    final double[][][] preds = new double[m_Classifiers.length][to - from][];
+    int numTasks = Math.min(m_numExecutionSlots, m_Classifiers.length);
+    Future<?>[] results = new Future<?>[numTasks];
+    for (int t = 0; t < numTasks; t++) {
+      final int lo = (int) ((long) m_Classifiers.length * t / numTasks);
+      final int hi = (int) ((long) m_Classifiers.length * (t + 1) / numTasks);
+      results[t] = executor.submit(new Callable<Object>() {
+	public Object call() throws Exception {
+	  for (int j = lo; j < hi; j++) {
+	    for (int i = from; i < to; i++) {
+	      if ((skip == null) || !skip[j][i]) {
+		preds[j][i - from] = memberPrediction(j, insts.instance(i));
+	      }
+	    }
+	  }
+	  return null;
+	}
+      });
+    }
+    for (int t = 0; t < numTasks; t++) {
+      waitFor(results[t]);
+    }
+    return preds;
+  }
+
+  /**
+   * Returns the prediction of a single member.
+   *
+   * @param member the index of the member
+   * @param instance the instance to predict
+   * @return the distribution, or the predicted value for a numeric class
+   * @exception Exception if the prediction fails
+   */
+  protected double[] memberPrediction(int member, Instance instance)
+    throws Exception {
+
+    if (instance.classAttribute().isNumeric()) {
+      return new double[] {m_Classifiers[member].classifyInstance(instance)};
+    }
+    return m_Classifiers[member].distributionForInstance(instance);
+  }
+
+  /**
+   * Returns the number of instances predicted per batch, so that at most
+   * about <code>MAX_BATCH_CELLS</code> predicted values are buffered.
+   *
+   * @param insts the instances to predict
+   * @return the number of instances per batch
+   */
+  protected int batchSize(Instances insts) {
+
+    int perInstance = m_Classifiers.length * Math.max(1, insts.numClasses());
+    return Math.max(1, MAX_BATCH_CELLS / perInstance);
+  }
+
+  /**
+   * Creates a thread pool with one thread per execution slot (but no more
+   * threads than members). Callers must shut it down.
+   *
+   * @return the thread pool
+   */
+  protected ExecutorService newExecutorService() {
+
+    return Executors.newFixedThreadPool(Math.max(1,
+	Math.min(m_numExecutionSlots, m_Classifiers.length)));
+  }
+
+  /**
+   * Waits for a task to finish and rethrows the exception it failed with.
+   *
+   * @param result the task
+   * @exception Exception the exception thrown by the task
+   */
+  protected static void waitFor(Future<?> result) throws Exception {
+
+    try {
+      result.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception) {
+	throw (Exception) e.getCause();
+      }
+      throw e;
+    }
+  }
+}
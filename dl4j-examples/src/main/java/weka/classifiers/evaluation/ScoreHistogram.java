@@ -0,0 +1,227 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+/*
+ *    ScoreHistogram.java
+ *
+ */
+
+package weka.classifiers.evaluation;
+
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+
+import java.io.Serializable;
+
+/**
+ * Summarizes nominal predictions in a fixed amount of memory, as a
+ * replacement for collecting all the predictions when only threshold
+ * curves and the areas under them are needed. For every class, the
+ * predicted probabilities of that class are counted (with the instance
+ * weights) in equally wide bins over [0,1], separately for the instances
+ * that belong to the class and for those that do not. <p/>
+ *
+ * A threshold curve generated from the histogram has one point per
+ * non-empty bin (see {@link ThresholdCurve#getCurve(ScoreHistogram, int)}).
+ * Since only the order of instances that fall into the same bin is lost,
+ * the area under the ROC curve differs from the one of the exact curve by
+ * at most {@link #getROCAreaErrorBound(int)}. <p/>
+ *
+ * Histograms of the same size can be merged, e.g., the histograms of the
+ * folds of a cross-validation or of the shards of a test set that were
+ * evaluated in parallel.
+ *
+ * @version $Revision$
+ */
+public class ScoreHistogram
+  implements Serializable, RevisionHandler {
+
+  /** for serialization */
+  private static final long serialVersionUID = -6528411094337264385L;
+
+  /** the number of classes */
+  protected int m_NumClasses;
+
+  /** the number of bins per class */
+  protected int m_NumBins;
+
+  /** the weight of the positives per class and bin */
+  protected double[][] m_Positives;
+
+  /** the weight of the negatives per class and bin */
+  protected double[][] m_Negatives;
+
+  /**
+   * Initializes an empty histogram.
+   *
+   * @param numClasses the number of classes
+   * @param numBins the number of bins per class
+   * @throws IllegalArgumentException if the number of bins is less than 1
+   */
+  public ScoreHistogram(int numClasses, int numBins) {
+    if (numBins < 1) {
+      throw new IllegalArgumentException("Number of bins needs to be >= 1!");
+    }
+    m_NumClasses = numClasses;
+    m_NumBins = numBins;
+    m_Positives = new double[numClasses][numBins];
+    m_Negatives = new double[numClasses][numBins];
+  }
+
+  /**
+   * Returns the number of classes.
+   *
+   * @return the number of classes
+   */
+  public int numClasses() {
+    return m_NumClasses;
+  }
+
+  /**
+   * Returns the number of bins per class.
+   *
+   * @return the number of bins
+   */
+  public int numBins() {
+    return m_NumBins;
+  }
+
+  /**
+   * Returns the bin a probability falls into.
+   *
+   * @param prob the probability
+   * @return the index of the bin
+   */
+  public int binOf(double prob) {
+    int bin = (int) (prob * m_NumBins);
+    if (bin < 0) {
+      return 0;
+    }
+    if (bin >= m_NumBins) {
+      return m_NumBins - 1;
+    }
+    return bin;
+  }
+
+  /**
+   * Returns the smallest probability that falls into the given bin.
+   *
+   * @param bin the index of the bin
+   * @return the lower bound of the bin
+   */
+  public double lowerBound(int bin) {
+    return (double) bin / m_NumBins;
+  }
+
+  /**
+   * Adds a prediction. Predictions with a missing actual class value or
+   * a negative weight are skipped, as in ThresholdCurve.
+   *
+   * @param actual the actual class value (may be missing)
+   * @param distribution the predicted class distribution
+   * @param weight the weight of the prediction
+   */
+  public void add(double actual, double[] distribution, double weight) {
+    if ((actual == Prediction.MISSING_VALUE) || (weight < 0)) {
+      return;
+    }
+    int actualClass = (int) actual;
+    for (int i = 0; i < m_NumClasses; i++) {
+      int bin = binOf(distribution[i]);
+      if (i == actualClass) {
+        m_Positives[i][bin] += weight;
+      } else {
+        m_Negatives[i][bin] += weight;
+      }
+    }
+  }
+
+  /**
+   * Adds the counts of another histogram to this one.
+   *
+   * @param other the histogram to merge into this one
+   * @throws IllegalArgumentException if the histograms differ in the
+   * number of classes or bins
+   */
+  public void add(ScoreHistogram other) {
+    if ((other.m_NumClasses != m_NumClasses)
+        || (other.m_NumBins != m_NumBins)) {
+      throw new IllegalArgumentException("Histograms not compatible!");
+    }
+    for (int i = 0; i < m_NumClasses; i++) {
+      for (int j = 0; j < m_NumBins; j++) {
+        m_Positives[i][j] += other.m_Positives[i][j];
+        m_Negatives[i][j] += other.m_Negatives[i][j];
+      }
+    }
+  }
+
+  /**
+   * Returns the weight of the instances of the given class whose
+   * probability for the class falls into the bin.
+   *
+   * @param classIndex the index of the class to consider as "positive"
+   * @param bin the index of the bin
+   * @return the weight of the positives in the bin
+   */
+  public double positives(int classIndex, int bin) {
+    return m_Positives[classIndex][bin];
+  }
+
+  /**
+   * Returns the weight of the instances of the other classes whose
+   * probability for the given class falls into the bin.
+   *
+   * @param classIndex the index of the class to consider as "positive"
+   * @param bin the index of the bin
+   * @return the weight of the negatives in the bin
+   */
+  public double negatives(int classIndex, int bin) {
+    return m_Negatives[classIndex][bin];
+  }
+
+  /**
+   * Returns the largest possible difference between the area under the
+   * ROC curve of the histogram and the one of the exact curve: positives
+   * and negatives that share a bin are counted as half ordered correctly,
+   * while their actual order is unknown.
+   *
+   * @param classIndex the index of the class to consider as "positive"
+   * @return the error bound, or Double.NaN if there are no positives or
+   * no negatives
+   */
+  public double getROCAreaErrorBound(int classIndex) {
+    double totPos = 0, totNeg = 0, ties = 0;
+    for (int j = 0; j < m_NumBins; j++) {
+      totPos += m_Positives[classIndex][j];
+      totNeg += m_Negatives[classIndex][j];
+      ties += m_Positives[classIndex][j] * m_Negatives[classIndex][j];
+    }
+    if ((totPos == 0) || (totNeg == 0)) {
+      return Double.NaN;
+    }
+    return 0.5 * ties / (totPos * totNeg);
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return		the revision
+   */
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -210,6 +210,57 @@ public class ThresholdCurve
     return insts;
   }
 
+  /**
+   * Calculates the performance stats for the desired class from a histogram
+   * of the predicted probabilities and returns the results as a set of
+   * Instances. There is one point for every non-empty bin, with the lower
+   * bound of the bin as threshold, so the size of the curve is bounded by
+   * the number of bins.
+   *
+   * @param histogram the histogram to base the curve on
+   * @param classIndex index of the class of interest.
+   * @return datapoints as a set of instances (none if the histogram is
+   * empty), null if the class index is out of range.
+   */
+  public Instances getCurve(ScoreHistogram histogram, int classIndex) {
+
+    if (histogram.numClasses() <= classIndex) {
+      return null;
+    }
+
+    double totPos = 0, totNeg = 0;
+    for (int i = 0; i < histogram.numBins(); i++) {
+      totPos += histogram.positives(classIndex, i);
+      totNeg += histogram.negatives(classIndex, i);
+    }
+    Instances insts = makeHeader();
+    if (totPos + totNeg == 0) {
+      return insts;
+    }
+
+    TwoClassStats tc = new TwoClassStats(totPos, totNeg, 0, 0);
+    int last = -1;
+    for (int i = 0; i < histogram.numBins(); i++) {
+      double pos = histogram.positives(classIndex, i);
+      double neg = histogram.negatives(classIndex, i);
+      if (pos + neg == 0) {
+        continue;
+      }
+      insts.add(makeInstance(tc, histogram.lowerBound(i)));
+      tc.setTruePositive(tc.getTruePositive() - pos);
+      tc.setFalseNegative(tc.getFalseNegative() + pos);
+      tc.setFalsePositive(tc.getFalsePositive() - neg);
+      tc.setTrueNegative(tc.getTrueNegative() + neg);
+      last = i;
+    }
+
+    // the zero point
+    tc = new TwoClassStats(0, 0, totNeg, totPos);
+    insts.add(makeInstance(tc, histogram.lowerBound(last + 1)));
+
+    return insts;
+  }
+
   /**
    * Calculates the n point precision result, which is the precision averaged
    * over n evenly spaced (w.r.t recall) samples of the curve.
@@ -303,6 +354,35 @@ public class ThresholdCurve
     return area;
   }
 
+  /**
+   * Calculates the area under the precision-recall curve, as the sum of the
+   * precisions at the points of the curve weighted with the increase in
+   * recall over the previous point.
+   *
+   * @param tcurve a previously extracted threshold curve Instances.
+   * @return the PRC area, or Double.NaN if you don't pass in 
+   * a ThresholdCurve generated Instances. 
+   */
+  public static double getPRCArea(Instances tcurve) {
+
+    final int n = tcurve.numInstances();
+    if (!RELATION_NAME.equals(tcurve.relationName()) 
+        || (n == 0)) {
+      return Double.NaN;
+    }
+    final int precisInd = tcurve.attribute(PRECISION_NAME).index();
+    final int recallInd = tcurve.attribute(RECALL_NAME).index();
+    final double [] precisVals = tcurve.attributeToDoubleArray(precisInd);
+    final double [] recallVals = tcurve.attributeToDoubleArray(recallInd);
+
+    double area = 0.0;
+    for (int i = n - 2; i >= 0; i--) {
+      area += precisVals[i] * (recallVals[i] - recallVals[i + 1]);
+    }
+
+    return area;
+  }
+
   /**
    * Gets the index of the instance with the closest threshold value to the
    * desired target
@@ -30,6 +30,7 @@ import weka.core.Optimization;
 import weka.core.Option;
 import weka.core.OptionHandler;
 import weka.core.RevisionUtils;
+import weka.core.SparseInstance;
 import weka.core.TechnicalInformation;
 import weka.core.TechnicalInformationHandler;
 import weka.core.Utils;
@@ -44,6 +45,11 @@ import weka.filters.unsupervised.attribute.ReplaceMissingValues;
 
 import java.util.Enumeration;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  <!-- globalinfo-start -->
@@ -74,6 +80,8 @@ import java.util.Vector;
  * <br/>
  * Although original Logistic Regression does not deal with instance weights, we modify the algorithm a little bit to handle the instance weights.<br/>
  * <br/>
+ * For many attributes, a limited-memory Quasi-Newton method (L-BFGS) can be used instead, and sparse data is kept sparse: the normalization of the attributes is taken into account without storing the normalized values.<br/>
+ * <br/>
  * For more information see:<br/>
  * <br/>
  * le Cessie, S., van Houwelingen, J.C. (1992). Ridge Estimators in Logistic Regression. Applied Statistics. 41(1):191-201.<br/>
@@ -110,6 +118,14 @@ import java.util.Vector;
  * <pre> -M &lt;number&gt;
  *  Set the maximum number of iterations (default -1, until convergence).</pre>
  * 
+ * <pre> -H &lt;number&gt;
+ *  Set the number of corrections kept by the limited-memory
+ *  BFGS method (default 0, BFGS with the full Hessian).</pre>
+ * 
+ * <pre> -num-slots &lt;num&gt;
+ *  Number of execution slots for evaluating the log-likelihood.
+ *  (default 1 - i.e. no parallelism)</pre>
+ * 
  <!-- options-end -->
  *
  * @author Xin Xu (xx5@cs.waikato.ac.nz)
@@ -126,6 +142,15 @@ public class Logistic extends Classifier
     
   /** The data saved as a matrix */
   protected double [][] m_Data;
+
+  /** The indices of the non-zero predictor values, if the data is sparse */
+  protected int [][] m_SparseIndices;
+
+  /** The non-zero predictor values divided by their standard deviation */
+  protected double [][] m_SparseValues;
+
+  /** The means of the predictors divided by their standard deviation */
+  protected double [] m_SparseShift;
     
   /** The number of attributes in the model */
   protected int m_NumPredictors;
@@ -157,6 +182,12 @@ public class Logistic extends Classifier
   /** The maximum number of iterations. */
   private int m_MaxIts = -1;
 
+  /** The number of corrections kept by L-BFGS, 0 for BFGS. */
+  protected int m_HistorySize = 0;
+
+  /** The number of threads evaluating the log-likelihood. */
+  protected int m_NumExecutionSlots = 1;
+
   private Instances m_structure;
     
   /**
@@ -188,6 +219,10 @@ public class Logistic extends Classifier
       +"Although original Logistic Regression does not deal with instance "
       +"weights, we modify the algorithm a little bit to handle the "
       +"instance weights.\n\n"
+      +"For many attributes, a limited-memory Quasi-Newton method (L-BFGS) "
+      +"can be used instead, and sparse data is kept sparse: the "
+      +"normalization of the attributes is taken into account without "
+      +"storing the normalized values.\n\n"
       +"For more information see:\n\n"
       + getTechnicalInformation().toString() + "\n\n"
       +"Note: Missing values are replaced using a ReplaceMissingValuesFilter, and "
@@ -223,7 +258,7 @@ public class Logistic extends Classifier
    * @return an enumeration of all the available options
    */
   public Enumeration listOptions() {
-    Vector newVector = new Vector(3);
+    Vector newVector = new Vector(5);
     newVector.addElement(new Option("\tTurn on debugging output.",
 				    "D", 0, "-D"));
     newVector.addElement(new Option("\tSet the ridge in the log-likelihood.",
@@ -231,6 +266,12 @@ public class Logistic extends Classifier
     newVector.addElement(new Option("\tSet the maximum number of iterations"+
 				    " (default -1, until convergence).",
 				    "M", 1, "-M <number>"));
+    newVector.addElement(new Option("\tSet the number of corrections kept by the limited-memory\n"+
+				    "\tBFGS method (default 0, BFGS with the full Hessian).",
+				    "H", 1, "-H <number>"));
+    newVector.addElement(new Option("\tNumber of execution slots for evaluating the log-likelihood.\n"+
+				    "\t(default 1 - i.e. no parallelism)",
+				    "num-slots", 1, "-num-slots <num>"));
     return newVector.elements();
   }
     
@@ -249,6 +290,14 @@ public class Logistic extends Classifier
    * <pre> -M &lt;number&gt;
    *  Set the maximum number of iterations (default -1, until convergence).</pre>
    * 
+   * <pre> -H &lt;number&gt;
+   *  Set the number of corrections kept by the limited-memory
+   *  BFGS method (default 0, BFGS with the full Hessian).</pre>
+   * 
+   * <pre> -num-slots &lt;num&gt;
+   *  Number of execution slots for evaluating the log-likelihood.
+   *  (default 1 - i.e. no parallelism)</pre>
+   * 
    <!-- options-end -->
    *
    * @param options the list of options as an array of strings
@@ -268,6 +317,18 @@ public class Logistic extends Classifier
       m_MaxIts = Integer.parseInt(maxItsString);
     else 
       m_MaxIts = -1;
+
+    String historyString = Utils.getOption('H', options);
+    if (historyString.length() != 0) 
+      setHistorySize(Integer.parseInt(historyString));
+    else 
+      setHistorySize(0);
+
+    String slotsString = Utils.getOption("num-slots", options);
+    if (slotsString.length() != 0) 
+      setNumExecutionSlots(Integer.parseInt(slotsString));
+    else 
+      setNumExecutionSlots(1);
   }
     
   /**
@@ -277,7 +338,7 @@ public class Logistic extends Classifier
    */
   public String [] getOptions() {
 	
-    String [] options = new String [5];
+    String [] options = new String [9];
     int current = 0;
 	
     if (getDebug()) 
@@ -286,6 +347,10 @@ public class Logistic extends Classifier
     options[current++] = ""+m_Ridge;	
     options[current++] = "-M";
     options[current++] = ""+m_MaxIts;
+    options[current++] = "-H";
+    options[current++] = ""+m_HistorySize;
+    options[current++] = "-num-slots";
+    options[current++] = ""+m_NumExecutionSlots;
     while (current < options.length) 
       options[current++] = "";
     return options;
@@ -373,6 +438,67 @@ public class Logistic extends Classifier
 	
     m_MaxIts = newMaxIts;
   }    
+   
+  /**
+   * Returns the tip text for this property
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String historySizeTipText() {
+    return "The number of corrections kept by the limited-memory BFGS method "
+      +"(L-BFGS), which needs memory linear in the number of attributes. "
+      +"0 uses BFGS with the full Hessian, whose size is quadratic in the "
+      +"number of attributes.";
+  }
+
+  /**
+   * Get the number of corrections kept by L-BFGS.
+   *
+   * @return the history size, 0 for BFGS with the full Hessian
+   */
+  public int getHistorySize() {
+    return m_HistorySize;
+  }
+    
+  /**
+   * Set the number of corrections kept by L-BFGS.
+   *
+   * @param size the history size, 0 for BFGS with the full Hessian
+   */
+  public void setHistorySize(int size) {
+    m_HistorySize = size;
+  }    
+   
+  /**
+   * Returns the tip text for this property
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of execution slots (threads) used to evaluate the "
+      +"log-likelihood and its gradient, each on a range of the instances.";
+  }
+
+  /**
+   * Get the number of execution slots.
+   *
+   * @return the number of execution slots
+   */
+  public int getNumExecutionSlots() {
+    return m_NumExecutionSlots;
+  }
+    
+  /**
+   * Set the number of execution slots.
+   *
+   * @param slots the number of execution slots
+   * @throws Exception if the number is less than 1
+   */
+  public void setNumExecutionSlots(int slots) throws Exception {
+    if (slots < 1)
+      throw new Exception("Number of execution slots needs to be >= 1!");
+    m_NumExecutionSlots = slots;
+  }    
     
   private class OptEng extends Optimization{
     /** Weights of instances in the data */
@@ -380,6 +506,9 @@ public class Logistic extends Classifier
 
     /** Class labels of instances */
     private int[] cls;
+
+    /** Thread pool for evaluating ranges of instances, null if sequential */
+    private ExecutorService pool;
 	
     /** 
      * Set the weights of instances
@@ -396,25 +525,70 @@ public class Logistic extends Classifier
     public void setClassLabels(int[] c) {
       cls = c;
     }
+
+    /**
+     * Set the thread pool used to evaluate the objective function and
+     * gradient in parallel, one range of instances per thread
+     * @param p the thread pool, null to evaluate sequentially
+     */
+    public void setPool(ExecutorService p) {
+      pool = p;
+    }
 	
     /** 
      * Evaluate objective function
      * @param x the current values of variables
      * @return the value of the objective function 
+     * @throws Exception if the evaluation fails
      */
-    protected double objectiveFunction(double[] x){
-      double nll = 0; // -LogLikelihood
+    protected double objectiveFunction(final double[] x) throws Exception{
+      double nll; // -LogLikelihood
       int dim = m_NumPredictors+1; // Number of variables per class
+      final double[] shift = sparseShift(x);
+
+      if (pool == null) {
+	nll = objectiveFunction(x, shift, 0, cls.length);
+      } else {
+	Future<Double>[] results = new Future[m_NumExecutionSlots];
+	for (int t = 0; t < results.length; t++) {
+	  final int from = (int) ((long) cls.length * t / results.length);
+	  final int to = (int) ((long) cls.length * (t + 1) / results.length);
+	  results[t] = pool.submit(new Callable<Double>() {
+	    public Double call() {
+	      return objectiveFunction(x, shift, from, to);
+	    }
+	  });
+	}
+	nll = 0;
+	for (int t = 0; t < results.length; t++) {
+	  nll += result(results[t]);
+	}
+      }
 	    
-      for(int i=0; i<cls.length; i++){ // ith instance
+      // Ridge: note that intercepts NOT included
+      for(int offset=0; offset<m_NumClasses-1; offset++){
+	for(int r=1; r<dim; r++)
+	  nll += m_Ridge*x[offset*dim+r]*x[offset*dim+r];
+      }
+	    
+      return nll;
+    }
+
+    /** 
+     * Evaluate the negative log-likelihood of a range of instances
+     * @param x the current values of variables
+     * @param shift the shift of the normalized sparse data, null if dense
+     * @param from the first instance
+     * @param to the instance after the last one
+     * @return the negative log-likelihood of the instances
+     */
+    private double objectiveFunction(double[] x, double[] shift, int from, int to){
+      double nll = 0; // -LogLikelihood
+	    
+      for(int i=from; i<to; i++){ // ith instance
 
 	double[] exp = new double[m_NumClasses-1];
-	int index;
-	for(int offset=0; offset<m_NumClasses-1; offset++){ 
-	  index = offset * dim;
-	  for(int j=0; j<dim; j++)
-	    exp[offset] += m_Data[i][j]*x[index + j];
-	}
+	linearPredictors(i, x, shift, exp);
 	double max = exp[Utils.maxIndex(exp)];
 	double denom = Math.exp(-max);
 	double num;
@@ -430,34 +604,89 @@ public class Logistic extends Classifier
 	nll -= weights[i]*(num - Math.log(denom)); // Weighted NLL
       }
 	    
+      return nll;
+    }
+
+    /** 
+     * Evaluate Jacobian vector
+     * @param x the current values of variables
+     * @return the gradient vector 
+     * @throws Exception if the evaluation fails
+     */
+    protected double[] evaluateGradient(final double[] x) throws Exception{
+      double[] grad;
+      int dim = m_NumPredictors+1; // Number of variables per class
+      final double[] shift = sparseShift(x);
+      // Sums of the weighted residuals of each class (sparse data only)
+      double[] residuals = (shift != null) ? new double[m_NumClasses-1] : null;
+
+      if (pool == null) {
+	grad = new double[x.length];
+	evaluateGradient(x, shift, 0, cls.length, grad, residuals);
+      } else {
+	Future<double[][]>[] results = new Future[m_NumExecutionSlots];
+	for (int t = 0; t < results.length; t++) {
+	  final int from = (int) ((long) cls.length * t / results.length);
+	  final int to = (int) ((long) cls.length * (t + 1) / results.length);
+	  results[t] = pool.submit(new Callable<double[][]>() {
+	    public double[][] call() {
+	      double[] g = new double[x.length];
+	      double[] r = (shift != null) ? new double[m_NumClasses-1] : null;
+	      evaluateGradient(x, shift, from, to, g, r);
+	      return new double[][]{g, r};
+	    }
+	  });
+	}
+	grad = result(results[0])[0];
+	if (residuals != null) {
+	  residuals = result(results[0])[1];
+	}
+	for (int t = 1; t < results.length; t++) {
+	  double[][] partial = result(results[t]);
+	  for (int p = 0; p < grad.length; p++) {
+	    grad[p] += partial[0][p];
+	  }
+	  for (int c = 0; residuals != null && c < residuals.length; c++) {
+	    residuals[c] += partial[1][c];
+	  }
+	}
+      }
+
+      // Sparse data: gradient of the shift of the normalized values
+      if (residuals != null) {
+	for(int offset=0; offset<m_NumClasses-1; offset++){
+	  for(int r=1; r<dim; r++)
+	    grad[offset*dim+r] -= m_SparseShift[r]*residuals[offset];
+	}
+      }
+	    
       // Ridge: note that intercepts NOT included
       for(int offset=0; offset<m_NumClasses-1; offset++){
 	for(int r=1; r<dim; r++)
-	  nll += m_Ridge*x[offset*dim+r]*x[offset*dim+r];
+	  grad[offset*dim+r] += 2*m_Ridge*x[offset*dim+r];
       }
 	    
-      return nll;
+      return grad;
     }
 
     /** 
-     * Evaluate Jacobian vector
+     * Add the gradient of the negative log-likelihood of a range of
+     * instances
      * @param x the current values of variables
-     * @return the gradient vector 
+     * @param shift the shift of the normalized sparse data, null if dense
+     * @param from the first instance
+     * @param to the instance after the last one
+     * @param grad the gradient to add to
+     * @param residuals the sums of the weighted residuals of each class to
+     * add to, null if dense
      */
-    protected double[] evaluateGradient(double[] x){
-      double[] grad = new double[x.length];
+    private void evaluateGradient(double[] x, double[] shift, int from, int to,
+				  double[] grad, double[] residuals){
       int dim = m_NumPredictors+1; // Number of variables per class
 	    
-      for(int i=0; i<cls.length; i++){ // ith instance
+      for(int i=from; i<to; i++){ // ith instance
 	double[] num=new double[m_NumClasses-1]; // numerator of [-log(1+sum(exp))]'
-	int index;
-	for(int offset=0; offset<m_NumClasses-1; offset++){ // Which part of x
-	  double exp=0.0;
-	  index = offset * dim;
-	  for(int j=0; j<dim; j++)
-	    exp += m_Data[i][j]*x[index + j];
-	  num[offset] = exp;
-	}
+	linearPredictors(i, x, shift, num);
 
 	double max = num[Utils.maxIndex(num)];
 	double denom = Math.exp(-max); // Denominator of [-log(1+sum(exp))]'
@@ -469,28 +698,109 @@ public class Logistic extends Classifier
 		
 	// Update denominator of the gradient of -log(Posterior)
 	double firstTerm;
-	for(int offset=0; offset<m_NumClasses-1; offset++){ // Which part of x
-	  index = offset * dim;
-	  firstTerm = weights[i] * num[offset];
-	  for(int q=0; q<dim; q++){
-	    grad[index + q] += firstTerm * m_Data[i][q];
+	int index;
+	if (shift == null) {
+	  for(int offset=0; offset<m_NumClasses-1; offset++){ // Which part of x
+	    index = offset * dim;
+	    firstTerm = weights[i] * num[offset];
+	    for(int q=0; q<dim; q++){
+	      grad[index + q] += firstTerm * m_Data[i][q];
+	    }
 	  }
-	}
 		
-	if(cls[i] != m_NumClasses-1){ // Not the last class
-	  for(int p=0; p<dim; p++){
-	    grad[cls[i]*dim+p] -= weights[i]*m_Data[i][p]; 
+	  if(cls[i] != m_NumClasses-1){ // Not the last class
+	    for(int p=0; p<dim; p++){
+	      grad[cls[i]*dim+p] -= weights[i]*m_Data[i][p]; 
+	    }
+	  }
+	} else {
+	  int[] indices = m_SparseIndices[i];
+	  double[] values = m_SparseValues[i];
+	  for(int offset=0; offset<m_NumClasses-1; offset++){ // Which part of x
+	    index = offset * dim;
+	    firstTerm = weights[i] * num[offset];
+	    grad[index] += firstTerm;
+	    for(int p=0; p<indices.length; p++){
+	      grad[index + indices[p]] += firstTerm * values[p];
+	    }
+	    residuals[offset] += firstTerm;
+	  }
+
+	  if(cls[i] != m_NumClasses-1){ // Not the last class
+	    index = cls[i] * dim;
+	    grad[index] -= weights[i];
+	    for(int p=0; p<indices.length; p++){
+	      grad[index + indices[p]] -= weights[i] * values[p];
+	    }
+	    residuals[cls[i]] -= weights[i];
 	  }
 	}
       }
-	    
-      // Ridge: note that intercepts NOT included
+    }
+
+    /**
+     * Compute the linear predictor Xi*Bj of each class j (except the last)
+     * for an instance
+     * @param i the index of the instance
+     * @param x the current values of variables
+     * @param shift the shift of the normalized sparse data, null if dense
+     * @param exp the array for the linear predictors, filled with zeros
+     */
+    private void linearPredictors(int i, double[] x, double[] shift, double[] exp){
+      int dim = m_NumPredictors+1; // Number of variables per class
+      int index;
+      if (shift == null) {
+	for(int offset=0; offset<m_NumClasses-1; offset++){ 
+	  index = offset * dim;
+	  for(int j=0; j<dim; j++)
+	    exp[offset] += m_Data[i][j]*x[index + j];
+	}
+      } else {
+	int[] indices = m_SparseIndices[i];
+	double[] values = m_SparseValues[i];
+	for(int offset=0; offset<m_NumClasses-1; offset++){ 
+	  index = offset * dim;
+	  double sum = x[index] + shift[offset];
+	  for(int p=0; p<indices.length; p++)
+	    sum += values[p]*x[index + indices[p]];
+	  exp[offset] = sum;
+	}
+      }
+    }
+
+    /**
+     * For sparse data, compute the contribution of the shift of the
+     * normalized values (the normalized value of a zero is not zero) to
+     * the linear predictor of each class
+     * @param x the current values of variables
+     * @return the contributions, null for dense data
+     */
+    private double[] sparseShift(double[] x){
+      if (m_SparseIndices == null)
+	return null;
+      int dim = m_NumPredictors+1; // Number of variables per class
+      double[] shift = new double[m_NumClasses-1];
       for(int offset=0; offset<m_NumClasses-1; offset++){
 	for(int r=1; r<dim; r++)
-	  grad[offset*dim+r] += 2*m_Ridge*x[offset*dim+r];
+	  shift[offset] -= m_SparseShift[r]*x[offset*dim+r];
+      }
+      return shift;
+    }
+
+    /**
+     * Wait for the result of a range of instances
+     * @param result the future result
+     * @return the result
+     * @throws Exception if the evaluation failed
+     */
+    private <T> T result(Future<T> result) throws Exception{
+      try {
+	return result.get();
+      } catch (ExecutionException e) {
+	if (e.getCause() instanceof Exception)
+	  throw (Exception) e.getCause();
+	throw e;
       }
-	    
-      return grad;
     }
     
     /**
@@ -566,7 +876,21 @@ public class Logistic extends Classifier
     int nR = m_NumPredictors = train.numAttributes() - 1;
     int nC = train.numInstances();
 	
-    m_Data = new double[nC][nR + 1];               // Data values
+    // Sparse data is kept sparse
+    boolean sparse = (nC > 0);
+    for (int i = 0; sparse && (i < nC); i++) {
+      sparse = (train.instance(i) instanceof SparseInstance);
+    }
+    m_Data = null;
+    m_SparseIndices = null;
+    m_SparseValues = null;
+    m_SparseShift = null;
+    if (sparse) {
+      m_SparseIndices = new int[nC][];
+      m_SparseValues = new double[nC][];
+    } else {
+      m_Data = new double[nC][nR + 1];             // Data values
+    }
     int [] Y  = new int[nC];                       // Class labels
     double [] xMean= new double[nR + 1];           // Attribute means
     double [] xSD  = new double[nR + 1];           // Attribute stddev's
@@ -586,15 +910,36 @@ public class Logistic extends Classifier
       weights[i] = current.weight();     // Dealing with weights
       totWeights += weights[i];
 	    
-      m_Data[i][0] = 1;
-      int j = 1;
-      for (int k = 0; k <= nR; k++) {
-	if (k != m_ClassIndex) {
-	  double x = current.value(k);
-	  m_Data[i][j] = x;
-	  xMean[j] += weights[i]*x;
-	  xSD[j] += weights[i]*x*x;
-	  j++;
+      if (sparse) {
+	int[] indices = new int[current.numValues()];
+	double[] values = new double[current.numValues()];
+	int n = 0;
+	for (int p = 0; p < current.numValues(); p++) {
+	  int k = current.index(p);
+	  double x = current.valueSparse(p);
+	  if ((k != m_ClassIndex) && (x != 0)) {
+	    int j = (k < m_ClassIndex) ? k + 1 : k;
+	    indices[n] = j;
+	    values[n++] = x;
+	    xMean[j] += weights[i]*x;
+	    xSD[j] += weights[i]*x*x;
+	  }
+	}
+	m_SparseIndices[i] = new int[n];
+	System.arraycopy(indices, 0, m_SparseIndices[i], 0, n);
+	m_SparseValues[i] = new double[n];
+	System.arraycopy(values, 0, m_SparseValues[i], 0, n);
+      } else {
+	m_Data[i][0] = 1;
+	int j = 1;
+	for (int k = 0; k <= nR; k++) {
+	  if (k != m_ClassIndex) {
+	    double x = current.value(k);
+	    m_Data[i][j] = x;
+	    xMean[j] += weights[i]*x;
+	    xSD[j] += weights[i]*x*x;
+	    j++;
+	  }
 	}
       }
 	    
@@ -628,10 +973,28 @@ public class Logistic extends Classifier
     }
 	
     // Normalise input data 
-    for (int i = 0; i < nC; i++) {
-      for (int j = 0; j <= nR; j++) {
+    if (sparse) {
+      // only scaled, the mean is subtracted in the linear predictors
+      m_SparseShift = new double[nR + 1];
+      for (int j = 1; j <= nR; j++) {
 	if (xSD[j] != 0) {
-	  m_Data[i][j] = (m_Data[i][j] - xMean[j]) / xSD[j];
+	  m_SparseShift[j] = xMean[j] / xSD[j];
+	}
+      }
+      for (int i = 0; i < nC; i++) {
+	for (int p = 0; p < m_SparseIndices[i].length; p++) {
+	  int j = m_SparseIndices[i][p];
+	  if (xSD[j] != 0) {
+	    m_SparseValues[i][p] /= xSD[j];
+	  }
+	}
+      }
+    } else {
+      for (int i = 0; i < nC; i++) {
+	for (int j = 0; j <= nR; j++) {
+	  if (xSD[j] != 0) {
+	    m_Data[i][j] = (m_Data[i][j] - xMean[j]) / xSD[j];
+	  }
 	}
       }
     }
@@ -660,29 +1023,44 @@ public class Logistic extends Classifier
     opt.setDebug(m_Debug);
     opt.setWeights(weights);
     opt.setClassLabels(Y);
+    opt.setHistorySize(m_HistorySize);
 
-    if(m_MaxIts == -1){  // Search until convergence
-      x = opt.findArgmin(x, b);
-      while(x==null){
-	x = opt.getVarbValues();
+    ExecutorService pool = null;
+    if ((m_NumExecutionSlots > 1) && (nC > 1)) {
+      pool = Executors.newFixedThreadPool(m_NumExecutionSlots);
+      opt.setPool(pool);
+    }
+    try {
+      if(m_MaxIts == -1){  // Search until convergence
+	x = opt.findArgmin(x, b);
+	while(x==null){
+	  x = opt.getVarbValues();
+	  if (m_Debug)
+	    System.out.println("200 iterations finished, not enough!");
+	  x = opt.findArgmin(x, b);
+	}
 	if (m_Debug)
-	  System.out.println("200 iterations finished, not enough!");
+	  System.out.println(" -------------<Converged>--------------");
+      }
+      else{
+	opt.setMaxIteration(m_MaxIts);
 	x = opt.findArgmin(x, b);
+	if(x==null) // Not enough, but use the current value
+	  x = opt.getVarbValues();
+      }
+    } finally {
+      if (pool != null) {
+	pool.shutdownNow();
       }
-      if (m_Debug)
-	System.out.println(" -------------<Converged>--------------");
-    }
-    else{
-      opt.setMaxIteration(m_MaxIts);
-      x = opt.findArgmin(x, b);
-      if(x==null) // Not enough, but use the current value
-	x = opt.getVarbValues();
     }
 	
     m_LL = -opt.getMinFunction(); // Log-likelihood
 
     // Don't need data matrix anymore
     m_Data = null;
+    m_SparseIndices = null;
+    m_SparseValues = null;
+    m_SparseShift = null;
 	    
     // Convert coefficients back to non-normalized attribute units
     for(int i=0; i < nK; i++){
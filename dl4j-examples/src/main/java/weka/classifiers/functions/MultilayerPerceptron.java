@@ -22,6 +22,7 @@
 package weka.classifiers.functions;
 
 import weka.classifiers.Classifier;
+import weka.classifiers.functions.neural.CompiledNetwork;
 import weka.classifiers.functions.neural.LinearUnit;
 import weka.classifiers.functions.neural.NeuralConnection;
 import weka.classifiers.functions.neural.NeuralNode;
@@ -140,6 +141,14 @@ import javax.swing.JTextField;
  *  Learning rate decay will occur.
  *  (Set this to cause the learning rate to decay).</pre>
  * 
+ * <pre> -mini-batch-size &lt;num&gt;
+ *  The number of instances per weight update.
+ *  (Value should be &gt; 0, Default = 1, i.e. online updates).</pre>
+ * 
+ * <pre> -num-slots &lt;num&gt;
+ *  Number of execution slots for a mini-batch.
+ *  (default 1 - i.e. no parallelism)</pre>
+ * 
  <!-- options-end -->
  *
  * @author Malcolm Ware (mfw4@cs.waikato.ac.nz)
@@ -993,6 +1002,12 @@ public class MultilayerPerceptron
   /** This flag states that the user wants the learning rate to decay. */
   private boolean m_decay;
 
+  /** The number of instances per weight update (1 for online updates). */
+  private int m_miniBatchSize;
+
+  /** The number of threads used for a mini-batch. */
+  private int m_numExecutionSlots;
+
   /** This is the learning rate for the network. */
   private double m_learningRate;
 
@@ -1076,6 +1091,8 @@ public class MultilayerPerceptron
     m_momentum = .2;
     m_reset = true;
     m_decay = false;
+    m_miniBatchSize = 1;
+    m_numExecutionSlots = 1;
   }
 
   /**
@@ -1092,6 +1109,43 @@ public class MultilayerPerceptron
     return m_decay;
   }
 
+  /**
+   * Set the number of instances per weight update.
+   * Must be greater than 0.
+   * @param n The mini-batch size.
+   */
+  public void setMiniBatchSize(int n) {
+    if (n > 0) {
+      m_miniBatchSize = n;
+    }
+  }
+
+  /**
+   * @return The number of instances per weight update.
+   */
+  public int getMiniBatchSize() {
+    return m_miniBatchSize;
+  }
+
+  /**
+   * Set the number of execution slots (threads) to use for a mini-batch.
+   * @param slots The number of execution slots.
+   * @throws Exception if the number is less than 1.
+   */
+  public void setNumExecutionSlots(int slots) throws Exception {
+    if (slots < 1) {
+      throw new Exception("Number of execution slots needs to be >= 1!");
+    }
+    m_numExecutionSlots = slots;
+  }
+
+  /**
+   * @return The number of execution slots.
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
   /**
    * This sets the network up to be able to reset itself with the current 
    * settings and the learning rate at half of what it is currently. This
@@ -1570,6 +1624,37 @@ public class MultilayerPerceptron
 
   }
   
+  /**
+   * This collects the values of the input units and the targets of the
+   * output units for each training instance, so that a compiled network
+   * can be trained with them (the training instances never miss the class).
+   * @param values The array to fill with the input values.
+   * @param targets The array to fill with the target values.
+   * @param weights The array to fill with the instance weights.
+   */
+  private void networkData(double[][] values, double[][] targets,
+			   double[] weights) {
+    for (int noa = 0; noa < m_instances.numInstances(); noa++) {
+      Instance inst = m_instances.instance(noa);
+      values[noa] = new double[m_numAttributes];
+      for (int nob = 0; nob < m_numAttributes; nob++) {
+	if (!inst.isMissing(m_inputs[nob].getLink())) {
+	  values[noa][nob] = inst.value(m_inputs[nob].getLink());
+	}
+      }
+      targets[noa] = new double[m_numClasses];
+      for (int nob = 0; nob < m_numClasses; nob++) {
+	if (m_numeric) {
+	  targets[noa][nob] = inst.classValue();
+	}
+	else if (inst.classValue() == m_outputs[nob].getLink()) {
+	  targets[noa][nob] = 1;
+	}
+      }
+      weights[noa] = inst.weight();
+    }
+  }
+  
   /**
    * This creates the required input units.
    */
@@ -1938,141 +2023,185 @@ public class MultilayerPerceptron
     }
     m_stopped = false;
      
-
-    for (int noa = 1; noa < m_numEpochs + 1; noa++) {
-      right = 0;
-      for (int nob = numInVal; nob < m_instances.numInstances(); nob++) {
-	m_currentInstance = m_instances.instance(nob);
-	
-	if (!m_currentInstance.classIsMissing()) {
-	   
-	  //this is where the network updating (and training occurs, for the
-	  //training set
-	  resetNetwork();
-	  calculateOutputs();
-	  tempRate = m_learningRate * m_currentInstance.weight();  
-	  if (m_decay) {
-	    tempRate /= noa;
-	  }
-
-	  right += (calculateErrors() / m_instances.numClasses()) *
-	    m_currentInstance.weight();
-	  updateNetworkWeights(tempRate, m_momentum);
-	  
-	}
-	
-      }
-      right /= totalWeight;
-      if (Double.isInfinite(right) || Double.isNaN(right)) {
-	if (!m_reset) {
-	  m_instances = null;
-	  throw new Exception("Network cannot train. Try restarting with a" +
-			      " smaller learning rate.");
-	}
-	else {
-	  //reset the network if possible
-	  if (m_learningRate <= Utils.SMALL)
-	    throw new IllegalStateException(
-		"Learning rate got too small (" + m_learningRate 
-		+ " <= " + Utils.SMALL + ")!");
-	  m_learningRate /= 2;
-	  buildClassifier(i);
-	  m_learningRate = origRate;
-	  m_instances = new Instances(m_instances, 0);
-	  m_currentInstance = null;
-	  return;
-	}
+    //without the gui the network is trained from flat arrays
+    CompiledNetwork network = null;
+    double[][] values = null;
+    double[][] targets = null;
+    double[] weights = null;
+    if (!m_gui) {
+      network = CompiledNetwork.compile(m_inputs, m_neuralNodes, m_outputs);
+    }
+    if (network != null) {
+      if (m_numeric && m_normalizeClass) {
+	network.setOutputScaling(m_attributeRanges[m_instances.classIndex()],
+				 m_attributeBases[m_instances.classIndex()]);
       }
+      network.setMiniBatchSize(m_miniBatchSize);
+      network.setNumExecutionSlots(m_numExecutionSlots);
+      values = new double[m_instances.numInstances()][];
+      targets = new double[m_instances.numInstances()][];
+      weights = new double[m_instances.numInstances()];
+      networkData(values, targets, weights);
+    }
 
-      ////////////////////////do validation testing if applicable
-      if (m_valSize != 0) {
+    if (network != null) {
+      network.startExecutorPool();
+    }
+    try {
+      for (int noa = 1; noa < m_numEpochs + 1; noa++) {
 	right = 0;
-	for (int nob = 0; nob < valSet.numInstances(); nob++) {
-	  m_currentInstance = valSet.instance(nob);
-	  if (!m_currentInstance.classIsMissing()) {
-	    //this is where the network updating occurs, for the validation set
-	    resetNetwork();
-	    calculateOutputs();
-	    right += (calculateErrors() / valSet.numClasses()) 
-	      * m_currentInstance.weight();
-	    //note 'right' could be calculated here just using
-	    //the calculate output values. This would be faster.
-	    //be less modular
-	  }
-	  
+	if (network != null) {
+	  right = network.train(values, targets, weights, numInVal,
+				m_instances.numInstances(), m_learningRate,
+				m_momentum, m_decay ? noa : 1);
 	}
-	
-	if (right < lastRight) {
+	else {
+	  for (int nob = numInVal; nob < m_instances.numInstances(); nob++) {
+	    m_currentInstance = m_instances.instance(nob);
 	  
-	  if (right < bestError) {
-	    bestError = right;
-	    // save the network weights at this point
-	    for (int noc = 0; noc < m_numClasses; noc++) {
-	      m_outputs[noc].saveWeights();
+	    if (!m_currentInstance.classIsMissing()) {
+	    
+	      //this is where the network updating (and training occurs, for the
+	      //training set
+	      resetNetwork();
+	      calculateOutputs();
+	      tempRate = m_learningRate * m_currentInstance.weight();  
+	      if (m_decay) {
+		tempRate /= noa;
+	      }
+	    
+	      right += (calculateErrors() / m_instances.numClasses()) *
+		m_currentInstance.weight();
+	      updateNetworkWeights(tempRate, m_momentum);
+	    
 	    }
-	    driftOff = 0;
+	  
 	  }
 	}
-	else {
-	  driftOff++;
-	}
-	lastRight = right;
-	if (driftOff > m_driftThreshold || noa + 1 >= m_numEpochs) {
-	  for (int noc = 0; noc < m_numClasses; noc++) {
-            m_outputs[noc].restoreWeights();
-          }
-	  m_accepted = true;
+	right /= totalWeight;
+	if (Double.isInfinite(right) || Double.isNaN(right)) {
+	  if (!m_reset) {
+	    m_instances = null;
+	    throw new Exception("Network cannot train. Try restarting with a" +
+				" smaller learning rate.");
+	  }
+	  else {
+	    //reset the network if possible
+	    if (m_learningRate <= Utils.SMALL)
+	      throw new IllegalStateException(
+		  "Learning rate got too small (" + m_learningRate 
+		  + " <= " + Utils.SMALL + ")!");
+	    m_learningRate /= 2;
+	    buildClassifier(i);
+	    m_learningRate = origRate;
+	    m_instances = new Instances(m_instances, 0);
+	    m_currentInstance = null;
+	    return;
+	  }
 	}
-	right /= totalValWeight;
-      }
-      m_epoch = noa;
-      m_error = right;
-      //shows what the neuralnet is upto if a gui exists. 
-      updateDisplay();
-      //This junction controls what state the gui is in at the end of each
-      //epoch, Such as if it is paused, if it is resumable etc...
-      if (m_gui) {
-	while ((m_stopIt || (m_epoch >= m_numEpochs && m_valSize == 0)) && 
-		!m_accepted) {
-	  m_stopIt = true;
-	  m_stopped = true;
-	  if (m_epoch >= m_numEpochs && m_valSize == 0) {
-	    
-	    m_controlPanel.m_startStop.setEnabled(false);
+
+	////////////////////////do validation testing if applicable
+	if (m_valSize != 0) {
+	  right = 0;
+	  if (network != null) {
+	    //the validation set is the start of the instances
+	    right = network.error(values, targets, weights, 0,
+				  valSet.numInstances());
 	  }
 	  else {
-	    m_controlPanel.m_startStop.setEnabled(true);
+	    for (int nob = 0; nob < valSet.numInstances(); nob++) {
+	      m_currentInstance = valSet.instance(nob);
+	      if (!m_currentInstance.classIsMissing()) {
+		//this is where the network updating occurs, for the validation set
+		resetNetwork();
+		calculateOutputs();
+		right += (calculateErrors() / valSet.numClasses()) 
+		  * m_currentInstance.weight();
+		//note 'right' could be calculated here just using
+		//the calculate output values. This would be faster.
+		//be less modular
+	      }
+	    
+	    }
 	  }
-	  m_controlPanel.m_startStop.setText("Start");
-	  m_controlPanel.m_startStop.setActionCommand("Start");
-	  m_controlPanel.m_changeEpochs.setEnabled(true);
-	  m_controlPanel.m_changeLearning.setEnabled(true);
-	  m_controlPanel.m_changeMomentum.setEnabled(true);
+	
+	  if (right < lastRight) {
 	  
-	  blocker(true);
-	  if (m_numeric) {
-	    setEndsToLinear();
+	    if (right < bestError) {
+	      bestError = right;
+	      // save the network weights at this point
+	      for (int noc = 0; noc < m_numClasses; noc++) {
+		m_outputs[noc].saveWeights();
+	      }
+	      driftOff = 0;
+	    }
 	  }
+	  else {
+	    driftOff++;
+	  }
+	  lastRight = right;
+	  if (driftOff > m_driftThreshold || noa + 1 >= m_numEpochs) {
+	    for (int noc = 0; noc < m_numClasses; noc++) {
+	      m_outputs[noc].restoreWeights();
+	    }
+	    m_accepted = true;
+	  }
+	  right /= totalValWeight;
 	}
-	m_controlPanel.m_changeEpochs.setEnabled(false);
-	m_controlPanel.m_changeLearning.setEnabled(false);
-	m_controlPanel.m_changeMomentum.setEnabled(false);
+	m_epoch = noa;
+	m_error = right;
+	//shows what the neuralnet is upto if a gui exists. 
+	updateDisplay();
+	//This junction controls what state the gui is in at the end of each
+	//epoch, Such as if it is paused, if it is resumable etc...
+	if (m_gui) {
+	  while ((m_stopIt || (m_epoch >= m_numEpochs && m_valSize == 0)) && 
+		  !m_accepted) {
+	    m_stopIt = true;
+	    m_stopped = true;
+	    if (m_epoch >= m_numEpochs && m_valSize == 0) {
+	    
+	      m_controlPanel.m_startStop.setEnabled(false);
+	    }
+	    else {
+	      m_controlPanel.m_startStop.setEnabled(true);
+	    }
+	    m_controlPanel.m_startStop.setText("Start");
+	    m_controlPanel.m_startStop.setActionCommand("Start");
+	    m_controlPanel.m_changeEpochs.setEnabled(true);
+	    m_controlPanel.m_changeLearning.setEnabled(true);
+	    m_controlPanel.m_changeMomentum.setEnabled(true);
+	  
+	    blocker(true);
+	    if (m_numeric) {
+	      setEndsToLinear();
+	    }
+	  }
+	  m_controlPanel.m_changeEpochs.setEnabled(false);
+	  m_controlPanel.m_changeLearning.setEnabled(false);
+	  m_controlPanel.m_changeMomentum.setEnabled(false);
 	
-	m_stopped = false;
-	//if the network has been accepted stop the training loop
+	  m_stopped = false;
+	  //if the network has been accepted stop the training loop
+	  if (m_accepted) {
+	    m_win.dispose();
+	    m_controlPanel = null;
+	    m_nodePanel = null;
+	    m_instances = new Instances(m_instances, 0);
+	    m_currentInstance = null;
+	    return;
+	  }
+	}
 	if (m_accepted) {
-	  m_win.dispose();
-	  m_controlPanel = null;
-	  m_nodePanel = null;
 	  m_instances = new Instances(m_instances, 0);
 	  m_currentInstance = null;
 	  return;
 	}
       }
-      if (m_accepted) {
-	m_instances = new Instances(m_instances, 0);
-	m_currentInstance = null;
-	return;
+    }
+    finally {
+      if (network != null) {
+	network.shutdownExecutorPool();
       }
     }
     if (m_gui) {
@@ -2159,7 +2288,7 @@ public class MultilayerPerceptron
    */
   public Enumeration listOptions() {
     
-    Vector newVector = new Vector(14);
+    Vector newVector = new Vector(16);
 
     newVector.addElement(new Option(
 	      "\tLearning Rate for the backpropagation algorithm.\n"
@@ -2222,6 +2351,14 @@ public class MultilayerPerceptron
               "\tLearning rate decay will occur.\n"
 	      +"\t(Set this to cause the learning rate to decay).",
 	      "D", 0,"-D"));
+    newVector.addElement(new Option(
+	      "\tThe number of instances per weight update.\n"
+	      +"\t(Value should be > 0, Default = 1, i.e. online updates).",
+	      "mini-batch-size", 1,"-mini-batch-size <num>"));
+    newVector.addElement(new Option(
+	      "\tNumber of execution slots for a mini-batch.\n"
+	      +"\t(default 1 - i.e. no parallelism)",
+	      "num-slots", 1,"-num-slots <num>"));
     
     
     return newVector.elements();
@@ -2294,6 +2431,14 @@ public class MultilayerPerceptron
    *  Learning rate decay will occur.
    *  (Set this to cause the learning rate to decay).</pre>
    * 
+   * <pre> -mini-batch-size &lt;num&gt;
+   *  The number of instances per weight update.
+   *  (Value should be &gt; 0, Default = 1, i.e. online updates).</pre>
+   * 
+   * <pre> -num-slots &lt;num&gt;
+   *  Number of execution slots for a mini-batch.
+   *  (default 1 - i.e. no parallelism)</pre>
+   * 
    <!-- options-end -->
    *
    * @param options the list of options as an array of strings
@@ -2380,6 +2525,18 @@ public class MultilayerPerceptron
     } else {
       setDecay(false);
     }
+    String batchString = Utils.getOption("mini-batch-size", options);
+    if (batchString.length() != 0) {
+      setMiniBatchSize(Integer.parseInt(batchString));
+    } else {
+      setMiniBatchSize(1);
+    }
+    String slotsString = Utils.getOption("num-slots", options);
+    if (slotsString.length() != 0) {
+      setNumExecutionSlots(Integer.parseInt(slotsString));
+    } else {
+      setNumExecutionSlots(1);
+    }
     
     Utils.checkForRemainingOptions(options);
   }
@@ -2391,7 +2548,7 @@ public class MultilayerPerceptron
    */
   public String [] getOptions() {
 
-    String [] options = new String [21];
+    String [] options = new String [25];
     int current = 0;
     options[current++] = "-L"; options[current++] = "" + getLearningRate(); 
     options[current++] = "-M"; options[current++] = "" + getMomentum();
@@ -2421,6 +2578,10 @@ public class MultilayerPerceptron
     if (getDecay()) {
       options[current++] = "-D";
     }
+    options[current++] = "-mini-batch-size";
+    options[current++] = "" + getMiniBatchSize();
+    options[current++] = "-num-slots";
+    options[current++] = "" + getNumExecutionSlots();
 
     
     while (current < options.length) {
@@ -2689,6 +2850,26 @@ public class MultilayerPerceptron
       ". If the learning rate is changed in the gui, this is treated as the" +
       " starting learning rate.";
   }
+
+  /**
+   * @return a string to describe the mini-batch size option.
+   */
+  public String miniBatchSizeTipText() {
+    return "The number of instances per weight update." +
+      " With 1 the weights are updated after every instance. With more" +
+      " the weights are updated with the mean of the changes of the" +
+      " instances in a mini-batch, whose forward and backward passes can" +
+      " then be spread over several execution slots. This is not used when" +
+      " the gui is set.";
+  }
+
+  /**
+   * @return a string to describe the number of execution slots option.
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of execution slots (threads) to use for the" +
+      " instances of a mini-batch (and for the validation set).";
+  }
   
   /**
    * Returns the revision string.
@@ -23,6 +23,7 @@
 package weka.classifiers.functions;
 
 import weka.classifiers.Classifier;
+import weka.classifiers.functions.supportVector.CachedKernel;
 import weka.classifiers.functions.supportVector.Kernel;
 import weka.classifiers.functions.supportVector.PolyKernel;
 import weka.classifiers.functions.supportVector.SMOset;
@@ -51,6 +52,7 @@ import weka.filters.unsupervised.attribute.ReplaceMissingValues;
 import weka.filters.unsupervised.attribute.Standardize;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.Random;
 import java.util.Vector;
@@ -155,6 +157,10 @@ import java.util.Vector;
  * <pre> -W &lt;double&gt;
  *  The random number seed. (default 1)</pre>
  * 
+ * <pre> -shrinking
+ *  Skip bound instances that are well within the optimality
+ *  conditions until the end of the optimization (shrinking).</pre>
+ * 
  * <pre> -K &lt;classname and parameters&gt;
  *  The Kernel to use.
  *  (default: weka.classifiers.functions.supportVector.PolyKernel)</pre>
@@ -176,6 +182,15 @@ import java.util.Vector;
  *  -1 to turn it off.
  *  (default: 250007)</pre>
  * 
+ * <pre> -row-cache &lt;MB&gt;
+ *  The memory for the cache of kernel rows in MB, 0 to turn it
+ *  off (ignored if the full cache is used).
+ *  (default: 0)</pre>
+ * 
+ * <pre> -num-slots &lt;num&gt;
+ *  Number of execution slots for computing kernel rows.
+ *  (default 1 - i.e. no parallelism)</pre>
+ * 
  * <pre> -E &lt;num&gt;
  *  The Exponent to use.
  *  (default: 1.0)</pre>
@@ -532,45 +547,67 @@ public class SMO
       // Loop to find all the support vectors
       int numChanged = 0;
       boolean examineAll = true;
-      while ((numChanged > 0) || examineAll) {
-	numChanged = 0;
-	if (examineAll) {
-	  for (int i = 0; i < m_alpha.length; i++) {
-	    if (examineExample(i)) {
-	      numChanged++;
-	    }
-	  }
-	} else {
-	  
-	  // This code implements Modification 1 from Keerthi et al.'s paper
-	  for (int i = 0; i < m_alpha.length; i++) {
-	    if ((m_alpha[i] > 0) &&  
-		(m_alpha[i] < m_C * m_data.instance(i).weight())) {
+      // Instances skipped by examineAll passes if shrinking is used
+      boolean[] shrunk = m_shrinking ? new boolean[m_alpha.length] : null;
+      int numShrunk = 0;
+      try {
+	while ((numChanged > 0) || examineAll) {
+	  numChanged = 0;
+	  boolean allExamined = (numShrunk == 0);
+	  if (examineAll) {
+	    for (int i = 0; i < m_alpha.length; i++) {
+	      if ((shrunk != null) && shrunk[i]) {
+		continue;
+	      }
 	      if (examineExample(i)) {
 		numChanged++;
+	      } else if ((shrunk != null) && canShrink(i)) {
+		shrunk[i] = true;
+		numShrunk++;
 	      }
+	    }
+	  } else {
+	  
+	    // This code implements Modification 1 from Keerthi et al.'s paper
+	    for (int i = 0; i < m_alpha.length; i++) {
+	      if ((m_alpha[i] > 0) &&  
+		  (m_alpha[i] < m_C * m_data.instance(i).weight())) {
+		if (examineExample(i)) {
+		  numChanged++;
+		}
 	      
-	      // Is optimality on unbound vectors obtained?
-	      if (m_bUp > m_bLow - 2 * m_tol) {
-		numChanged = 0;
-		break;
+		// Is optimality on unbound vectors obtained?
+		if (m_bUp > m_bLow - 2 * m_tol) {
+		  numChanged = 0;
+		  break;
+		}
 	      }
 	    }
-	  }
 	  
-	  //This is the code for Modification 2 from Keerthi et al.'s paper
-	  /*boolean innerLoopSuccess = true; 
-	    numChanged = 0;
-	    while ((m_bUp < m_bLow - 2 * m_tol) && (innerLoopSuccess == true)) {
-	    innerLoopSuccess = takeStep(m_iUp, m_iLow, m_errors[m_iLow]);
-	    }*/
-	}
+	    //This is the code for Modification 2 from Keerthi et al.'s paper
+	    /*boolean innerLoopSuccess = true; 
+	      numChanged = 0;
+	      while ((m_bUp < m_bLow - 2 * m_tol) && (innerLoopSuccess == true)) {
+	      innerLoopSuccess = takeStep(m_iUp, m_iLow, m_errors[m_iLow]);
+	      }*/
+	  }
 	
-	if (examineAll) {
-	  examineAll = false;
-	} else if (numChanged == 0) {
-	  examineAll = true;
+	  if (examineAll) {
+	    if ((numChanged == 0) && !allExamined) {
+	      // The skipped instances may have become violators: examine
+	      // all of them before stopping
+	      Arrays.fill(shrunk, false);
+	      numShrunk = 0;
+	    } else {
+	      examineAll = false;
+	    }
+	  } else if (numChanged == 0) {
+	    examineAll = true;
+	  }
 	}
+      } catch (Exception e) {
+	m_kernel.clean();
+	throw e;
       }
       
       // Set threshold
@@ -842,6 +879,25 @@ public class SMO
       return takeStep(i1, i2, F2);
     }
 
+    /**
+     * Checks whether an instance that satisfies the optimality conditions
+     * can be skipped by the optimizer for a while: its multiplier is at a
+     * bound, and its error is on the safe side of both thresholds.
+     *
+     * @param i index of the instance, which must have been examined
+     * @return true if the instance can be skipped
+     */
+    protected boolean canShrink(int i) {
+
+      if (m_I0.contains(i)) {
+	return false;
+      }
+      if (m_I1.contains(i) || m_I2.contains(i)) {
+	return m_errors[i] > m_bLow;
+      } 
+      return m_errors[i] < m_bUp;
+    }
+
     /**
      * Method solving for the Lagrange multipliers for
      * two instances.
@@ -1024,6 +1080,10 @@ public class SMO
       }
       
       // Update error cache using new Lagrange multipliers
+      if (m_kernel instanceof CachedKernel) {
+	((CachedKernel) m_kernel).cacheRow(i1);
+	((CachedKernel) m_kernel).cacheRow(i2);
+      }
       for (int j = m_I0.getNext(-1); j != -1; j = m_I0.getNext(j)) {
 	if ((j != i1) && (j != i2)) {
 	  m_errors[j] += 
@@ -1192,6 +1252,9 @@ public class SMO
   /** The random number seed  */
   protected int m_randomSeed = 1;
 
+  /** Whether to shrink the set of instances examined by the optimizer */
+  protected boolean m_shrinking = false;
+
   /** the kernel to use */
   protected Kernel m_kernel = new PolyKernel();
   
@@ -1625,6 +1688,11 @@ public class SMO
 	"(default 1)",
 	"W", 1, "-W <double>"));
     
+    result.addElement(new Option(
+	"\tSkip bound instances that are well within the optimality\n"
+	+ "\tconditions until the end of the optimization (shrinking).",
+	"shrinking", 0, "-shrinking"));
+    
     result.addElement(new Option(
 	"\tThe Kernel to use.\n"
 	+ "\t(default: weka.classifiers.functions.supportVector.PolyKernel)",
@@ -1683,6 +1751,10 @@ public class SMO
    * <pre> -W &lt;double&gt;
    *  The random number seed. (default 1)</pre>
    * 
+   * <pre> -shrinking
+   *  Skip bound instances that are well within the optimality
+   *  conditions until the end of the optimization (shrinking).</pre>
+   * 
    * <pre> -K &lt;classname and parameters&gt;
    *  The Kernel to use.
    *  (default: weka.classifiers.functions.supportVector.PolyKernel)</pre>
@@ -1704,6 +1776,15 @@ public class SMO
    *  -1 to turn it off.
    *  (default: 250007)</pre>
    * 
+   * <pre> -row-cache &lt;MB&gt;
+   *  The memory for the cache of kernel rows in MB, 0 to turn it
+   *  off (ignored if the full cache is used).
+   *  (default: 0)</pre>
+   * 
+   * <pre> -num-slots &lt;num&gt;
+   *  Number of execution slots for computing kernel rows.
+   *  (default 1 - i.e. no parallelism)</pre>
+   * 
    * <pre> -E &lt;num&gt;
    *  The Exponent to use.
    *  (default: 1.0)</pre>
@@ -1761,6 +1842,8 @@ public class SMO
     else
       setRandomSeed(1);
 
+    setShrinking(Utils.getFlag("shrinking", options));
+
     tmpStr     = Utils.getOption('K', options);
     tmpOptions = Utils.splitOptions(tmpStr);
     if (tmpOptions.length != 0) {
@@ -1811,6 +1894,9 @@ public class SMO
     result.add("-W");
     result.add("" + getRandomSeed());
 
+    if (getShrinking())
+      result.add("-shrinking");
+
     result.add("-K");
     result.add("" + getKernel().getClass().getName() + " " + Utils.joinOptions(getKernel().getOptions()));
     
@@ -2082,6 +2168,37 @@ public class SMO
     m_randomSeed = newrandomSeed;
   }
   
+  /**
+   * Returns the tip text for this property
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String shrinkingTipText() {
+    return "Whether to skip bound instances that are well within the "
+      + "optimality conditions until the end of the optimization. Speeds "
+      + "up training on large datasets.";
+  }
+  
+  /**
+   * Get the value of shrinking.
+   *
+   * @return Value of shrinking.
+   */
+  public boolean getShrinking() {
+    
+    return m_shrinking;
+  }
+  
+  /**
+   * Set the value of shrinking.
+   *
+   * @param value  Value to assign to shrinking.
+   */
+  public void setShrinking(boolean value) {
+    
+    m_shrinking = value;
+  }
+  
   /**
    * Prints out the classifier.
    *
@@ -0,0 +1,789 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+/*
+ *    CompiledNetwork.java
+ */
+
+package weka.classifiers.functions.neural;
+
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+
+import java.util.IdentityHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A network of sigmoid and linear nodes compiled into flat arrays, used to
+ * train the network without recursing through the node objects for every
+ * instance. The nodes are ordered layer by layer (a layer holding the nodes
+ * at the same distance from the inputs), each node having its row in the
+ * weight matrix of its layer. The rows are the weight arrays of the nodes
+ * themselves, so that the nodes always hold the current weights. <p/>
+ *
+ * With a mini-batch size of 1 the weights are updated after every instance,
+ * exactly as done by the nodes. With larger mini-batches the forward and
+ * backward passes of the instances in a mini-batch use the same weights and
+ * are spread over the execution slots, and the weights are updated with the
+ * mean of the changes of the instances.
+ *
+ * @version $Revision$
+ */
+public class CompiledNetwork
+  implements RevisionHandler {
+
+  /** The least number of multiplications worth handing to another thread. */
+  protected static final int MIN_TASK_WORK = 1 << 14;
+
+  /** The number of input units (their values are those of the data). */
+  protected int m_numInputs;
+
+  /** The number of nodes. */
+  protected int m_numNodes;
+
+  /** The number of output units. */
+  protected int m_numOutputs;
+
+  /** The first node of each layer, and the number of nodes at the end. */
+  protected int[] m_layerStart;
+
+  /** The weights of each node, threshold first (shared with the node). */
+  protected double[][] m_weights;
+
+  /** The last change in the weights of each node (shared with the node). */
+  protected double[][] m_changeInWeights;
+
+  /** The value positions of the inputs of each node (the input units come
+   * first, then the nodes). */
+  protected int[][] m_sources;
+
+  /** The first input position of each node if its inputs are consecutive,
+   * -1 otherwise. */
+  protected int[] m_firstSource;
+
+  /** True for sigmoid nodes, false for linear ones. */
+  protected boolean[] m_sigmoid;
+
+  /** The nodes fed by each node, or -1 - the output unit for output units. */
+  protected int[][] m_targets;
+
+  /** The connection number of each node at the units it feeds. */
+  protected int[][] m_targetNums;
+
+  /** The value positions of the inputs of each output unit. */
+  protected int[][] m_outputSources;
+
+  /** True if the outputs are scaled back from between -1 and 1. */
+  protected boolean m_scaleOutputs = false;
+
+  /** The half range used to scale the outputs. */
+  protected double m_outputRange;
+
+  /** The midpoint used to scale the outputs. */
+  protected double m_outputBase;
+
+  /** The number of instances per weight update. */
+  protected int m_miniBatchSize = 1;
+
+  /** The number of threads used for a mini-batch. */
+  protected int m_numExecutionSlots = 1;
+
+  /** The threads used by train and error (null if there are none). */
+  protected ExecutorService m_executorPool;
+
+  /**
+   * The values, errors and weight changes of the instances handled by one
+   * thread.
+   */
+  protected class Workspace {
+
+    /** The values of the input units and nodes. */
+    protected double[] m_values = new double[m_numInputs + m_numNodes];
+
+    /** The errors of the nodes. */
+    protected double[] m_errors = new double[m_numNodes];
+
+    /** The values of the output units. */
+    protected double[] m_outputs = new double[m_numOutputs];
+
+    /** The errors of the output units. */
+    protected double[] m_outputErrors = new double[m_numOutputs];
+
+    /** The summed weight changes of a mini-batch, like the weights. */
+    protected double[][] m_changes;
+
+    /**
+     * Creates the arrays.
+     *
+     * @param changes true if weight changes get summed
+     */
+    protected Workspace(boolean changes) {
+      if (changes) {
+	m_changes = new double[m_numNodes][];
+	for (int u = 0; u < m_numNodes; u++) {
+	  m_changes[u] = new double[m_sources[u].length + 1];
+	}
+      }
+    }
+  }
+
+  /**
+   * Compiles a network. Only networks whose nodes are all sigmoid or
+   * linear nodes, fed by the input units or other nodes, can be compiled.
+   * Nodes that do not feed the outputs are left out.
+   *
+   * @param inputs the input units
+   * @param nodes the nodes
+   * @param outputs the output units
+   * @return the compiled network, or null if it cannot be compiled
+   */
+  public static CompiledNetwork compile(NeuralConnection[] inputs,
+					NeuralConnection[] nodes,
+					NeuralConnection[] outputs) {
+
+    IdentityHashMap<NeuralConnection, Integer> position =
+      new IdentityHashMap<NeuralConnection, Integer>();
+    for (int i = 0; i < inputs.length; i++) {
+      position.put(inputs[i], Integer.valueOf(i));
+    }
+    for (int i = 0; i < nodes.length; i++) {
+      NeuralConnection n = nodes[i];
+      if (!(n instanceof NeuralNode) || position.containsKey(n)) {
+	return null;
+      }
+      Class<?> method = ((NeuralNode) n).getMethod().getClass();
+      if (method != SigmoidUnit.class && method != LinearUnit.class) {
+	return null;
+      }
+    }
+
+    // the layer of each node feeding the outputs
+    IdentityHashMap<NeuralConnection, Integer> layer =
+      new IdentityHashMap<NeuralConnection, Integer>();
+    int numLayers = 0;
+    for (int o = 0; o < outputs.length; o++) {
+      NeuralConnection[] in = outputs[o].getInputs();
+      for (int i = 0; i < outputs[o].getNumInputs(); i++) {
+	int l = layer(in[i], position, layer, nodes.length + 1);
+	if (l < 0) {
+	  return null;
+	}
+	numLayers = Math.max(numLayers, l);
+      }
+    }
+
+    // order the nodes by layer, then as given
+    CompiledNetwork network = new CompiledNetwork();
+    network.m_numInputs = inputs.length;
+    network.m_numNodes = layer.size();
+    network.m_numOutputs = outputs.length;
+    network.m_layerStart = new int[numLayers + 1];
+    NeuralNode[] order = new NeuralNode[layer.size()];
+    int u = 0;
+    for (int l = 1; l <= numLayers; l++) {
+      network.m_layerStart[l - 1] = u;
+      for (int i = 0; i < nodes.length; i++) {
+	Integer nodeLayer = layer.get(nodes[i]);
+	if (nodeLayer != null && nodeLayer.intValue() == l) {
+	  position.put(nodes[i], Integer.valueOf(inputs.length + u));
+	  order[u++] = (NeuralNode) nodes[i];
+	}
+      }
+    }
+    if (u < order.length) {
+      // a node outside of the given ones feeds the outputs
+      return null;
+    }
+    network.m_layerStart[numLayers] = u;
+    for (int o = 0; o < outputs.length; o++) {
+      position.put(outputs[o], Integer.valueOf(-1 - o));
+    }
+
+    network.m_weights = new double[order.length][];
+    network.m_changeInWeights = new double[order.length][];
+    network.m_sources = new int[order.length][];
+    network.m_firstSource = new int[order.length];
+    network.m_sigmoid = new boolean[order.length];
+    network.m_targets = new int[order.length][];
+    network.m_targetNums = new int[order.length][];
+    for (u = 0; u < order.length; u++) {
+      NeuralNode node = order[u];
+      network.m_weights[u] = node.getWeights();
+      network.m_changeInWeights[u] = node.getChangeInWeights();
+      network.m_sigmoid[u] = node.getMethod() instanceof SigmoidUnit;
+      network.m_sources[u] = sources(node, position);
+      network.m_firstSource[u] = first(network.m_sources[u]);
+
+      NeuralConnection[] out = node.getOutputs();
+      int[] nums = node.getOutputNums();
+      network.m_targets[u] = new int[node.getNumOutputs()];
+      network.m_targetNums[u] = new int[node.getNumOutputs()];
+      for (int i = 0; i < node.getNumOutputs(); i++) {
+	Integer p = position.get(out[i]);
+	if (p == null || (p.intValue() >= 0 && p.intValue() < inputs.length)) {
+	  // feeds a unit that is not computed
+	  return null;
+	}
+	int target = p.intValue();
+	network.m_targets[u][i] = target < 0 ? target : target - inputs.length;
+	network.m_targetNums[u][i] = nums[i];
+      }
+    }
+    network.m_outputSources = new int[outputs.length][];
+    for (int o = 0; o < outputs.length; o++) {
+      network.m_outputSources[o] = sources(outputs[o], position);
+    }
+
+    return network;
+  }
+
+  /**
+   * Determines the layer of a unit: 0 for input units, one more than the
+   * highest layer of its inputs for nodes.
+   *
+   * @param unit the unit
+   * @param position the positions of the input units
+   * @param layer the layers of the nodes determined so far
+   * @param maxLayer the highest possible layer (to detect cycles)
+   * @return the layer, or -1 if the unit is neither an input unit nor a node
+   */
+  protected static int layer(NeuralConnection unit,
+			     IdentityHashMap<NeuralConnection, Integer> position,
+			     IdentityHashMap<NeuralConnection, Integer> layer,
+			     int maxLayer) {
+
+    if (position.containsKey(unit)) {
+      return 0;
+    }
+    Integer known = layer.get(unit);
+    if (known != null) {
+      return known.intValue();
+    }
+    if (!(unit instanceof NeuralNode) || maxLayer == 0) {
+      return -1;
+    }
+    int l = 0;
+    NeuralConnection[] in = unit.getInputs();
+    for (int i = 0; i < unit.getNumInputs(); i++) {
+      int inputLayer = layer(in[i], position, layer, maxLayer - 1);
+      if (inputLayer < 0) {
+	return -1;
+      }
+      l = Math.max(l, inputLayer);
+    }
+    layer.put(unit, Integer.valueOf(l + 1));
+    return l + 1;
+  }
+
+  /**
+   * Returns the value positions of the inputs of a unit.
+   *
+   * @param unit the unit
+   * @param position the value positions of the units
+   * @return the positions
+   */
+  protected static int[] sources(NeuralConnection unit,
+				 IdentityHashMap<NeuralConnection, Integer> position) {
+
+    NeuralConnection[] in = unit.getInputs();
+    int[] sources = new int[unit.getNumInputs()];
+    for (int i = 0; i < sources.length; i++) {
+      sources[i] = position.get(in[i]).intValue();
+    }
+    return sources;
+  }
+
+  /**
+   * Returns the first of a run of consecutive positions.
+   *
+   * @param sources the positions
+   * @return the first position, or -1 if they are not consecutive
+   */
+  protected static int first(int[] sources) {
+
+    if (sources.length == 0) {
+      return 0;
+    }
+    for (int i = 1; i < sources.length; i++) {
+      if (sources[i] != sources[0] + i) {
+	return -1;
+      }
+    }
+    return sources[0];
+  }
+
+  /**
+   * Scales the output values from between -1 and 1 back to the range of a
+   * numeric class, and the errors down to between -1 and 1.
+   *
+   * @param range half the range of the class
+   * @param base the midpoint of the range of the class
+   */
+  public void setOutputScaling(double range, double base) {
+    m_scaleOutputs = true;
+    m_outputRange = range;
+    m_outputBase = base;
+  }
+
+  /**
+   * Sets the number of instances per weight update.
+   *
+   * @param size the mini-batch size
+   */
+  public void setMiniBatchSize(int size) {
+    m_miniBatchSize = Math.max(1, size);
+  }
+
+  /**
+   * Gets the number of instances per weight update.
+   *
+   * @return the mini-batch size
+   */
+  public int getMiniBatchSize() {
+    return m_miniBatchSize;
+  }
+
+  /**
+   * Sets the number of threads used for a mini-batch.
+   *
+   * @param slots the number of execution slots
+   */
+  public void setNumExecutionSlots(int slots) {
+    m_numExecutionSlots = Math.max(1, slots);
+  }
+
+  /**
+   * Gets the number of threads used for a mini-batch.
+   *
+   * @return the number of execution slots
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
+  /**
+   * Starts the threads used by train and error, if there is more than one
+   * execution slot. They are kept until shutdownExecutorPool is called.
+   */
+  public void startExecutorPool() {
+    if (m_numExecutionSlots > 1 && m_executorPool == null) {
+      m_executorPool = Executors.newFixedThreadPool(m_numExecutionSlots);
+    }
+  }
+
+  /**
+   * Stops the threads started by startExecutorPool.
+   */
+  public void shutdownExecutorPool() {
+    if (m_executorPool != null) {
+      m_executorPool.shutdownNow();
+      m_executorPool = null;
+    }
+  }
+
+  /**
+   * Returns the number of layers of nodes.
+   *
+   * @return the number of layers
+   */
+  public int numLayers() {
+    return m_layerStart.length - 1;
+  }
+
+  /**
+   * Returns the number of weights (thresholds included).
+   *
+   * @return the number of weights
+   */
+  public int numWeights() {
+    int count = 0;
+    for (int u = 0; u < m_numNodes; u++) {
+      count += m_sources[u].length + 1;
+    }
+    return count;
+  }
+
+  /**
+   * Trains the network through a range of instances once.
+   *
+   * @param values the values of the input units for each instance
+   * @param targets the target values of the output units for each instance
+   * @param weights the instance weights
+   * @param from the first instance
+   * @param to the instance after the last one
+   * @param learningRate the learning rate
+   * @param momentum the momentum
+   * @param decay the divisor of the learning rate (the epoch number if the
+   * learning rate decays, 1 otherwise)
+   * @return the weighted sum of the mean squared errors of the instances
+   * (before the weights were updated with them)
+   * @throws Exception if a thread fails
+   */
+  public double train(final double[][] values, final double[][] targets,
+		      final double[] weights, int from, int to,
+		      double learningRate, double momentum, double decay)
+    throws Exception {
+
+    double right = 0;
+    if (m_miniBatchSize == 1) {
+      Workspace work = new Workspace(false);
+      for (int i = from; i < to; i++) {
+	forward(values[i], work);
+	double tempRate = learningRate * weights[i];
+	tempRate /= decay;
+	right += (backward(targets[i], work) / m_numOutputs) * weights[i];
+	update(work, tempRate, momentum);
+      }
+      return right;
+    }
+
+    int slots = Math.min(m_numExecutionSlots, m_miniBatchSize);
+    long batchWork = (long) m_miniBatchSize * numWeights();
+    slots = (int) Math.max(1, Math.min(slots, batchWork / MIN_TASK_WORK));
+    if (m_executorPool == null) {
+      slots = 1;
+    }
+    final Workspace[] work = new Workspace[slots];
+    for (int t = 0; t < slots; t++) {
+      work[t] = new Workspace(true);
+    }
+    for (int start = from; start < to; start += m_miniBatchSize) {
+      int end = Math.min(to, start + m_miniBatchSize);
+      if (slots == 1) {
+	right += accumulate(values, targets, weights, start, end, work[0]);
+      }
+      else {
+	Future<Double>[] results = new Future[slots];
+	for (int t = 0; t < slots; t++) {
+	  final int first = start + (int) ((long) (end - start) * t / slots);
+	  final int last = start + (int) ((long) (end - start) * (t + 1) / slots);
+	  final Workspace w = work[t];
+	  results[t] = m_executorPool.submit(new Callable<Double>() {
+	    public Double call() {
+	      return Double.valueOf(accumulate(values, targets, weights,
+					       first, last, w));
+	    }
+	  });
+	}
+	for (int t = 0; t < slots; t++) {
+	  right += result(results[t]);
+	}
+      }
+      apply(work, learningRate / decay / (end - start), momentum);
+    }
+    return right;
+  }
+
+  /**
+   * Determines the error of the network on a range of instances, without
+   * training it.
+   *
+   * @param values the values of the input units for each instance
+   * @param targets the target values of the output units for each instance
+   * @param weights the instance weights
+   * @param from the first instance
+   * @param to the instance after the last one
+   * @return the weighted sum of the mean squared errors of the instances
+   * @throws Exception if a thread fails
+   */
+  public double error(final double[][] values, final double[][] targets,
+		      final double[] weights, int from, int to)
+    throws Exception {
+
+    long totalWork = (long) (to - from) * numWeights();
+    int slots = (int) Math.max(1, Math.min(m_numExecutionSlots,
+					   totalWork / MIN_TASK_WORK));
+    if (slots == 1 || m_executorPool == null) {
+      return error(values, targets, weights, from, to, new Workspace(false));
+    }
+
+    Future<Double>[] results = new Future[slots];
+    for (int t = 0; t < slots; t++) {
+      final int first = from + (int) ((long) (to - from) * t / slots);
+      final int last = from + (int) ((long) (to - from) * (t + 1) / slots);
+      results[t] = m_executorPool.submit(new Callable<Double>() {
+	public Double call() {
+	  return Double.valueOf(error(values, targets, weights, first, last,
+				      new Workspace(false)));
+	}
+      });
+    }
+    double right = 0;
+    for (int t = 0; t < slots; t++) {
+      right += result(results[t]);
+    }
+    return right;
+  }
+
+  /**
+   * Determines the error of the network on a range of instances.
+   *
+   * @param values the values of the input units for each instance
+   * @param targets the target values of the output units for each instance
+   * @param weights the instance weights
+   * @param from the first instance
+   * @param to the instance after the last one
+   * @param work the arrays to use
+   * @return the weighted sum of the mean squared errors of the instances
+   */
+  protected double error(double[][] values, double[][] targets,
+			 double[] weights, int from, int to, Workspace work) {
+
+    double right = 0;
+    for (int i = from; i < to; i++) {
+      forward(values[i], work);
+      right += (outputErrors(targets[i], work) / m_numOutputs) * weights[i];
+    }
+    return right;
+  }
+
+  /**
+   * Computes the values of the nodes and output units for an instance.
+   *
+   * @param values the values of the input units
+   * @param work the arrays to fill
+   */
+  protected void forward(double[] values, Workspace work) {
+
+    double[] v = work.m_values;
+    System.arraycopy(values, 0, v, 0, m_numInputs);
+    for (int u = 0; u < m_numNodes; u++) {
+      double[] w = m_weights[u];
+      int[] sources = m_sources[u];
+      int first = m_firstSource[u];
+      double value = w[0];
+      if (first >= 0) {
+	for (int i = 0; i < sources.length; i++) {
+	  value += v[first + i] * w[i + 1];
+	}
+      }
+      else {
+	for (int i = 0; i < sources.length; i++) {
+	  value += v[sources[i]] * w[i + 1];
+	}
+      }
+      if (m_sigmoid[u]) {
+	//this I got from the Neural Network faq to combat overflow
+	if (value < -45) {
+	  value = 0;
+	}
+	else if (value > 45) {
+	  value = 1;
+	}
+	else {
+	  value = 1 / (1 + Math.exp(-value));
+	}
+      }
+      v[m_numInputs + u] = value;
+    }
+    for (int o = 0; o < m_numOutputs; o++) {
+      int[] sources = m_outputSources[o];
+      double value = 0;
+      for (int i = 0; i < sources.length; i++) {
+	value += v[sources[i]];
+      }
+      if (m_scaleOutputs) {
+	value = value * m_outputRange + m_outputBase;
+      }
+      work.m_outputs[o] = value;
+    }
+  }
+
+  /**
+   * Computes the errors of the output units for an instance, after its
+   * values have been computed.
+   *
+   * @param targets the target values of the output units
+   * @param work the arrays holding the values
+   * @return the squared error
+   */
+  protected double outputErrors(double[] targets, Workspace work) {
+
+    double ret = 0;
+    for (int o = 0; o < m_numOutputs; o++) {
+      double error;
+      if (!m_scaleOutputs) {
+	error = targets[o] - work.m_outputs[o];
+      }
+      else if (m_outputRange == 0) {
+	error = 0;
+      }
+      else {
+	error = (targets[o] - work.m_outputs[o]) / m_outputRange;
+      }
+      work.m_outputErrors[o] = error;
+      ret += error * error;
+    }
+    return ret;
+  }
+
+  /**
+   * Computes the errors of the output units and nodes for an instance,
+   * after its values have been computed.
+   *
+   * @param targets the target values of the output units
+   * @param work the arrays holding the values
+   * @return the squared error
+   */
+  protected double backward(double[] targets, Workspace work) {
+
+    double ret = outputErrors(targets, work);
+    double[] e = work.m_errors;
+    for (int u = m_numNodes - 1; u >= 0; u--) {
+      int[] to = m_targets[u];
+      int[] nums = m_targetNums[u];
+      double error = 0;
+      for (int i = 0; i < to.length; i++) {
+	if (to[i] < 0) {
+	  error += work.m_outputErrors[-1 - to[i]];
+	}
+	else {
+	  error += e[to[i]] * m_weights[to[i]][nums[i] + 1];
+	}
+      }
+      if (m_sigmoid[u]) {
+	double value = work.m_values[m_numInputs + u];
+	error *= value * (1 - value);
+      }
+      e[u] = error;
+    }
+    return ret;
+  }
+
+  /**
+   * Updates the weights with the errors of an instance.
+   *
+   * @param work the arrays holding the values and errors
+   * @param learn the learning rate
+   * @param momentum the momentum
+   */
+  protected void update(Workspace work, double learn, double momentum) {
+
+    double[] v = work.m_values;
+    for (int u = 0; u < m_numNodes; u++) {
+      double[] weights = m_weights[u];
+      double[] cWeights = m_changeInWeights[u];
+      int[] sources = m_sources[u];
+      double learnTimesError = learn * work.m_errors[u];
+      double c = learnTimesError + momentum * cWeights[0];
+      weights[0] += c;
+      cWeights[0] = c;
+      for (int i = 0; i < sources.length; i++) {
+	c = learnTimesError * v[sources[i]];
+	c += momentum * cWeights[i + 1];
+	weights[i + 1] += c;
+	cWeights[i + 1] = c;
+      }
+    }
+  }
+
+  /**
+   * Sums the weighted weight changes of a range of instances.
+   *
+   * @param values the values of the input units for each instance
+   * @param targets the target values of the output units for each instance
+   * @param weights the instance weights
+   * @param from the first instance
+   * @param to the instance after the last one
+   * @param work the arrays to use, holding the sums
+   * @return the weighted sum of the mean squared errors of the instances
+   */
+  protected double accumulate(double[][] values, double[][] targets,
+			      double[] weights, int from, int to,
+			      Workspace work) {
+
+    double right = 0;
+    double[] v = work.m_values;
+    for (int i = from; i < to; i++) {
+      forward(values[i], work);
+      right += (backward(targets[i], work) / m_numOutputs) * weights[i];
+      for (int u = 0; u < m_numNodes; u++) {
+	double[] changes = work.m_changes[u];
+	int[] sources = m_sources[u];
+	int first = m_firstSource[u];
+	double error = weights[i] * work.m_errors[u];
+	changes[0] += error;
+	if (first >= 0) {
+	  for (int k = 0; k < sources.length; k++) {
+	    changes[k + 1] += error * v[first + k];
+	  }
+	}
+	else {
+	  for (int k = 0; k < sources.length; k++) {
+	    changes[k + 1] += error * v[sources[k]];
+	  }
+	}
+      }
+    }
+    return right;
+  }
+
+  /**
+   * Updates the weights with the summed changes of a mini-batch, and clears
+   * the sums.
+   *
+   * @param work the arrays holding the sums
+   * @param learn the learning rate divided by the size of the mini-batch
+   * @param momentum the momentum
+   */
+  protected void apply(Workspace[] work, double learn, double momentum) {
+
+    for (int u = 0; u < m_numNodes; u++) {
+      double[] weights = m_weights[u];
+      double[] cWeights = m_changeInWeights[u];
+      for (int i = 0; i <= m_sources[u].length; i++) {
+	double sum = 0;
+	for (int t = 0; t < work.length; t++) {
+	  sum += work[t].m_changes[u][i];
+	  work[t].m_changes[u][i] = 0;
+	}
+	double c = learn * sum + momentum * cWeights[i];
+	weights[i] += c;
+	cWeights[i] = c;
+      }
+    }
+  }
+
+  /**
+   * Waits for the result of a range of instances.
+   *
+   * @param result the future result
+   * @return the result
+   * @throws Exception if the computation failed
+   */
+  protected static <T> T result(Future<T> result) throws Exception {
+    try {
+      return result.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception)
+	throw (Exception) e.getCause();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return		the revision
+   */
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -27,13 +27,26 @@ import weka.core.Instances;
 import weka.core.Option;
 import weka.core.Utils;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Base class for RBFKernel and PolyKernel that implements a simple LRU.
  * (least-recently-used) cache if the cache size is set to a value > 0.
- * Otherwise it uses a full cache.
+ * Otherwise it uses a full cache.<p/>
+ *
+ * Optionally, complete rows of the kernel matrix can be cached as well (as
+ * in LibSVM), up to a given amount of memory, with the least recently
+ * requested row being dropped first. Rows are requested explicitly with
+ * cacheRow(), and can be computed with several threads.
  * 
  * @author Eibe Frank (eibe@cs.waikato.ac.nz)
  * @author Shane Legg (shane@intelligenesis.net) (sparse vector code)
@@ -71,6 +84,33 @@ public abstract class CachedKernel
   /** number of cache slots in an entry */
   protected int m_cacheSlots = 4;
 
+  /** The memory for the cache of kernel rows in MB (0 = no row cache) */
+  protected int m_rowCacheSize = 0;
+
+  /** The number of threads used to compute kernel rows */
+  protected int m_numExecutionSlots = 1;
+
+  /** The cached kernel rows */
+  protected double[][] m_rows;
+
+  /** The slot of the row of each instance in m_rows, -1 if not cached */
+  protected int[] m_rowSlots;
+
+  /** The instance whose row is in each slot, -1 if the slot is free */
+  protected int[] m_slotInstances;
+
+  /** When each slot was requested last */
+  protected long[] m_slotLastUsed;
+
+  /** Counts the row requests */
+  protected long m_rowRequests;
+
+  /** The kernel values of the instances with themselves (NaN if unknown) */
+  protected double[] m_diagonal;
+
+  /** The thread pool used to compute kernel rows */
+  protected transient ExecutorService m_executorPool;
+
   /**
    * default constructor - does nothing.
    */
@@ -115,6 +155,17 @@ public abstract class CachedKernel
 	+ "\t(default: 250007)",
 	"C", 1, "-C <num>"));
 
+    result.addElement(new Option(
+	"\tThe memory for the cache of kernel rows in MB, 0 to turn it\n"
+	+ "\toff (ignored if the full cache is used).\n"
+	+ "\t(default: 0)",
+	"row-cache", 1, "-row-cache <MB>"));
+
+    result.addElement(new Option(
+	"\tNumber of execution slots for computing kernel rows.\n"
+	+ "\t(default 1 - i.e. no parallelism)",
+	"num-slots", 1, "-num-slots <num>"));
+
     return result.elements();
   }
 
@@ -133,6 +184,18 @@ public abstract class CachedKernel
     else
       setCacheSize(250007);
     
+    tmpStr = Utils.getOption("row-cache", options);
+    if (tmpStr.length() != 0)
+      setRowCacheSize(Integer.parseInt(tmpStr));
+    else
+      setRowCacheSize(0);
+    
+    tmpStr = Utils.getOption("num-slots", options);
+    if (tmpStr.length() != 0)
+      setNumExecutionSlots(Integer.parseInt(tmpStr));
+    else
+      setNumExecutionSlots(1);
+    
     super.setOptions(options);
   }
 
@@ -154,6 +217,12 @@ public abstract class CachedKernel
     result.add("-C");
     result.add("" + getCacheSize());
 
+    result.add("-row-cache");
+    result.add("" + getRowCacheSize());
+
+    result.add("-num-slots");
+    result.add("" + getNumExecutionSlots());
+
     return (String[]) result.toArray(new String[result.size()]);	  
   }
 
@@ -185,6 +254,27 @@ public abstract class CachedKernel
     long key = -1;
     int location = -1;
 
+    // is one of the rows cached?
+    if ( (id1 >= 0) && (m_rowSlots != null) ) {
+      if (id1 == id2) {
+	if (Double.isNaN(m_diagonal[id1])) {
+	  m_kernelEvals++;
+	  m_diagonal[id1] = evaluate(id1, id1, inst1);
+	} else {
+	  m_cacheHits++;
+	}
+	return m_diagonal[id1];
+      }
+      if (m_rowSlots[id1] != -1) {
+	m_cacheHits++;
+	return m_rows[m_rowSlots[id1]][id2];
+      }
+      if (m_rowSlots[id2] != -1) {
+	m_cacheHits++;
+	return m_rows[m_rowSlots[id2]][id1];
+      }
+    }
+
     // we can only cache if we know the indexes and caching is not 
     // disbled (m_cacheSize == -1)
     if ( (id1 >= 0) && (m_cacheSize != -1) ) {
@@ -254,6 +344,86 @@ public abstract class CachedKernel
     return result;
   }
 
+  /**
+   * Makes sure that the kernel values of the given instance with all
+   * instances in the dataset are in the row cache, computing them if
+   * necessary. If the cache is full, the row that was requested least
+   * recently is dropped. Does nothing if the row cache is turned off.
+   *
+   * @param id		the index of the instance in the dataset
+   * @throws Exception	if something goes wrong
+   */
+  public void cacheRow(int id) throws Exception {
+
+    if (m_rowSlots == null)
+      return;
+
+    m_rowRequests++;
+    int slot = m_rowSlots[id];
+    if (slot == -1) {
+      // use a free slot or drop the least recently used row
+      slot = 0;
+      for (int i = 1; i < m_slotLastUsed.length; i++) {
+	if (m_slotLastUsed[i] < m_slotLastUsed[slot])
+	  slot = i;
+      }
+      if (m_slotInstances[slot] != -1)
+	m_rowSlots[m_slotInstances[slot]] = -1;
+      m_slotInstances[slot] = -1;
+      if (m_rows[slot] == null)
+	m_rows[slot] = new double[m_numInsts];
+      computeRow(id, m_rows[slot]);
+      m_slotInstances[slot] = id;
+      m_rowSlots[id] = slot;
+    }
+    m_slotLastUsed[slot] = m_rowRequests;
+  }
+
+  /**
+   * Computes the kernel values of the given instance with all instances
+   * in the dataset, using several threads if requested.
+   *
+   * @param id		the index of the instance in the dataset
+   * @param row		the array to fill
+   * @throws Exception	if something goes wrong
+   */
+  protected void computeRow(final int id, final double[] row) 
+    throws Exception {
+
+    final Instance inst = m_data.instance(id);
+    int numTasks = Math.min(m_numExecutionSlots, m_numInsts / 1000 + 1);
+    if (numTasks <= 1) {
+      for (int j = 0; j < m_numInsts; j++)
+	row[j] = evaluate(id, j, inst);
+    } 
+    else {
+      if (m_executorPool == null)
+	m_executorPool = Executors.newFixedThreadPool(m_numExecutionSlots);
+      List<Future<Object>> results = new ArrayList<Future<Object>>();
+      for (int t = 0; t < numTasks; t++) {
+	final int start = (int) ((long) m_numInsts * t / numTasks);
+	final int end = (int) ((long) m_numInsts * (t + 1) / numTasks);
+	results.add(m_executorPool.submit(new Callable<Object>() {
+	  public Object call() throws Exception {
+	    for (int j = start; j < end; j++)
+	      row[j] = evaluate(id, j, inst);
+	    return null;
+	  }
+	}));
+      }
+      try {
+	for (Future<Object> f : results)
+	  f.get();
+      } 
+      catch (ExecutionException e) {
+	if (e.getCause() instanceof Exception)
+	  throw (Exception) e.getCause();
+	throw e;
+      }
+    }
+    m_kernelEvals += m_numInsts;
+  }
+
   /**
    * Returns the number of time Eval has been called.
    * 
@@ -279,6 +449,15 @@ public abstract class CachedKernel
     m_storage = null;
     m_keys = null;
     m_kernelMatrix = null;
+    m_rows = null;
+    m_rowSlots = null;
+    m_slotInstances = null;
+    m_slotLastUsed = null;
+    m_diagonal = null;
+    if (m_executorPool != null) {
+      m_executorPool.shutdownNow();
+      m_executorPool = null;
+    }
   }
 
   /**
@@ -351,6 +530,74 @@ public abstract class CachedKernel
     return "The size of the cache (a prime number), 0 for full cache and -1 to turn it off.";
   }
 
+  /**
+   * Sets the memory for the cache of kernel rows in MB.
+   * 
+   * @param value	the memory in MB, 0 turns the row cache off
+   */
+  public void setRowCacheSize(int value) {
+    if (value >= 0) {
+      m_rowCacheSize = value;
+      clean();
+    }
+    else {
+      System.out.println(
+	  "Row cache size cannot be smaller than 0 (provided: " + value + ")!");
+    }
+  }
+  
+  /**
+   * Gets the memory for the cache of kernel rows in MB.
+   * 
+   * @return 		the memory in MB
+   */
+  public int getRowCacheSize() {
+    return m_rowCacheSize;
+  }
+
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return 		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String rowCacheSizeTipText() {
+    return "The memory for the cache of complete kernel rows in MB, 0 to turn "
+      + "it off (ignored if the full cache is used).";
+  }
+
+  /**
+   * Sets the number of threads used for computing kernel rows.
+   * 
+   * @param value	the number of execution slots
+   * @throws Exception	if the number is smaller than 1
+   */
+  public void setNumExecutionSlots(int value) throws Exception {
+    if (value < 1)
+      throw new Exception("Number of execution slots needs to be >= 1!");
+    m_numExecutionSlots = value;
+  }
+  
+  /**
+   * Gets the number of threads used for computing kernel rows.
+   * 
+   * @return 		the number of execution slots
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return 		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of threads to use for computing rows of the kernel "
+      + "matrix (only used with the row cache).";
+  }
+
   /**
    * initializes variables etc.
    * 
@@ -373,6 +620,27 @@ public abstract class CachedKernel
       m_keys         = null;
       m_kernelMatrix = null;
     }
+
+    m_rows          = null;
+    m_rowSlots      = null;
+    m_slotInstances = null;
+    m_slotLastUsed  = null;
+    m_diagonal      = null;
+    m_rowRequests   = 0;
+    if ((getRowCacheSize() > 0) && (getCacheSize() != 0) && (m_numInsts > 0)) {
+      // Use row cache, with room for at least two rows
+      long numRows = (long) getRowCacheSize() * 1024 * 1024 
+        / (8L * m_numInsts);
+      numRows = Math.max(2, Math.min(numRows, m_numInsts));
+      m_rows          = new double[(int) numRows][];
+      m_slotInstances = new int[(int) numRows];
+      m_slotLastUsed  = new long[(int) numRows];
+      m_rowSlots      = new int[m_numInsts];
+      m_diagonal      = new double[m_numInsts];
+      Arrays.fill(m_slotInstances, -1);
+      Arrays.fill(m_rowSlots, -1);
+      Arrays.fill(m_diagonal, Double.NaN);
+    }
   }
   
   /**
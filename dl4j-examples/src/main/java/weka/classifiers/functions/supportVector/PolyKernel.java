@@ -55,6 +55,15 @@ import java.util.Vector;
  *  -1 to turn it off.
  *  (default: 250007)</pre>
  * 
+ * <pre> -row-cache &lt;MB&gt;
+ *  The memory for the cache of kernel rows in MB, 0 to turn it
+ *  off (ignored if the full cache is used).
+ *  (default: 0)</pre>
+ * 
+ * <pre> -num-slots &lt;num&gt;
+ *  Number of execution slots for computing kernel rows.
+ *  (default 1 - i.e. no parallelism)</pre>
+ * 
  * <pre> -E &lt;num&gt;
  *  The Exponent to use.
  *  (default: 1.0)</pre>
@@ -179,6 +188,15 @@ public class PolyKernel
    *  -1 to turn it off.
    *  (default: 250007)</pre>
    * 
+   * <pre> -row-cache &lt;MB&gt;
+   *  The memory for the cache of kernel rows in MB, 0 to turn it
+   *  off (ignored if the full cache is used).
+   *  (default: 0)</pre>
+   * 
+   * <pre> -num-slots &lt;num&gt;
+   *  Number of execution slots for computing kernel rows.
+   *  (default 1 - i.e. no parallelism)</pre>
+   * 
    * <pre> -E &lt;num&gt;
    *  The Exponent to use.
    *  (default: 1.0)</pre>
@@ -63,6 +63,15 @@ import java.util.Vector;
  *  -1 to turn it off.
  *  (default: 250007)</pre>
  * 
+ * <pre> -row-cache &lt;MB&gt;
+ *  The memory for the cache of kernel rows in MB, 0 to turn it
+ *  off (ignored if the full cache is used).
+ *  (default: 0)</pre>
+ * 
+ * <pre> -num-slots &lt;num&gt;
+ *  Number of execution slots for computing kernel rows.
+ *  (default 1 - i.e. no parallelism)</pre>
+ * 
  * <pre> -O &lt;num&gt;
  *  The Omega parameter.
  *  (default: 1.0)</pre>
@@ -205,6 +214,15 @@ public class Puk
    *  -1 to turn it off.
    *  (default: 250007)</pre>
    * 
+   * <pre> -row-cache &lt;MB&gt;
+   *  The memory for the cache of kernel rows in MB, 0 to turn it
+   *  off (ignored if the full cache is used).
+   *  (default: 0)</pre>
+   * 
+   * <pre> -num-slots &lt;num&gt;
+   *  Number of execution slots for computing kernel rows.
+   *  (default 1 - i.e. no parallelism)</pre>
+   * 
    * <pre> -O &lt;num&gt;
    *  The Omega parameter.
    *  (default: 1.0)</pre>
@@ -56,6 +56,15 @@ import java.util.Vector;
  *  -1 to turn it off.
  *  (default: 250007)</pre>
  * 
+ * <pre> -row-cache &lt;MB&gt;
+ *  The memory for the cache of kernel rows in MB, 0 to turn it
+ *  off (ignored if the full cache is used).
+ *  (default: 0)</pre>
+ * 
+ * <pre> -num-slots &lt;num&gt;
+ *  Number of execution slots for computing kernel rows.
+ *  (default 1 - i.e. no parallelism)</pre>
+ * 
  * <pre> -G &lt;num&gt;
  *  The Gamma parameter.
  *  (default: 0.01)</pre>
@@ -159,6 +168,15 @@ public class RBFKernel
    *  -1 to turn it off.
    *  (default: 250007)</pre>
    * 
+   * <pre> -row-cache &lt;MB&gt;
+   *  The memory for the cache of kernel rows in MB, 0 to turn it
+   *  off (ignored if the full cache is used).
+   *  (default: 0)</pre>
+   * 
+   * <pre> -num-slots &lt;num&gt;
+   *  Number of execution slots for computing kernel rows.
+   *  (default 1 - i.e. no parallelism)</pre>
+   * 
    * <pre> -G &lt;num&gt;
    *  The Gamma parameter.
    *  (default: 0.01)</pre>
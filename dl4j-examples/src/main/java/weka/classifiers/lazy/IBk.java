@@ -26,9 +26,11 @@ import weka.classifiers.Classifier;
 import weka.classifiers.UpdateableClassifier;
 import weka.classifiers.rules.ZeroR;
 import weka.core.Attribute;
+import weka.core.BatchPredictor;
 import weka.core.Capabilities;
 import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.NormalizableDistance;
 import weka.core.neighboursearch.LinearNNSearch;
 import weka.core.neighboursearch.NearestNeighbourSearch;
 import weka.core.Option;
@@ -115,7 +117,8 @@ import java.util.Vector;
 public class IBk 
   extends Classifier 
   implements OptionHandler, UpdateableClassifier, WeightedInstancesHandler,
-             TechnicalInformationHandler, AdditionalMeasureProducer {
+             TechnicalInformationHandler, AdditionalMeasureProducer,
+             BatchPredictor {
 
   /** for serialization. */
   static final long serialVersionUID = -3080186098777067172L;
@@ -589,6 +592,53 @@ public class IBk
     return distribution;
   }
 
+  /**
+   * Calculates the class membership probabilities for the given test 
+   * instances. The neighbours of all instances are found with one batch 
+   * query, which the nearest neighbour search may answer in parallel. This
+   * is only done if the instances don't extend the ranges of the distance 
+   * function (and the model doesn't change while classifying them), 
+   * otherwise they are classified one at a time.
+   *
+   * @param insts the instances to be classified
+   * @return predicted class probability distributions
+   * @throws Exception if distributions can't be computed successfully
+   */
+  public double[][] distributionsForInstances(Instances insts) throws Exception {
+
+    double[][] distributions = new double[insts.numInstances()][];
+    boolean batch = (m_Train.numInstances() > 0)
+      && !((m_WindowSize > 0) && (m_Train.numInstances() > m_WindowSize))
+      && !(!m_kNNValid && (m_CrossValidate) && (m_kNNUpper >= 1))
+      && (m_NNSearch.getDistanceFunction() instanceof NormalizableDistance);
+    if (batch) {
+      NormalizableDistance df = 
+	(NormalizableDistance) m_NNSearch.getDistanceFunction();
+      double[][] ranges = df.rangesSet() ? df.getRanges() : null;
+      for (int i = 0; batch && (i < insts.numInstances()); i++) {
+	batch = (ranges != null) && df.inRanges(insts.instance(i), ranges);
+      }
+    }
+
+    if (!batch) {
+      for (int i = 0; i < insts.numInstances(); i++) {
+	distributions[i] = distributionForInstance(insts.instance(i));
+      }
+      return distributions;
+    }
+
+    for (int i = 0; i < insts.numInstances(); i++) {
+      m_NNSearch.addInstanceInfo(insts.instance(i));
+    }
+    double[][] distances = new double[insts.numInstances()][];
+    Instances[] neighbours = m_NNSearch.kNearestNeighbours(insts, m_kNN, distances);
+    for (int i = 0; i < insts.numInstances(); i++) {
+      distributions[i] = makeDistribution(neighbours[i], distances[i]);
+    }
+
+    return distributions;
+  }
+
   /**
    * Returns an enumeration describing the available options.
    *
@@ -25,8 +25,9 @@ package weka.classifiers.meta;
 import java.util.Enumeration;
 import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.ExecutorService;
 
-import weka.classifiers.RandomizableIteratedSingleClassifierEnhancer;
+import weka.classifiers.RandomizableParallelIteratedSingleClassifierEnhancer;
 import weka.core.AdditionalMeasureProducer;
 import weka.core.Instance;
 import weka.core.Instances;
@@ -89,6 +90,12 @@ import weka.core.WeightedInstancesHandler;
  * </pre>
  * 
  * <pre>
+ * -num-slots &lt;num&gt;
+ *  Number of execution slots.
+ *  (default 1 - i.e. no parallelism)
+ * </pre>
+ * 
+ * <pre>
  * -I &lt;num&gt;
  *  Number of iterations.
  *  (default 10)
@@ -151,7 +158,7 @@ import weka.core.WeightedInstancesHandler;
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @version $Revision: 9370 $
  */
-public class Bagging extends RandomizableIteratedSingleClassifierEnhancer
+public class Bagging extends RandomizableParallelIteratedSingleClassifierEnhancer
     implements WeightedInstancesHandler, AdditionalMeasureProducer,
     TechnicalInformationHandler {
 
@@ -167,6 +174,15 @@ public class Bagging extends RandomizableIteratedSingleClassifierEnhancer
   /** The out of bag error that has been calculated */
   protected double m_OutOfBagError;
 
+  /** The training data, only set while the ensemble is built */
+  protected Instances m_data;
+
+  /** The random number generator for the bags, only set while building */
+  protected Random m_random;
+
+  /** The in-bag flags of the bags, only set while building */
+  protected boolean[][] m_inBag;
+
   /**
    * Constructor.
    */
@@ -271,6 +287,12 @@ public class Bagging extends RandomizableIteratedSingleClassifierEnhancer
    * </pre>
    * 
    * <pre>
+   * -num-slots &lt;num&gt;
+   *  Number of execution slots.
+   *  (default 1 - i.e. no parallelism)
+   * </pre>
+   * 
+   * <pre>
    * -I &lt;num&gt;
    *  Number of iterations.
    *  (default 10)
@@ -497,36 +519,20 @@ public class Bagging extends RandomizableIteratedSingleClassifierEnhancer
           + "out-of-bag error is to be calculated!");
     }
 
-    int bagSize = data.numInstances() * m_BagSizePercent / 100;
-    Random random = new Random(m_Seed);
-
-    boolean[][] inBag = null;
+    m_data = data;
+    m_random = new Random(m_Seed);
+    m_inBag = null;
     if (m_CalcOutOfBag)
-      inBag = new boolean[m_Classifiers.length][];
-
-    for (int j = 0; j < m_Classifiers.length; j++) {
-      Instances bagData = null;
-
-      // create the in-bag dataset
-      if (m_CalcOutOfBag) {
-        inBag[j] = new boolean[data.numInstances()];
-        // bagData = resampleWithWeights(data, random, inBag[j]);
-        bagData = data.resampleWithWeights(random, inBag[j]);
-      } else {
-        bagData = data.resampleWithWeights(random);
-        if (bagSize < data.numInstances()) {
-          bagData.randomize(random);
-          Instances newBagData = new Instances(bagData, 0, bagSize);
-          bagData = newBagData;
-        }
-      }
-
-      if (m_Classifier instanceof Randomizable) {
-        ((Randomizable) m_Classifiers[j]).setSeed(random.nextInt());
-      }
-
-      // build the classifier
-      m_Classifiers[j].buildClassifier(bagData);
+      m_inBag = new boolean[m_Classifiers.length][];
+
+    // build the classifiers
+    boolean[][] inBag = m_inBag;
+    try {
+      buildClassifiers();
+    } finally {
+      m_data = null;
+      m_random = null;
+      m_inBag = null;
     }
 
     // calc OOB error?
@@ -535,58 +541,82 @@ public class Bagging extends RandomizableIteratedSingleClassifierEnhancer
       double errorSum = 0.0;
       boolean numeric = data.classAttribute().isNumeric();
 
-      for (int i = 0; i < data.numInstances(); i++) {
-        double vote;
-        double[] votes;
-        if (numeric)
-          votes = new double[1];
-        else
-          votes = new double[data.numClasses()];
-
-        // determine predictions for instance
-        int voteCount = 0;
-        for (int j = 0; j < m_Classifiers.length; j++) {
-          if (inBag[j][i])
-            continue;
-
-          voteCount++;
-          // double pred = m_Classifiers[j].classifyInstance(data.instance(i));
-          if (numeric) {
-            // votes[0] += pred;
-            votes[0] = m_Classifiers[j].classifyInstance(data.instance(i));
-          } else {
-            // votes[(int) pred]++;
-            double[] newProbs = m_Classifiers[j].distributionForInstance(data
-                .instance(i));
-            // average the probability estimates
-            for (int k = 0; k < newProbs.length; k++) {
-              votes[k] += newProbs[k];
-            }
-          }
-        }
+      // the predictions of the members are computed in parallel, one batch
+      // of instances at a time, if there is more than one execution slot
+      ExecutorService executor = null;
+      int block = data.numInstances();
+      if ((m_numExecutionSlots > 1) && (m_Classifiers.length > 1)) {
+        executor = newExecutorService();
+        block = batchSize(data);
+      }
 
-        // "vote"
-        if (numeric) {
-          vote = votes[0];
-          if (voteCount > 0) {
-            vote /= voteCount; // average
+      try {
+        for (int from = 0; from < data.numInstances(); from += block) {
+          int to = Math.min(data.numInstances(), from + block);
+          double[][][] preds = null;
+          if (executor != null) {
+            preds = memberPredictions(executor, data, from, to, inBag);
           }
-        } else {
-          if (Utils.eq(Utils.sum(votes), 0)) {
-          } else {
-            Utils.normalize(votes);
+
+          for (int i = from; i < to; i++) {
+            double vote;
+            double[] votes;
+            if (numeric)
+              votes = new double[1];
+            else
+              votes = new double[data.numClasses()];
+
+            // determine predictions for instance
+            int voteCount = 0;
+            for (int j = 0; j < m_Classifiers.length; j++) {
+              if (inBag[j][i])
+                continue;
+
+              voteCount++;
+              double[] pred;
+              if (preds != null) {
+                pred = preds[j][i - from];
+              } else {
+                pred = memberPrediction(j, data.instance(i));
+              }
+              if (numeric) {
+                votes[0] = pred[0];
+              } else {
+                // average the probability estimates
+                for (int k = 0; k < pred.length; k++) {
+                  votes[k] += pred[k];
+                }
+              }
+            }
+
+            // "vote"
+            if (numeric) {
+              vote = votes[0];
+              if (voteCount > 0) {
+                vote /= voteCount; // average
+              }
+            } else {
+              if (Utils.eq(Utils.sum(votes), 0)) {
+              } else {
+                Utils.normalize(votes);
+              }
+              vote = Utils.maxIndex(votes); // predicted class
+            }
+
+            // error for instance
+            outOfBagCount += data.instance(i).weight();
+            if (numeric) {
+              errorSum += StrictMath.abs(vote - data.instance(i).classValue())
+                  * data.instance(i).weight();
+            } else {
+              if (vote != data.instance(i).classValue())
+                errorSum += data.instance(i).weight();
+            }
           }
-          vote = Utils.maxIndex(votes); // predicted class
         }
-
-        // error for instance
-        outOfBagCount += data.instance(i).weight();
-        if (numeric) {
-          errorSum += StrictMath.abs(vote - data.instance(i).classValue())
-              * data.instance(i).weight();
-        } else {
-          if (vote != data.instance(i).classValue())
-            errorSum += data.instance(i).weight();
+      } finally {
+        if (executor != null) {
+          executor.shutdownNow();
         }
       }
 
@@ -596,6 +626,40 @@ public class Bagging extends RandomizableIteratedSingleClassifierEnhancer
     }
   }
 
+  /**
+   * Returns the bag for the given member and sets the member's seed, drawing
+   * from the random number generator in the same order as a sequential build.
+   * 
+   * @param iteration the index of the member
+   * @return the bag of the member
+   * @throws Exception if the bag could not be generated
+   */
+  @Override
+  protected Instances getTrainingSet(int iteration) throws Exception {
+
+    int bagSize = m_data.numInstances() * m_BagSizePercent / 100;
+    Instances bagData = null;
+
+    // create the in-bag dataset
+    if (m_CalcOutOfBag) {
+      m_inBag[iteration] = new boolean[m_data.numInstances()];
+      bagData = m_data.resampleWithWeights(m_random, m_inBag[iteration]);
+    } else {
+      bagData = m_data.resampleWithWeights(m_random);
+      if (bagSize < m_data.numInstances()) {
+        bagData.randomize(m_random);
+        Instances newBagData = new Instances(bagData, 0, bagSize);
+        bagData = newBagData;
+      }
+    }
+
+    if (m_Classifier instanceof Randomizable) {
+      ((Randomizable) m_Classifiers[iteration]).setSeed(m_random.nextInt());
+    }
+
+    return bagData;
+  }
+
   /**
    * Calculates the class membership probabilities for the given test instance.
    * 
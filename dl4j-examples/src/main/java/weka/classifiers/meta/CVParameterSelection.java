@@ -22,6 +22,7 @@
 
 package weka.classifiers.meta;
 
+import weka.classifiers.Classifier;
 import weka.classifiers.Evaluation;
 import weka.classifiers.RandomizableSingleClassifierEnhancer;
 import weka.core.Capabilities;
@@ -88,6 +89,16 @@ import java.util.Vector;
  *  once to optimise over several classifier options
  *  simultaneously.</pre>
  * 
+ * <pre> -num-slots &lt;num&gt;
+ *  Number of execution slots for evaluating the settings.
+ *  (default 1 - i.e. no parallelism)</pre>
+ * 
+ * <pre> -halving &lt;factor&gt;
+ *  Factor for successive halving: the settings are compared
+ *  after a subset of the folds and only the best 1/factor of
+ *  them are evaluated further (0 = off).
+ *  (default 0)</pre>
+ * 
  * <pre> -S &lt;num&gt;
  *  Random number seed.
  *  (default 1)</pre>
@@ -275,6 +286,15 @@ public class CVParameterSelection
   /** The number of folds used in cross-validation */
   protected int m_NumFolds = 10;
 
+  /** The number of execution slots used for evaluating the settings */
+  protected int m_NumExecutionSlots = 1;
+
+  /** The factor for successive halving (0 = off) */
+  protected double m_HalvingFactor = 0;
+
+  /** The settings to evaluate at once, null if evaluated one by one */
+  protected Vector<String[]> m_Settings;
+
   /**
    * Create the options array to pass to the classifier. The parameter
    * values and positions are taken from m_ClassifierOptions and
@@ -353,6 +373,8 @@ public class CVParameterSelection
 	  cvParam.m_ParamValue += increment) {
 	findParamsByCrossValidation(depth + 1, trainData, random);
       }
+    } else if (m_Settings != null) {
+      m_Settings.addElement(createOptions());
     } else {
       
       Evaluation evaluation = new Evaluation(trainData);
@@ -391,6 +413,70 @@ public class CVParameterSelection
     }
   }
 
+  /**
+   * Cross-validates the settings collected in m_Settings with a
+   * GridEvaluator, i.e., in parallel and/or by successive halving, and
+   * picks the best one in the same way as
+   * findParamsByCrossValidation. Without halving, the chosen setting is
+   * the same as the one of the sequential search.
+   *
+   * @param trainData the data the search is based on
+   * @throws Exception if an error occurs
+   */
+  protected void evaluateSettings(Instances trainData) throws Exception {
+
+    int numSettings = m_Settings.size();
+    GridEvaluator.Folds trainFolds =
+      new GridEvaluator.Folds(trainData, m_NumFolds, 1);
+
+    Classifier[] classifiers = new Classifier[numSettings];
+    Instances[] data = new Instances[numSettings];
+    GridEvaluator.Folds[] folds = new GridEvaluator.Folds[numSettings];
+    for (int i = 0; i < numSettings; i++) {
+      String[] options = (String[]) m_Settings.elementAt(i).clone();
+      ((OptionHandler)m_Classifier).setOptions(options);
+      classifiers[i] = Classifier.makeCopy(m_Classifier);
+      data[i] = trainData;
+      folds[i] = trainFolds;
+    }
+
+    GridEvaluator evaluator = new GridEvaluator(m_NumExecutionSlots,
+	m_HalvingFactor, new GridEvaluator.Ranking() {
+	  public double merit(Evaluation evaluation) {
+	    return -evaluation.errorRate();
+	  }
+	});
+    Evaluation[] evaluations = evaluator.evaluate(classifiers, data, folds);
+
+    for (int i = 0; i < numSettings; i++) {
+      String[] options = m_Settings.elementAt(i);
+      if (m_Debug) {
+	System.err.print("Setting options for " 
+			 + m_Classifier.getClass().getName() + ":");
+	for (int j = 0; j < options.length; j++) {
+	  System.err.print(" " + options[j]);
+	}
+	System.err.println("");
+      }
+      if (evaluations[i] == null) {
+	if (m_Debug) {
+	  System.err.println("Dropped by successive halving");
+	}
+	continue;
+      }
+      double error = evaluations[i].errorRate();
+      if (m_Debug) {
+	System.err.println("Cross-validated error rate: " 
+			   + Utils.doubleToString(error, 6, 4));
+      }
+      if ((m_BestPerformance == -99) || (error < m_BestPerformance)) {
+	
+	m_BestPerformance = error;
+	m_BestClassifierOptions = options;
+      }
+    }
+  }
+
   /**
    * Returns a string describing this classifier
    * @return a description of the classifier suitable for
@@ -430,7 +516,7 @@ public class CVParameterSelection
    */
   public Enumeration listOptions() {
 
-    Vector newVector = new Vector(2);
+    Vector newVector = new Vector(4);
 
     newVector.addElement(new Option(
 	      "\tNumber of folds used for cross validation (default 10).",
@@ -446,7 +532,16 @@ public class CVParameterSelection
 	      + "\tonce to optimise over several classifier options\n"
 	      + "\tsimultaneously.",
 	      "P", 1, "-P <classifier parameter>"));
-
+    newVector.addElement(new Option(
+	      "\tNumber of execution slots for evaluating the settings.\n"
+	      + "\t(default 1 - i.e. no parallelism)",
+	      "num-slots", 1, "-num-slots <num>"));
+    newVector.addElement(new Option(
+	      "\tFactor for successive halving: the settings are compared\n"
+	      + "\tafter a subset of the folds and only the best 1/factor of\n"
+	      + "\tthem are evaluated further (0 = off).\n"
+	      + "\t(default 0)",
+	      "halving", 1, "-halving <factor>"));
 
     Enumeration enu = super.listOptions();
     while (enu.hasMoreElements()) {
@@ -476,6 +571,16 @@ public class CVParameterSelection
    *  once to optimise over several classifier options
    *  simultaneously.</pre>
    * 
+   * <pre> -num-slots &lt;num&gt;
+   *  Number of execution slots for evaluating the settings.
+   *  (default 1 - i.e. no parallelism)</pre>
+   * 
+   * <pre> -halving &lt;factor&gt;
+   *  Factor for successive halving: the settings are compared
+   *  after a subset of the folds and only the best 1/factor of
+   *  them are evaluated further (0 = off).
+   *  (default 0)</pre>
+   * 
    * <pre> -S &lt;num&gt;
    *  Random number seed.
    *  (default 1)</pre>
@@ -512,6 +617,20 @@ public class CVParameterSelection
       setNumFolds(10);
     }
 
+    String numSlots = Utils.getOption("num-slots", options);
+    if (numSlots.length() != 0) {
+      setNumExecutionSlots(Integer.parseInt(numSlots));
+    } else {
+      setNumExecutionSlots(1);
+    }
+
+    String halving = Utils.getOption("halving", options);
+    if (halving.length() != 0) {
+      setHalvingFactor(Double.parseDouble(halving));
+    } else {
+      setHalvingFactor(0);
+    }
+
     String cvParam;
     m_CVParams = new FastVector();
     do {
@@ -545,13 +664,15 @@ public class CVParameterSelection
     } else {
       superOptions = super.getOptions();
     }
-    String [] options = new String [superOptions.length + m_CVParams.size() * 2 + 2];
+    String [] options = new String [superOptions.length + m_CVParams.size() * 2 + 6];
 
     int current = 0;
     for (int i = 0; i < m_CVParams.size(); i++) {
       options[current++] = "-P"; options[current++] = "" + getCVParameter(i);
     }
     options[current++] = "-X"; options[current++] = "" + getNumFolds();
+    options[current++] = "-num-slots"; options[current++] = "" + getNumExecutionSlots();
+    options[current++] = "-halving"; options[current++] = "" + getHalvingFactor();
 
     System.arraycopy(superOptions, 0, options, current, 
 		     superOptions.length);
@@ -625,7 +746,18 @@ public class CVParameterSelection
       Utils.getOption(((CVParameter)m_CVParams.elementAt(i)).m_ParamChar,
 		      m_ClassifierOptions);
     }
-    findParamsByCrossValidation(0, trainData, random);
+    if ((m_NumExecutionSlots > 1) || (m_HalvingFactor > 0)) {
+      // collect all the settings first and evaluate them at once
+      m_Settings = new Vector<String[]>();
+      try {
+	findParamsByCrossValidation(0, trainData, random);
+	evaluateSettings(trainData);
+      } finally {
+	m_Settings = null;
+      }
+    } else {
+      findParamsByCrossValidation(0, trainData, random);
+    }
 
     String [] options = (String [])m_BestClassifierOptions.clone();
     ((OptionHandler)m_Classifier).setOptions(options);
@@ -761,6 +893,76 @@ public class CVParameterSelection
     }
     m_NumFolds = numFolds;
   }
+
+  /**
+   * Returns the tip text for this property
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of execution slots (threads) to use for "
+      + "evaluating the settings.";
+  }
+
+  /**
+   * Gets the number of execution slots (threads) to use.
+   *
+   * @return the number of slots to use
+   */
+  public int getNumExecutionSlots() {
+
+    return m_NumExecutionSlots;
+  }
+
+  /**
+   * Sets the number of execution slots (threads) to use.
+   *
+   * @param numSlots the number of slots to use
+   * @throws Exception if parameter illegal
+   */
+  public void setNumExecutionSlots(int numSlots) throws Exception {
+
+    if (numSlots < 1) {
+      throw new Exception("Number of execution slots needs to be >= 1!");
+    }
+    m_NumExecutionSlots = numSlots;
+  }
+
+  /**
+   * Returns the tip text for this property
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String halvingFactorTipText() {
+    return "The factor for successive halving: the settings are compared "
+      + "after a subset of the folds and only the best 1/factor of them are "
+      + "evaluated on more folds (0 = off, every setting is evaluated on "
+      + "all folds).";
+  }
+
+  /**
+   * Gets the factor for successive halving.
+   *
+   * @return the factor, 0 if off
+   */
+  public double getHalvingFactor() {
+
+    return m_HalvingFactor;
+  }
+
+  /**
+   * Sets the factor for successive halving.
+   *
+   * @param factor the factor, 0 to turn halving off
+   * @throws Exception if parameter illegal
+   */
+  public void setHalvingFactor(double factor) throws Exception {
+
+    if ((factor != 0) && !(factor > 1)) {
+      throw new Exception("Halving factor needs to be 0 (off) or > 1!");
+    }
+    m_HalvingFactor = factor;
+  }
  
   /**
    *  Returns the type of graph this classifier
@@ -0,0 +1,490 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+/*
+ *    GridEvaluator.java
+ *
+ */
+
+package weka.classifiers.meta;
+
+import weka.classifiers.Classifier;
+import weka.classifiers.Evaluation;
+import weka.core.BatchPredictor;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Cross-validates the settings (points) of a parameter search. Every fold
+ * of every point is an independent task on a work-stealing pool; each task
+ * trains a fresh copy of the point's classifier on its own copy of the
+ * training fold and only collects the predictions for the test fold. The
+ * statistics are then updated from these predictions in point and fold
+ * order, so that every evaluation is identical to a sequential
+ * cross-validation on the same folds, regardless of the number of
+ * execution slots. <p/>
+ *
+ * Optionally, the points are evaluated by successive halving: all points
+ * are first evaluated on a few folds only, and only the best
+ * 1/<code>factor</code> of them (ties are resolved in favour of the earlier
+ * point) are evaluated on the next, <code>factor</code> times larger, number
+ * of folds. The points that survive the last round are evaluated on all
+ * folds. The number of rounds is limited by the number of folds as well as
+ * the number of points, e.g., with 10 folds and a factor of 3, the points
+ * are compared after 2 and 4 folds. <p/>
+ *
+ * The folds are only generated when a round needs them, and are discarded
+ * after the round.
+ *
+ * @version $Revision$
+ */
+public class GridEvaluator
+  implements RevisionHandler {
+
+  /**
+   * Determines the merit of a (partial) evaluation of a point for
+   * successive halving.
+   */
+  public static interface Ranking {
+
+    /**
+     * Returns the merit of the evaluation; larger values are better.
+     *
+     * @param evaluation the evaluation of a point
+     * @return the merit
+     * @throws Exception if the merit cannot be determined
+     */
+    public double merit(Evaluation evaluation) throws Exception;
+  }
+
+  /**
+   * The cross-validation folds of a dataset. The folds are generated in
+   * fold order when they are first needed, as Instances.trainCV and
+   * Instances.testCV generate them, and can be discarded once they have
+   * been used. Points evaluated on the same folds share the object.
+   */
+  public static class Folds {
+
+    /** the data to split */
+    protected Instances m_Data;
+
+    /** the number of folds */
+    protected int m_NumFolds;
+
+    /** the random number generator shared by the training folds (null if
+     * every training fold gets its own) */
+    protected Random m_Random;
+
+    /** the seed of the random number generator of each training fold */
+    protected long m_Seed;
+
+    /** the training folds generated and not discarded yet */
+    protected Instances[] m_Train;
+
+    /** the test folds generated and not discarded yet */
+    protected Instances[] m_Test;
+
+    /** the number of folds generated so far */
+    protected int m_NumGenerated;
+
+    /**
+     * Initializes the folds of randomized (and stratified) data, with the
+     * training folds shuffled by the given random number generator, as
+     * Evaluation.crossValidateModel does.
+     *
+     * @param data the data to split
+     * @param numFolds the number of folds
+     * @param random the random number generator shared by the training folds
+     */
+    public Folds(Instances data, int numFolds, Random random) {
+      m_Data = data;
+      m_NumFolds = numFolds;
+      m_Random = random;
+      m_Train = new Instances[numFolds];
+      m_Test = new Instances[numFolds];
+    }
+
+    /**
+     * Initializes the folds, with every training fold shuffled by a new
+     * random number generator with the given seed.
+     *
+     * @param data the data to split
+     * @param numFolds the number of folds
+     * @param seed the seed of the random number generator of each training
+     * fold
+     */
+    public Folds(Instances data, int numFolds, long seed) {
+      this(data, numFolds, null);
+      m_Seed = seed;
+    }
+
+    /**
+     * Returns the number of folds.
+     *
+     * @return the number of folds
+     */
+    public int numFolds() {
+      return m_NumFolds;
+    }
+
+    /**
+     * Generates the folds up to the given one.
+     *
+     * @param fold the fold
+     * @throws IllegalStateException if the fold has already been discarded
+     */
+    protected void generate(int fold) {
+      while (m_NumGenerated <= fold) {
+	Random random = (m_Random == null) ? new Random(m_Seed) : m_Random;
+	m_Train[m_NumGenerated] = m_Data.trainCV(m_NumFolds, m_NumGenerated, random);
+	m_Test[m_NumGenerated] = m_Data.testCV(m_NumFolds, m_NumGenerated);
+	m_NumGenerated++;
+      }
+      if (m_Train[fold] == null) {
+	throw new IllegalStateException("Fold " + fold + " has already been discarded!");
+      }
+    }
+
+    /**
+     * Returns a training fold.
+     *
+     * @param fold the fold
+     * @return the training fold
+     */
+    public Instances train(int fold) {
+      generate(fold);
+      return m_Train[fold];
+    }
+
+    /**
+     * Returns a test fold.
+     *
+     * @param fold the fold
+     * @return the test fold
+     */
+    public Instances test(int fold) {
+      generate(fold);
+      return m_Test[fold];
+    }
+
+    /**
+     * Discards the folds before the given one.
+     *
+     * @param fold the first fold to keep
+     */
+    public void discard(int fold) {
+      for (int j = 0; j < fold; j++) {
+	m_Train[j] = null;
+	m_Test[j] = null;
+      }
+    }
+  }
+
+  /** the number of execution slots */
+  protected int m_NumExecutionSlots;
+
+  /** the factor for successive halving (0 = off) */
+  protected double m_HalvingFactor;
+
+  /** the ranking used by successive halving */
+  protected Ranking m_Ranking;
+
+  /**
+   * Initializes the evaluator.
+   *
+   * @param numSlots the number of execution slots
+   * @param halvingFactor the factor for successive halving, 0 to evaluate
+   * every point on all folds
+   * @param ranking determines the merits for successive halving (may be
+   * null if halving is off)
+   * @throws IllegalArgumentException if the halving factor is neither 0
+   * nor larger than 1
+   */
+  public GridEvaluator(int numSlots, double halvingFactor, Ranking ranking) {
+    if ((halvingFactor != 0) && !(halvingFactor > 1)) {
+      throw new IllegalArgumentException("Halving factor needs to be 0 (off) or > 1!");
+    }
+    m_NumExecutionSlots = Math.max(1, numSlots);
+    m_HalvingFactor = halvingFactor;
+    m_Ranking = ranking;
+  }
+
+  /**
+   * Returns the numbers of folds after which the points are compared. The
+   * last entry is always the total number of folds.
+   *
+   * @param numPoints the number of points
+   * @param numFolds the number of folds
+   * @return the numbers of folds of the rounds
+   */
+  protected int[] getRounds(int numPoints, int numFolds) {
+    int rounds = 0;
+    if (m_HalvingFactor > 1) {
+      double reduction = m_HalvingFactor;
+      while ((reduction <= numPoints) && (reduction <= numFolds)) {
+	rounds++;
+	reduction *= m_HalvingFactor;
+      }
+    }
+    int[] result = new int[rounds + 1];
+    for (int r = 0; r < rounds; r++) {
+      result[r] = (int) Math.ceil(numFolds / Math.pow(m_HalvingFactor, rounds - r));
+    }
+    result[rounds] = numFolds;
+    return result;
+  }
+
+  /**
+   * Cross-validates the points.
+   *
+   * @param classifiers the configured (unbuilt) classifier of each point
+   * @param data the data of each point, used to initialize the evaluation
+   * @param folds the folds of each point
+   * @return the evaluation of each point, null for the points that were
+   * dropped by successive halving
+   * @throws Exception if a classifier could not be built or evaluated
+   */
+  public Evaluation[] evaluate(Classifier[] classifiers, Instances[] data,
+			       Folds[] folds)
+    throws Exception {
+
+    int numPoints = classifiers.length;
+    Evaluation[] result = new Evaluation[numPoints];
+    if (numPoints == 0) {
+      return result;
+    }
+    int numFolds = folds[0].numFolds();
+    int[] rounds = getRounds(numPoints, numFolds);
+
+    List<Integer> alive = new ArrayList<Integer>();
+    for (int i = 0; i < numPoints; i++) {
+      result[i] = new Evaluation(data[i]);
+      alive.add(Integer.valueOf(i));
+    }
+
+    ExecutorService executor = Executors.newWorkStealingPool(m_NumExecutionSlots);
+    try {
+      int done = 0;
+      for (int r = 0; r < rounds.length; r++) {
+	// schedule all the folds of the round at once
+	List<Future<FoldTask>> futures = new ArrayList<Future<FoldTask>>();
+	for (Integer point : alive) {
+	  int i = point.intValue();
+	  for (int j = done; j < rounds[r]; j++) {
+	    futures.add(executor.submit(new FoldTask(classifiers[i], folds[i].train(j),
+						     folds[i].test(j))));
+	  }
+	}
+
+	// update the statistics in point and fold order
+	int n = 0;
+	for (Integer point : alive) {
+	  int i = point.intValue();
+	  for (int j = done; j < rounds[r]; j++) {
+	    FoldTask fold;
+	    try {
+	      fold = futures.get(n).get();
+	    } catch (ExecutionException e) {
+	      for (Future<FoldTask> future : futures) {
+		future.cancel(true);
+	      }
+	      if (e.getCause() instanceof Exception) {
+		throw (Exception) e.getCause();
+	      }
+	      throw e;
+	    }
+	    futures.set(n++, null);
+	    result[i].setPriors(folds[i].train(j));
+	    fold.evaluate(result[i]);
+	  }
+	}
+	done = rounds[r];
+
+	// the folds of this round are not needed anymore
+	for (Integer point : alive) {
+	  folds[point.intValue()].discard(done);
+	}
+
+	if (r < rounds.length - 1) {
+	  alive = select(alive, result,
+			 (int) Math.ceil(alive.size() / m_HalvingFactor));
+	}
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    boolean[] survived = new boolean[numPoints];
+    for (Integer point : alive) {
+      survived[point.intValue()] = true;
+    }
+    for (int i = 0; i < numPoints; i++) {
+      if (!survived[i]) {
+	result[i] = null;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the best points, in their original order.
+   *
+   * @param alive the points that are still evaluated
+   * @param evaluations the evaluations of the points so far
+   * @param num the number of points to keep
+   * @return the points to keep
+   * @throws Exception if the merit of a point cannot be determined
+   */
+  protected List<Integer> select(List<Integer> alive, Evaluation[] evaluations,
+				 int num) throws Exception {
+
+    final double[] merits = new double[evaluations.length];
+    for (Integer point : alive) {
+      double merit = m_Ranking.merit(evaluations[point.intValue()]);
+      merits[point.intValue()] = Double.isNaN(merit) ? Double.NEGATIVE_INFINITY : merit;
+    }
+
+    // stable sort, best first
+    List<Integer> sorted = new ArrayList<Integer>(alive);
+    Collections.sort(sorted, new Comparator<Integer>() {
+	public int compare(Integer o1, Integer o2) {
+	  return Double.compare(merits[o2.intValue()], merits[o1.intValue()]);
+	}
+      });
+    List<Integer> result = new ArrayList<Integer>(sorted.subList(0, Math.max(1, num)));
+    Collections.sort(result);
+
+    return result;
+  }
+
+  /**
+   * Builds a classifier on a single training fold and collects its
+   * predictions on the test fold, as Evaluation.evaluateModel would.
+   */
+  protected static class FoldTask
+    implements Callable<FoldTask> {
+
+    /** the classifier to copy and build */
+    protected Classifier m_Classifier;
+
+    /** the training fold */
+    protected Instances m_Train;
+
+    /** the test fold */
+    protected Instances m_Test;
+
+    /** the predicted distributions (nominal class, or batch predictions) */
+    protected double[][] m_Distributions;
+
+    /** the predicted values (numeric class) */
+    protected double[] m_Predictions;
+
+    /**
+     * Initializes the task.
+     *
+     * @param classifier the configured classifier, it is copied
+     * @param train the training fold, it is copied
+     * @param test the test fold
+     */
+    public FoldTask(Classifier classifier, Instances train, Instances test) {
+      m_Classifier = classifier;
+      m_Train = train;
+      m_Test = test;
+    }
+
+    /**
+     * Builds the classifier and predicts the test fold.
+     *
+     * @return this task
+     * @throws Exception if building or predicting fails
+     */
+    public FoldTask call() throws Exception {
+      boolean nominal = m_Test.classAttribute().isNominal();
+
+      Classifier classifier = Classifier.makeCopy(m_Classifier);
+      classifier.buildClassifier(new Instances(m_Train));
+      m_Classifier = null;
+      m_Train = null;
+
+      if (classifier instanceof BatchPredictor) {
+	Instances classMissing = new Instances(m_Test);
+	for (int i = 0; i < classMissing.numInstances(); i++) {
+	  classMissing.instance(i).setClassMissing();
+	}
+	m_Distributions =
+	  ((BatchPredictor) classifier).distributionsForInstances(classMissing);
+	return this;
+      }
+
+      if (nominal) {
+	m_Distributions = new double[m_Test.numInstances()][];
+      } else {
+	m_Predictions = new double[m_Test.numInstances()];
+      }
+      for (int i = 0; i < m_Test.numInstances(); i++) {
+	Instance classMissing = (Instance) m_Test.instance(i).copy();
+	classMissing.setDataset(m_Test);
+	classMissing.setClassMissing();
+	if (nominal) {
+	  m_Distributions[i] = classifier.distributionForInstance(classMissing);
+	} else {
+	  m_Predictions[i] = classifier.classifyInstance(classMissing);
+	}
+      }
+      return this;
+    }
+
+    /**
+     * Updates the statistics with the predictions.
+     *
+     * @param evaluation the evaluation to update
+     * @throws Exception if the predictions could not be evaluated
+     */
+    public void evaluate(Evaluation evaluation) throws Exception {
+      for (int i = 0; i < m_Test.numInstances(); i++) {
+	if (m_Distributions != null) {
+	  evaluation.evaluateModelOnceAndRecordPrediction(m_Distributions[i],
+							  m_Test.instance(i));
+	} else {
+	  evaluation.evaluateModelOnce(m_Predictions[i], m_Test.instance(i));
+	}
+      }
+    }
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return		the revision
+   */
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
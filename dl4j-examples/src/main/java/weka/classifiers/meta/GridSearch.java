@@ -176,6 +176,16 @@ import java.util.Vector;
  *  The log file to log the messages to.
  *  (default: none)</pre>
  * 
+ * <pre> -num-slots &lt;num&gt;
+ *  Number of execution slots for evaluating the grid points.
+ *  (default 1 - i.e. no parallelism)</pre>
+ * 
+ * <pre> -halving &lt;factor&gt;
+ *  Factor for successive halving: the grid points are compared
+ *  after a subset of the folds and only the best 1/factor of
+ *  them are evaluated further (0 = off).
+ *  (default 0)</pre>
+ * 
  * <pre> -S &lt;num&gt;
  *  Random number seed.
  *  (default 1)</pre>
@@ -1592,6 +1602,12 @@ public class GridSearch
   /** the log file to use */
   protected File m_LogFile = new File(System.getProperty("user.dir"));
   
+  /** the number of execution slots for evaluating the grid points */
+  protected int m_NumExecutionSlots = 1;
+  
+  /** the factor for successive halving (0 = off) */
+  protected double m_HalvingFactor = 0;
+  
   /** the value-pairs grid */
   protected Grid m_Grid;
 
@@ -1810,6 +1826,18 @@ public class GridSearch
 	+ "\t(default: none)",
 	"log-file", 1, "-log-file <filename>"));
 
+    result.addElement(new Option(
+	"\tNumber of execution slots for evaluating the grid points.\n"
+	+ "\t(default 1 - i.e. no parallelism)",
+	"num-slots", 1, "-num-slots <num>"));
+
+    result.addElement(new Option(
+	"\tFactor for successive halving: the grid points are compared\n"
+	+ "\tafter a subset of the folds and only the best 1/factor of\n"
+	+ "\tthem are evaluated further (0 = off).\n"
+	+ "\t(default 0)",
+	"halving", 1, "-halving <factor>"));
+
     en = super.listOptions();
     while (en.hasMoreElements())
       result.addElement(en.nextElement());
@@ -1905,6 +1933,12 @@ public class GridSearch
     result.add("-log-file");
     result.add("" + getLogFile());
 
+    result.add("-num-slots");
+    result.add("" + getNumExecutionSlots());
+
+    result.add("-halving");
+    result.add("" + getHalvingFactor());
+
     options = super.getOptions();
     for (i = 0; i < options.length; i++)
       result.add(options[i]);
@@ -2017,6 +2051,16 @@ public class GridSearch
    *  The log file to log the messages to.
    *  (default: none)</pre>
    * 
+   * <pre> -num-slots &lt;num&gt;
+   *  Number of execution slots for evaluating the grid points.
+   *  (default 1 - i.e. no parallelism)</pre>
+   * 
+   * <pre> -halving &lt;factor&gt;
+   *  Factor for successive halving: the grid points are compared
+   *  after a subset of the folds and only the best 1/factor of
+   *  them are evaluated further (0 = off).
+   *  (default 0)</pre>
+   * 
    * <pre> -S &lt;num&gt;
    *  Random number seed.
    *  (default 1)</pre>
@@ -2198,6 +2242,18 @@ public class GridSearch
     else
       setLogFile(new File(System.getProperty("user.dir")));
     
+    tmpStr = Utils.getOption("num-slots", options);
+    if (tmpStr.length() != 0)
+      setNumExecutionSlots(Integer.parseInt(tmpStr));
+    else
+      setNumExecutionSlots(1);
+    
+    tmpStr = Utils.getOption("halving", options);
+    if (tmpStr.length() != 0)
+      setHalvingFactor(Double.parseDouble(tmpStr));
+    else
+      setHalvingFactor(0);
+    
     super.setOptions(options);
   }
 
@@ -2784,6 +2840,73 @@ public class GridSearch
   public void setLogFile(File value) {
     m_LogFile = value;
   }
+  
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return 		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of execution slots (threads) to use for evaluating "
+      + "the grid points.";
+  }
+
+  /**
+   * Gets the number of execution slots (threads) to use.
+   *
+   * @return 		the number of slots
+   */
+  public int getNumExecutionSlots() {
+    return m_NumExecutionSlots;
+  }
+  
+  /**
+   * Sets the number of execution slots (threads) to use.
+   *
+   * @param value 	the number of slots
+   * @throws Exception	if the number is less than 1
+   */
+  public void setNumExecutionSlots(int value) throws Exception {
+    if (value < 1)
+      throw new Exception("Number of execution slots needs to be >= 1!");
+    m_NumExecutionSlots = value;
+  }
+  
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return 		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String halvingFactorTipText() {
+    return 
+        "The factor for successive halving: the grid points are compared "
+      + "after a subset of the folds and only the best 1/factor of them are "
+      + "evaluated on more folds (0 = off, every point is evaluated on all "
+      + "folds).";
+  }
+
+  /**
+   * Gets the factor for successive halving.
+   *
+   * @return 		the factor, 0 if off
+   */
+  public double getHalvingFactor() {
+    return m_HalvingFactor;
+  }
+  
+  /**
+   * Sets the factor for successive halving.
+   *
+   * @param value 	the factor, 0 to turn halving off
+   * @throws Exception	if the factor is neither 0 nor larger than 1
+   */
+  public void setHalvingFactor(double value) throws Exception {
+    if ((value != 0) && !(value > 1))
+      throw new Exception("Halving factor needs to be 0 (off) or > 1!");
+    m_HalvingFactor = value;
+  }
 
   /**
    * returns the best filter setup
@@ -3138,6 +3261,138 @@ public class GridSearch
       log("\n" + logPerformances(grid, performances, TAGS_EVALUATION[i]), true);
   }
   
+  /**
+   * cross-validates the points of the grid that are not cached yet with a
+   * GridEvaluator, i.e., in parallel and/or by successive halving, and adds
+   * the performances of all points (except the ones dropped by halving) in
+   * the same order as the sequential traversal. Every point is evaluated on
+   * the same folds as with Evaluation.crossValidateModel.
+   * 
+   * @param grid		the grid to work on
+   * @param inst		the data to work with
+   * @param cv			the number of folds for the cross-validation
+   * @param performances	the vector to add the performances to
+   * @return			true if all points were already cached
+   * @throws Exception		if setup or training fails
+   */
+  protected boolean evaluateGrid(Grid grid, Instances inst, int cv, Vector<Performance> performances) throws Exception {
+    int				i;
+    int				n;
+    Enumeration<PointDouble>	enm;
+    Vector<PointDouble>		points;
+    Vector<PointDouble>		todo;
+    Vector<Classifier>		classifiers;
+    Vector<Instances>		datasets;
+    Vector<GridEvaluator.Folds>	folds;
+    PointDouble			values;
+    Instances			data;
+    Instances			randData;
+    GridEvaluator.Folds		dataFolds;
+    Random			random;
+    Filter			filter;
+    Evaluation[]		evals;
+    int				size;
+    double			x;
+    double			y;
+    
+    points      = new Vector<PointDouble>();
+    todo        = new Vector<PointDouble>();
+    classifiers = new Vector<Classifier>();
+    datasets    = new Vector<Instances>();
+    folds       = new Vector<GridEvaluator.Folds>();
+    dataFolds   = null;
+    
+    if (m_Traversal == TRAVERSAL_BY_COLUMN)
+      size = grid.width();
+    else
+      size = grid.height();
+    
+    for (i = 0; i < size; i++) {
+      if (m_Traversal == TRAVERSAL_BY_COLUMN)
+	enm = grid.column(i);
+      else
+	enm = grid.row(i);
+      
+      filter = null;
+      data   = null;
+      
+      while (enm.hasMoreElements()) {
+	values = enm.nextElement();
+	points.add(values);
+	if (m_Cache.isCached(cv, values))
+	  continue;
+	
+	x = evaluate(values.getX(), true);
+	y = evaluate(values.getY(), false);
+	
+	// data pass through filter, generate folds as crossValidateModel does
+	if (filter == null) {
+	  filter = (Filter) setup(getFilter(), x, y);
+	  filter.setInputFormat(inst);
+	  data = Filter.useFilter(inst, filter);
+	  // make sure that the numbers don't get too small - otherwise NaNs!
+	  Filter cleaner = new NumericCleaner();
+	  cleaner.setInputFormat(data);
+	  data = Filter.useFilter(data, cleaner);
+	  
+	  random   = new Random(getSeed());
+	  randData = new Instances(data);
+	  randData.randomize(random);
+	  if (randData.classAttribute().isNominal())
+	    randData.stratify(cv);
+	  // the folds themselves are generated when they are evaluated
+	  dataFolds = new GridEvaluator.Folds(randData, cv, random);
+	}
+	
+	todo.add(values);
+	classifiers.add((Classifier) setup(getClassifier(), x, y));
+	datasets.add(data);
+	folds.add(dataFolds);
+      }
+    }
+    
+    if (todo.size() == 0)
+      return true;
+    
+    evals = new GridEvaluator(
+	m_NumExecutionSlots, m_HalvingFactor, new GridEvaluator.Ranking() {
+	  public double merit(Evaluation evaluation) throws Exception {
+	    double result = new Performance(null, evaluation).getPerformance(m_Evaluation);
+	    // the errors (and their combination): the smaller the better
+	    if (    (m_Evaluation != EVALUATION_CC) 
+		 && (m_Evaluation != EVALUATION_ACC) 
+		 && (m_Evaluation != EVALUATION_KAPPA) )
+	      result = -result;
+	    return result;
+	  }
+	}).evaluate(
+	    classifiers.toArray(new Classifier[classifiers.size()]),
+	    datasets.toArray(new Instances[datasets.size()]),
+	    folds.toArray(new GridEvaluator.Folds[folds.size()]));
+    
+    n = 0;
+    for (i = 0; i < points.size(); i++) {
+      values = points.get(i);
+      if ((n < todo.size()) && (todo.get(n) == values)) {
+	if (evals[n] == null) {
+	  log("" + values + ": dropped by successive halving");
+	}
+	else {
+	  performances.add(new Performance(values, evals[n]));
+	  m_Cache.add(cv, new Performance(values, evals[n]));
+	  log("" + performances.get(performances.size() - 1) + ": cached=false");
+	}
+	n++;
+      }
+      else {
+	performances.add(m_Cache.get(cv, values));
+	log("" + performances.get(performances.size() - 1) + ": cached=true");
+      }
+    }
+    
+    return false;
+  }
+  
   /**
    * determines the best values-pair for the given grid, using CV with 
    * specified number of folds.
@@ -3175,55 +3430,60 @@ public class GridSearch
     else
       size = grid.height();
     
-    allCached = true;
+    if ((m_NumExecutionSlots > 1) || (m_HalvingFactor > 0)) {
+      allCached = evaluateGrid(grid, inst, cv, performances);
+    }
+    else {
+      allCached = true;
 
-    for (i = 0; i < size; i++) {
-      if (m_Traversal == TRAVERSAL_BY_COLUMN)
-	enm = grid.column(i);
-      else
-	enm = grid.row(i);
+      for (i = 0; i < size; i++) {
+	if (m_Traversal == TRAVERSAL_BY_COLUMN)
+	  enm = grid.column(i);
+	else
+	  enm = grid.row(i);
       
-      filter = null;
-      data   = null;
+	filter = null;
+	data   = null;
       
-      while (enm.hasMoreElements()) {
-	values = enm.nextElement();
+	while (enm.hasMoreElements()) {
+	  values = enm.nextElement();
 	
-	// already calculated?
-	cached = m_Cache.isCached(cv, values);
-	if (cached) {
-	  performances.add(m_Cache.get(cv, values));
-	}
-	else {
-	  allCached = false;
+	  // already calculated?
+	  cached = m_Cache.isCached(cv, values);
+	  if (cached) {
+	    performances.add(m_Cache.get(cv, values));
+	  }
+	  else {
+	    allCached = false;
 	  
-	  x = evaluate(values.getX(), true);
-	  y = evaluate(values.getY(), false);
+	    x = evaluate(values.getX(), true);
+	    y = evaluate(values.getY(), false);
 	  
-	  // data pass through filter
-	  if (filter == null) {
-	    filter = (Filter) setup(getFilter(), x, y);
-	    filter.setInputFormat(inst);
-	    data = Filter.useFilter(inst, filter);
-	    // make sure that the numbers don't get too small - otherwise NaNs!
-	    Filter cleaner = new NumericCleaner();
-	    cleaner.setInputFormat(data);
-	    data = Filter.useFilter(data, cleaner);
-	  }
+	    // data pass through filter
+	    if (filter == null) {
+	      filter = (Filter) setup(getFilter(), x, y);
+	      filter.setInputFormat(inst);
+	      data = Filter.useFilter(inst, filter);
+	      // make sure that the numbers don't get too small - otherwise NaNs!
+	      Filter cleaner = new NumericCleaner();
+	      cleaner.setInputFormat(data);
+	      data = Filter.useFilter(data, cleaner);
+	    }
 
-	  // setup classifier
-	  classifier = (Classifier) setup(getClassifier(), x, y);
+	    // setup classifier
+	    classifier = (Classifier) setup(getClassifier(), x, y);
 
-	  // evaluate
-	  eval = new Evaluation(data);
-	  eval.crossValidateModel(classifier, data, cv, new Random(getSeed()));
-	  performances.add(new Performance(values, eval));
+	    // evaluate
+	    eval = new Evaluation(data);
+	    eval.crossValidateModel(classifier, data, cv, new Random(getSeed()));
+	    performances.add(new Performance(values, eval));
 	  
-	  // add to cache
-	  m_Cache.add(cv, new Performance(values, eval));
-	}
+	    // add to cache
+	    m_Cache.add(cv, new Performance(values, eval));
+	  }
 
-	log("" + performances.get(performances.size() - 1) + ": cached=" + cached);
+	  log("" + performances.get(performances.size() - 1) + ": cached=" + cached);
+	}
       }
     }
 
@@ -3237,10 +3497,11 @@ public class GridSearch
 
     result = performances.get(performances.size() - 1).getValues();
 
-    // check whether all performances are the same
-    m_UniformPerformance = true;
+    // check whether all performances are the same (unless successive
+    // halving dropped points, the survivors say nothing about those)
+    m_UniformPerformance = (performances.size() == grid.width() * grid.height());
     p1 = performances.get(0);
-    for (i = 1; i < performances.size(); i++) {
+    for (i = 1; m_UniformPerformance && (i < performances.size()); i++) {
       p2 = performances.get(i);
       if (p2.getPerformance(m_Evaluation) != p1.getPerformance(m_Evaluation)) {
 	m_UniformPerformance = false;
@@ -22,8 +22,7 @@
 
 package weka.classifiers.meta;
 
-import weka.classifiers.Classifier;
-import weka.classifiers.RandomizableIteratedSingleClassifierEnhancer;
+import weka.classifiers.RandomizableParallelIteratedSingleClassifierEnhancer;
 import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.Randomizable;
@@ -46,6 +45,10 @@ import java.util.Random;
  *  Random number seed.
  *  (default 1)</pre>
  * 
+ * <pre> -num-slots &lt;num&gt;
+ *  Number of execution slots.
+ *  (default 1 - i.e. no parallelism)</pre>
+ * 
  * <pre> -I &lt;num&gt;
  *  Number of iterations.
  *  (default 10)</pre>
@@ -89,11 +92,17 @@ import java.util.Random;
  * @version $Revision: 1.13 $
  */
 public class RandomCommittee 
-  extends RandomizableIteratedSingleClassifierEnhancer
+  extends RandomizableParallelIteratedSingleClassifierEnhancer
   implements WeightedInstancesHandler {
     
   /** for serialization */
   static final long serialVersionUID = -9204394360557300092L;
+
+  /** The training data, only set while the committee is built */
+  protected Instances m_data;
+
+  /** The random number generator for the seeds, only set while building */
+  protected Random m_random;
   
   /**
    * Constructor.
@@ -146,19 +155,34 @@ public class RandomCommittee
       throw new IllegalArgumentException("Base learner must implement Randomizable!");
     }
 
-    m_Classifiers = Classifier.makeCopies(m_Classifier, m_NumIterations);
+    super.buildClassifier(data);
 
-    Random random = data.getRandomNumberGenerator(m_Seed);
-    for (int j = 0; j < m_Classifiers.length; j++) {
-
-      // Set the random number seed for the current classifier.
-      ((Randomizable) m_Classifiers[j]).setSeed(random.nextInt());
-      
-      // Build the classifier.
-      m_Classifiers[j].buildClassifier(data);
+    m_data = data;
+    m_random = data.getRandomNumberGenerator(m_Seed);
+    try {
+      buildClassifiers();
+    } finally {
+      m_data = null;
+      m_random = null;
     }
   }
 
+  /**
+   * Sets the random number seed of the given member. All members are
+   * trained on the full training data.
+   *
+   * @param iteration the index of the member
+   * @return the training data
+   * @exception Exception never thrown
+   */
+  protected Instances getTrainingSet(int iteration) throws Exception {
+
+    // Set the random number seed for the current classifier.
+    ((Randomizable) m_Classifiers[iteration]).setSeed(m_random.nextInt());
+
+    return m_data;
+  }
+
   /**
    * Calculates the class membership probabilities for the given test
    * instance.
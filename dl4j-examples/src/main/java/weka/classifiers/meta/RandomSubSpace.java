@@ -24,7 +24,7 @@ package weka.classifiers.meta;
 
 import weka.filters.unsupervised.attribute.Remove;
 import weka.classifiers.Classifier;
-import weka.classifiers.RandomizableIteratedSingleClassifierEnhancer;
+import weka.classifiers.RandomizableParallelIteratedSingleClassifierEnhancer;
 import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.Option;
@@ -84,6 +84,10 @@ import java.util.Collections;
  *  Random number seed.
  *  (default 1)</pre>
  * 
+ * <pre> -num-slots &lt;num&gt;
+ *  Number of execution slots.
+ *  (default 1 - i.e. no parallelism)</pre>
+ * 
  * <pre> -I &lt;num&gt;
  *  Number of iterations.
  *  (default 10)</pre>
@@ -128,7 +132,7 @@ import java.util.Collections;
  * @version $Revision: 1.4 $
  */
 public class RandomSubSpace
-  extends RandomizableIteratedSingleClassifierEnhancer 
+  extends RandomizableParallelIteratedSingleClassifierEnhancer 
   implements WeightedInstancesHandler, TechnicalInformationHandler {
 
   /** for serialization */
@@ -139,6 +143,19 @@ public class RandomSubSpace
 
   /** a ZeroR model in case no model can be built from the data */
   protected Classifier m_ZeroR;
+
+  /** The training data, only set while the ensemble is built */
+  protected Instances m_data;
+
+  /** The random number generator, only set while building */
+  protected Random m_random;
+
+  /** The (1-based) indices of the non-class attributes, only set while
+   * building */
+  protected Integer[] m_indices;
+
+  /** The number of attributes in each subspace, only set while building */
+  protected int m_numSubSpaceAttributes;
     
   /**
    * Constructor.
@@ -238,6 +255,10 @@ public class RandomSubSpace
    *  Random number seed.
    *  (default 1)</pre>
    * 
+   * <pre> -num-slots &lt;num&gt;
+   *  Number of execution slots.
+   *  (default 1 - i.e. no parallelism)</pre>
+   * 
    * <pre> -I &lt;num&gt;
    *  Number of iterations.
    *  (default 10)</pre>
@@ -426,24 +447,42 @@ public class RandomSubSpace
 	indices[offset++] = i+1;
       }
     }
-    int subSpaceSize = numberOfAttributes(indices.length, getSubSpaceSize());
-    Random random = data.getRandomNumberGenerator(m_Seed);
-    
-    for (int j = 0; j < m_Classifiers.length; j++) {
-      if (m_Classifier instanceof Randomizable) {
-	((Randomizable) m_Classifiers[j]).setSeed(random.nextInt());
-      }
-      FilteredClassifier fc = new FilteredClassifier();
-      fc.setClassifier(m_Classifiers[j]);
-      m_Classifiers[j] = fc;
-      Remove rm = new Remove();
-      rm.setOptions(new String[]{"-V", "-R", randomSubSpace(indices,subSpaceSize,classIndex+1,random)});
-      fc.setFilter(rm);
-
-      // build the classifier
-      m_Classifiers[j].buildClassifier(data);
+    m_data = data;
+    m_indices = indices;
+    m_numSubSpaceAttributes = numberOfAttributes(indices.length, getSubSpaceSize());
+    m_random = data.getRandomNumberGenerator(m_Seed);
+
+    try {
+      buildClassifiers();
+    } finally {
+      m_data = null;
+      m_indices = null;
+      m_random = null;
     }
+  }
+
+  /**
+   * Sets the seed of the given member and wraps it in a FilteredClassifier
+   * that removes all attributes outside a random subspace.
+   *
+   * @param iteration	the index of the member
+   * @return		the training data
+   * @throws Exception	if the filter could not be set up
+   */
+  protected Instances getTrainingSet(int iteration) throws Exception {
     
+    if (m_Classifier instanceof Randomizable) {
+      ((Randomizable) m_Classifiers[iteration]).setSeed(m_random.nextInt());
+    }
+    FilteredClassifier fc = new FilteredClassifier();
+    fc.setClassifier(m_Classifiers[iteration]);
+    m_Classifiers[iteration] = fc;
+    Remove rm = new Remove();
+    rm.setOptions(new String[]{"-V", "-R", randomSubSpace(m_indices,
+	m_numSubSpaceAttributes, m_data.classIndex()+1, m_random)});
+    fc.setFilter(rm);
+
+    return m_data;
   }
 
   /**
@@ -483,6 +522,27 @@ public class RandomSubSpace
     }
   }
 
+  /**
+   * Calculates the class membership probabilities for the given test
+   * instances.
+   *
+   * @param insts 	the instances to be classified
+   * @return 		the predicted distributions
+   * @throws Exception 	if the distributions can't be computed successfully 
+   */
+  public double[][] distributionsForInstances(Instances insts) throws Exception {
+
+    // default model?
+    if (m_ZeroR != null) {
+      double[][] result = new double[insts.numInstances()][];
+      for (int i = 0; i < result.length; i++)
+	result[i] = m_ZeroR.distributionForInstance(insts.instance(i));
+      return result;
+    }
+
+    return super.distributionsForInstances(insts);
+  }
+
   /**
    * Returns description of the bagged classifier.
    *
@@ -0,0 +1,176 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+/*
+ *    FlatRandomTree.java
+ *
+ */
+
+package weka.classifiers.trees;
+
+import weka.core.Instance;
+import weka.core.RevisionUtils;
+import weka.core.Utils;
+
+/**
+ * The tree of a RandomTree flattened into arrays. Every node stores its
+ * normalized class distribution, if it has one. An instance that reaches a
+ * node without a distribution gets the distribution of the deepest node on
+ * its path that has one (or an all-zero distribution, if unclassified
+ * instances are allowed), and an instance with a missing value is split up
+ * between all the children, exactly as in RandomTree.
+ *
+ * @version $Revision$
+ */
+public class FlatRandomTree
+  extends FlatTree {
+
+  /** for serialization */
+  private static final long serialVersionUID = -6372810596281044183L;
+
+  /** whether unclassified instances get an all-zero distribution */
+  protected boolean m_AllowUnclassifiedInstances;
+
+  /**
+   * Flattens the tree of a built RandomTree.
+   *
+   * @param classifier the built RandomTree
+   * @throws Exception if a class distribution cannot be normalized
+   */
+  public FlatRandomTree(RandomTree classifier) throws Exception {
+    super(classifier.m_Info.numClasses());
+
+    m_AllowUnclassifiedInstances = classifier.getAllowUnclassifiedInstances();
+    addNodes(1);
+    flatten(0, classifier.m_Tree, classifier);
+    trim();
+  }
+
+  /**
+   * Stores a node and its subtree.
+   *
+   * @param node the index of the node
+   * @param tree the subtree
+   * @param classifier the RandomTree the tree belongs to
+   * @throws Exception if a class distribution cannot be normalized
+   */
+  protected void flatten(int node, RandomTree.Tree tree, RandomTree classifier)
+    throws Exception {
+
+    if (tree.m_ClassDistribution != null) {
+      double[] dist = tree.m_ClassDistribution.clone();
+      Utils.normalize(dist);
+      setDistribution(node, dist);
+    }
+    if (tree.m_Attribute == -1) {
+      return;
+    }
+
+    int first;
+    if (classifier.m_Info.attribute(tree.m_Attribute).isNominal()) {
+      first = setSplit(node, tree.m_Attribute, SPLIT_NOMINAL,
+		       tree.m_SplitPoint, tree.m_Successors.length);
+    } else {
+      first = setSplit(node, tree.m_Attribute, SPLIT_NUMERIC_LESS,
+		       tree.m_SplitPoint, tree.m_Successors.length);
+    }
+    for (int i = 0; i < tree.m_Successors.length; i++) {
+      m_Weight[first + i] = tree.m_Prop[i];
+      flatten(first + i, tree.m_Successors[i], classifier);
+    }
+  }
+
+  /**
+   * Sets whether unclassified instances get an all-zero distribution.
+   *
+   * @param value true if unclassified instances are allowed
+   */
+  public void setAllowUnclassifiedInstances(boolean value) {
+    m_AllowUnclassifiedInstances = value;
+  }
+
+  /**
+   * Gets whether unclassified instances get an all-zero distribution.
+   *
+   * @return true if unclassified instances are allowed
+   */
+  public boolean getAllowUnclassifiedInstances() {
+    return m_AllowUnclassifiedInstances;
+  }
+
+  /**
+   * Predicts the class distribution for an instance, with the same
+   * results as RandomTree.distributionForInstance.
+   *
+   * @param instance the instance
+   * @return the distribution, null if the instance is unclassified and
+   * unclassified instances are not allowed
+   */
+  public double[] distributionForInstance(Instance instance) {
+    return distribution(0, instance);
+  }
+
+  /**
+   * Computes the class distribution in a subtree.
+   *
+   * @param node the root of the subtree
+   * @param instance the instance
+   * @return the distribution, null if there is none
+   */
+  protected double[] distribution(int node, Instance instance) {
+
+    int last = -1;
+    while (m_Attribute[node] > -1) {
+      if (instance.isMissing(m_Attribute[node])) {
+	double[] result = new double[m_NumClasses];
+	int first = m_FirstChild[node];
+	for (int i = first; i < first + m_NumChildren[node]; i++) {
+	  double[] help = distribution(i, instance);
+	  if (help != null) {
+	    for (int j = 0; j < help.length; j++) {
+	      result[j] += m_Weight[i] * help[j];
+	    }
+	  }
+	}
+	return result;
+      }
+      if (m_Distribution[node] > -1) {
+	last = node;
+      }
+      node = child(node, instance.value(m_Attribute[node]));
+    }
+
+    if (m_Distribution[node] > -1) {
+      return copyDistribution(node);
+    }
+    if (m_AllowUnclassifiedInstances) {
+      return new double[m_NumClasses];
+    }
+    if (last > -1) {
+      return copyDistribution(last);
+    }
+    return null;
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return		the revision
+   */
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
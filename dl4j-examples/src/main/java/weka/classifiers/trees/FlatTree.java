@@ -0,0 +1,337 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+/*
+ *    FlatTree.java
+ *
+ */
+
+package weka.classifiers.trees;
+
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+import weka.core.Utils;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A trained decision tree that was flattened into primitive arrays, for
+ * fast predictions. The nodes are numbered from the root (node 0), and the
+ * children of an inner node are stored consecutively. For every node, the
+ * arrays hold the tested attribute, the kind of test and the split point,
+ * the index of the first child, the weight of the node when the parent's
+ * attribute is missing, and the offset of the node's class distribution
+ * in one contiguous array of distributions. <p/>
+ *
+ * Subclasses build the arrays from the tree of a particular learner and
+ * implement the learner's handling of missing values, so that the
+ * predictions are exactly the same as the ones of the original tree.
+ * Batches of instances are predicted in parallel in the common fork-join
+ * pool.
+ *
+ * @version $Revision$
+ */
+public abstract class FlatTree
+  implements Serializable, RevisionHandler {
+
+  /** for serialization */
+  private static final long serialVersionUID = -2748125006934914352L;
+
+  /** the child is given by the (nominal) value */
+  public static final byte SPLIT_NOMINAL = 0;
+
+  /** first child if the (nominal) value equals the split point, else second */
+  public static final byte SPLIT_NOMINAL_BINARY = 1;
+
+  /** first child if the value is &lt;= the split point (Utils.smOrEq) */
+  public static final byte SPLIT_NUMERIC_SMOREQ = 2;
+
+  /** first child if the value is &lt; the split point */
+  public static final byte SPLIT_NUMERIC_LESS = 3;
+
+  /** the number of instances below which a batch is not split further */
+  protected static final int MIN_BATCH_SIZE = 256;
+
+  /** the number of classes */
+  protected int m_NumClasses;
+
+  /** the number of nodes */
+  protected int m_NumNodes;
+
+  /** the attribute tested at each node, -1 for leaves */
+  protected int[] m_Attribute = new int[16];
+
+  /** the kind of test at each node (SPLIT_*) */
+  protected byte[] m_SplitType = new byte[16];
+
+  /** the split point of each node */
+  protected double[] m_SplitPoint = new double[16];
+
+  /** the index of the first child of each node */
+  protected int[] m_FirstChild = new int[16];
+
+  /** the number of children of each node */
+  protected int[] m_NumChildren = new int[16];
+
+  /** the weight of each node if the parent's attribute is missing */
+  protected double[] m_Weight = new double[16];
+
+  /** the offset of each node's distribution in m_Distributions, -1 if none */
+  protected int[] m_Distribution = new int[16];
+
+  /** the distributions, m_NumClasses values each */
+  protected double[] m_Distributions = new double[16];
+
+  /** the number of values used in m_Distributions */
+  protected int m_DistributionsSize;
+
+  /**
+   * Initializes an empty tree.
+   *
+   * @param numClasses the number of classes
+   */
+  protected FlatTree(int numClasses) {
+    m_NumClasses = numClasses;
+  }
+
+  /**
+   * Adds the given number of nodes, initialized as leaves without a
+   * distribution.
+   *
+   * @param num the number of nodes to add
+   * @return the index of the first added node
+   */
+  protected int addNodes(int num) {
+    int first = m_NumNodes;
+    m_NumNodes += num;
+    if (m_NumNodes > m_Attribute.length) {
+      int size = Math.max(m_NumNodes, 2 * m_Attribute.length);
+      m_Attribute = Arrays.copyOf(m_Attribute, size);
+      m_SplitType = Arrays.copyOf(m_SplitType, size);
+      m_SplitPoint = Arrays.copyOf(m_SplitPoint, size);
+      m_FirstChild = Arrays.copyOf(m_FirstChild, size);
+      m_NumChildren = Arrays.copyOf(m_NumChildren, size);
+      m_Weight = Arrays.copyOf(m_Weight, size);
+      m_Distribution = Arrays.copyOf(m_Distribution, size);
+    }
+    for (int i = first; i < m_NumNodes; i++) {
+      m_Attribute[i] = -1;
+      m_Distribution[i] = -1;
+    }
+    return first;
+  }
+
+  /**
+   * Turns a node into an inner node and adds its children.
+   *
+   * @param node the node
+   * @param attribute the attribute to test
+   * @param splitType the kind of test (SPLIT_*)
+   * @param splitPoint the split point
+   * @param numChildren the number of children
+   * @return the index of the first child
+   */
+  protected int setSplit(int node, int attribute, byte splitType,
+			 double splitPoint, int numChildren) {
+    int first = addNodes(numChildren);
+    m_Attribute[node] = attribute;
+    m_SplitType[node] = splitType;
+    m_SplitPoint[node] = splitPoint;
+    m_FirstChild[node] = first;
+    m_NumChildren[node] = numChildren;
+    return first;
+  }
+
+  /**
+   * Stores the distribution of a node.
+   *
+   * @param node the node
+   * @param dist the distribution, m_NumClasses values
+   */
+  protected void setDistribution(int node, double[] dist) {
+    if (m_DistributionsSize + m_NumClasses > m_Distributions.length) {
+      m_Distributions = Arrays.copyOf(m_Distributions,
+	  Math.max(m_DistributionsSize + m_NumClasses, 2 * m_Distributions.length));
+    }
+    System.arraycopy(dist, 0, m_Distributions, m_DistributionsSize, m_NumClasses);
+    m_Distribution[node] = m_DistributionsSize;
+    m_DistributionsSize += m_NumClasses;
+  }
+
+  /**
+   * Trims the arrays to their used size, called when the tree is complete.
+   */
+  protected void trim() {
+    m_Attribute = Arrays.copyOf(m_Attribute, m_NumNodes);
+    m_SplitType = Arrays.copyOf(m_SplitType, m_NumNodes);
+    m_SplitPoint = Arrays.copyOf(m_SplitPoint, m_NumNodes);
+    m_FirstChild = Arrays.copyOf(m_FirstChild, m_NumNodes);
+    m_NumChildren = Arrays.copyOf(m_NumChildren, m_NumNodes);
+    m_Weight = Arrays.copyOf(m_Weight, m_NumNodes);
+    m_Distribution = Arrays.copyOf(m_Distribution, m_NumNodes);
+    m_Distributions = Arrays.copyOf(m_Distributions, m_DistributionsSize);
+  }
+
+  /**
+   * Returns the child of an inner node that the (non-missing) value
+   * leads to.
+   *
+   * @param node the inner node
+   * @param value the value of the node's attribute
+   * @return the index of the child
+   */
+  protected final int child(int node, double value) {
+    switch (m_SplitType[node]) {
+      case SPLIT_NOMINAL:
+	return m_FirstChild[node] + (int) value;
+      case SPLIT_NOMINAL_BINARY:
+	return m_FirstChild[node]
+	  + (((int) m_SplitPoint[node] == (int) value) ? 0 : 1);
+      case SPLIT_NUMERIC_SMOREQ:
+	return m_FirstChild[node]
+	  + (Utils.smOrEq(value, m_SplitPoint[node]) ? 0 : 1);
+      default:
+	return m_FirstChild[node] + ((value < m_SplitPoint[node]) ? 0 : 1);
+    }
+  }
+
+  /**
+   * Returns a copy of the distribution of a node.
+   *
+   * @param node the node, must have a distribution
+   * @return the distribution
+   */
+  protected final double[] copyDistribution(int node) {
+    double[] result = new double[m_NumClasses];
+    System.arraycopy(m_Distributions, m_Distribution[node], result, 0,
+		     m_NumClasses);
+    return result;
+  }
+
+  /**
+   * Returns the number of nodes.
+   *
+   * @return the number of nodes
+   */
+  public int numNodes() {
+    return m_NumNodes;
+  }
+
+  /**
+   * Predicts the class distribution for an instance, exactly like the
+   * original tree.
+   *
+   * @param instance the instance
+   * @return the distribution
+   */
+  public abstract double[] distributionForInstance(Instance instance);
+
+  /**
+   * Predicts the class distributions for a batch of instances. Large
+   * batches are split into ranges that are predicted in the common
+   * fork-join pool.
+   *
+   * @param insts the instances
+   * @return the distributions
+   */
+  public double[][] distributionsForInstances(Instances insts) {
+    double[][] result = new double[insts.numInstances()][];
+    BatchTask task = new BatchTask(insts, result, 0, result.length);
+    if ((result.length < 2 * MIN_BATCH_SIZE)
+	|| (ForkJoinPool.getCommonPoolParallelism() < 2)) {
+      task.predict(0, result.length);
+    } else {
+      ForkJoinPool.commonPool().invoke(task);
+    }
+    return result;
+  }
+
+  /**
+   * Predicts a range of a batch, split in halves until small enough.
+   */
+  protected class BatchTask
+    extends RecursiveAction {
+
+    /** for serialization */
+    private static final long serialVersionUID = 5541908226632011938L;
+
+    /** the instances */
+    protected Instances m_Instances;
+
+    /** the array for the distributions */
+    protected double[][] m_Result;
+
+    /** the first instance of the range */
+    protected int m_From;
+
+    /** the instance after the last one of the range */
+    protected int m_To;
+
+    /**
+     * Initializes the task.
+     *
+     * @param insts the instances
+     * @param result the array for the distributions
+     * @param from the first instance
+     * @param to the instance after the last one
+     */
+    public BatchTask(Instances insts, double[][] result, int from, int to) {
+      m_Instances = insts;
+      m_Result = result;
+      m_From = from;
+      m_To = to;
+    }
+
+    /**
+     * Predicts the instances of a range.
+     *
+     * @param from the first instance
+     * @param to the instance after the last one
+     */
+    protected void predict(int from, int to) {
+      for (int i = from; i < to; i++) {
+	m_Result[i] = distributionForInstance(m_Instances.instance(i));
+      }
+    }
+
+    /**
+     * Splits the range in two halves until it is small enough.
+     */
+    protected void compute() {
+      if (m_To - m_From <= MIN_BATCH_SIZE) {
+	predict(m_From, m_To);
+      } else {
+	int middle = (m_From + m_To) >>> 1;
+	invokeAll(new BatchTask(m_Instances, m_Result, m_From, middle),
+		  new BatchTask(m_Instances, m_Result, middle, m_To));
+      }
+    }
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return		the revision
+   */
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -28,9 +28,11 @@ import weka.classifiers.trees.j48.BinC45ModelSelection;
 import weka.classifiers.trees.j48.C45ModelSelection;
 import weka.classifiers.trees.j48.C45PruneableClassifierTree;
 import weka.classifiers.trees.j48.ClassifierTree;
+import weka.classifiers.trees.j48.FlatClassifierTree;
 import weka.classifiers.trees.j48.ModelSelection;
 import weka.classifiers.trees.j48.PruneableClassifierTree;
 import weka.core.AdditionalMeasureProducer;
+import weka.core.BatchPredictor;
 import weka.core.Capabilities;
 import weka.core.Drawable;
 import weka.core.Instance;
@@ -109,6 +111,9 @@ import java.util.Vector;
  * <pre> -Q &lt;seed&gt;
  *  Seed for random data shuffling (default 1).</pre>
  * 
+ * <pre> -presort
+ *  Sort numeric attributes only once, at the root.</pre>
+ * 
  <!-- options-end -->
  *
  * @author Eibe Frank (eibe@cs.waikato.ac.nz)
@@ -118,13 +123,16 @@ public class J48
   extends Classifier 
   implements OptionHandler, Drawable, Matchable, Sourcable, 
              WeightedInstancesHandler, Summarizable, AdditionalMeasureProducer, 
-             TechnicalInformationHandler {
+             TechnicalInformationHandler, BatchPredictor {
 
   /** for serialization */
   static final long serialVersionUID = -217733168393644444L;
 
   /** The decision tree */
   private ClassifierTree m_root;
+
+  /** The decision tree flattened into arrays, used for predictions */
+  private FlatClassifierTree m_flatTree;
   
   /** Unpruned tree? */
   private boolean m_unpruned = false;
@@ -157,6 +165,9 @@ public class J48
   /** Random number seed for reduced-error pruning. */
   private int m_Seed = 1;
 
+  /** Sort numeric attributes only once, at the root? */
+  private boolean m_presort = false;
+
   /**
    * Returns a string describing classifier
    * @return a description suitable for
@@ -224,9 +235,10 @@ public class J48
     ModelSelection modSelection;	 
 
     if (m_binarySplits)
-      modSelection = new BinC45ModelSelection(m_minNumObj, instances);
+      modSelection = new BinC45ModelSelection(m_minNumObj, instances,
+					      m_presort);
     else
-      modSelection = new C45ModelSelection(m_minNumObj, instances);
+      modSelection = new C45ModelSelection(m_minNumObj, instances, m_presort);
     if (!m_reducedErrorPruning)
       m_root = new C45PruneableClassifierTree(modSelection, !m_unpruned, m_CF,
 					    m_subtreeRaising, !m_noCleanup);
@@ -239,6 +251,13 @@ public class J48
     } else {
       ((C45ModelSelection)modSelection).cleanup();
     }
+
+    // predictions use the flat tree; the original tree is the fallback
+    try {
+      m_flatTree = new FlatClassifierTree(m_root, instances, m_useLaplace);
+    } catch (Exception e) {
+      m_flatTree = null;
+    }
   }
 
   /**
@@ -250,6 +269,9 @@ public class J48
    */
   public double classifyInstance(Instance instance) throws Exception {
 
+    if (m_flatTree != null) {
+      return m_flatTree.classifyInstance(instance);
+    }
     return m_root.classifyInstance(instance);
   }
 
@@ -263,9 +285,34 @@ public class J48
   public final double [] distributionForInstance(Instance instance) 
        throws Exception {
 
+    if (m_flatTree != null) {
+      return m_flatTree.distributionForInstance(instance);
+    }
     return m_root.distributionForInstance(instance, m_useLaplace);
   }
 
+  /**
+   * Returns class probabilities for a batch of instances. The instances
+   * are predicted in parallel, with the same results as
+   * distributionForInstance.
+   *
+   * @param insts the instances to calculate the class probabilities for
+   * @return the class probabilities, one array per instance
+   * @throws Exception if distributions can't be computed successfully
+   */
+  public double[][] distributionsForInstances(Instances insts)
+       throws Exception {
+
+    if (m_flatTree != null) {
+      return m_flatTree.distributionsForInstances(insts);
+    }
+    double[][] result = new double[insts.numInstances()][];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = distributionForInstance(insts.instance(i));
+    }
+    return result;
+  }
+
   /**
    *  Returns the type of graph this classifier
    *  represents.
@@ -356,11 +403,14 @@ public class J48
    * -Q <br>
    * The seed for reduced-error pruning. <p>
    *
+   * -presort <br>
+   * Sort numeric attributes only once, at the root. <p>
+   *
    * @return an enumeration of all the available options.
    */
   public Enumeration listOptions() {
 
-    Vector newVector = new Vector(9);
+    Vector newVector = new Vector(11);
 
     newVector.
 	addElement(new Option("\tUse unpruned tree.",
@@ -396,6 +446,9 @@ public class J48
     newVector.
       addElement(new Option("\tSeed for random data shuffling (default 1).",
 			    "Q", 1, "-Q <seed>"));
+    newVector.
+      addElement(new Option("\tSort numeric attributes only once, at the root.",
+			    "presort", 0, "-presort"));
 
     return newVector.elements();
   }
@@ -440,6 +493,9 @@ public class J48
    * <pre> -Q &lt;seed&gt;
    *  Seed for random data shuffling (default 1).</pre>
    * 
+   * <pre> -presort
+   *  Sort numeric attributes only once, at the root.</pre>
+   * 
    <!-- options-end -->
    *
    * @param options the list of options as an array of strings
@@ -455,7 +511,8 @@ public class J48
       m_minNumObj = 2;
     }
     m_binarySplits = Utils.getFlag('B', options);
-    m_useLaplace = Utils.getFlag('A', options);
+    setUseLaplace(Utils.getFlag('A', options));
+    m_presort = Utils.getFlag("presort", options);
 
     // Pruning options
     m_unpruned = Utils.getFlag('U', options);
@@ -514,7 +571,7 @@ public class J48
    */
   public String [] getOptions() {
 
-    String [] options = new String [14];
+    String [] options = new String [15];
     int current = 0;
 
     if (m_noCleanup) {
@@ -541,6 +598,9 @@ public class J48
     if (m_useLaplace) {
       options[current++] = "-A";
     }
+    if (m_presort) {
+      options[current++] = "-presort";
+    }
 
     while (current < options.length) {
       options[current++] = "";
@@ -605,6 +665,9 @@ public class J48
   public void setUseLaplace(boolean newuseLaplace) {
     
     m_useLaplace = newuseLaplace;
+    if (m_flatTree != null) {
+      m_flatTree.setUseLaplace(newuseLaplace);
+    }
   }
   
   /**
@@ -843,6 +906,37 @@ public class J48
     m_numFolds = v;
   }
  
+  /**
+   * Returns the tip text for this property
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String presortTipText() {
+    return "Whether to sort the numeric attributes only once, at the root, "
+      + "and pass the sorted indices down the tree instead of sorting the "
+      + "data at every node.";
+  }
+
+  /**
+   * Get the value of presort.
+   *
+   * @return Value of presort.
+   */
+  public boolean getPresort() {
+
+    return m_presort;
+  }
+
+  /**
+   * Set the value of presort.
+   *
+   * @param v  Value to assign to presort.
+   */
+  public void setPresort(boolean v) {
+
+    m_presort = v;
+  }
+
   /**
    * Returns the tip text for this property
    * @return tip text for this property suitable for
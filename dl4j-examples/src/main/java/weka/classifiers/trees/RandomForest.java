@@ -28,6 +28,7 @@ import java.util.Vector;
 import weka.classifiers.Classifier;
 import weka.classifiers.meta.Bagging;
 import weka.core.AdditionalMeasureProducer;
+import weka.core.BatchPredictor;
 import weka.core.Capabilities;
 import weka.core.Instance;
 import weka.core.Instances;
@@ -96,6 +97,12 @@ import weka.core.WeightedInstancesHandler;
  * </pre>
  * 
  * <pre>
+ * -num-slots &lt;num&gt;
+ *  Number of execution slots.
+ *  (default 1 - i.e. no parallelism)
+ * </pre>
+ * 
+ * <pre>
  * -D
  *  If set, classifier is run in debug mode and
  *  may output additional info to the console
@@ -108,7 +115,7 @@ import weka.core.WeightedInstancesHandler;
  */
 public class RandomForest extends Classifier implements OptionHandler,
     Randomizable, WeightedInstancesHandler, AdditionalMeasureProducer,
-    TechnicalInformationHandler {
+    TechnicalInformationHandler, BatchPredictor {
 
   /** for serialization */
   private static final long serialVersionUID = -2260823972777004705L;
@@ -134,6 +141,9 @@ public class RandomForest extends Classifier implements OptionHandler,
   /** The maximum depth of the trees (0 = unlimited) */
   protected int m_MaxDepth = 0;
 
+  /** The number of threads used to build the trees and for batch predictions */
+  protected int m_numExecutionSlots = 1;
+
   /**
    * Returns a string describing classifier
    * 
@@ -287,6 +297,35 @@ public class RandomForest extends Classifier implements OptionHandler,
     m_MaxDepth = value;
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of execution slots (threads) to use for "
+        + "constructing the forest and for batch predictions.";
+  }
+
+  /**
+   * Set the number of execution slots (threads) to use.
+   * 
+   * @param numSlots the number of slots to use
+   */
+  public void setNumExecutionSlots(int numSlots) {
+    m_numExecutionSlots = numSlots;
+  }
+
+  /**
+   * Get the number of execution slots (threads) to use.
+   * 
+   * @return the number of slots to use
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
   /**
    * Gets the out of bag error that was calculated as the classifier was built.
    * 
@@ -353,6 +392,10 @@ public class RandomForest extends Classifier implements OptionHandler,
         "\tThe maximum depth of the trees, 0 for unlimited.\n"
             + "\t(default 0)", "depth", 1, "-depth <num>"));
 
+    newVector.addElement(new Option("\tNumber of execution slots.\n"
+        + "\t(default 1 - i.e. no parallelism)", "num-slots", 1,
+        "-num-slots <num>"));
+
     Enumeration enu = super.listOptions();
     while (enu.hasMoreElements()) {
       newVector.addElement(enu.nextElement());
@@ -388,6 +431,9 @@ public class RandomForest extends Classifier implements OptionHandler,
       result.add("" + getMaxDepth());
     }
 
+    result.add("-num-slots");
+    result.add("" + getNumExecutionSlots());
+
     options = super.getOptions();
     for (i = 0; i < options.length; i++)
       result.add(options[i]);
@@ -426,6 +472,12 @@ public class RandomForest extends Classifier implements OptionHandler,
    * </pre>
    * 
    * <pre>
+   * -num-slots &lt;num&gt;
+   *  Number of execution slots.
+   *  (default 1 - i.e. no parallelism)
+   * </pre>
+   * 
+   * <pre>
    * -D
    *  If set, classifier is run in debug mode and
    *  may output additional info to the console
@@ -468,6 +520,13 @@ public class RandomForest extends Classifier implements OptionHandler,
       setMaxDepth(0);
     }
 
+    tmpStr = Utils.getOption("num-slots", options);
+    if (tmpStr.length() != 0) {
+      setNumExecutionSlots(Integer.parseInt(tmpStr));
+    } else {
+      setNumExecutionSlots(1);
+    }
+
     super.setOptions(options);
 
     Utils.checkForRemainingOptions(options);
@@ -514,6 +573,7 @@ public class RandomForest extends Classifier implements OptionHandler,
     m_bagger.setSeed(m_randomSeed);
     m_bagger.setNumIterations(m_numTrees);
     m_bagger.setCalcOutOfBag(true);
+    m_bagger.setNumExecutionSlots(m_numExecutionSlots);
     m_bagger.buildClassifier(data);
   }
 
@@ -530,6 +590,20 @@ public class RandomForest extends Classifier implements OptionHandler,
     return m_bagger.distributionForInstance(instance);
   }
 
+  /**
+   * Returns the class probability distributions for a set of instances,
+   * computed in parallel if more than one execution slot is used.
+   * 
+   * @param insts the instances to be classified
+   * @return the distributions the forest generates for the instances
+   * @throws Exception if computation fails
+   */
+  public double[][] distributionsForInstances(Instances insts)
+      throws Exception {
+
+    return m_bagger.distributionsForInstances(insts);
+  }
+
   /**
    * Outputs a description of this classifier.
    * 
@@ -30,6 +30,7 @@ import java.util.Vector;
 
 import weka.classifiers.Classifier;
 import weka.core.Attribute;
+import weka.core.BatchPredictor;
 import weka.core.Capabilities;
 import weka.core.Capabilities.Capability;
 import weka.core.ContingencyTables;
@@ -90,6 +91,11 @@ import weka.core.WeightedInstancesHandler;
  * </pre>
  * 
  * <pre>
+ * -presort
+ *  Sort numeric attributes only once, at the root.
+ * </pre>
+ * 
+ * <pre>
  * -D
  *  If set, classifier is run in debug mode and
  *  may output additional info to the console
@@ -102,7 +108,7 @@ import weka.core.WeightedInstancesHandler;
  * @version $Revision: 10287 $
  */
 public class RandomTree extends Classifier implements OptionHandler,
-    WeightedInstancesHandler, Randomizable, Drawable {
+    WeightedInstancesHandler, Randomizable, Drawable, BatchPredictor {
 
   /** for serialization */
   static final long serialVersionUID = 8934314652175299374L;
@@ -110,6 +116,9 @@ public class RandomTree extends Classifier implements OptionHandler,
   /** The Tree object */
   protected Tree m_Tree = null;
 
+  /** The tree flattened into arrays, used for predictions */
+  protected FlatRandomTree m_FlatTree = null;
+
   /** The header information. */
   protected Instances m_Info = null;
 
@@ -131,6 +140,9 @@ public class RandomTree extends Classifier implements OptionHandler,
   /** Whether unclassified instances are allowed */
   protected boolean m_AllowUnclassifiedInstances = false;
 
+  /** Whether numeric attributes are sorted only once, at the root */
+  protected boolean m_Presort = false;
+
   /** a ZeroR model in case no model can be built from the data */
   protected Classifier m_zeroR;
 
@@ -318,6 +330,42 @@ public class RandomTree extends Classifier implements OptionHandler,
       boolean newAllowUnclassifiedInstances) {
 
     m_AllowUnclassifiedInstances = newAllowUnclassifiedInstances;
+    if (m_FlatTree != null) {
+      m_FlatTree.setAllowUnclassifiedInstances(newAllowUnclassifiedInstances);
+    }
+  }
+
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String presortTipText() {
+    return "Whether to sort the numeric attributes only once, at the root, "
+        + "and partition the sorted indices down the tree instead of sorting "
+        + "the data at every node. Pays off for deep trees on large data, "
+        + "unless K is much smaller than the number of numeric attributes.";
+  }
+
+  /**
+   * Get the value of Presort.
+   * 
+   * @return Value of Presort.
+   */
+  public boolean getPresort() {
+
+    return m_Presort;
+  }
+
+  /**
+   * Set the value of Presort.
+   * 
+   * @param newPresort Value to assign to Presort.
+   */
+  public void setPresort(boolean newPresort) {
+
+    m_Presort = newPresort;
   }
 
   /**
@@ -360,6 +408,9 @@ public class RandomTree extends Classifier implements OptionHandler,
         + "(default 0, no backfitting).", "N", 1, "-N <num>"));
     newVector.addElement(new Option("\tAllow unclassified instances.", "U", 0,
         "-U"));
+    newVector.addElement(new Option(
+        "\tSort numeric attributes only once, at the root.", "presort", 0,
+        "-presort"));
 
     Enumeration enu = super.listOptions();
     while (enu.hasMoreElements()) {
@@ -405,6 +456,10 @@ public class RandomTree extends Classifier implements OptionHandler,
       result.add("-U");
     }
 
+    if (getPresort()) {
+      result.add("-presort");
+    }
+
     options = super.getOptions();
     for (i = 0; i < options.length; i++)
       result.add(options[i]);
@@ -454,6 +509,11 @@ public class RandomTree extends Classifier implements OptionHandler,
    * </pre>
    * 
    * <pre>
+   * -presort
+   *  Sort numeric attributes only once, at the root.
+   * </pre>
+   * 
+   * <pre>
    * -D
    *  If set, classifier is run in debug mode and
    *  may output additional info to the console
@@ -504,6 +564,8 @@ public class RandomTree extends Classifier implements OptionHandler,
 
     setAllowUnclassifiedInstances(Utils.getFlag('U', options));
 
+    setPresort(Utils.getFlag("presort", options));
+
     super.setOptions(options);
 
     Utils.checkForRemainingOptions(options);
@@ -561,6 +623,7 @@ public class RandomTree extends Classifier implements OptionHandler,
               + "using ZeroR model instead!");
       m_zeroR = new weka.classifiers.rules.ZeroR();
       m_zeroR.buildClassifier(data);
+      m_FlatTree = null;
       return;
     } else {
       m_zeroR = null;
@@ -598,12 +661,30 @@ public class RandomTree extends Classifier implements OptionHandler,
     // Build tree
     m_Tree = new Tree();
     m_Info = new Instances(data, 0);
-    m_Tree.buildTree(train, classProbs, attIndicesWindow, rand, 0);
+    if (m_Presort) {
+      int[][] sortedIndices = new int[train.numAttributes()][];
+      for (int i = 0; i < sortedIndices.length; i++) {
+        if ((i != train.classIndex()) && train.attribute(i).isNumeric()) {
+          sortedIndices[i] = Utils.sort(train.attributeToDoubleArray(i));
+        }
+      }
+      m_Tree.buildTree(train, classProbs, attIndicesWindow, rand, 0,
+          sortedIndices);
+    } else {
+      m_Tree.buildTree(train, classProbs, attIndicesWindow, rand, 0);
+    }
 
     // Backfit if required
     if (backfit != null) {
       m_Tree.backfitData(backfit);
     }
+
+    // Flatten the tree for predictions, the tree itself is the fallback
+    try {
+      m_FlatTree = new FlatRandomTree(this);
+    } catch (Exception e) {
+      m_FlatTree = null;
+    }
   }
 
   /**
@@ -618,11 +699,35 @@ public class RandomTree extends Classifier implements OptionHandler,
 
     if (m_zeroR != null) {
       return m_zeroR.distributionForInstance(instance);
+    } else if (m_FlatTree != null) {
+      return m_FlatTree.distributionForInstance(instance);
     } else {
       return m_Tree.distributionForInstance(instance);
     }
   }
 
+  /**
+   * Computes class distributions of a batch of instances, in parallel for
+   * large batches. The results are the same as the ones of
+   * distributionForInstance.
+   * 
+   * @param insts the instances to compute the distributions for
+   * @return the computed class probabilities, one array per instance
+   * @throws Exception if computation fails
+   */
+  public double[][] distributionsForInstances(Instances insts)
+      throws Exception {
+
+    if ((m_zeroR == null) && (m_FlatTree != null)) {
+      return m_FlatTree.distributionsForInstances(insts);
+    }
+    double[][] result = new double[insts.numInstances()][];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = distributionForInstance(insts.instance(i));
+    }
+    return result;
+  }
+
   /**
    * Outputs the decision tree.
    * 
@@ -1092,6 +1197,27 @@ public class RandomTree extends Classifier implements OptionHandler,
     protected void buildTree(Instances data, double[] classProbs,
         int[] attIndicesWindow, Random random, int depth) throws Exception {
 
+      buildTree(data, classProbs, attIndicesWindow, random, depth, null);
+    }
+
+    /**
+     * Recursively generates a tree. If sorted indices are given, the data
+     * is not sorted again; the indices are partitioned into the subsets
+     * instead.
+     * 
+     * @param data the data to work with
+     * @param classProbs the class distribution
+     * @param attIndicesWindow the attribute window to choose attributes from
+     * @param random random number generator for choosing random attributes
+     * @param depth the current depth
+     * @param sortedIndices the indices of the data sorted on each numeric
+     *          attribute (missing values last), or null
+     * @throws Exception if generation fails
+     */
+    protected void buildTree(Instances data, double[] classProbs,
+        int[] attIndicesWindow, Random random, int depth,
+        int[][] sortedIndices) throws Exception {
+
       // Make leaf if there are no training instances
       if (data.numInstances() == 0) {
         m_Attribute = -1;
@@ -1141,7 +1267,8 @@ public class RandomTree extends Classifier implements OptionHandler,
         attIndicesWindow[windowSize - 1] = attIndex;
         windowSize--;
 
-        double currSplit = distribution(props, dists, attIndex, data);
+        double currSplit = distribution(props, dists, attIndex, data,
+            (sortedIndices == null) ? null : sortedIndices[attIndex]);
         double currVal = gain(dists[0], priorVal(dists[0]));
 
         if (Utils.gr(currVal, 0))
@@ -1165,12 +1292,21 @@ public class RandomTree extends Classifier implements OptionHandler,
         // Build subtrees
         m_SplitPoint = split;
         m_Prop = bestProps;
-        Instances[] subsets = splitData(data);
+        int[][] positions = null;
+        if (sortedIndices != null) {
+          positions = new int[m_Prop.length][data.numInstances()];
+        }
+        Instances[] subsets = splitData(data, positions);
         m_Successors = new Tree[bestDists.length];
         for (int i = 0; i < bestDists.length; i++) {
+          int[][] subsetIndices = null;
+          if (sortedIndices != null) {
+            subsetIndices = partition(sortedIndices, positions[i],
+                subsets[i].numInstances());
+          }
           m_Successors[i] = new Tree();
           m_Successors[i].buildTree(subsets[i], bestDists[i], attIndicesWindow,
-              random, depth + 1);
+              random, depth + 1, subsetIndices);
         }
 
         // If all successors are non-empty, we don't need to store the class
@@ -1219,6 +1355,22 @@ public class RandomTree extends Classifier implements OptionHandler,
      */
     protected Instances[] splitData(Instances data) throws Exception {
 
+      return splitData(data, null);
+    }
+
+    /**
+     * Splits instances into subsets based on the given split, and records
+     * where each instance went.
+     * 
+     * @param data the data to work with
+     * @param positions if not null, filled with the position of each
+     *          instance in each subset (-1 if it is not in the subset)
+     * @return the subsets of instances
+     * @throws Exception if something goes wrong
+     */
+    protected Instances[] splitData(Instances data, int[][] positions)
+        throws Exception {
+
       // Allocate array of Instances objects
       Instances[] subsets = new Instances[m_Prop.length];
       for (int i = 0; i < m_Prop.length; i++) {
@@ -1230,6 +1382,11 @@ public class RandomTree extends Classifier implements OptionHandler,
 
         // Get instance
         Instance inst = data.instance(i);
+        if (positions != null) {
+          for (int k = 0; k < m_Prop.length; k++) {
+            positions[k][i] = -1;
+          }
+        }
 
         // Does the instance have a missing value?
         if (inst.isMissing(m_Attribute)) {
@@ -1239,6 +1396,9 @@ public class RandomTree extends Classifier implements OptionHandler,
             if (m_Prop[k] > 0) {
               Instance copy = (Instance) inst.copy();
               copy.setWeight(m_Prop[k] * inst.weight());
+              if (positions != null) {
+                positions[k][i] = subsets[k].numInstances();
+              }
               subsets[k].add(copy);
             }
           }
@@ -1249,7 +1409,11 @@ public class RandomTree extends Classifier implements OptionHandler,
 
         // Do we have a nominal attribute?
         if (data.attribute(m_Attribute).isNominal()) {
-          subsets[(int) inst.value(m_Attribute)].add(inst);
+          int k = (int) inst.value(m_Attribute);
+          if (positions != null) {
+            positions[k][i] = subsets[k].numInstances();
+          }
+          subsets[k].add(inst);
 
           // Proceed to next instance
           continue;
@@ -1257,7 +1421,11 @@ public class RandomTree extends Classifier implements OptionHandler,
 
         // Do we have a numeric attribute?
         if (data.attribute(m_Attribute).isNumeric()) {
-          subsets[(inst.value(m_Attribute) < m_SplitPoint) ? 0 : 1].add(inst);
+          int k = (inst.value(m_Attribute) < m_SplitPoint) ? 0 : 1;
+          if (positions != null) {
+            positions[k][i] = subsets[k].numInstances();
+          }
+          subsets[k].add(inst);
 
           // Proceed to next instance
           continue;
@@ -1276,6 +1444,33 @@ public class RandomTree extends Classifier implements OptionHandler,
       return subsets;
     }
 
+    /**
+     * Partitions sorted indices stably into a subset.
+     * 
+     * @param sortedIndices the sorted indices of the data, by attribute
+     * @param position the position of each instance in the subset, or -1
+     * @param numInstances the number of instances in the subset
+     * @return the sorted indices of the subset
+     */
+    protected int[][] partition(int[][] sortedIndices, int[] position,
+        int numInstances) {
+
+      int[][] result = new int[sortedIndices.length][];
+      for (int a = 0; a < sortedIndices.length; a++) {
+        if (sortedIndices[a] != null) {
+          result[a] = new int[numInstances];
+          int n = 0;
+          for (int j = 0; j < sortedIndices[a].length; j++) {
+            int pos = position[sortedIndices[a][j]];
+            if (pos >= 0) {
+              result[a][n++] = pos;
+            }
+          }
+        }
+      }
+      return result;
+    }
+
     /**
      * Computes class distribution for an attribute.
      * 
@@ -1288,6 +1483,24 @@ public class RandomTree extends Classifier implements OptionHandler,
     protected double distribution(double[][] props, double[][][] dists,
         int att, Instances data) throws Exception {
 
+      return distribution(props, dists, att, data, null);
+    }
+
+    /**
+     * Computes class distribution for an attribute, using the given sorted
+     * indices for a numeric attribute instead of sorting the data.
+     * 
+     * @param props
+     * @param dists
+     * @param att the attribute index
+     * @param data the data to work with
+     * @param sortedIndices the indices of the data sorted on the attribute
+     *          (missing values last), or null to sort the data
+     * @throws Exception if something goes wrong
+     */
+    protected double distribution(double[][] props, double[][][] dists,
+        int att, Instances data, int[] sortedIndices) throws Exception {
+
       double splitPoint = Double.NaN;
       Attribute attribute = data.attribute(att);
       double[][] dist = null;
@@ -1316,11 +1529,17 @@ public class RandomTree extends Classifier implements OptionHandler,
         dist = new double[2][data.numClasses()];
 
         // Sort data
-        data.sort(att);
+        if (sortedIndices == null) {
+          data.sort(att);
+          sortedIndices = new int[data.numInstances()];
+          for (int j = 0; j < sortedIndices.length; j++) {
+            sortedIndices[j] = j;
+          }
+        }
 
         // Move all instances into second subset
         for (int j = 0; j < data.numInstances(); j++) {
-          Instance inst = data.instance(j);
+          Instance inst = data.instance(sortedIndices[j]);
           if (inst.isMissing(att)) {
 
             // Can stop as soon as we hit a missing value
@@ -1339,10 +1558,10 @@ public class RandomTree extends Classifier implements OptionHandler,
         }
 
         // Try all possible split points
-        double currSplit = data.instance(0).value(att);
+        double currSplit = data.instance(sortedIndices[0]).value(att);
         double currVal, bestVal = -Double.MAX_VALUE;
         for (int i = 0; i < indexOfFirstMissingValue; i++) {
-          Instance inst = data.instance(i);
+          Instance inst = data.instance(sortedIndices[i]);
 
           // Can we place a sensible split point here?
           if (inst.value(att) > currSplit) {
@@ -1393,7 +1612,8 @@ public class RandomTree extends Classifier implements OptionHandler,
 
       // Distribute weights for instances with missing values
       for (int i = indexOfFirstMissingValue; i < data.numInstances(); i++) {
-        Instance inst = data.instance(i);
+        Instance inst = attribute.isNominal() ? data.instance(i) : data
+            .instance(sortedIndices[i]);
         if (attribute.isNominal()) {
 
           // Need to check if attribute value is missing
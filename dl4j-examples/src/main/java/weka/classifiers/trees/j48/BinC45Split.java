@@ -88,6 +88,20 @@ public class BinC45Split
   public void buildClassifier(Instances trainInstances)
        throws Exception {
 
+    buildClassifier(trainInstances, null);
+  }
+
+  /**
+   * Creates a C4.5-type split on the given data, using the given indices
+   * of the instances sorted on the split attribute if the attribute is
+   * numeric (missing values last). If the indices are null, the data
+   * itself is sorted. Assumes that none of the class values is missing.
+   *
+   * @exception Exception if something goes wrong
+   */
+  public void buildClassifier(Instances trainInstances, int [] sortedIndices)
+       throws Exception {
+
     // Initialize the remaining instance variables.
     m_numSubsets = 0;
     m_splitPoint = Double.MAX_VALUE;
@@ -99,8 +113,13 @@ public class BinC45Split
     if (trainInstances.attribute(m_attIndex).isNominal()){
       handleEnumeratedAttribute(trainInstances);
     }else{
-      trainInstances.sort(trainInstances.attribute(m_attIndex));
-      handleNumericAttribute(trainInstances);
+      if (sortedIndices == null) {
+	trainInstances.sort(trainInstances.attribute(m_attIndex));
+	sortedIndices = new int[trainInstances.numInstances()];
+	for (int i = 0; i < sortedIndices.length; i++)
+	  sortedIndices[i] = i;
+      }
+      handleNumericAttribute(trainInstances, sortedIndices);
     }
   }    
 
@@ -111,6 +130,15 @@ public class BinC45Split
 
     return m_attIndex;
   }
+
+  /**
+   * Returns the split point (numeric attribute) or the value the split
+   * tests for (binary split on a nominal attribute).
+   */
+  public final double splitPoint() {
+
+    return m_splitPoint;
+  }
   
   /**
    * Returns (C4.5-type) gain ratio for the generated split.
@@ -205,7 +233,8 @@ public class BinC45Split
    *
    * @exception Exception if something goes wrong
    */
-  private void handleNumericAttribute(Instances trainInstances)
+  private void handleNumericAttribute(Instances trainInstances,
+				      int [] sortedIndices)
        throws Exception {
   
     int firstMiss;
@@ -223,10 +252,9 @@ public class BinC45Split
     m_distribution = new Distribution(2,trainInstances.numClasses());
     
     // Only Instances with known values are relevant.
-    Enumeration enu = trainInstances.enumerateInstances();
     i = 0;
-    while (enu.hasMoreElements()) {
-      instance = (Instance) enu.nextElement();
+    while (i < sortedIndices.length) {
+      instance = trainInstances.instance(sortedIndices[i]);
       if (instance.isMissing(m_attIndex))
 	break;
       m_distribution.add(1,instance);
@@ -253,12 +281,12 @@ public class BinC45Split
     defaultEnt = m_infoGainCrit.oldEnt(m_distribution);
     while (next < firstMiss){
 	  
-      if (trainInstances.instance(next-1).value(m_attIndex)+1e-5 < 
-	  trainInstances.instance(next).value(m_attIndex)){ 
+      if (trainInstances.instance(sortedIndices[next-1]).value(m_attIndex)+1e-5 < 
+	  trainInstances.instance(sortedIndices[next]).value(m_attIndex)){ 
 	
 	// Move class values for all Instances up to next 
 	// possible split point.
-	m_distribution.shiftRange(1,0,trainInstances,last,next);
+	m_distribution.shiftRange(1,0,trainInstances,sortedIndices,last,next);
 	
 	// Check if enough Instances in each subset and compute
 	// values for criteria.
@@ -291,19 +319,20 @@ public class BinC45Split
     // best split.
     m_numSubsets = 2;
     m_splitPoint = 
-      (trainInstances.instance(splitIndex+1).value(m_attIndex)+
-       trainInstances.instance(splitIndex).value(m_attIndex))/2;
+      (trainInstances.instance(sortedIndices[splitIndex+1]).value(m_attIndex)+
+       trainInstances.instance(sortedIndices[splitIndex]).value(m_attIndex))/2;
 
     // In case we have a numerical precision problem we need to choose the
     // smaller value
-    if (m_splitPoint == trainInstances.instance(splitIndex + 1).value(m_attIndex)) {
-      m_splitPoint = trainInstances.instance(splitIndex).value(m_attIndex);
+    if (m_splitPoint == trainInstances.instance(sortedIndices[splitIndex + 1]).value(m_attIndex)) {
+      m_splitPoint = trainInstances.instance(sortedIndices[splitIndex]).value(m_attIndex);
     }
 
     // Restore distributioN for best split.
     m_distribution = new Distribution(2,trainInstances.numClasses());
-    m_distribution.addRange(0,trainInstances,0,splitIndex+1);
-    m_distribution.addRange(1,trainInstances,splitIndex+1,firstMiss);
+    m_distribution.addRange(0,trainInstances,sortedIndices,0,splitIndex+1);
+    m_distribution.addRange(1,trainInstances,sortedIndices,splitIndex+1,
+			    firstMiss);
 
     // Compute modified gain ratio for best split.
     m_gainRatio = m_gainRatioCrit.
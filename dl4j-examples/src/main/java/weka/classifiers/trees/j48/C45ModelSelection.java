@@ -47,6 +47,9 @@ public class C45ModelSelection
   /** All the training data */
   private Instances m_allData; // 
 
+  /** The presorted indices, null if every node sorts its data. */
+  private PresortedIndices m_presorted;
+
   /**
    * Initializes the split selection method with the given parameters.
    *
@@ -60,12 +63,31 @@ public class C45ModelSelection
     m_allData = allData;
   }
 
+  /**
+   * Initializes the split selection method with the given parameters.
+   *
+   * @param minNoObj minimum number of instances that have to occur in at least two
+   * subsets induced by split
+   * @param allData FULL training dataset (necessary for
+   * selection of split points).
+   * @param presort if true, numeric attributes are sorted only once and the
+   * sorted indices are passed down the tree
+   */
+  public C45ModelSelection(int minNoObj, Instances allData,
+			   boolean presort) {
+    this(minNoObj, allData);
+    if (presort)
+      m_presorted = new PresortedIndices();
+  }
+
   /**
    * Sets reference to training data to null.
    */
   public void cleanup() {
 
     m_allData = null;
+    if (m_presorted != null)
+      m_presorted.cleanup();
   }
 
   /**
@@ -88,6 +110,10 @@ public class C45ModelSelection
     
     try{
 
+      int [][] sortedIndices = null;
+      if (m_presorted != null)
+	sortedIndices = m_presorted.sortedIndices(data);
+
       // Check if all Instances belong to one class or if not
       // enough Instances to split.
       checkDistribution = new Distribution(data);
@@ -123,7 +149,8 @@ public class C45ModelSelection
 	  
 	  // Get models for current attribute.
 	  currentModel[i] = new C45Split(i,m_minNoObj,sumOfWeights);
-	  currentModel[i].buildClassifier(data);
+	  currentModel[i].buildClassifier(data, (sortedIndices == null) ? null
+					  : sortedIndices[i]);
 	  
 	  // Check if useful split for current attribute
 	  // exists and check for enumerated attributes with 
@@ -192,6 +219,18 @@ public class C45ModelSelection
     return selectModel(train);
   }
   
+  /**
+   * Passes the presorted indices on to the subsets, if presorting is used.
+   *
+   * @exception Exception if something goes wrong
+   */
+  public void notifySplit(Instances data, ClassifierSplitModel model,
+			  Instances [] subsets) throws Exception {
+
+    if (m_presorted != null)
+      m_presorted.split(data, model, subsets);
+  }
+
   /**
    * Returns the revision string.
    * 
@@ -95,6 +95,20 @@ public class C45Split
   public void buildClassifier(Instances trainInstances) 
        throws Exception {
 
+    buildClassifier(trainInstances, null);
+  }
+
+  /**
+   * Creates a C4.5-type split on the given data, using the given indices
+   * of the instances sorted on the split attribute if the attribute is
+   * numeric (missing values last). If the indices are null, the data
+   * itself is sorted. Assumes that none of the class values is missing.
+   *
+   * @exception Exception if something goes wrong
+   */
+  public void buildClassifier(Instances trainInstances, int [] sortedIndices)
+       throws Exception {
+
     // Initialize the remaining instance variables.
     m_numSubsets = 0;
     m_splitPoint = Double.MAX_VALUE;
@@ -110,8 +124,13 @@ public class C45Split
     }else{
       m_complexityIndex = 2;
       m_index = 0;
-      trainInstances.sort(trainInstances.attribute(m_attIndex));
-      handleNumericAttribute(trainInstances);
+      if (sortedIndices == null) {
+	trainInstances.sort(trainInstances.attribute(m_attIndex));
+	sortedIndices = new int[trainInstances.numInstances()];
+	for (int i = 0; i < sortedIndices.length; i++)
+	  sortedIndices[i] = i;
+      }
+      handleNumericAttribute(trainInstances, sortedIndices);
     }
   }    
 
@@ -123,6 +142,14 @@ public class C45Split
     return m_attIndex;
   }
 
+  /**
+   * Returns the split point (only meaningful for numeric attributes).
+   */
+  public final double splitPoint() {
+
+    return m_splitPoint;
+  }
+
   /**
    * Gets class probability for instance.
    *
@@ -204,7 +231,8 @@ public class C45Split
    *
    * @exception Exception if something goes wrong
    */
-  private void handleNumericAttribute(Instances trainInstances)
+  private void handleNumericAttribute(Instances trainInstances,
+				      int [] sortedIndices)
        throws Exception {
   
     int firstMiss;
@@ -221,10 +249,9 @@ public class C45Split
     m_distribution = new Distribution(2,trainInstances.numClasses());
     
     // Only Instances with known values are relevant.
-    Enumeration enu = trainInstances.enumerateInstances();
     i = 0;
-    while (enu.hasMoreElements()) {
-      instance = (Instance) enu.nextElement();
+    while (i < sortedIndices.length) {
+      instance = trainInstances.instance(sortedIndices[i]);
       if (instance.isMissing(m_attIndex))
 	break;
       m_distribution.add(1,instance);
@@ -251,12 +278,12 @@ public class C45Split
     defaultEnt = infoGainCrit.oldEnt(m_distribution);
     while (next < firstMiss) {
 	  
-      if (trainInstances.instance(next-1).value(m_attIndex)+1e-5 < 
-	  trainInstances.instance(next).value(m_attIndex)) { 
+      if (trainInstances.instance(sortedIndices[next-1]).value(m_attIndex)+1e-5 < 
+	  trainInstances.instance(sortedIndices[next]).value(m_attIndex)) { 
 	
 	// Move class values for all Instances up to next 
 	// possible split point.
-	m_distribution.shiftRange(1,0,trainInstances,last,next);
+	m_distribution.shiftRange(1,0,trainInstances,sortedIndices,last,next);
 	
 	// Check if enough Instances in each subset and compute
 	// values for criteria.
@@ -289,19 +316,20 @@ public class C45Split
     // best split.
     m_numSubsets = 2;
     m_splitPoint = 
-      (trainInstances.instance(splitIndex+1).value(m_attIndex)+
-       trainInstances.instance(splitIndex).value(m_attIndex))/2;
+      (trainInstances.instance(sortedIndices[splitIndex+1]).value(m_attIndex)+
+       trainInstances.instance(sortedIndices[splitIndex]).value(m_attIndex))/2;
 
     // In case we have a numerical precision problem we need to choose the
     // smaller value
-    if (m_splitPoint == trainInstances.instance(splitIndex + 1).value(m_attIndex)) {
-      m_splitPoint = trainInstances.instance(splitIndex).value(m_attIndex);
+    if (m_splitPoint == trainInstances.instance(sortedIndices[splitIndex + 1]).value(m_attIndex)) {
+      m_splitPoint = trainInstances.instance(sortedIndices[splitIndex]).value(m_attIndex);
     }
 
     // Restore distributioN for best split.
     m_distribution = new Distribution(2,trainInstances.numClasses());
-    m_distribution.addRange(0,trainInstances,0,splitIndex+1);
-    m_distribution.addRange(1,trainInstances,splitIndex+1,firstMiss);
+    m_distribution.addRange(0,trainInstances,sortedIndices,0,splitIndex+1);
+    m_distribution.addRange(1,trainInstances,sortedIndices,splitIndex+1,
+			    firstMiss);
 
     // Compute modified gain ratio for best split.
     m_gainRatio = gainRatioCrit.
@@ -155,6 +155,7 @@ public class ClassifierTree
     m_localModel = m_toSelectModel.selectModel(data);
     if (m_localModel.numSubsets() > 1) {
       localInstances = m_localModel.split(data);
+      m_toSelectModel.notifySplit(data, m_localModel, localInstances);
       data = null;
       m_sons = new ClassifierTree [m_localModel.numSubsets()];
       for (int i = 0; i < m_sons.length; i++) {
@@ -195,6 +196,7 @@ public class ClassifierTree
     if (m_localModel.numSubsets() > 1) {
       localTrain = m_localModel.split(train);
       localTest = m_localModel.split(test);
+      m_toSelectModel.notifySplit(train, m_localModel, localTrain);
       train = test = null;
       m_sons = new ClassifierTree [m_localModel.numSubsets()];
       for (i=0;i<m_sons.length;i++) {
@@ -0,0 +1,287 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+/*
+ *    FlatClassifierTree.java
+ *
+ */
+
+package weka.classifiers.trees.j48;
+
+import weka.classifiers.trees.FlatTree;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.RevisionUtils;
+import weka.core.Utils;
+
+import java.util.Arrays;
+
+/**
+ * A C4.5 tree (ClassifierTree with C45Split, BinC45Split and NoSplit
+ * models) flattened into arrays. The leaves store the class probabilities
+ * of the tree, both the plain and the Laplace estimates, and empty leaves
+ * store the probabilities their parent's split model gives for them. An
+ * instance with a missing value is split up between the non-empty children
+ * with the weights of the subsets, exactly as in ClassifierTree.
+ *
+ * @version $Revision$
+ */
+public class FlatClassifierTree
+  extends FlatTree {
+
+  /** for serialization */
+  private static final long serialVersionUID = 8319410853712087043L;
+
+  /** whether a node is an empty leaf */
+  protected boolean[] m_Empty;
+
+  /** the plain class probabilities */
+  protected double[] m_Probs;
+
+  /** the Laplace estimates of the class probabilities */
+  protected double[] m_LaplaceProbs;
+
+  /** whether the Laplace estimates are used */
+  protected boolean m_UseLaplace;
+
+  /**
+   * Flattens the given tree.
+   *
+   * @param tree the built tree
+   * @param header the structure of the training data
+   * @param useLaplace whether to use the Laplace estimates
+   * @throws Exception if the tree contains split models that are not
+   * supported
+   */
+  public FlatClassifierTree(ClassifierTree tree, Instances header,
+			    boolean useLaplace) throws Exception {
+    super(header.numClasses());
+
+    m_Empty = new boolean[16];
+    m_LaplaceProbs = new double[16];
+    addNodes(1);
+    flatten(0, tree, header, null, -1);
+    trim();
+    m_Empty = Arrays.copyOf(m_Empty, m_NumNodes);
+    m_LaplaceProbs = Arrays.copyOf(m_LaplaceProbs, m_DistributionsSize);
+    m_Probs = m_Distributions;
+    setUseLaplace(useLaplace);
+  }
+
+  /**
+   * Stores a node and its subtree.
+   *
+   * @param node the index of the node
+   * @param tree the subtree
+   * @param header the structure of the training data
+   * @param parent the split model of the parent, null for the root
+   * @param subset the index of the node in the parent's subsets
+   * @throws Exception if a split model is not supported
+   */
+  protected void flatten(int node, ClassifierTree tree, Instances header,
+			 ClassifierSplitModel parent, int subset)
+    throws Exception {
+
+    if (m_Empty.length < m_Attribute.length) {
+      m_Empty = Arrays.copyOf(m_Empty, m_Attribute.length);
+    }
+    if (tree.m_isLeaf) {
+      m_Empty[node] = tree.m_isEmpty && (parent != null);
+      setDistribution(node, probs(tree, parent, subset, false));
+      if (m_LaplaceProbs.length < m_Distributions.length) {
+	m_LaplaceProbs = Arrays.copyOf(m_LaplaceProbs, m_Distributions.length);
+      }
+      System.arraycopy(probs(tree, parent, subset, true), 0, m_LaplaceProbs,
+		       m_Distribution[node], m_NumClasses);
+      return;
+    }
+
+    ClassifierSplitModel model = tree.m_localModel;
+    int first;
+    if (model instanceof C45Split) {
+      C45Split split = (C45Split) model;
+      if (header.attribute(split.attIndex()).isNominal()) {
+	first = setSplit(node, split.attIndex(), SPLIT_NOMINAL,
+			 split.splitPoint(), tree.m_sons.length);
+      } else {
+	first = setSplit(node, split.attIndex(), SPLIT_NUMERIC_SMOREQ,
+			 split.splitPoint(), tree.m_sons.length);
+      }
+    } else if (model instanceof BinC45Split) {
+      BinC45Split split = (BinC45Split) model;
+      if (header.attribute(split.attIndex()).isNominal()) {
+	first = setSplit(node, split.attIndex(), SPLIT_NOMINAL_BINARY,
+			 split.splitPoint(), tree.m_sons.length);
+      } else {
+	first = setSplit(node, split.attIndex(), SPLIT_NUMERIC_SMOREQ,
+			 split.splitPoint(), tree.m_sons.length);
+      }
+    } else {
+      throw new Exception("Split model not supported: "
+			  + model.getClass().getName());
+    }
+
+    Distribution dist = model.distribution();
+    for (int i = 0; i < tree.m_sons.length; i++) {
+      m_Weight[first + i] = dist.perBag(i) / dist.total();
+      flatten(first + i, tree.m_sons[i], header, model, i);
+    }
+  }
+
+  /**
+   * Computes the class probabilities of a leaf, as ClassifierTree does.
+   *
+   * @param tree the leaf
+   * @param parent the split model of the parent, null for the root
+   * @param subset the index of the leaf in the parent's subsets
+   * @param laplace whether to compute the Laplace estimates
+   * @return the class probabilities
+   * @throws Exception if the leaf's model is not supported
+   */
+  protected double[] probs(ClassifierTree tree, ClassifierSplitModel parent,
+			   int subset, boolean laplace) throws Exception {
+
+    double[] result = new double[m_NumClasses];
+    if (tree.m_isEmpty && (parent != null)) {
+      for (int j = 0; j < m_NumClasses; j++) {
+	if (laplace) {
+	  result[j] = parent.classProbLaplace(j, null, subset);
+	} else {
+	  result[j] = parent.classProb(j, null, subset);
+	}
+      }
+    } else {
+      if (!(tree.m_localModel instanceof NoSplit)) {
+	throw new Exception("Leaf model not supported: "
+			    + tree.m_localModel.getClass().getName());
+      }
+      Distribution dist = tree.m_localModel.distribution();
+      for (int j = 0; j < m_NumClasses; j++) {
+	if (laplace) {
+	  result[j] = dist.laplaceProb(j);
+	} else {
+	  result[j] = dist.prob(j);
+	}
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Sets whether the Laplace estimates are used.
+   *
+   * @param value true if the Laplace estimates are to be used
+   */
+  public void setUseLaplace(boolean value) {
+    m_UseLaplace = value;
+    m_Distributions = value ? m_LaplaceProbs : m_Probs;
+  }
+
+  /**
+   * Gets whether the Laplace estimates are used.
+   *
+   * @return true if the Laplace estimates are used
+   */
+  public boolean getUseLaplace() {
+    return m_UseLaplace;
+  }
+
+  /**
+   * Predicts the class distribution for an instance, with the same
+   * results as ClassifierTree.distributionForInstance.
+   *
+   * @param instance the instance
+   * @return the distribution
+   */
+  public double[] distributionForInstance(Instance instance) {
+    double[] result = new double[m_NumClasses];
+    probs(0, instance, 1, m_Distributions, result);
+    return result;
+  }
+
+  /**
+   * Computes the weighted class probabilities of a subtree. The
+   * arithmetic is the same as in ClassifierTree.getProbs, for all classes
+   * at once.
+   *
+   * @param node the root of the subtree
+   * @param instance the instance
+   * @param weight the weight of the instance in the subtree
+   * @param leafProbs the probabilities of the leaves, plain or Laplace
+   * @param result the array for the probabilities
+   */
+  protected void probs(int node, Instance instance, double weight,
+		       double[] leafProbs, double[] result) {
+
+    while (m_Attribute[node] > -1) {
+      if (instance.isMissing(m_Attribute[node])) {
+	double[] help = new double[m_NumClasses];
+	for (int j = 0; j < m_NumClasses; j++) {
+	  result[j] = 0;
+	}
+	int first = m_FirstChild[node];
+	for (int i = first; i < first + m_NumChildren[node]; i++) {
+	  if (!m_Empty[i]) {
+	    probs(i, instance, m_Weight[i] * weight, leafProbs, help);
+	    for (int j = 0; j < m_NumClasses; j++) {
+	      result[j] += help[j];
+	    }
+	  }
+	}
+	return;
+      }
+      node = child(node, instance.value(m_Attribute[node]));
+    }
+
+    int offset = m_Distribution[node];
+    for (int j = 0; j < m_NumClasses; j++) {
+      result[j] = weight * leafProbs[offset + j];
+    }
+  }
+
+  /**
+   * Classifies an instance, with the same result as
+   * ClassifierTree.classifyInstance, i.e., always based on the plain
+   * probabilities.
+   *
+   * @param instance the instance
+   * @return the index of the predicted class
+   */
+  public double classifyInstance(Instance instance) {
+    double[] probs = new double[m_NumClasses];
+    probs(0, instance, 1, m_Probs, probs);
+    double maxProb = -1;
+    int maxIndex = 0;
+
+    for (int j = 0; j < probs.length; j++) {
+      if (Utils.gr(probs[j], maxProb)) {
+	maxIndex = j;
+	maxProb = probs[j];
+      }
+    }
+
+    return (double) maxIndex;
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return		the revision
+   */
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
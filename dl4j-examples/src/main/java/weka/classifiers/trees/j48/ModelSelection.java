@@ -56,4 +56,14 @@ public abstract class ModelSelection
 
     throw new Exception("Model selection method not implemented");
   }
+
+  /**
+   * Called by the tree after the given data has been split into subsets
+   * with the selected model. Does nothing by default.
+   *
+   * @exception Exception if something goes wrong
+   */
+  public void notifySplit(Instances data, ClassifierSplitModel model,
+			  Instances [] subsets) throws Exception {
+  }
 }
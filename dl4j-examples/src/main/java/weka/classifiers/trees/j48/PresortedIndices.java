@@ -0,0 +1,166 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+/*
+ *    PresortedIndices.java
+ *
+ */
+
+package weka.classifiers.trees.j48;
+
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+import weka.core.Utils;
+
+import java.io.Serializable;
+import java.util.IdentityHashMap;
+
+/**
+ * Keeps the instances of each node sorted on every numeric attribute, so
+ * that the data only has to be sorted once, at the root. When a node is
+ * split, the sorted index arrays are partitioned stably into the subsets
+ * (as in SPRINT/SLIQ) instead of sorting each subset again. Instances with
+ * missing values always come last.<p>
+ *
+ * The arrays of a set of instances are handed out by
+ * <code>sortedIndices()</code> and passed on to the subsets by
+ * <code>split()</code>; the tree is built depth-first, so only the subsets
+ * still waiting to be expanded are kept around.
+ *
+ * @version $Revision$
+ */
+public class PresortedIndices
+  implements Serializable, RevisionHandler {
+
+  /** for serialization */
+  private static final long serialVersionUID = -2391871462537458313L;
+
+  /** The set of instances whose indices were handed out last. */
+  private transient Instances m_current;
+
+  /** The sorted indices of that set, null for nominal attributes. */
+  private transient int[][] m_currentIndices;
+
+  /** The sorted indices of subsets that have not been expanded yet. */
+  private transient IdentityHashMap<Instances, int[][]> m_pending;
+
+  /**
+   * Returns the indices of the given instances sorted on each attribute
+   * (null for nominal attributes and the class). The indices are taken
+   * from the parent's split if there was one, otherwise the data is
+   * sorted.
+   *
+   * @param data the instances
+   * @return the sorted indices, indexed by attribute
+   */
+  public int[][] sortedIndices(Instances data) {
+
+    int[][] indices = null;
+    if (m_pending != null) {
+      indices = m_pending.remove(data);
+    }
+    if (indices == null) {
+      indices = new int[data.numAttributes()][];
+      for (int i = 0; i < data.numAttributes(); i++) {
+	if ((i != data.classIndex()) && data.attribute(i).isNumeric()) {
+	  indices[i] = Utils.sort(data.attributeToDoubleArray(i));
+	}
+      }
+    }
+    m_current = data;
+    m_currentIndices = indices;
+    return indices;
+  }
+
+  /**
+   * Partitions the sorted indices of the given instances into the subsets
+   * created by the given model. Must be called with the same subsets as
+   * <code>model.split(data)</code> returned. Does nothing if the indices of
+   * the data were not the last ones handed out.
+   *
+   * @param data the instances that were split
+   * @param model the model that split them
+   * @param subsets the subsets
+   * @exception Exception if something goes wrong
+   */
+  public void split(Instances data, ClassifierSplitModel model,
+		    Instances [] subsets) throws Exception {
+
+    if ((data != m_current) || (m_currentIndices == null)) {
+      return;
+    }
+    int[][] indices = m_currentIndices;
+    m_current = null;
+    m_currentIndices = null;
+
+    // Position of each instance in each subset, as assigned by split().
+    int[][] position = new int[subsets.length][data.numInstances()];
+    int[] count = new int[subsets.length];
+    for (int i = 0; i < data.numInstances(); i++) {
+      Instance instance = data.instance(i);
+      int subset = model.whichSubset(instance);
+      if (subset > -1) {
+	for (int j = 0; j < subsets.length; j++)
+	  position[j][i] = (j == subset) ? count[j]++ : -1;
+      } else {
+	double [] weights = model.weights(instance);
+	for (int j = 0; j < subsets.length; j++)
+	  position[j][i] = Utils.gr(weights[j], 0) ? count[j]++ : -1;
+      }
+    }
+
+    if (m_pending == null) {
+      m_pending = new IdentityHashMap<Instances, int[][]>();
+    }
+    for (int j = 0; j < subsets.length; j++) {
+      int[][] subsetIndices = new int[indices.length][];
+      for (int a = 0; a < indices.length; a++) {
+	if (indices[a] == null)
+	  continue;
+	int[] sorted = new int[count[j]];
+	int n = 0;
+	for (int k = 0; k < indices[a].length; k++) {
+	  int pos = position[j][indices[a][k]];
+	  if (pos >= 0)
+	    sorted[n++] = pos;
+	}
+	subsetIndices[a] = sorted;
+      }
+      m_pending.put(subsets[j], subsetIndices);
+    }
+  }
+
+  /**
+   * Releases all indices.
+   */
+  public void cleanup() {
+
+    m_current = null;
+    m_currentIndices = null;
+    m_pending = null;
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return		the revision
+   */
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
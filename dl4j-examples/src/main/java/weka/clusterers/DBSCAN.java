@@ -42,10 +42,16 @@ import weka.filters.unsupervised.attribute.ReplaceMissingValues;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  <!-- globalinfo-start -->
@@ -86,6 +92,10 @@ import java.util.Vector;
  * <pre> -D &lt;String&gt;
  *  distance-type (default = weka.clusterers.forOPTICSAndDBScan.DataObjects.EuclideanDataObject)</pre>
  * 
+ * <pre> -num-slots &lt;int&gt;
+ *  Number of execution slots for the range-queries.
+ *  (default 1 - i.e. no parallelism)</pre>
+ * 
  <!-- options-end -->
  *
  * @author Matthias Schubert (schubert@dbs.ifi.lmu.de)
@@ -152,6 +162,16 @@ public class DBSCAN
      */
     private double elapsedTime;
 
+    /**
+     * Holds the number of threads that perform range-queries
+     */
+    private int numExecutionSlots = 1;
+
+    /**
+     * The thread pool that performs range-queries (null if no parallelism)
+     */
+    private transient ExecutorService executorPool;
+
     /**
      * Returns default capabilities of the clusterer.
      *
@@ -208,15 +228,25 @@ public class DBSCAN
         }
         database.setMinMaxValues();
 
-        Iterator iterator = database.dataObjectIterator();
-        while (iterator.hasNext()) {
-            DataObject dataObject = (DataObject) iterator.next();
-            if (dataObject.getClusterLabel() == DataObject.UNCLASSIFIED) {
-                if (expandCluster(dataObject)) {
-                    clusterID++;
-                    numberOfGeneratedClusters++;
+        if (getNumExecutionSlots() > 1) {
+            executorPool = Executors.newFixedThreadPool(getNumExecutionSlots());
+        }
+        try {
+            Iterator iterator = database.dataObjectIterator();
+            while (iterator.hasNext()) {
+                DataObject dataObject = (DataObject) iterator.next();
+                if (dataObject.getClusterLabel() == DataObject.UNCLASSIFIED) {
+                    if (expandCluster(dataObject)) {
+                        clusterID++;
+                        numberOfGeneratedClusters++;
+                    }
                 }
             }
+        } finally {
+            if (executorPool != null) {
+                executorPool.shutdownNow();
+                executorPool = null;
+            }
         }
 
         long time_2 = System.currentTimeMillis();
@@ -227,8 +257,9 @@ public class DBSCAN
      * Assigns this dataObject to a cluster or remains it as NOISE
      * @param dataObject The DataObject that needs to be assigned
      * @return true, if the DataObject could be assigned, else false
+     * @throws Exception if a range-query fails
      */
-    private boolean expandCluster(DataObject dataObject) {
+    private boolean expandCluster(DataObject dataObject) throws Exception {
         List seedList = database.epsilonRangeQuery(getEpsilon(), dataObject);
         /** dataObject is NO coreObject */
         if (seedList.size() < getMinPoints()) {
@@ -248,9 +279,17 @@ public class DBSCAN
         }
 
         /** Iterate the seedList of the startDataObject */
+        List<List<?>> neighbourhoods = new ArrayList<List<?>>();
+        int nextNeighbourhood = 0;
         for (int j = 0; j < seedList.size(); j++) {
             DataObject seedListDataObject = (DataObject) seedList.get(j);
-            List seedListDataObject_Neighbourhood = database.epsilonRangeQuery(getEpsilon(), seedListDataObject);
+            if (nextNeighbourhood == neighbourhoods.size()) {
+                /** query the neighbourhoods of the next seeds at once (they don't depend on the labels) */
+                int batchSize = (executorPool == null) ? 1 : 16 * getNumExecutionSlots();
+                neighbourhoods = epsilonRangeQueries(seedList.subList(j, Math.min(seedList.size(), j + batchSize)));
+                nextNeighbourhood = 0;
+            }
+            List<?> seedListDataObject_Neighbourhood = neighbourhoods.get(nextNeighbourhood++);
 
             /** seedListDataObject is coreObject */
             if (seedListDataObject_Neighbourhood.size() >= getMinPoints()) {
@@ -271,6 +310,44 @@ public class DBSCAN
         return true;
     }
 
+    /**
+     * Performs epsilon range queries for the given dataObjects, with the
+     * thread pool if there is one
+     * @param dataObjects The query-objects
+     * @return List with the result of the range-query of each query-object
+     * @throws Exception if a range-query fails
+     */
+    private List<List<?>> epsilonRangeQueries(List<?> dataObjects) throws Exception {
+        List<List<?>> result = new ArrayList<List<?>>();
+        if (executorPool == null) {
+            for (int i = 0; i < dataObjects.size(); i++) {
+                result.add(database.epsilonRangeQuery(getEpsilon(), (DataObject) dataObjects.get(i)));
+            }
+            return result;
+        }
+
+        final double queryEpsilon = getEpsilon();
+        List<Future<List<?>>> futures = new ArrayList<Future<List<?>>>();
+        for (int i = 0; i < dataObjects.size(); i++) {
+            final DataObject queryDataObject = (DataObject) dataObjects.get(i);
+            futures.add(executorPool.submit(new Callable<List<?>>() {
+                public List<?> call() {
+                    return database.epsilonRangeQuery(queryEpsilon, queryDataObject);
+                }
+            }));
+        }
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                result.add(futures.get(i).get());
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception)
+                throw (Exception) e.getCause();
+            throw e;
+        }
+        return result;
+    }
+
     /**
      * Classifies a given instance.
      *
@@ -327,6 +404,12 @@ public class DBSCAN
                         "D",
                         1,
                         "-D <String>"));
+        vector.addElement(
+                new Option("\tNumber of execution slots for the range-queries.\n"
+                        + "\t(default 1 - i.e. no parallelism)",
+                        "num-slots",
+                        1,
+                        "-num-slots <int>"));
         return vector.elements();
     }
 
@@ -350,6 +433,10 @@ public class DBSCAN
      * <pre> -D &lt;String&gt;
      *  distance-type (default = weka.clusterers.forOPTICSAndDBScan.DataObjects.EuclideanDataObject)</pre>
      * 
+     * <pre> -num-slots &lt;int&gt;
+     *  Number of execution slots for the range-queries.
+     *  (default 1 - i.e. no parallelism)</pre>
+     * 
      <!-- options-end -->
      *
      * @param options The list of options as an array of strings
@@ -375,6 +462,13 @@ public class DBSCAN
         if (optionString.length() != 0) {
             setDatabase_distanceType(optionString);
         }
+
+        optionString = Utils.getOption("num-slots", options);
+        if (optionString.length() != 0) {
+            setNumExecutionSlots(Integer.parseInt(optionString));
+        } else {
+            setNumExecutionSlots(1);
+        }
     }
 
     /**
@@ -383,7 +477,7 @@ public class DBSCAN
      * @return String[] The list of current option settings as an array of strings
      */
     public String[] getOptions() {
-        String[] options = new String[8];
+        String[] options = new String[10];
         int current = 0;
 
         options[current++] = "-E";
@@ -394,6 +488,8 @@ public class DBSCAN
         options[current++] = "" + getDatabase_Type();
         options[current++] = "-D";
         options[current++] = "" + getDatabase_distanceType();
+        options[current++] = "-num-slots";
+        options[current++] = "" + getNumExecutionSlots();
 
         return options;
     }
@@ -493,6 +589,25 @@ public class DBSCAN
         return minPoints;
     }
 
+    /**
+     * Sets the number of threads that perform range-queries
+     * @param numExecutionSlots Number of execution slots
+     * @throws Exception if the number is smaller than 1
+     */
+    public void setNumExecutionSlots(int numExecutionSlots) throws Exception {
+        if (numExecutionSlots < 1)
+            throw new Exception("Number of execution slots needs to be >= 1!");
+        this.numExecutionSlots = numExecutionSlots;
+    }
+
+    /**
+     * Returns the number of threads that perform range-queries
+     * @return int Number of execution slots
+     */
+    public int getNumExecutionSlots() {
+        return numExecutionSlots;
+    }
+
     /**
      * Returns the distance-type
      * @return String Distance-type
@@ -561,6 +676,16 @@ public class DBSCAN
         return "used distance-type";
     }
 
+    /**
+     * Returns the tip text for this property
+     * @return tip text for this property suitable for
+     * displaying in the explorer/experimenter gui
+     */
+    public String numExecutionSlotsTipText() {
+        return "number of threads that perform range-queries (the database must "
+          + "support concurrent queries, as SequentialDatabase and GridDatabase do)";
+    }
+
     /**
      * Returns a string describing this DataMining-Algorithm
      * @return String Information for the gui-explorer
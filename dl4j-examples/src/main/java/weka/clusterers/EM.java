@@ -34,9 +34,16 @@ import weka.estimators.DiscreteEstimator;
 import weka.estimators.Estimator;
 import weka.filters.unsupervised.attribute.ReplaceMissingValues;
 
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  <!-- globalinfo-start -->
@@ -51,7 +58,9 @@ import java.util.Vector;
  * 4. the loglikelihood is averaged over all 10 results.<br/>
  * 5. if loglikelihood has increased the number of clusters is increased by 1 and the program continues at step 2. <br/>
  * <br/>
- * The number of folds is fixed to 10, as long as the number of instances in the training set is not smaller 10. If this is the case the number of folds is set equal to the number of instances.
+ * The number of folds is fixed to 10, as long as the number of instances in the training set is not smaller 10. If this is the case the number of folds is set equal to the number of instances.<br/>
+ * <br/>
+ * With more than one execution slot, the E and M steps and the folds of the cross validation are processed in parallel. The result is the same as with one slot.
  * <p/>
  <!-- globalinfo-end -->
  *
@@ -78,6 +87,10 @@ import java.util.Vector;
  *  Display model in old format (good when there are many clusters)
  * </pre>
  * 
+ * <pre> -num-slots &lt;num&gt;
+ *  Number of execution slots.
+ *  (default 1 - i.e. no parallelism)</pre>
+ * 
  * <pre> -S &lt;num&gt;
  *  Random number seed.
  *  (default 100)</pre>
@@ -156,6 +169,13 @@ public class EM
   /** display model output in old-style format */
   private boolean m_displayModelInOldFormat;
 
+  /** the number of execution slots (threads) to use */
+  private int m_executionSlots = 1;
+
+  /** the thread pool used while the clusterer is built, null if only one
+      slot is used */
+  private transient ExecutorService m_executorPool;
+
   /**
    * Returns a string describing this clusterer
    * @return a description of the evaluator suitable for
@@ -178,7 +198,10 @@ public class EM
       + "by 1 and the program continues at step 2. \n\n"
       + "The number of folds is fixed to 10, as long as the number of "
       + "instances in the training set is not smaller 10. If this is the case "
-      + "the number of folds is set equal to the number of instances.";
+      + "the number of folds is set equal to the number of instances.\n\n"
+      + "With more than one execution slot, the E and M steps and the folds "
+      + "of the cross validation are processed in parallel. The result is the "
+      + "same as with one slot.";
   }
 
   /**
@@ -214,6 +237,11 @@ public class EM
                          + "many clusters)\n",
                          "O", 0, "-O"));
 
+    result.addElement(new Option(
+	"\tNumber of execution slots.\n"
+	+ "\t(default 1 - i.e. no parallelism)",
+	"num-slots", 1, "-num-slots <num>"));
+
     Enumeration en = super.listOptions();
     while (en.hasMoreElements())
       result.addElement(en.nextElement());
@@ -248,6 +276,10 @@ public class EM
    *  Display model in old format (good when there are many clusters)
    * </pre>
    * 
+   * <pre> -num-slots &lt;num&gt;
+   *  Number of execution slots.
+   *  (default 1 - i.e. no parallelism)</pre>
+   * 
    * <pre> -S &lt;num&gt;
    *  Random number seed.
    *  (default 100)</pre>
@@ -278,6 +310,11 @@ public class EM
     }
 
     setDisplayModelInOldFormat(Utils.getFlag('O', options));
+
+    optionString = Utils.getOption("num-slots", options);
+    if (optionString.length() != 0) {
+      setNumExecutionSlots(Integer.parseInt(optionString));
+    }
     
     super.setOptions(options);
   }
@@ -456,6 +493,40 @@ public class EM
   }
 
 
+  /**
+   * Returns the tip text for this property
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of execution slots (threads) to use for the E and M "
+      + "steps and for the folds of the cross validation.";
+  }
+
+  /**
+   * Set the number of execution slots (threads) to use.
+   *
+   * @param slots the number of slots to use
+   * @throws Exception if the number of slots is smaller than 1
+   */
+  public void setNumExecutionSlots (int slots)
+    throws Exception {
+    if (slots < 1) {
+      throw new Exception("Number of execution slots needs to be >= 1!");
+    }
+
+    m_executionSlots = slots;
+  }
+
+  /**
+   * Get the number of execution slots (threads) to use.
+   *
+   * @return the number of slots to use
+   */
+  public int getNumExecutionSlots () {
+    return m_executionSlots;
+  }
+
   /**
    * Gets the current settings of EM.
    *
@@ -477,6 +548,8 @@ public class EM
     if (m_displayModelInOldFormat) {
       result.add("-O");
     }
+    result.add("-num-slots");
+    result.add("" + getNumExecutionSlots());
 
     options = super.getOptions();
     for (i = 0; i < options.length; i++)
@@ -647,34 +720,40 @@ public class EM
    * @param inst the training instances
    * @throws Exception if something goes wrong
    */
-  private void M (Instances inst)
+  private void M (final Instances inst)
     throws Exception {
 
-    int i, j, l;
+    int i, j;
 
     new_estimators();
     estimate_priors(inst);
 
-    for (i = 0; i < m_num_clusters; i++) {
-      for (j = 0; j < m_num_attribs; j++) {
-        for (l = 0; l < inst.numInstances(); l++) {
-	  Instance in = inst.instance(l);
-          if (!in.isMissing(j)) {
-            if (inst.attribute(j).isNominal()) {
-              m_model[i][j].addValue(in.value(j), 
-				     in.weight() * m_weights[l][i]);
-            }
-            else {
-              m_modelNormal[i][j][0] += (in.value(j) * in.weight() *
-					 m_weights[l][i]);
-              m_modelNormal[i][j][2] += in.weight() * m_weights[l][i];
-              m_modelNormal[i][j][1] += (in.value(j) * 
-					 in.value(j) * in.weight() * m_weights[l][i]);
-            }
-          }
-        }
-      }
-    }
+    // the statistics of each cluster and attribute are accumulated by
+    // one task, over the instances in order
+    runTasks(m_num_clusters * m_num_attribs, new RangeTask() {
+	public void run(int from, int to) {
+	  for (int t = from; t < to; t++) {
+	    int i = t / m_num_attribs;
+	    int j = t % m_num_attribs;
+	    for (int l = 0; l < inst.numInstances(); l++) {
+	      Instance in = inst.instance(l);
+	      if (!in.isMissing(j)) {
+		if (inst.attribute(j).isNominal()) {
+		  m_model[i][j].addValue(in.value(j), 
+					 in.weight() * m_weights[l][i]);
+		}
+		else {
+		  m_modelNormal[i][j][0] += (in.value(j) * in.weight() *
+					     m_weights[l][i]);
+		  m_modelNormal[i][j][2] += in.weight() * m_weights[l][i];
+		  m_modelNormal[i][j][1] += (in.value(j) * 
+					     in.value(j) * in.weight() * m_weights[l][i]);
+		}
+	      }
+	    }
+	  }
+	}
+      });
     
     // calcualte mean and std deviation for numeric attributes
     for (j = 0; j < m_num_attribs; j++) {
@@ -734,21 +813,37 @@ public class EM
    * @return the average log likelihood
    * @throws Exception if computation fails
    */
-  private double E (Instances inst, boolean change_weights)
+  private double E (final Instances inst, final boolean change_weights)
     throws Exception {
 
     double loglk = 0.0, sOW = 0.0;
 
+    // the densities are computed in parallel, the sums in instance order
+    final double[] logDensities = new double[inst.numInstances()];
+    runTasks(inst.numInstances(), new RangeTask() {
+	public void run(int from, int to) {
+	  for (int l = from; l < to; l++) {
+	    double[] joint = logJointDensities(inst.instance(l));
+	    double max = joint[Utils.maxIndex(joint)];
+	    double sum = 0.0;
+	    for (int i = 0; i < joint.length; i++) {
+	      sum += Math.exp(joint[i] - max);
+	    }
+	    logDensities[l] = max + Math.log(sum);
+
+	    if (change_weights) {
+	      m_weights[l] = Utils.logs2probs(joint);
+	    }
+	  }
+	}
+      });
+
     for (int l = 0; l < inst.numInstances(); l++) {
 
       Instance in = inst.instance(l);
 
-      loglk += in.weight() * logDensityForInstance(in);
+      loglk += in.weight() * logDensities[l];
       sOW += in.weight();
-
-      if (change_weights) {
-	m_weights[l] = distributionForInstance(in);
-      }
     }
     
     // reestimate priors
@@ -781,6 +876,7 @@ public class EM
     m_num_clusters = -1;
     m_initialNumClusters = -1;
     m_verbose = false;
+    m_executionSlots = 1;
   }
 
   /**
@@ -1102,52 +1198,71 @@ public class EM
       trainCopy = new Instances(m_theInstances);
       trainCopy.randomize(cvr);
       templl = 0.0;
-      for (i = 0; i < numFolds; i++) {
-	Instances cvTrain = trainCopy.trainCV(numFolds, i, cvr);
-	if (num_clusters > cvTrain.numInstances()) {
-	  break CLUSTER_SEARCH;
-	}
-	Instances cvTest = trainCopy.testCV(numFolds, i);
-	m_rr = new Random(seed);
-        for (int z=0; z<10; z++) m_rr.nextDouble();
-	m_num_clusters = num_clusters;
-	EM_Init(cvTrain);
-	try {
-	  iterate(cvTrain, false);
-	} catch (Exception ex) {
-	  // catch any problems - i.e. empty clusters occuring
-	  ex.printStackTrace();
-          //          System.err.println("Restarting after CV training failure ("+num_clusters+" clusters");
-          seed++;
-          restartCount++;
-          ok = false;
-          if (restartCount > 5) {
-            break CLUSTER_SEARCH;
-          }
-	  break;
+
+      // with several execution slots, EM is run on all folds at once
+      List<Future<CVFold>> scheduled = null;
+      if (m_executorPool != null) {
+	scheduled = new ArrayList<Future<CVFold>>();
+	for (i = 0; i < numFolds; i++) {
+	  Instances cvTrain = trainCopy.trainCV(numFolds, i, cvr);
+	  if (num_clusters > cvTrain.numInstances()) {
+	    break;
+	  }
+	  Instances cvTest = trainCopy.testCV(numFolds, i);
+	  scheduled.add(m_executorPool.submit(new CVFold(cvTrain, cvTest,
+							  num_clusters, seed)));
 	}
-        try {
-          tll = E(cvTest, false);
-        } catch (Exception ex) {
-          // catch any problems - i.e. empty clusters occuring
-          //          ex.printStackTrace();
-          ex.printStackTrace();
-          //          System.err.println("Restarting after CV testing failure ("+num_clusters+" clusters");
-          //          throw new Exception(ex); 
-          seed++;
-          restartCount++;
-          ok = false;
-          if (restartCount > 5) {
-            break CLUSTER_SEARCH;
-          }
-          break;
-        }
+      }
+
+      try {
+	for (i = 0; i < numFolds; i++) {
+	  CVFold fold;
+	  if (scheduled != null) {
+	    if (i == scheduled.size()) {
+	      break CLUSTER_SEARCH;
+	    }
+	    try {
+	      fold = scheduled.get(i).get();
+	    } catch (ExecutionException e) {
+	      if (e.getCause() instanceof Exception) {
+		throw (Exception) e.getCause();
+	      }
+	      throw e;
+	    }
+	  } else {
+	    Instances cvTrain = trainCopy.trainCV(numFolds, i, cvr);
+	    if (num_clusters > cvTrain.numInstances()) {
+	      break CLUSTER_SEARCH;
+	    }
+	    Instances cvTest = trainCopy.testCV(numFolds, i);
+	    fold = new CVFold(cvTrain, cvTest, num_clusters, seed).call();
+	  }
 
-	if (m_verbose) {
-	  System.out.println("# clust: " + num_clusters + " Fold: " + i 
-			     + " Loglikely: " + tll);
+	  if (fold.m_failure != null) {
+	    // catch any problems - i.e. empty clusters occuring
+	    fold.m_failure.printStackTrace();
+	    seed++;
+	    restartCount++;
+	    ok = false;
+	    if (restartCount > 5) {
+	      break CLUSTER_SEARCH;
+	    }
+	    break;
+	  }
+	  tll = fold.m_logLikely;
+
+	  if (m_verbose) {
+	    System.out.println("# clust: " + num_clusters + " Fold: " + i 
+			       + " Loglikely: " + tll);
+	  }
+	  templl += tll;
+	}
+      } finally {
+	if (scheduled != null) {
+	  for (Future<CVFold> fold : scheduled) {
+	    fold.cancel(true);
+	  }
 	}
-	templl += tll;
       }
 
       if (ok) {
@@ -1181,6 +1296,86 @@ public class EM
   }
 
 
+  /**
+   * Runs EM on one fold of the cross validation that estimates the number
+   * of clusters. A copy of the clusterer is used, so that several folds
+   * can be processed at once.
+   */
+  private class CVFold
+    implements Callable<CVFold> {
+
+    /** the training instances of the fold */
+    private Instances m_cvTrain;
+
+    /** the test instances of the fold */
+    private Instances m_cvTest;
+
+    /** the number of clusters */
+    private int m_numClusters;
+
+    /** the seed for the initialization */
+    private int m_cvSeed;
+
+    /** the log likelihood of the test instances */
+    private double m_logLikely;
+
+    /** the problem that occurred when training or testing, if any */
+    private Exception m_failure;
+
+    /**
+     * Sets up the fold.
+     *
+     * @param cvTrain the training instances
+     * @param cvTest the test instances
+     * @param numClusters the number of clusters
+     * @param seed the seed for the initialization
+     */
+    public CVFold(Instances cvTrain, Instances cvTest, int numClusters,
+		  int seed) {
+      m_cvTrain = cvTrain;
+      m_cvTest = cvTest;
+      m_numClusters = numClusters;
+      m_cvSeed = seed;
+    }
+
+    /**
+     * Runs EM on the training instances and computes the log likelihood of
+     * the test instances.
+     *
+     * @return this fold
+     * @throws Exception if EM cannot be initialized, or the thread
+     * was interrupted
+     */
+    public CVFold call() throws Exception {
+      EM fold = new EM();
+      fold.m_theInstances = m_theInstances;
+      fold.m_minValues = m_minValues;
+      fold.m_maxValues = m_maxValues;
+      fold.m_num_instances = m_num_instances;
+      fold.m_num_attribs = m_num_attribs;
+      fold.m_max_iterations = m_max_iterations;
+      fold.m_minStdDev = m_minStdDev;
+      fold.m_minStdDevPerAtt = m_minStdDevPerAtt;
+      fold.setSeed(getSeed());
+
+      fold.m_rr = new Random(m_cvSeed);
+      for (int z=0; z<10; z++) fold.m_rr.nextDouble();
+      fold.m_num_clusters = m_numClusters;
+      fold.EM_Init(m_cvTrain);
+      try {
+	fold.iterate(m_cvTrain, false);
+	m_logLikely = fold.E(m_cvTest, false);
+      } catch (InterruptedException ex) {
+	throw ex;
+      } catch (Exception ex) {
+	m_failure = ex;
+      }
+      m_cvTrain = null;
+      m_cvTest = null;
+      return this;
+    }
+  }
+
   /**
    * Returns the number of clusters.
    *
@@ -1268,7 +1463,17 @@ public class EM
       updateMinMax(m_theInstances.instance(i));
     }
 
-    doEM();
+    if (m_executionSlots > 1) {
+      m_executorPool = Executors.newFixedThreadPool(m_executionSlots);
+    }
+    try {
+      doEM();
+    } finally {
+      if (m_executorPool != null) {
+	m_executorPool.shutdownNow();
+	m_executorPool = null;
+      }
+    }
     
     // save memory
     m_theInstances = new Instances(m_theInstances,0);
@@ -1297,12 +1502,25 @@ public class EM
    */
   public double[] logDensityPerClusterForInstance(Instance inst) throws Exception {
 
+    m_replaceMissing.input(inst);
+    inst = m_replaceMissing.output();
+
+    return logDensityPerCluster(inst);
+  }
+
+  /**
+   * Computes the log of the conditional density (per cluster) for an
+   * instance without missing values, e.g., a training instance. Unlike the
+   * missing values filter, this can be used by several threads at once.
+   * 
+   * @param inst the instance to compute the density for
+   * @return an array containing the estimated densities
+   */
+  private double[] logDensityPerCluster(Instance inst) {
+
     int i, j;
     double logprob;
     double[] wghts = new double[m_num_clusters];
-    
-    m_replaceMissing.input(inst);
-    inst = m_replaceMissing.output();
 
     for (i = 0; i < m_num_clusters; i++) {
       //      System.err.println("Cluster : "+i);
@@ -1330,6 +1548,91 @@ public class EM
     return  wghts;
   }
 
+  /**
+   * Returns the logs of the joint densities for an instance without
+   * missing values, as logJointDensitiesForInstance does.
+   *
+   * @param inst the instance
+   * @return the array of values
+   * @throws IllegalArgumentException if a cluster is empty
+   */
+  private double[] logJointDensities(Instance inst) {
+
+    double[] weights = logDensityPerCluster(inst);
+
+    for (int i = 0; i < weights.length; i++) {
+      if (m_priors[i] > 0) {
+	weights[i] += Math.log(m_priors[i]);
+      } else {
+	throw new IllegalArgumentException("Cluster empty!");
+      }
+    }
+    return weights;
+  }
+
+  /**
+   * Work on a contiguous range of items, e.g., instances.
+   */
+  private interface RangeTask {
+
+    /**
+     * Processes a range of items.
+     *
+     * @param from the first item (inclusive)
+     * @param to the last item (exclusive)
+     */
+    void run(int from, int to);
+  }
+
+  /**
+   * Runs a task on ranges of the items, one range per execution slot, and
+   * waits for all of them. Without a thread pool, the task is run on all
+   * items in the current thread.
+   *
+   * @param numItems the number of items
+   * @param task the task
+   * @throws Exception if a task fails
+   */
+  private void runTasks(int numItems, final RangeTask task)
+    throws Exception {
+
+    int numTasks = Math.min(m_executionSlots, numItems);
+    if ((m_executorPool == null) || (numTasks < 2)) {
+      task.run(0, numItems);
+      return;
+    }
+
+    List<Future<?>> results = new ArrayList<Future<?>>();
+    for (int t = 0; t < numTasks; t++) {
+      final int from = (int) ((long) numItems * t / numTasks);
+      final int to = (int) ((long) numItems * (t + 1) / numTasks);
+      results.add(m_executorPool.submit(new Callable<Object>() {
+	  public Object call() {
+	    task.run(from, to);
+	    return null;
+	  }
+	}));
+    }
+
+    // wait for all the tasks, so that none of them is still running if
+    // the model is reinitialized after a failure
+    Exception failure = null;
+    for (Future<?> result : results) {
+      try {
+	result.get();
+      } catch (ExecutionException e) {
+	if (failure == null) {
+	  failure = (e.getCause() instanceof Exception)
+	    ? (Exception) e.getCause()
+	    : e;
+	}
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
 
   /**
    * Perform the EM algorithm
@@ -1385,6 +1688,7 @@ public class EM
    * @param inst the training instances.
    * @param report be verbose.
    * @return the log likelihood of the data
+   * @throws InterruptedException if the thread was interrupted
    * @throws Exception if something goes wrong
    */
   private double iterate (Instances inst, boolean report)
@@ -1404,6 +1708,10 @@ public class EM
     while (!ok) {
       try {
         for (i = 0; i < m_max_iterations; i++) {
+          // stop if cancelled, e.g., a fold of CVClusters that isn't needed
+          if (Thread.interrupted()) {
+            throw new InterruptedException("EM was interrupted");
+          }
           llkold = llk;
           llk = E(inst, true);
           
@@ -1426,6 +1734,8 @@ public class EM
           M(inst);
         }
         ok = true;
+      } catch (InterruptedException ex) {
+        throw ex;
       } catch (Exception ex) {
         //        System.err.println("Restarting after training failure");
         ex.printStackTrace();
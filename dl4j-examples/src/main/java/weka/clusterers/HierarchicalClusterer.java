@@ -23,10 +23,18 @@ package weka.clusterers;
 
 import java.io.Serializable;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.PriorityQueue;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import weka.core.Capabilities;
 import weka.core.CapabilitiesHandler;
@@ -78,6 +86,19 @@ import weka.core.Capabilities.Capability;
 * \If set, distance is interpreted as branch length, otherwise it is node height.
 * </pre>
 * 
+* <pre> -nn-chain
+* Use the nearest-neighbor-chain algorithm for single, complete and average link.
+* </pre>
+* 
+* <pre> -float
+* Store the distances as floats to halve the memory (nearest-neighbor-chain only).
+* </pre>
+* 
+* <pre> -num-slots
+* Number of execution slots for computing the distances (nearest-neighbor-chain only).
+* (default 1 - i.e. no parallelism)
+* </pre>
+* 
 *<!-- options-end -->
 *
 * 
@@ -94,6 +115,15 @@ public class HierarchicalClusterer extends AbstractClusterer implements OptionHa
   /** Whether the distance represent node height (if false) or branch length (if true). */
   protected boolean m_bDistanceIsBranchLength = false;
 
+  /** Whether the nearest-neighbor-chain algorithm is used for single, complete and average link. */
+  protected boolean m_bNNChain = false;
+
+  /** Whether the nearest-neighbor-chain algorithm stores the distances as floats. */
+  protected boolean m_bFloatDistances = false;
+
+  /** Number of threads used to compute the distances for the nearest-neighbor-chain algorithm. */
+  protected int m_nNumExecutionSlots = 1;
+
   /** training data **/
   Instances m_instances;
 
@@ -272,6 +302,8 @@ public class HierarchicalClusterer extends AbstractClusterer implements OptionHa
     Node [] clusterNodes = new Node[nInstances];
     if (m_nLinkType == NEIGHBOR_JOINING) {
       neighborJoining(nClusters, nClusterID, clusterNodes);
+    } else if (m_bNNChain && (m_nLinkType == SINGLE || m_nLinkType == COMPLETE || m_nLinkType == AVERAGE)) {
+      nnChainClustering(nClusters, nClusterID, clusterNodes);
     } else {
       doLinkClustering(nClusters, nClusterID, clusterNodes);
     }
@@ -513,6 +545,226 @@ public class HierarchicalClusterer extends AbstractClusterer implements OptionHa
     }
   } // doLinkClustering
 
+  /** distances between all pairs of clusters, stored as the upper triangle of the
+   * distance matrix in a single array of doubles or floats
+   */
+  static class DistanceArray {
+    int m_nSize;
+    double [] m_fDoubles;
+    float [] m_fFloats;
+    DistanceArray(int nSize, boolean bFloat) throws Exception {
+      long nPairs = (long) nSize * (nSize - 1) / 2;
+      if (nPairs > Integer.MAX_VALUE - 8) {
+        throw new Exception("Too many instances for the nearest-neighbor-chain algorithm: " + nSize);
+      }
+      m_nSize = nSize;
+      if (bFloat) {
+        m_fFloats = new float[(int) nPairs];
+      } else {
+        m_fDoubles = new double[(int) nPairs];
+      }
+    }
+    /** index of the pair i < j **/
+    final int index(int i, int j) {
+      return (int) ((long) i * m_nSize - (long) i * (i + 1) / 2) + j - i - 1;
+    }
+    final double get(int i, int j) {
+      int k = (i < j) ? index(i, j) : index(j, i);
+      return (m_fDoubles != null) ? m_fDoubles[k] : m_fFloats[k];
+    }
+    final void set(int i, int j, double fDist) {
+      int k = (i < j) ? index(i, j) : index(j, i);
+      if (m_fDoubles != null) {
+        m_fDoubles[k] = fDist;
+      } else {
+        m_fFloats[k] = (float) fDist;
+      }
+    }
+  }
+
+  /** Perform clustering using the nearest-neighbor-chain algorithm, which runs in O(n^2) time
+   * with a single condensed distance array of O(n^2/2) memory. It applies to reducible link types
+   * (single, complete and average), for which the distances to a merged cluster follow from the
+   * distances to its two parts (Lance-Williams). The chain finds the whole hierarchy; its merges are
+   * then sorted by distance and carried out in that order until the desired number of clusters is reached,
+   * which gives the same clusters as doLinkClustering (up to ties).
+   * @param nClusters number of clusters
+   * @param nClusterID 
+   * @param clusterNodes 
+   * @throws Exception if the distance array is too large
+   */
+  void nnChainClustering(int nClusters, Vector<Integer>[] nClusterID, Node [] clusterNodes) throws Exception {
+    int n = nClusters;
+    if (n <= m_nNumClusters) {
+      return;
+    }
+    DistanceArray fDist = new DistanceArray(n, m_bFloatDistances);
+    computeDistances(fDist);
+
+    int [] nSize = new int[n];
+    boolean [] bActive = new boolean[n];
+    for (int i = 0; i < n; i++) {
+      nSize[i] = 1;
+      bActive[i] = true;
+    }
+    int [] nChain = new int[n];
+    int nChainLength = 0;
+    int iFirstActive = 0;
+    // merges in the order they are found: the two merged clusters (represented by
+    // one of their instances) and their distance
+    int [] nMerge1 = new int[n - 1];
+    int [] nMerge2 = new int[n - 1];
+    double [] fMergeDist = new double[n - 1];
+
+    for (int iMerge = 0; iMerge < n - 1; iMerge++) {
+      if (nChainLength == 0) {
+        while (!bActive[iFirstActive]) {
+          iFirstActive++;
+        }
+        nChain[nChainLength++] = iFirstActive;
+      }
+      // grow the chain until its last two clusters are each other's nearest neighbors
+      int iA, iB;
+      double fMin;
+      while (true) {
+        iA = nChain[nChainLength - 1];
+        iB = (nChainLength > 1) ? nChain[nChainLength - 2] : -1;
+        fMin = (iB >= 0) ? fDist.get(iA, iB) : Double.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+          if (bActive[i] && i != iA) {
+            double f = fDist.get(iA, i);
+            if (f < fMin) {
+              fMin = f;
+              iB = i;
+            }
+          }
+        }
+        if (nChainLength > 1 && iB == nChain[nChainLength - 2]) {
+          break;
+        }
+        nChain[nChainLength++] = iB;
+      }
+      nChainLength -= 2;
+
+      // merge into the cluster with the smaller index, as merge() does
+      int i1 = Math.min(iA, iB);
+      int i2 = Math.max(iA, iB);
+      nMerge1[iMerge] = i1;
+      nMerge2[iMerge] = i2;
+      fMergeDist[iMerge] = fMin;
+      bActive[i2] = false;
+      for (int i = 0; i < n; i++) {
+        if (bActive[i] && i != i1) {
+          double f1 = fDist.get(i1, i);
+          double f2 = fDist.get(i2, i);
+          double fDistance;
+          switch (m_nLinkType) {
+          case SINGLE:
+            fDistance = Math.min(f1, f2);
+            break;
+          case COMPLETE:
+            fDistance = Math.max(f1, f2);
+            break;
+          default: // AVERAGE
+            fDistance = (nSize[i1] * f1 + nSize[i2] * f2) / (nSize[i1] + nSize[i2]);
+          }
+          fDist.set(i1, i, fDistance);
+        }
+      }
+      nSize[i1] += nSize[i2];
+    }
+    fDist = null;
+
+    // carry out the merges in order of distance (stable, so that a cluster is formed before it is
+    // merged again), keeping track of the representatives, i.e., the smallest index of each cluster
+    Integer [] nOrder = new Integer[n - 1];
+    for (int i = 0; i < n - 1; i++) {
+      nOrder[i] = i;
+    }
+    final double [] fSortDist = fMergeDist;
+    Arrays.sort(nOrder, new Comparator<Integer>() {
+      public int compare(Integer o1, Integer o2) {
+        return Double.compare(fSortDist[o1], fSortDist[o2]);
+      }
+    });
+    int [] nParent = new int[n];
+    for (int i = 0; i < n; i++) {
+      nParent[i] = i;
+    }
+    for (int i = 0; nClusters > m_nNumClusters; i++) {
+      int k = nOrder[i];
+      int iMin1 = find(nParent, nMerge1[k]);
+      int iMin2 = find(nParent, nMerge2[k]);
+      merge(iMin1, iMin2, fMergeDist[k], fMergeDist[k], nClusterID, clusterNodes);
+      nParent[Math.max(iMin1, iMin2)] = Math.min(iMin1, iMin2);
+      nClusters--;
+    }
+  } // nnChainClustering
+
+  /** find the representative of the cluster of an instance, with path halving **/
+  int find(int [] nParent, int i) {
+    while (nParent[i] != i) {
+      nParent[i] = nParent[nParent[i]];
+      i = nParent[i];
+    }
+    return i;
+  }
+
+  /** compute the distances between all pairs of instances, using several threads
+   * for the Euclidean distance if requested
+   * @param fDist the array to fill
+   * @throws Exception if a distance cannot be computed
+   */
+  void computeDistances(final DistanceArray fDist) throws Exception {
+    final int n = fDist.m_nSize;
+    // the first distance is computed before any threads are started, since it initializes
+    // the distance function
+    fDist.set(0, 1, m_DistanceFunction.distance(m_instances.instance(0), m_instances.instance(1)));
+    int nThreads = (m_DistanceFunction instanceof EuclideanDistance) ? Math.min(m_nNumExecutionSlots, n) : 1;
+    if (nThreads < 2) {
+      fillRows(fDist, 0, 1);
+      return;
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+    try {
+      List<Future<?>> results = new ArrayList<Future<?>>();
+      for (int t = 0; t < nThreads; t++) {
+        // every thread takes every nThreads'th row, which balances the rows of different length
+        final int iFirst = t;
+        final int nStep = nThreads;
+        results.add(executor.submit(new Callable<Object>() {
+          public Object call() {
+            fillRows(fDist, iFirst, nStep);
+            return null;
+          }
+        }));
+      }
+      for (Future<?> result : results) {
+        try {
+          result.get();
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof Exception) {
+            throw (Exception) e.getCause();
+          }
+          throw e;
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  } // computeDistances
+
+  /** fill rows iFirst, iFirst + nStep, ... of the distance array **/
+  void fillRows(DistanceArray fDist, int iFirst, int nStep) {
+    int n = fDist.m_nSize;
+    for (int i = iFirst; i < n; i += nStep) {
+      Instance instance1 = m_instances.instance(i);
+      for (int j = (i == 0) ? 2 : i + 1; j < n; j++) {
+        fDist.set(i, j, m_DistanceFunction.distance(instance1, m_instances.instance(j)));
+      }
+    }
+  } // fillRows
+
   void merge(int iMin1, int iMin2, double fDist1, double fDist2, Vector<Integer>[] nClusterID, Node [] clusterNodes) {
     if (m_bDebug) {
       System.err.println("Merging " + iMin1 + " " + iMin2 + " " + fDist1 + " " + fDist2);
@@ -813,7 +1065,7 @@ public class HierarchicalClusterer extends AbstractClusterer implements OptionHa
    */
   public Enumeration listOptions() {
 
-    Vector newVector = new Vector(8);
+    Vector newVector = new Vector(9);
     newVector.addElement(new Option(
         "\tIf set, classifier is run in debug mode and\n"
         + "\tmay output additional info to the console",
@@ -837,6 +1089,19 @@ public class HierarchicalClusterer extends AbstractClusterer implements OptionHa
         "\tDistance function to use.\n"
         + "\t(default: weka.core.EuclideanDistance)",
         "A", 1,"-A <classname and options>"));
+    newVector.addElement(new Option(
+        "\tUse the nearest-neighbor-chain algorithm for single, complete\n"
+        + "\tand average link.",
+        "nn-chain", 0, "-nn-chain"));
+    newVector.addElement(new Option(
+        "\tStore the distances as floats to halve the memory\n"
+        + "\t(nearest-neighbor-chain only).",
+        "float", 0, "-float"));
+    newVector.addElement(new Option(
+        "\tNumber of execution slots for computing the distances\n"
+        + "\t(nearest-neighbor-chain only).\n"
+        + "\t(default 1 - i.e. no parallelism)",
+        "num-slots", 1, "-num-slots <num>"));
     return newVector.elements();
   }
 
@@ -865,6 +1130,16 @@ public class HierarchicalClusterer extends AbstractClusterer implements OptionHa
 
     setDebug(Utils.getFlag('D', options));
     setDistanceIsBranchLength(Utils.getFlag('B', options));
+    setNNChain(Utils.getFlag("nn-chain", options));
+    setFloatDistances(Utils.getFlag("float", options));
+
+    optionString = Utils.getOption("num-slots", options);
+    if (optionString.length() != 0) {
+      setNumExecutionSlots(Integer.parseInt(optionString));
+    }
+    else {
+      setNumExecutionSlots(1);
+    }
 
     String sLinkType = Utils.getOption('L', options);
 
@@ -905,7 +1180,7 @@ public class HierarchicalClusterer extends AbstractClusterer implements OptionHa
    */
   public String [] getOptions() {
 
-    String [] options = new String [14];
+    String [] options = new String [18];
     int current = 0;
 
     options[current++] = "-N";
@@ -931,6 +1206,14 @@ public class HierarchicalClusterer extends AbstractClusterer implements OptionHa
     if (getDistanceIsBranchLength()) {
       options[current++] = "-B";
     }
+    if (getNNChain()) {
+      options[current++] = "-nn-chain";
+    }
+    if (getFloatDistances()) {
+      options[current++] = "-float";
+    }
+    options[current++] = "-num-slots";
+    options[current++] = "" + getNumExecutionSlots();
 
     options[current++] = "-A";
     options[current++] = (m_DistanceFunction.getClass().getName() + " " +
@@ -998,6 +1281,49 @@ public class HierarchicalClusterer extends AbstractClusterer implements OptionHa
 
   public void setDistanceIsBranchLength(boolean bDistanceIsHeight) {m_bDistanceIsBranchLength = bDistanceIsHeight;}
 
+  public boolean getNNChain() {return m_bNNChain;}
+
+  public void setNNChain(boolean bNNChain) {m_bNNChain = bNNChain;}
+
+  /**
+   * @return a string to describe the nearest-neighbor-chain flag
+   */
+  public String NNChainTipText() {
+    return "If set, single, complete and average link clustering use the nearest-neighbor-chain " +
+    "algorithm, which needs O(n^2) time and a single array of n(n-1)/2 distances instead of a " +
+    "full distance matrix and a priority queue. The clusters are the same, except possibly when " +
+    "several pairs of clusters have the same distance.";
+  }
+
+  public boolean getFloatDistances() {return m_bFloatDistances;}
+
+  public void setFloatDistances(boolean bFloatDistances) {m_bFloatDistances = bFloatDistances;}
+
+  /**
+   * @return a string to describe the float distances flag
+   */
+  public String floatDistancesTipText() {
+    return "If set, the nearest-neighbor-chain algorithm stores the distances as floats, which " +
+    "halves the memory at the cost of precision.";
+  }
+
+  public int getNumExecutionSlots() {return m_nNumExecutionSlots;}
+
+  public void setNumExecutionSlots(int nSlots) throws Exception {
+    if (nSlots < 1) {
+      throw new Exception("Number of execution slots needs to be >= 1!");
+    }
+    m_nNumExecutionSlots = nSlots;
+  }
+
+  /**
+   * @return a string to describe the number of execution slots
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of execution slots (threads) used by the nearest-neighbor-chain algorithm " +
+    "to compute the distances between the instances. Only used with the Euclidean distance.";
+  }
+
   public String distanceIsBranchLengthTipText() {
     return "If set to false, the distance between clusters is interpreted " +
     "as the height of the node linking the clusters. This is appropriate for " +
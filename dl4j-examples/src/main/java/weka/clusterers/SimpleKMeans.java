@@ -21,10 +21,16 @@
  */
 package weka.clusterers;
 
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import weka.classifiers.rules.DecisionTableHashKey;
 import weka.core.Attribute;
@@ -37,6 +43,8 @@ import weka.core.Instances;
 import weka.core.ManhattanDistance;
 import weka.core.Option;
 import weka.core.RevisionUtils;
+import weka.core.SelectedTag;
+import weka.core.Tag;
 import weka.core.Utils;
 import weka.core.WeightedInstancesHandler;
 import weka.filters.Filter;
@@ -88,6 +96,25 @@ import weka.filters.unsupervised.attribute.ReplaceMissingValues;
  *  Preserve order of instances.
  * </pre>
  * 
+ * <pre>
+ * -init &lt;num&gt;
+ *  Initialization method to use.
+ *  0 = random, 1 = k-means++.
+ *  (default = 0)
+ * </pre>
+ * 
+ * <pre>
+ * -fast
+ *  Use the triangle inequality (Hamerly's bounds) to skip
+ *  distance calculations. Euclidean distance only.
+ * </pre>
+ * 
+ * <pre>
+ * -num-slots &lt;num&gt;
+ *  Number of execution slots.
+ *  (default 1 - i.e. no parallelism)
+ * </pre>
+ * 
  * 
  * <!-- options-end -->
  * 
@@ -183,6 +210,31 @@ public class SimpleKMeans extends RandomizableClusterer implements
    */
   protected int[] m_Assignments = null;
 
+  /** initialization method: random instances */
+  public static final int RANDOM = 0;
+
+  /** initialization method: k-means++ */
+  public static final int KMEANS_PLUS_PLUS = 1;
+
+  /** the initialization methods */
+  public static final Tag[] TAGS_SELECTION = {
+    new Tag(RANDOM, "Random"), new Tag(KMEANS_PLUS_PLUS, "k-means++") };
+
+  /**
+   * The initialization method to use
+   */
+  protected int m_initializationMethod = RANDOM;
+
+  /**
+   * Whether to skip distance calculations using the triangle inequality
+   */
+  protected boolean m_FastDistanceCalc = false;
+
+  /**
+   * The number of threads to use for the assignment step
+   */
+  protected int m_executionSlots = 1;
+
   /**
    * the default constructor
    */
@@ -290,24 +342,28 @@ public class SimpleKMeans extends RandomizableClusterer implements
     DecisionTableHashKey hk = null;
 
     Instances initInstances = null;
-    if (m_PreserveOrder) {
+    if (m_PreserveOrder && (m_initializationMethod == RANDOM)) {
       initInstances = new Instances(instances);
     } else {
       initInstances = instances;
     }
 
-    for (int j = initInstances.numInstances() - 1; j >= 0; j--) {
-      instIndex = RandomO.nextInt(j + 1);
-      hk = new DecisionTableHashKey(initInstances.instance(instIndex),
-        initInstances.numAttributes(), true);
-      if (!initC.containsKey(hk)) {
-        m_ClusterCentroids.add(initInstances.instance(instIndex));
-        initC.put(hk, null);
-      }
-      initInstances.swap(j, instIndex);
+    if (m_initializationMethod == KMEANS_PLUS_PLUS) {
+      kMeansPlusPlusInit(instances, RandomO);
+    } else {
+      for (int j = initInstances.numInstances() - 1; j >= 0; j--) {
+        instIndex = RandomO.nextInt(j + 1);
+        hk = new DecisionTableHashKey(initInstances.instance(instIndex),
+          initInstances.numAttributes(), true);
+        if (!initC.containsKey(hk)) {
+          m_ClusterCentroids.add(initInstances.instance(instIndex));
+          initC.put(hk, null);
+        }
+        initInstances.swap(j, instIndex);
 
-      if (m_ClusterCentroids.numInstances() == m_NumClusters) {
-        break;
+        if (m_ClusterCentroids.numInstances() == m_NumClusters) {
+          break;
+        }
       }
     }
 
@@ -316,6 +372,15 @@ public class SimpleKMeans extends RandomizableClusterer implements
     // removing reference
     initInstances = null;
 
+    if ((m_DistanceFunction instanceof EuclideanDistance)
+      && (m_FastDistanceCalc || (m_executionSlots > 1))) {
+      iterateInParallel(instances, clusterAssignments);
+
+      // Save memory!!
+      m_DistanceFunction.clean();
+      return;
+    }
+
     int i;
     boolean converged = false;
     int emptyClusterCount;
@@ -510,6 +575,608 @@ public class SimpleKMeans extends RandomizableClusterer implements
     return bestCluster;
   }
 
+  /**
+   * Chooses the initial centroids with k-means++: the first one uniformly at
+   * random, each further one with probability proportional to the weight of
+   * an instance times its squared distance to the closest centroid chosen so
+   * far. Instances that coincide with a centroid are never chosen again, so
+   * fewer centroids than requested are chosen only if there are not enough
+   * distinct instances.
+   * 
+   * @param instances the training instances
+   * @param random the random number generator
+   * @throws Exception if the distances can't be computed
+   */
+  protected void kMeansPlusPlusInit(final Instances instances, Random random)
+    throws Exception {
+
+    final int numInstances = instances.numInstances();
+    final double[] minDist = new double[numInstances];
+    Arrays.fill(minDist, Double.POSITIVE_INFINITY);
+
+    ExecutorService executor = newExecutorService(numInstances);
+    try {
+      Instance centroid = instances.instance(random.nextInt(numInstances));
+      while (true) {
+        m_ClusterCentroids.add(centroid);
+        if (m_ClusterCentroids.numInstances() == m_NumClusters) {
+          break;
+        }
+
+        // update the distances to the closest centroid
+        final Instance newCentroid = centroid;
+        final double[] partialSums = new double[numTasks(numInstances)];
+        runTasks(executor, numInstances, new RangeTask() {
+          @Override
+          public void run(int task, int from, int to) {
+            for (int i = from; i < to; i++) {
+              Instance inst = instances.instance(i);
+              double dist = m_DistanceFunction.distance(inst, newCentroid);
+              if (m_DistanceFunction instanceof EuclideanDistance) {
+                dist *= dist;
+              }
+              if (dist < minDist[i]) {
+                minDist[i] = dist;
+              }
+              partialSums[task] += inst.weight() * minDist[i];
+            }
+          }
+        });
+        double total = 0;
+        for (double partialSum : partialSums) {
+          total += partialSum;
+        }
+        if (!(total > 0)) {
+          break; // no distinct instances left
+        }
+
+        // sample the next centroid
+        double target = random.nextDouble() * total;
+        double cumulative = 0;
+        int next = -1;
+        for (int i = 0; i < numInstances; i++) {
+          double mass = instances.instance(i).weight() * minDist[i];
+          if (mass > 0) {
+            next = i;
+            cumulative += mass;
+            if (cumulative > target) {
+              break;
+            }
+          }
+        }
+        centroid = instances.instance(next);
+      }
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+    }
+  }
+
+  /**
+   * Runs the k-means iterations without materializing the members of each
+   * cluster. The instances are split into contiguous ranges that are assigned
+   * on up to <code>numExecutionSlots</code> threads; each thread accumulates
+   * the sums needed for the new centroids in its own buffers, which are then
+   * added up in range order. If fast distance calculation is enabled and there
+   * are no missing values, Hamerly's upper and lower bounds are used to skip
+   * distance calculations for instances that can't change their cluster.
+   * Gives the same clustering as the standard iterations (up to rounding in
+   * the sums when more than one thread is used).
+   * 
+   * @param instances the training instances
+   * @param clusterAssignments the assignments, updated in place
+   * @throws Exception if the clustering fails
+   */
+  protected void iterateInParallel(final Instances instances,
+    final int[] clusterAssignments) throws Exception {
+
+    final int numInstances = instances.numInstances();
+    final int numTasks = numTasks(numInstances);
+
+    boolean useBounds = m_FastDistanceCalc;
+    for (int i = 0; useBounds && (i < numInstances); i++) {
+      if (instances.instance(i).hasMissingValue()) {
+        useBounds = false;
+      }
+    }
+    final double[] upper = useBounds ? new double[numInstances] : null;
+    final double[] lower = useBounds ? new double[numInstances] : null;
+
+    ExecutorService executor = newExecutorService(numInstances);
+    try {
+      boolean converged = false;
+      boolean first = true;
+      Instances previous = null;
+      ClusterSums total = null;
+      int[] remap = null;
+      double[] moved = null;
+      while (!converged) {
+        m_Iterations++;
+
+        final Instances centroids = m_ClusterCentroids;
+        final int numClusters = m_NumClusters;
+        final boolean bounded = useBounds && !first;
+        final int[] newIndex = remap;
+        final double[] shift = moved;
+        final double[] halfGap = bounded ? halfGaps(centroids) : null;
+        int maxShift = -1;
+        int secondShift = -1;
+        if (bounded) {
+          for (int j = 0; j < shift.length; j++) {
+            if ((maxShift < 0) || (shift[j] > shift[maxShift])) {
+              secondShift = maxShift;
+              maxShift = j;
+            } else if ((secondShift < 0) || (shift[j] > shift[secondShift])) {
+              secondShift = j;
+            }
+          }
+        }
+        final int largestShift = maxShift;
+        final int nextLargestShift = secondShift;
+
+        // assign the instances and accumulate the sums for the centroids
+        final ClusterSums[] partialSums = new ClusterSums[numTasks];
+        final boolean[] changed = new boolean[numTasks];
+        runTasks(executor, numInstances, new RangeTask() {
+          @Override
+          public void run(int task, int from, int to) {
+            ClusterSums sums = new ClusterSums(instances, numClusters,
+              m_displayStdDevs);
+            double[] dists = new double[numClusters];
+            for (int i = from; i < to; i++) {
+              Instance inst = instances.instance(i);
+              int newC;
+              if (upper == null) {
+                newC = closestCentroid(inst, centroids, dists);
+              } else if (!bounded) {
+                newC = closestCentroid(inst, centroids, dists);
+                upper[i] = dists[newC];
+                lower[i] = secondSmallest(dists, newC);
+              } else {
+                // move the bounds along with the centroids
+                int old = clusterAssignments[i];
+                upper[i] += shift[old];
+                lower[i] -= (old == largestShift) ? ((nextLargestShift < 0) ? 0
+                  : shift[nextLargestShift]) : shift[largestShift];
+                newC = (newIndex == null) ? old : newIndex[old];
+                double bound = Math.max(halfGap[newC], lower[i]);
+                if (!(upper[i] < bound)) {
+                  upper[i] = m_DistanceFunction.distance(inst,
+                    centroids.instance(newC));
+                  if (!(upper[i] < bound)) {
+                    newC = closestCentroid(inst, centroids, dists);
+                    upper[i] = dists[newC];
+                    lower[i] = secondSmallest(dists, newC);
+                  }
+                }
+              }
+              if (newC != clusterAssignments[i]) {
+                changed[task] = true;
+              }
+              clusterAssignments[i] = newC;
+              sums.add(newC, inst);
+            }
+            partialSums[task] = sums;
+          }
+        });
+        converged = true;
+        total = partialSums[0];
+        for (int t = 0; t < numTasks; t++) {
+          if (changed[t]) {
+            converged = false;
+          }
+          if (t > 0) {
+            total.add(partialSums[t]);
+          }
+        }
+
+        // update centroids
+        previous = m_ClusterCentroids;
+        m_ClusterCentroids = new Instances(instances, numClusters);
+        remap = new int[numClusters];
+        int emptyClusterCount = 0;
+        for (int j = 0; j < numClusters; j++) {
+          if (total.m_Sizes[j] == 0) {
+            // empty cluster
+            remap[j] = -1;
+            emptyClusterCount++;
+          } else {
+            remap[j] = m_ClusterCentroids.numInstances();
+            m_ClusterCentroids.add(new Instance(1.0, total.centroid(j)));
+          }
+        }
+        if (useBounds) {
+          moved = new double[numClusters];
+          for (int j = 0; j < numClusters; j++) {
+            if (remap[j] >= 0) {
+              moved[j] = m_DistanceFunction.distance(previous.instance(j),
+                m_ClusterCentroids.instance(remap[j]));
+            }
+          }
+        }
+        if (emptyClusterCount == 0) {
+          remap = null;
+        }
+        m_NumClusters -= emptyClusterCount;
+        first = false;
+
+        if (m_Iterations == m_MaxIterations) {
+          converged = true;
+        }
+      }
+
+      // squared errors of the last assignment
+      final Instances centroids = previous;
+      final double[][] partialErrors = new double[numTasks][centroids
+        .numInstances()];
+      runTasks(executor, numInstances, new RangeTask() {
+        @Override
+        public void run(int task, int from, int to) {
+          for (int i = from; i < to; i++) {
+            double dist = m_DistanceFunction.distance(instances.instance(i),
+              centroids.instance(clusterAssignments[i]));
+            partialErrors[task][clusterAssignments[i]] += dist * dist;
+          }
+        }
+      });
+      m_squaredErrors = partialErrors[0];
+      for (int t = 1; t < numTasks; t++) {
+        for (int j = 0; j < m_squaredErrors.length; j++) {
+          m_squaredErrors[j] += partialErrors[t][j];
+        }
+      }
+
+      // statistics of the final clusters
+      int numAttributes = instances.numAttributes();
+      m_ClusterNominalCounts = new int[m_NumClusters][numAttributes][0];
+      m_ClusterMissingCounts = new int[m_NumClusters][numAttributes];
+      m_ClusterSizes = new int[m_NumClusters];
+      if (m_displayStdDevs) {
+        m_ClusterStdDevs = new Instances(instances, m_NumClusters);
+      }
+      int index = 0;
+      for (int j = 0; j < total.m_Sizes.length; j++) {
+        if (total.m_Sizes[j] > 0) {
+          for (int a = 0; a < numAttributes; a++) {
+            m_ClusterNominalCounts[index][a] = total.m_NominalCounts[j][a];
+            m_ClusterMissingCounts[index][a] = total.m_MissingCounts[j][a];
+          }
+          m_ClusterSizes[index] = total.m_Sizes[j];
+          if (m_displayStdDevs) {
+            m_ClusterStdDevs.add(new Instance(1.0, total.stdDevs(j)));
+          }
+          index++;
+        }
+      }
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+    }
+  }
+
+  /**
+   * Returns the index of the closest centroid, breaking ties like
+   * clusterProcessedInstance(), and stores all distances.
+   * 
+   * @param instance the instance
+   * @param centroids the centroids
+   * @param dists receives the distance to each centroid
+   * @return the index of the closest centroid
+   */
+  protected int closestCentroid(Instance instance, Instances centroids,
+    double[] dists) {
+    double minDist = Integer.MAX_VALUE;
+    int bestCluster = 0;
+    for (int i = 0; i < centroids.numInstances(); i++) {
+      dists[i] = m_DistanceFunction.distance(instance, centroids.instance(i));
+      if (dists[i] < minDist) {
+        minDist = dists[i];
+        bestCluster = i;
+      }
+    }
+    return bestCluster;
+  }
+
+  /**
+   * Returns the smallest distance other than the one at the given index.
+   * 
+   * @param dists the distances
+   * @param skip the index to skip
+   * @return the second smallest distance, infinity if there is none
+   */
+  protected static double secondSmallest(double[] dists, int skip) {
+    double result = Double.POSITIVE_INFINITY;
+    for (int i = 0; i < dists.length; i++) {
+      if ((i != skip) && (dists[i] < result)) {
+        result = dists[i];
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns, for each centroid, half the distance to the closest other
+   * centroid. An instance closer than that to its centroid can't be closer
+   * to any other centroid.
+   * 
+   * @param centroids the centroids
+   * @return the half distances, infinity for a single centroid
+   */
+  protected double[] halfGaps(Instances centroids) {
+    int k = centroids.numInstances();
+    double[] result = new double[k];
+    Arrays.fill(result, Double.POSITIVE_INFINITY);
+    for (int i = 0; i < k; i++) {
+      for (int j = i + 1; j < k; j++) {
+        double half = m_DistanceFunction.distance(centroids.instance(i),
+          centroids.instance(j)) / 2;
+        if (half < result[i]) {
+          result[i] = half;
+        }
+        if (half < result[j]) {
+          result[j] = half;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Work on a contiguous range of the training instances.
+   */
+  protected interface RangeTask {
+
+    /**
+     * Processes a range of instances.
+     * 
+     * @param task the index of the range
+     * @param from the first instance (inclusive)
+     * @param to the last instance (exclusive)
+     */
+    void run(int task, int from, int to);
+  }
+
+  /**
+   * Returns the number of ranges the instances are split into.
+   * 
+   * @param numInstances the number of instances
+   * @return the number of ranges
+   */
+  protected int numTasks(int numInstances) {
+    return Math.max(1, Math.min(m_executionSlots, numInstances));
+  }
+
+  /**
+   * Creates a thread pool with one thread per execution slot, or returns
+   * null if only one range will be used. Callers must shut it down.
+   * 
+   * @param numInstances the number of instances
+   * @return the thread pool, or null
+   */
+  protected ExecutorService newExecutorService(int numInstances) {
+    int numTasks = numTasks(numInstances);
+    if (numTasks < 2) {
+      return null;
+    }
+    return Executors.newFixedThreadPool(numTasks);
+  }
+
+  /**
+   * Runs a task on each range of the instances and waits for all of them.
+   * 
+   * @param executor the thread pool, null to run in the current thread
+   * @param numInstances the number of instances
+   * @param task the task
+   * @throws Exception if a task fails
+   */
+  protected void runTasks(ExecutorService executor, int numInstances,
+    final RangeTask task) throws Exception {
+
+    final int numTasks = numTasks(numInstances);
+    if (executor == null) {
+      for (int t = 0; t < numTasks; t++) {
+        task.run(t, (int) ((long) numInstances * t / numTasks),
+          (int) ((long) numInstances * (t + 1) / numTasks));
+      }
+      return;
+    }
+
+    Future<?>[] results = new Future<?>[numTasks];
+    for (int t = 0; t < numTasks; t++) {
+      final int index = t;
+      final int from = (int) ((long) numInstances * t / numTasks);
+      final int to = (int) ((long) numInstances * (t + 1) / numTasks);
+      results[t] = executor.submit(new Callable<Object>() {
+        @Override
+        public Object call() {
+          task.run(index, from, to);
+          return null;
+        }
+      });
+    }
+    for (Future<?> result : results) {
+      try {
+        result.get();
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof Exception) {
+          throw (Exception) e.getCause();
+        }
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * The sums over the members of each cluster that are needed to compute the
+   * centroids (means and modes) and the cluster statistics, accumulated the
+   * same way Instances.meanOrMode(), Instances.variance() and
+   * Instances.attributeStats() do.
+   */
+  protected static class ClusterSums {
+
+    /** the header of the data */
+    protected Instances m_Header;
+
+    /** sum of weights of non-missing values, by cluster and attribute */
+    protected double[][] m_Weights;
+
+    /** weighted sum of numeric values, by cluster and attribute */
+    protected double[][] m_Sums;
+
+    /** weighted sum of squared numeric values, or null */
+    protected double[][] m_SquaredSums;
+
+    /** weighted counts of nominal values, truncated like meanOrMode() */
+    protected int[][][] m_ModeCounts;
+
+    /** counts of nominal values, by cluster and attribute */
+    protected int[][][] m_NominalCounts;
+
+    /** counts of missing values, by cluster and attribute */
+    protected int[][] m_MissingCounts;
+
+    /** the number of members of each cluster */
+    protected int[] m_Sizes;
+
+    /**
+     * Creates empty sums.
+     * 
+     * @param header the header of the data
+     * @param numClusters the number of clusters
+     * @param squares whether to accumulate squared values
+     */
+    public ClusterSums(Instances header, int numClusters, boolean squares) {
+      int numAttributes = header.numAttributes();
+      m_Header = header;
+      m_Weights = new double[numClusters][numAttributes];
+      m_Sums = new double[numClusters][numAttributes];
+      if (squares) {
+        m_SquaredSums = new double[numClusters][numAttributes];
+      }
+      m_ModeCounts = new int[numClusters][numAttributes][];
+      m_NominalCounts = new int[numClusters][numAttributes][];
+      for (int j = 0; j < numClusters; j++) {
+        for (int a = 0; a < numAttributes; a++) {
+          if (header.attribute(a).isNominal()) {
+            m_ModeCounts[j][a] = new int[header.attribute(a).numValues()];
+            m_NominalCounts[j][a] = new int[header.attribute(a).numValues()];
+          }
+        }
+      }
+      m_MissingCounts = new int[numClusters][numAttributes];
+      m_Sizes = new int[numClusters];
+    }
+
+    /**
+     * Adds an instance to a cluster.
+     * 
+     * @param cluster the cluster
+     * @param inst the instance
+     */
+    public void add(int cluster, Instance inst) {
+      double weight = inst.weight();
+      m_Sizes[cluster]++;
+      for (int a = 0; a < m_Sums[cluster].length; a++) {
+        if (inst.isMissing(a)) {
+          m_MissingCounts[cluster][a]++;
+        } else if (m_NominalCounts[cluster][a] != null) {
+          int value = (int) inst.value(a);
+          m_ModeCounts[cluster][a][value] += weight;
+          m_NominalCounts[cluster][a][value]++;
+        } else {
+          double value = inst.value(a);
+          m_Weights[cluster][a] += weight;
+          m_Sums[cluster][a] += weight * value;
+          if (m_SquaredSums != null) {
+            m_SquaredSums[cluster][a] += weight * value * value;
+          }
+        }
+      }
+    }
+
+    /**
+     * Adds the sums of another set of instances.
+     * 
+     * @param other the other sums
+     */
+    public void add(ClusterSums other) {
+      for (int j = 0; j < m_Sizes.length; j++) {
+        m_Sizes[j] += other.m_Sizes[j];
+        for (int a = 0; a < m_Sums[j].length; a++) {
+          m_Weights[j][a] += other.m_Weights[j][a];
+          m_Sums[j][a] += other.m_Sums[j][a];
+          if (m_SquaredSums != null) {
+            m_SquaredSums[j][a] += other.m_SquaredSums[j][a];
+          }
+          m_MissingCounts[j][a] += other.m_MissingCounts[j][a];
+          if (m_NominalCounts[j][a] != null) {
+            for (int v = 0; v < m_NominalCounts[j][a].length; v++) {
+              m_ModeCounts[j][a][v] += other.m_ModeCounts[j][a][v];
+              m_NominalCounts[j][a][v] += other.m_NominalCounts[j][a][v];
+            }
+          }
+        }
+      }
+    }
+
+    /**
+     * Returns the centroid of a cluster: the mean of each numeric and the
+     * mode of each nominal attribute, missing if too many values are missing
+     * (like moveCentroid()).
+     * 
+     * @param cluster the cluster
+     * @return the centroid coordinates
+     */
+    public double[] centroid(int cluster) {
+      double[] vals = new double[m_Sums[cluster].length];
+      for (int a = 0; a < vals.length; a++) {
+        if (m_NominalCounts[cluster][a] != null) {
+          vals[a] = Utils.maxIndex(m_ModeCounts[cluster][a]);
+          if (m_MissingCounts[cluster][a] > m_NominalCounts[cluster][a][Utils
+            .maxIndex(m_NominalCounts[cluster][a])]) {
+            vals[a] = Instance.missingValue(); // mark mode as missing
+          }
+        } else {
+          if (m_Weights[cluster][a] > 0) {
+            vals[a] = m_Sums[cluster][a] / m_Weights[cluster][a];
+          }
+          if (m_MissingCounts[cluster][a] == m_Sizes[cluster]) {
+            vals[a] = Instance.missingValue(); // mark mean as missing
+          }
+        }
+      }
+      return vals;
+    }
+
+    /**
+     * Returns the standard deviations of the numeric attributes of a cluster
+     * (missing for nominal attributes).
+     * 
+     * @param cluster the cluster
+     * @return the standard deviations
+     */
+    public double[] stdDevs(int cluster) {
+      double[] vals = new double[m_Sums[cluster].length];
+      for (int a = 0; a < vals.length; a++) {
+        if (m_NominalCounts[cluster][a] != null) {
+          vals[a] = Instance.missingValue();
+        } else {
+          double sum = m_Sums[cluster][a];
+          double sumOfWeights = m_Weights[cluster][a];
+          double variance = 0;
+          if (sumOfWeights > 1) {
+            variance = (m_SquaredSums[cluster][a] - (sum * sum / sumOfWeights))
+              / (sumOfWeights - 1);
+          }
+          vals[a] = Math.sqrt(Math.max(variance, 0));
+        }
+      }
+      return vals;
+    }
+  }
+
   /**
    * Classifies a given instance.
    * 
@@ -569,6 +1236,19 @@ public class SimpleKMeans extends RandomizableClusterer implements
     result.addElement(new Option("\tPreserve order of instances.\n", "O", 0,
       "-O"));
 
+    result.addElement(new Option("\tInitialization method to use.\n"
+      + "\t0 = random, 1 = k-means++.\n" + "\t(default = 0)", "init", 1,
+      "-init <num>"));
+
+    result.addElement(new Option(
+      "\tUse the triangle inequality (Hamerly's bounds) to skip\n"
+        + "\tdistance calculations. Euclidean distance only.", "fast", 0,
+      "-fast"));
+
+    result.addElement(new Option("\tNumber of execution slots.\n"
+      + "\t(default 1 - i.e. no parallelism)", "num-slots", 1,
+      "-num-slots <num>"));
+
     Enumeration en = super.listOptions();
     while (en.hasMoreElements()) {
       result.addElement(en.nextElement());
@@ -764,6 +1444,103 @@ public class SimpleKMeans extends RandomizableClusterer implements
     return m_PreserveOrder;
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String initializationMethodTipText() {
+    return "The initialization method to use. Random or k-means++, which "
+      + "picks each further centroid with probability proportional to the "
+      + "squared distance to the closest centroid chosen so far.";
+  }
+
+  /**
+   * Set the initialization method to use
+   * 
+   * @param method the initialization method to use
+   */
+  public void setInitializationMethod(SelectedTag method) {
+    if (method.getTags() == TAGS_SELECTION) {
+      m_initializationMethod = method.getSelectedTag().getID();
+    }
+  }
+
+  /**
+   * Get the initialization method to use
+   * 
+   * @return method the initialization method to use
+   */
+  public SelectedTag getInitializationMethod() {
+    return new SelectedTag(m_initializationMethod, TAGS_SELECTION);
+  }
+
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String fastDistanceCalcTipText() {
+    return "Uses upper and lower bounds on the distances (Hamerly's "
+      + "algorithm) to skip distance calculations for instances that can't "
+      + "change their cluster. Gives the same clusters. Only used with the "
+      + "Euclidean distance and when there are no missing values.";
+  }
+
+  /**
+   * Sets whether to use fast distance calculation.
+   * 
+   * @param value true if fast distance calculation is to be used
+   */
+  public void setFastDistanceCalc(boolean value) {
+    m_FastDistanceCalc = value;
+  }
+
+  /**
+   * Gets whether to use fast distance calculation.
+   * 
+   * @return true if fast distance calculation is used
+   */
+  public boolean getFastDistanceCalc() {
+    return m_FastDistanceCalc;
+  }
+
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of execution slots (threads) to use for assigning "
+      + "instances to clusters and for k-means++ initialization. Only used "
+      + "with the Euclidean distance.";
+  }
+
+  /**
+   * Sets the number of execution slots (threads) to use.
+   * 
+   * @param slots the number of slots to use
+   * @throws Exception if the number of slots is smaller than 1
+   */
+  public void setNumExecutionSlots(int slots) throws Exception {
+    if (slots < 1) {
+      throw new Exception("Number of execution slots needs to be >= 1!");
+    }
+    m_executionSlots = slots;
+  }
+
+  /**
+   * Gets the number of execution slots (threads) to use.
+   * 
+   * @return the number of slots to use
+   */
+  public int getNumExecutionSlots() {
+    return m_executionSlots;
+  }
+
   /**
    * Parses a given list of options.
    * <p/>
@@ -809,6 +1586,25 @@ public class SimpleKMeans extends RandomizableClusterer implements
    *  Preserve order of instances.
    * </pre>
    * 
+   * <pre>
+   * -init &lt;num&gt;
+   *  Initialization method to use.
+   *  0 = random, 1 = k-means++.
+   *  (default = 0)
+   * </pre>
+   * 
+   * <pre>
+   * -fast
+   *  Use the triangle inequality (Hamerly's bounds) to skip
+   *  distance calculations. Euclidean distance only.
+   * </pre>
+   * 
+   * <pre>
+   * -num-slots &lt;num&gt;
+   *  Number of execution slots.
+   *  (default 1 - i.e. no parallelism)
+   * </pre>
+   * 
    * <!-- options-end -->
    * 
    * @param options the list of options as an array of strings
@@ -848,6 +1644,23 @@ public class SimpleKMeans extends RandomizableClusterer implements
 
     m_PreserveOrder = Utils.getFlag("O", options);
 
+    optionString = Utils.getOption("init", options);
+    if (optionString.length() != 0) {
+      setInitializationMethod(new SelectedTag(Integer.parseInt(optionString),
+        TAGS_SELECTION));
+    } else {
+      setInitializationMethod(new SelectedTag(RANDOM, TAGS_SELECTION));
+    }
+
+    m_FastDistanceCalc = Utils.getFlag("fast", options);
+
+    optionString = Utils.getOption("num-slots", options);
+    if (optionString.length() != 0) {
+      setNumExecutionSlots(Integer.parseInt(optionString));
+    } else {
+      setNumExecutionSlots(1);
+    }
+
     super.setOptions(options);
   }
 
@@ -886,6 +1699,16 @@ public class SimpleKMeans extends RandomizableClusterer implements
       result.add("-O");
     }
 
+    result.add("-init");
+    result.add("" + getInitializationMethod().getSelectedTag().getID());
+
+    if (m_FastDistanceCalc) {
+      result.add("-fast");
+    }
+
+    result.add("-num-slots");
+    result.add("" + getNumExecutionSlots());
+
     options = super.getOptions();
     for (i = 0; i < options.length; i++) {
       result.add(options[i]);
@@ -0,0 +1,565 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+/*
+ *    GridDatabase.java
+ *
+ */
+
+package weka.clusterers.forOPTICSAndDBScan.Databases;
+
+import weka.clusterers.forOPTICSAndDBScan.DataObjects.DataObject;
+import weka.clusterers.forOPTICSAndDBScan.DataObjects.EuclideanDataObject;
+import weka.clusterers.forOPTICSAndDBScan.DataObjects.ManhattanDataObject;
+import weka.clusterers.forOPTICSAndDBScan.Utils.EpsilonRange_ListElement;
+import weka.clusterers.forOPTICSAndDBScan.Utils.PriorityQueue;
+import weka.clusterers.forOPTICSAndDBScan.Utils.PriorityQueueElement;
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+import weka.core.Utils;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * <p>
+ * GridDatabase.java <br/>
+ * A database that answers epsilon-range-queries with a grid index: the
+ * DataObjects are put into cells of width epsilon along (up to) three
+ * numeric attributes, with the values normalized like the Euclidean and
+ * Manhattan DataObjects do. As the distance between two DataObjects is at
+ * least the (normalized) difference in any single numeric attribute, only
+ * the cells next to the cell of the query-object need to be searched. The
+ * candidates are checked with the distance of the DataObjects and returned
+ * in the same order as SequentialDatabase returns them, so the clusterings
+ * are the same. <br/>
+ * Other types of DataObjects, and data without numeric attributes, are
+ * scanned sequentially. Queries may be run from several threads at the
+ * same time, as long as no DataObjects are inserted.
+ * </p>
+ *
+ * @version $Revision$
+ */
+public class GridDatabase
+    implements Database, Serializable, RevisionHandler {
+
+    /** for serialization */
+    private static final long serialVersionUID = -5830744939623658722L;
+
+    /**
+     * The maximum number of attributes the grid is built on
+     */
+    private static final int MAX_GRID_ATTRIBUTES = 3;
+
+    /**
+     * Internal, sorted Treemap for storing all the DataObjects
+     */
+    private TreeMap<String, DataObject> treeMap;
+
+    /**
+     * Holds the original instances delivered from WEKA
+     */
+    private Instances instances;
+
+    /**
+     * Holds the minimum value for each attribute
+     */
+    private double[] attributeMinValues;
+
+    /**
+     * Holds the maximum value for each attribute
+     */
+    private double[] attributeMaxValues;
+
+    /**
+     * The DataObjects in the order of the treeMap (null if the grid needs to be rebuilt)
+     */
+    private transient DataObject[] dataObjects;
+
+    /**
+     * The attributes the grid is built on
+     */
+    private transient int[] gridAttributes;
+
+    /**
+     * The positions (in dataObjects) of the DataObjects in each non-empty cell, increasing
+     */
+    private transient HashMap<Long, int[]> gridCells;
+
+    /**
+     * The number of cells along each grid attribute (plus room for neighbours)
+     */
+    private transient long cellsPerAttribute;
+
+    /**
+     * The width of the cells
+     */
+    private transient double cellWidth;
+
+    /**
+     * The epsilon the grid was built for
+     */
+    private transient double gridEpsilon;
+
+    // *****************************************************************************************************************
+    // constructors
+    // *****************************************************************************************************************
+
+    /**
+     * Constructs a new grid database and holds the original instances
+     * @param instances
+     */
+    public GridDatabase(Instances instances) {
+        this.instances = instances;
+        treeMap = new TreeMap<String, DataObject>();
+    }
+
+    // *****************************************************************************************************************
+    // methods
+    // *****************************************************************************************************************
+
+    /**
+     * Select a dataObject from the database
+     * @param key The key that is associated with the dataObject
+     * @return dataObject
+     */
+    public DataObject getDataObject(String key) {
+        return treeMap.get(key);
+    }
+
+    /**
+     * Sets the minimum and maximum values for each attribute in different arrays
+     * by walking through every DataObject of the database
+     */
+    public void setMinMaxValues() {
+        attributeMinValues = new double[getInstances().numAttributes()];
+        attributeMaxValues = new double[getInstances().numAttributes()];
+
+        //Init
+        for (int i = 0; i < getInstances().numAttributes(); i++) {
+            attributeMinValues[i] = attributeMaxValues[i] = Double.NaN;
+        }
+
+        Iterator<DataObject> iterator = dataObjectIterator();
+        while (iterator.hasNext()) {
+            DataObject dataObject = iterator.next();
+            for (int j = 0; j < getInstances().numAttributes(); j++) {
+                if (Double.isNaN(attributeMinValues[j])) {
+                    attributeMinValues[j] = dataObject.getInstance().value(j);
+                    attributeMaxValues[j] = dataObject.getInstance().value(j);
+                } else {
+                    if (dataObject.getInstance().value(j) < attributeMinValues[j])
+                        attributeMinValues[j] = dataObject.getInstance().value(j);
+                    if (dataObject.getInstance().value(j) > attributeMaxValues[j])
+                        attributeMaxValues[j] = dataObject.getInstance().value(j);
+                }
+            }
+        }
+        dataObjects = null;
+    }
+
+    /**
+     * Returns the array of minimum-values for each attribute
+     * @return attributeMinValues
+     */
+    public double[] getAttributeMinValues() {
+        return attributeMinValues;
+    }
+
+    /**
+     * Returns the array of maximum-values for each attribute
+     * @return attributeMaxValues
+     */
+    public double[] getAttributeMaxValues() {
+        return attributeMaxValues;
+    }
+
+    /**
+     * Performs an epsilon range query for this dataObject
+     * @param epsilon Specifies the range for the query
+     * @param queryDataObject The dataObject that is used as query-object for epsilon range query
+     * @return List with all the DataObjects that are within the specified range
+     */
+    public List<DataObject> epsilonRangeQuery(double epsilon, DataObject queryDataObject) {
+        List<DataObject> epsilonRange_List = new ArrayList<DataObject>();
+        int[] candidates = candidates(epsilon, queryDataObject);
+        for (int i = 0; i < candidates.length; i++) {
+            DataObject dataObject = dataObjects[candidates[i]];
+            double distance = queryDataObject.distance(dataObject);
+            if (distance < epsilon) {
+                epsilonRange_List.add(dataObject);
+            }
+        }
+
+        return epsilonRange_List;
+    }
+
+    /**
+     * Emits the k next-neighbours and performs an epsilon-range-query at the parallel.
+     * The returned list contains two elements:
+     * At index=0 --> list with all k next-neighbours;
+     * At index=1 --> list with all dataObjects within epsilon;
+     * If less than k dataObjects are within epsilon, all dataObjects are scanned
+     * to find the k next-neighbours.
+     * @param k number of next neighbours
+     * @param epsilon Specifies the range for the query
+     * @param dataObject the start object
+     * @return list with the k-next neighbours (PriorityQueueElements) and a list
+     *         with candidates from the epsilon-range-query (EpsilonRange_ListElements)
+     */
+    public List<Object> k_nextNeighbourQuery(int k, double epsilon, DataObject dataObject) {
+        List<Object> return_List = nextNeighboursWithinEpsilon(k, epsilon, dataObject);
+
+        if (((List<?>) return_List.get(1)).size() < k) {
+            // the neighbours may lie outside of epsilon
+            PriorityQueue priorityQueue = new PriorityQueue();
+            Iterator<DataObject> iterator = dataObjectIterator();
+            while (iterator.hasNext()) {
+                DataObject next_dataObject = iterator.next();
+                double dist = dataObject.distance(next_dataObject);
+                if (priorityQueue.size() < k) {
+                    priorityQueue.add(dist, next_dataObject);
+                } else if (dist < priorityQueue.getPriority(0)) {
+                    priorityQueue.next(); //removes the highest distance
+                    priorityQueue.add(dist, next_dataObject);
+                }
+            }
+            List<PriorityQueueElement> nextNeighbours_List = new ArrayList<PriorityQueueElement>();
+            while (priorityQueue.hasNext()) {
+                nextNeighbours_List.add(0, priorityQueue.next());
+            }
+            return_List.set(0, nextNeighbours_List);
+        }
+
+        return return_List;
+    }
+
+    /**
+     * Calculates the coreDistance for the specified DataObject.
+     * The returned list contains three elements:
+     * At index=0 --> list with the (at most minPoints) next-neighbours within epsilon;
+     * At index=1 --> list with all dataObjects within epsilon;
+     * At index=2 --> coreDistance as Double-value
+     * Only the epsilon-range is searched, as the coreDistance is undefined
+     * if less than minPoints dataObjects are within epsilon.
+     * @param minPoints minPoints-many neighbours within epsilon must be found to have a non-undefined coreDistance
+     * @param epsilon Specifies the range for the query
+     * @param dataObject Calculate coreDistance for this dataObject
+     * @return list with the next neighbours (PriorityQueueElements) and a list
+     *         with candidates from the epsilon-range-query (EpsilonRange_ListElements) and
+     *         the double-value for the calculated coreDistance
+     */
+    public List<Object> coreDistance(int minPoints, double epsilon, DataObject dataObject) {
+        List<Object> list = nextNeighboursWithinEpsilon(minPoints, epsilon, dataObject);
+
+        if (((List<?>) list.get(1)).size() < minPoints) {
+            list.add(Double.valueOf(DataObject.UNDEFINED));
+        } else {
+            List<?> nextNeighbours_List = (List<?>) list.get(0);
+            PriorityQueueElement priorityQueueElement =
+                    (PriorityQueueElement) nextNeighbours_List.get(nextNeighbours_List.size() - 1);
+            list.add(Double.valueOf(priorityQueueElement.getPriority()));
+        }
+        return list;
+    }
+
+    /**
+     * Performs an epsilon-range-query (including the dataObjects at distance epsilon)
+     * and determines the k next-neighbours among its result.
+     * @param k number of next neighbours
+     * @param epsilon Specifies the range for the query
+     * @param dataObject the start object
+     * @return list with the next neighbours (PriorityQueueElements) and a list
+     *         with candidates from the epsilon-range-query (EpsilonRange_ListElements)
+     */
+    private List<Object> nextNeighboursWithinEpsilon(int k, double epsilon, DataObject dataObject) {
+        List<Object> return_List = new ArrayList<Object>();
+        List<PriorityQueueElement> nextNeighbours_List = new ArrayList<PriorityQueueElement>();
+        List<EpsilonRange_ListElement> epsilonRange_List = new ArrayList<EpsilonRange_ListElement>();
+
+        PriorityQueue priorityQueue = new PriorityQueue();
+
+        int[] candidates = candidates(epsilon, dataObject);
+        for (int i = 0; i < candidates.length; i++) {
+            DataObject next_dataObject = dataObjects[candidates[i]];
+            double dist = dataObject.distance(next_dataObject);
+            if (dist > epsilon) continue;
+
+            epsilonRange_List.add(new EpsilonRange_ListElement(dist, next_dataObject));
+
+            if (priorityQueue.size() < k) {
+                priorityQueue.add(dist, next_dataObject);
+            } else {
+                if (dist < priorityQueue.getPriority(0)) {
+                    priorityQueue.next(); //removes the highest distance
+                    priorityQueue.add(dist, next_dataObject);
+                }
+            }
+        }
+
+        while (priorityQueue.hasNext()) {
+            nextNeighbours_List.add(0, priorityQueue.next());
+        }
+
+        return_List.add(nextNeighbours_List);
+        return_List.add(epsilonRange_List);
+        return return_List;
+    }
+
+    /**
+     * Returns the positions (in dataObjects, increasing) of all dataObjects that
+     * may be within epsilon of the given dataObject. Builds the grid if necessary.
+     * @param epsilon Specifies the range for the query
+     * @param dataObject the query-object
+     * @return the positions of the candidates
+     */
+    private int[] candidates(double epsilon, DataObject dataObject) {
+        buildGrid(epsilon);
+
+        if (gridAttributes.length == 0) {
+            int[] all = new int[dataObjects.length];
+            for (int i = 0; i < all.length; i++) all[i] = i;
+            return all;
+        }
+
+        long[] cell = new long[gridAttributes.length];
+        for (int j = 0; j < gridAttributes.length; j++) {
+            cell[j] = cellIndex(dataObject.getInstance(), gridAttributes[j]);
+        }
+
+        // visit the 3^d cells around the query-object's cell
+        List<int[]> cells = new ArrayList<int[]>();
+        int numCandidates = 0;
+        int numNeighbours = 1;
+        for (int j = 0; j < gridAttributes.length; j++) numNeighbours *= 3;
+        for (int n = 0; n < numNeighbours; n++) {
+            long key = 0;
+            int offsets = n;
+            for (int j = 0; j < gridAttributes.length; j++) {
+                key = key * cellsPerAttribute + (cell[j] + (offsets % 3) - 1) + 1;
+                offsets /= 3;
+            }
+            int[] members = gridCells.get(Long.valueOf(key));
+            if (members != null) {
+                cells.add(members);
+                numCandidates += members.length;
+            }
+        }
+
+        int[] result = new int[numCandidates];
+        int pos = 0;
+        for (int i = 0; i < cells.size(); i++) {
+            int[] members = cells.get(i);
+            System.arraycopy(members, 0, result, pos, members.length);
+            pos += members.length;
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Builds the grid for the given epsilon, unless it already exists.
+     * @param epsilon Specifies the range for the queries
+     */
+    private synchronized void buildGrid(double epsilon) {
+        if ((dataObjects != null) && (gridEpsilon == epsilon)) return;
+
+        DataObject[] objects = new DataObject[size()];
+        Iterator<DataObject> iterator = dataObjectIterator();
+        for (int i = 0; iterator.hasNext(); i++) {
+            objects[i] = iterator.next();
+        }
+
+        // the grid relies on the distances of the Euclidean and Manhattan DataObjects
+        boolean gridApplies = (attributeMinValues != null) && (epsilon > 0);
+        for (int i = 0; gridApplies && i < objects.length; i++) {
+            gridApplies = (objects[i] instanceof EuclideanDataObject)
+                    || (objects[i] instanceof ManhattanDataObject);
+        }
+
+        // use the numeric attributes whose normalized values vary most
+        List<Integer> candidateAttributes = new ArrayList<Integer>();
+        List<Double> variances = new ArrayList<Double>();
+        for (int j = 0; gridApplies && j < getInstances().numAttributes(); j++) {
+            if ((getInstances().attribute(j).type() != Attribute.NUMERIC)
+                    || Double.isNaN(attributeMinValues[j])
+                    || Utils.eq(attributeMaxValues[j], attributeMinValues[j])) continue;
+            double sum = 0, sumSq = 0;
+            boolean missing = false;
+            for (int i = 0; i < objects.length; i++) {
+                if (objects[i].getInstance().isMissing(j)) {
+                    missing = true;
+                    break;
+                }
+                double v = norm(objects[i].getInstance().value(j), j);
+                sum += v;
+                sumSq += v * v;
+            }
+            if (missing) continue;
+            candidateAttributes.add(Integer.valueOf(j));
+            variances.add(Double.valueOf(sumSq / objects.length - (sum / objects.length) * (sum / objects.length)));
+        }
+        int numGridAttributes = Math.min(MAX_GRID_ATTRIBUTES, candidateAttributes.size());
+        int[] attributes = new int[numGridAttributes];
+        for (int j = 0; j < numGridAttributes; j++) {
+            int best = 0;
+            for (int c = 1; c < variances.size(); c++) {
+                if (variances.get(c).doubleValue() > variances.get(best).doubleValue())
+                    best = c;
+            }
+            attributes[j] = candidateAttributes.get(best).intValue();
+            variances.set(best, Double.valueOf(Double.NEGATIVE_INFINITY));
+        }
+
+        // slightly wider cells, so that round-off can't hide a neighbour
+        cellWidth = epsilon * (1 + 1e-6);
+        cellsPerAttribute = (long) Math.min(Math.ceil(1.0 / cellWidth) + 3,
+                Math.floor(Math.pow(Long.MAX_VALUE, 1.0 / Math.max(1, numGridAttributes))));
+        gridAttributes = attributes;
+
+        HashMap<Long, int[]> counts = new HashMap<Long, int[]>();
+        long[] keys = new long[objects.length];
+        for (int i = 0; numGridAttributes > 0 && i < objects.length; i++) {
+            long key = 0;
+            for (int j = 0; j < numGridAttributes; j++) {
+                key = key * cellsPerAttribute + cellIndex(objects[i].getInstance(), attributes[j]) + 1;
+            }
+            keys[i] = key;
+            int[] count = counts.get(Long.valueOf(key));
+            if (count == null) {
+                count = new int[1];
+                counts.put(Long.valueOf(key), count);
+            }
+            count[0]++;
+        }
+        HashMap<Long, int[]> cells = new HashMap<Long, int[]>();
+        for (int i = 0; numGridAttributes > 0 && i < objects.length; i++) {
+            Long key = Long.valueOf(keys[i]);
+            int[] members = cells.get(key);
+            if (members == null) {
+                members = new int[counts.get(key)[0]];
+                cells.put(key, members);
+                counts.put(key, new int[1]);
+            }
+            members[counts.get(key)[0]++] = i;
+        }
+
+        gridCells = cells;
+        gridEpsilon = epsilon;
+        dataObjects = objects;
+    }
+
+    /**
+     * Returns the cell of an instance along an attribute, in the range from 0 to
+     * cellsPerAttribute - 3 (so that the neighbouring cells fit in as well).
+     * @param instance the instance
+     * @param index the attribute's index
+     * @return the cell index
+     */
+    private long cellIndex(Instance instance, int index) {
+        double cell = Math.floor(norm(instance.value(index), index) / cellWidth);
+        if (Double.isNaN(cell) || cell < 0) return 0;
+        return (long) Math.min(cell, cellsPerAttribute - 3);
+    }
+
+    /**
+     * Normalizes a given value of a numeric attribute, like the DataObjects do.
+     * @param x the value to be normalized
+     * @param i the attribute's index
+     * @return the normalized value
+     */
+    private double norm(double x, int i) {
+        if (Double.isNaN(attributeMinValues[i])
+                || Utils.eq(attributeMaxValues[i], attributeMinValues[i])) {
+            return 0;
+        } else {
+            return (x - attributeMinValues[i]) /
+                    (attributeMaxValues[i] - attributeMinValues[i]);
+        }
+    }
+
+    /**
+     * Returns the size of the database (the number of dataObjects in the database)
+     * @return size
+     */
+    public int size() {
+        return treeMap.size();
+    }
+
+    /**
+     * Returns an iterator over all the keys
+     * @return iterator
+     */
+    public Iterator<String> keyIterator() {
+        return treeMap.keySet().iterator();
+    }
+
+    /**
+     * Returns an iterator over all the dataObjects in the database
+     * @return iterator
+     */
+    public Iterator<DataObject> dataObjectIterator() {
+        return treeMap.values().iterator();
+    }
+
+    /**
+     * Tests if the database contains the dataObject_Query
+     * @param dataObject_Query The query-object
+     * @return true if the database contains dataObject_Query, else false
+     */
+    public boolean contains(DataObject dataObject_Query) {
+        Iterator<DataObject> iterator = dataObjectIterator();
+        while (iterator.hasNext()) {
+            DataObject dataObject = iterator.next();
+            if (dataObject.equals(dataObject_Query)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Inserts a new dataObject into the database
+     * @param dataObject
+     */
+    public void insert(DataObject dataObject) {
+        treeMap.put(dataObject.getKey(), dataObject);
+        dataObjects = null;
+    }
+
+    /**
+     * Returns the original instances delivered from WEKA
+     * @return instances
+     */
+    public Instances getInstances() {
+        return instances;
+    }
+
+    /**
+     * Returns the revision string.
+     *
+     * @return		the revision
+     */
+    public String getRevision() {
+      return RevisionUtils.extract("$Revision$");
+    }
+}
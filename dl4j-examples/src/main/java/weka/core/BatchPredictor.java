@@ -0,0 +1,42 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+/*
+ *    BatchPredictor.java
+ *
+ */
+
+package weka.core;
+
+/**
+ * Interface to something that can produce predictions for a whole set of
+ * instances more efficiently than one instance at a time, e.g., by spreading
+ * the work over several threads. The predictions must be the same as the ones
+ * obtained from calling distributionForInstance for each instance.
+ */
+public interface BatchPredictor {
+
+  /**
+   * Calculates the class membership probabilities for the given test
+   * instances. For a numeric class, each array holds the predicted value as
+   * its only element.
+   *
+   * @param insts the instances to be classified
+   * @return the predicted distributions, one per instance
+   * @throws Exception if the distributions can't be computed successfully
+   */
+  double[][] distributionsForInstances(Instances insts) throws Exception;
+}
@@ -54,10 +54,11 @@ public class BinarySparseInstance
    */
   public BinarySparseInstance(Instance instance) {
     
-    m_Weight = instance.m_Weight;
+    m_Weight = instance.weight();
     m_Dataset = null;
     m_NumAttributes = instance.numAttributes();
-    if (instance instanceof SparseInstance) {
+    if ((instance instanceof SparseInstance)
+	&& (((SparseInstance)instance).m_Indices != null)) {
       m_AttValues = null;
       m_Indices = ((SparseInstance)instance).m_Indices;
     } else {
@@ -86,11 +87,7 @@ public class BinarySparseInstance
    */
   public BinarySparseInstance(SparseInstance instance) {
     
-    m_AttValues = null;
-    m_Indices = instance.m_Indices;
-    m_Weight = instance.m_Weight;
-    m_NumAttributes = instance.m_NumAttributes;
-    m_Dataset = null;
+    this((Instance)instance);
   }
 
   /**
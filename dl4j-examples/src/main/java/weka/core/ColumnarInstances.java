@@ -0,0 +1,1475 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+/*
+ *    ColumnarInstances.java
+ *
+ */
+
+package weka.core;
+
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.NoSuchElementException;
+
+/**
+ * A set of instances that keeps its values in primitive arrays instead of
+ * one Instance object per row. Dense data is stored column by column (one
+ * <code>double[]</code> per attribute), sparse data in compressed sparse row
+ * (CSR) form, i.e. all non-zero values and their attribute indices in two
+ * flat arrays plus the start and length of each row. Weights are kept in a
+ * separate array.
+ * <p>
+ *
+ * The instances returned by <code>instance(int)</code>,
+ * <code>firstInstance()</code> etc. are lightweight views of a row: reading
+ * and setting values or the weight goes straight to the arrays, and
+ * <code>copy()</code> returns an ordinary Instance (or SparseInstance). A new
+ * view is created on each call, so views must not be compared by identity.
+ * <p>
+ *
+ * Reordering the set (randomize, stratify, sort, swap) only permutes an
+ * index array, and deleting rows leaves their storage in place until
+ * <code>compactify()</code> is called. Views obtained before
+ * <code>compactify()</code> or <code>delete()</code> are invalid afterwards.
+ * Subsets created with <code>resample</code>, <code>trainCV</code>,
+ * <code>testCV</code> etc. use the same storage layout.
+ * <p>
+ *
+ * Typical usage:
+ * <p>
+ *
+ * <pre>
+ * Instances data = new ColumnarInstances(source.getDataSet());
+ * </pre>
+ *
+ * @version $Revision$
+ */
+public class ColumnarInstances extends Instances {
+
+  /** for serialization */
+  private static final long serialVersionUID = 4419716209524582186L;
+
+  /** Whether the values are stored in CSR form. */
+  protected boolean m_Sparse;
+
+  /** The physical row of each instance, in the order of the set. */
+  protected int[] m_Order;
+
+  /** The number of instances in the set. */
+  protected int m_NumInstances;
+
+  /** The number of physical rows in use (including deleted ones). */
+  protected int m_NumRows;
+
+  /** The weight of each physical row. */
+  protected double[] m_Weights;
+
+  /** Dense layout: the values, indexed by attribute and physical row. */
+  protected double[][] m_Columns;
+
+  /** Sparse layout: the position of each row's first entry. */
+  protected int[] m_RowStart;
+
+  /** Sparse layout: the number of entries of each row. */
+  protected int[] m_RowLength;
+
+  /** Sparse layout: the attribute index of each entry. */
+  protected int[] m_EntryIndices;
+
+  /** Sparse layout: the value of each entry. */
+  protected double[] m_EntryValues;
+
+  /** Sparse layout: the number of entry slots in use. */
+  protected int m_NumEntries;
+
+  /**
+   * Constructor copying all instances and references to the header
+   * information from the given set of instances. The sparse layout is used
+   * if the first instance is a SparseInstance.
+   *
+   * @param dataset the set to be copied
+   */
+  public ColumnarInstances(Instances dataset) {
+
+    this(dataset, (dataset.numInstances() > 0)
+      && (dataset.instance(0) instanceof SparseInstance));
+  }
+
+  /**
+   * Constructor copying all instances and references to the header
+   * information from the given set of instances.
+   *
+   * @param dataset the set to be copied
+   * @param sparse whether to use the sparse (CSR) layout
+   */
+  public ColumnarInstances(Instances dataset, boolean sparse) {
+
+    this(dataset, dataset.numInstances(), sparse);
+
+    dataset.copyInstances(0, this, dataset.numInstances());
+  }
+
+  /**
+   * Constructor creating an empty set of instances. Copies references to the
+   * header information from the given set of instances.
+   *
+   * @param dataset the instances from which the header information is to be
+   *          taken
+   * @param capacity the number of rows to reserve
+   * @param sparse whether to use the sparse (CSR) layout
+   */
+  public ColumnarInstances(Instances dataset, int capacity, boolean sparse) {
+
+    super(dataset, 0);
+
+    if (capacity < 0) {
+      capacity = 0;
+    }
+    m_Sparse = sparse;
+    allocate(capacity);
+  }
+
+  /**
+   * Returns whether the values are stored in sparse (CSR) form.
+   *
+   * @return true if the sparse layout is used
+   */
+  public boolean isSparse() {
+
+    return m_Sparse;
+  }
+
+  /**
+   * Adds one instance to the end of the set. The values and the weight are
+   * copied into the arrays of the set. Note: String or relational values are
+   * not transferred.
+   *
+   * @param instance the instance to be added
+   */
+  @Override
+  public void add(Instance instance) {
+
+    ensureRowCapacity(m_NumRows + 1);
+    int row = m_NumRows++;
+    m_Weights[row] = instance.weight();
+    if (m_Sparse) {
+      int numValues = instance.numValues();
+      ensureEntryCapacity(numValues);
+      int start = m_NumEntries;
+      for (int j = 0; j < numValues; j++) {
+        double value = instance.valueSparse(j);
+        if (value != 0) {
+          m_EntryIndices[m_NumEntries] = instance.index(j);
+          m_EntryValues[m_NumEntries] = value;
+          m_NumEntries++;
+        }
+      }
+      m_RowStart[row] = start;
+      m_RowLength[row] = m_NumEntries - start;
+    } else {
+      for (int j = 0; j < m_Columns.length; j++) {
+        m_Columns[j][row] = 0;
+      }
+      for (int j = 0; j < instance.numValues(); j++) {
+        m_Columns[instance.index(j)][row] = instance.valueSparse(j);
+      }
+    }
+    if (m_NumInstances == m_Order.length) {
+      m_Order = grow(m_Order, Math.max(m_NumInstances + 1,
+        2 * m_Order.length));
+    }
+    m_Order[m_NumInstances++] = row;
+  }
+
+  /**
+   * Compactifies the set of instances. Lays the rows out in the order of the
+   * set, drops the storage of deleted rows, and decreases the capacity of the
+   * arrays so that it matches the number of instances in the set.
+   */
+  @Override
+  public void compactify() {
+
+    int n = m_NumInstances;
+    double[] weights = new double[n];
+    for (int i = 0; i < n; i++) {
+      weights[i] = m_Weights[m_Order[i]];
+    }
+    if (m_Sparse) {
+      int numEntries = 0;
+      for (int i = 0; i < n; i++) {
+        numEntries += m_RowLength[m_Order[i]];
+      }
+      int[] rowStart = new int[n];
+      int[] rowLength = new int[n];
+      int[] indices = new int[numEntries];
+      double[] values = new double[numEntries];
+      int pos = 0;
+      for (int i = 0; i < n; i++) {
+        int row = m_Order[i];
+        int length = m_RowLength[row];
+        System.arraycopy(m_EntryIndices, m_RowStart[row], indices, pos, length);
+        System.arraycopy(m_EntryValues, m_RowStart[row], values, pos, length);
+        rowStart[i] = pos;
+        rowLength[i] = length;
+        pos += length;
+      }
+      m_RowStart = rowStart;
+      m_RowLength = rowLength;
+      m_EntryIndices = indices;
+      m_EntryValues = values;
+      m_NumEntries = numEntries;
+    } else {
+      for (int j = 0; j < m_Columns.length; j++) {
+        double[] column = new double[n];
+        for (int i = 0; i < n; i++) {
+          column[i] = m_Columns[j][m_Order[i]];
+        }
+        m_Columns[j] = column;
+      }
+    }
+    m_Weights = weights;
+    m_Order = new int[n];
+    for (int i = 0; i < n; i++) {
+      m_Order[i] = i;
+    }
+    m_NumRows = n;
+  }
+
+  /**
+   * Removes all instances from the set.
+   */
+  @Override
+  public void delete() {
+
+    allocate(0);
+  }
+
+  /**
+   * Removes an instance at the given position from the set. Its storage is
+   * reclaimed by <code>compactify()</code>.
+   *
+   * @param index the instance's position (index starts with 0)
+   */
+  @Override
+  public void delete(int index) {
+
+    if ((index < 0) || (index >= m_NumInstances)) {
+      throw new ArrayIndexOutOfBoundsException(index + " >= "
+        + m_NumInstances);
+    }
+    System.arraycopy(m_Order, index + 1, m_Order, index, m_NumInstances
+      - index - 1);
+    m_NumInstances--;
+  }
+
+  /**
+   * Deletes an attribute at the given position (0 to numAttributes() - 1). A
+   * deep copy of the attribute information is performed before the attribute is
+   * deleted.
+   *
+   * @param position the attribute's position (position starts with 0)
+   * @throws IllegalArgumentException if the given index is out of range or the
+   *           class attribute is being deleted
+   */
+  @Override
+  public void deleteAttributeAt(int position) {
+
+    super.deleteAttributeAt(position);
+
+    if (m_Sparse) {
+      for (int row = 0; row < m_NumRows; row++) {
+        int start = m_RowStart[row];
+        int end = start + m_RowLength[row];
+        int pos = start;
+        for (int k = start; k < end; k++) {
+          int index = m_EntryIndices[k];
+          if (index != position) {
+            m_EntryIndices[pos] = (index > position) ? index - 1 : index;
+            m_EntryValues[pos] = m_EntryValues[k];
+            pos++;
+          }
+        }
+        m_RowLength[row] = pos - start;
+      }
+    } else {
+      double[][] columns = new double[m_Columns.length - 1][];
+      System.arraycopy(m_Columns, 0, columns, 0, position);
+      System.arraycopy(m_Columns, position + 1, columns, position,
+        m_Columns.length - position - 1);
+      m_Columns = columns;
+    }
+  }
+
+  /**
+   * Removes all instances with missing values for a particular attribute from
+   * the dataset.
+   *
+   * @param attIndex the attribute's index (index starts with 0)
+   */
+  @Override
+  public void deleteWithMissing(int attIndex) {
+
+    int n = 0;
+    for (int i = 0; i < m_NumInstances; i++) {
+      if (!Instance.isMissingValue(value(m_Order[i], attIndex))) {
+        m_Order[n++] = m_Order[i];
+      }
+    }
+    m_NumInstances = n;
+  }
+
+  /**
+   * Returns an enumeration of all instances in the dataset.
+   *
+   * @return enumeration of all instances in the dataset
+   */
+  @Override
+  public Enumeration enumerateInstances() {
+
+    return new Enumeration() {
+      int m_Next = 0;
+
+      public boolean hasMoreElements() {
+        return m_Next < m_NumInstances;
+      }
+
+      public Object nextElement() {
+        if (m_Next >= m_NumInstances) {
+          throw new NoSuchElementException();
+        }
+        return instance(m_Next++);
+      }
+    };
+  }
+
+  /**
+   * Returns the first instance in the set.
+   *
+   * @return the first instance in the set
+   */
+  @Override
+  public Instance firstInstance() {
+
+    if (m_NumInstances == 0) {
+      throw new NoSuchElementException();
+    }
+    return instance(0);
+  }
+
+  /**
+   * Inserts an attribute at the given position (0 to numAttributes()) and sets
+   * all values to be missing. Shallow copies the attribute before it is
+   * inserted, and performs a deep copy of the existing attribute information.
+   *
+   * @param att the attribute to be inserted
+   * @param position the attribute's position (position starts with 0)
+   * @throws IllegalArgumentException if the given index is out of range
+   */
+  @Override
+  public void insertAttributeAt(Attribute att, int position) {
+
+    super.insertAttributeAt(att, position);
+
+    if (m_Sparse) {
+      int[] indices = new int[m_NumEntries + m_NumRows];
+      double[] values = new double[m_NumEntries + m_NumRows];
+      int pos = 0;
+      for (int row = 0; row < m_NumRows; row++) {
+        int start = m_RowStart[row];
+        int end = start + m_RowLength[row];
+        m_RowStart[row] = pos;
+        int k = start;
+        while ((k < end) && (m_EntryIndices[k] < position)) {
+          indices[pos] = m_EntryIndices[k];
+          values[pos++] = m_EntryValues[k++];
+        }
+        indices[pos] = position;
+        values[pos++] = Instance.missingValue();
+        while (k < end) {
+          indices[pos] = m_EntryIndices[k] + 1;
+          values[pos++] = m_EntryValues[k++];
+        }
+        m_RowLength[row] = pos - m_RowStart[row];
+      }
+      m_EntryIndices = indices;
+      m_EntryValues = values;
+      m_NumEntries = pos;
+    } else {
+      double[] column = new double[m_Weights.length];
+      Arrays.fill(column, Instance.missingValue());
+      double[][] columns = new double[m_Columns.length + 1][];
+      System.arraycopy(m_Columns, 0, columns, 0, position);
+      columns[position] = column;
+      System.arraycopy(m_Columns, position, columns, position + 1,
+        m_Columns.length - position);
+      m_Columns = columns;
+    }
+  }
+
+  /**
+   * Returns a view of the instance at the given position.
+   *
+   * @param index the instance's index (index starts with 0)
+   * @return the instance at the given position
+   */
+  @Override
+  public Instance instance(int index) {
+
+    if ((index < 0) || (index >= m_NumInstances)) {
+      throw new ArrayIndexOutOfBoundsException(index + " >= "
+        + m_NumInstances);
+    }
+    if (m_Sparse) {
+      return new SparseRow(this, m_Order[index]);
+    }
+    return new DenseRow(this, m_Order[index]);
+  }
+
+  /**
+   * Returns the last instance in the set.
+   *
+   * @return the last instance in the set
+   */
+  @Override
+  public Instance lastInstance() {
+
+    if (m_NumInstances == 0) {
+      throw new NoSuchElementException();
+    }
+    return instance(m_NumInstances - 1);
+  }
+
+  /**
+   * Returns the mean (mode) for a numeric (nominal) attribute as a
+   * floating-point value. Returns 0 if the attribute is neither nominal nor
+   * numeric. If all values are missing it returns zero.
+   *
+   * @param attIndex the attribute's index (index starts with 0)
+   * @return the mean or the mode
+   */
+  @Override
+  public double meanOrMode(int attIndex) {
+
+    double result, found;
+    int[] counts;
+
+    if (attribute(attIndex).isNumeric()) {
+      result = found = 0;
+      for (int j = 0; j < m_NumInstances; j++) {
+        int row = m_Order[j];
+        double value = value(row, attIndex);
+        if (!Instance.isMissingValue(value)) {
+          found += m_Weights[row];
+          result += m_Weights[row] * value;
+        }
+      }
+      if (found <= 0) {
+        return 0;
+      } else {
+        return result / found;
+      }
+    } else if (attribute(attIndex).isNominal()) {
+      counts = new int[attribute(attIndex).numValues()];
+      for (int j = 0; j < m_NumInstances; j++) {
+        int row = m_Order[j];
+        double value = value(row, attIndex);
+        if (!Instance.isMissingValue(value)) {
+          counts[(int) value] += m_Weights[row];
+        }
+      }
+      return Utils.maxIndex(counts);
+    } else {
+      return 0;
+    }
+  }
+
+  /**
+   * Returns the number of instances in the dataset.
+   *
+   * @return the number of instances in the dataset as an integer
+   */
+  @Override
+  public int numInstances() {
+
+    return m_NumInstances;
+  }
+
+  /**
+   * Sorts the instances based on an attribute. For numeric attributes,
+   * instances are sorted in ascending order. For nominal attributes, instances
+   * are sorted based on the attribute label ordering specified in the header.
+   * Instances with missing values for the attribute are placed at the end of
+   * the dataset.
+   *
+   * @param attIndex the attribute's index (index starts with 0)
+   */
+  @Override
+  public void sort(int attIndex) {
+
+    double[] vals = attributeToDoubleArray(attIndex);
+    for (int i = 0; i < vals.length; i++) {
+      if (Instance.isMissingValue(vals[i])) {
+        vals[i] = Double.MAX_VALUE;
+      }
+    }
+
+    int[] sortOrder = Utils.sortWithNoMissingValues(vals);
+    int[] order = new int[m_Order.length];
+    for (int i = 0; i < vals.length; i++) {
+      order[i] = m_Order[sortOrder[i]];
+    }
+    m_Order = order;
+  }
+
+  /**
+   * Computes the sum of all the instances' weights.
+   *
+   * @return the sum of all the instances' weights as a double
+   */
+  @Override
+  public double sumOfWeights() {
+
+    double sum = 0;
+
+    for (int i = 0; i < m_NumInstances; i++) {
+      sum += m_Weights[m_Order[i]];
+    }
+    return sum;
+  }
+
+  /**
+   * Swaps two instances in the set.
+   *
+   * @param i the first instance's index (index starts with 0)
+   * @param j the second instance's index (index starts with 0)
+   */
+  @Override
+  public void swap(int i, int j) {
+
+    if ((i >= m_NumInstances) || (j >= m_NumInstances)) {
+      throw new ArrayIndexOutOfBoundsException(Math.max(i, j) + " >= "
+        + m_NumInstances);
+    }
+    int help = m_Order[i];
+    m_Order[i] = m_Order[j];
+    m_Order[j] = help;
+  }
+
+  /**
+   * Computes the variance for a numeric attribute.
+   *
+   * @param attIndex the numeric attribute (index starts with 0)
+   * @return the variance if the attribute is numeric
+   * @throws IllegalArgumentException if the attribute is not numeric
+   */
+  @Override
+  public double variance(int attIndex) {
+
+    double sum = 0, sumSquared = 0, sumOfWeights = 0;
+
+    if (!attribute(attIndex).isNumeric()) {
+      throw new IllegalArgumentException(
+        "Can't compute variance because attribute is " + "not numeric!");
+    }
+    for (int i = 0; i < m_NumInstances; i++) {
+      int row = m_Order[i];
+      double value = value(row, attIndex);
+      if (!Instance.isMissingValue(value)) {
+        sum += m_Weights[row] * value;
+        sumSquared += m_Weights[row] * value * value;
+        sumOfWeights += m_Weights[row];
+      }
+    }
+    if (sumOfWeights <= 1) {
+      return 0;
+    }
+    double result = (sumSquared - (sum * sum / sumOfWeights))
+      / (sumOfWeights - 1);
+
+    // We don't like negative variance
+    if (result < 0) {
+      return 0;
+    } else {
+      return result;
+    }
+  }
+
+  /**
+   * Gets the value of all instances in this dataset for a particular
+   * attribute. Useful in conjunction with Utils.sort to allow iterating through
+   * the dataset in sorted order for some attribute.
+   *
+   * @param index the index of the attribute.
+   * @return an array containing the value of the desired attribute for each
+   *         instance in the dataset.
+   */
+  @Override
+  public double[] attributeToDoubleArray(int index) {
+
+    double[] result = new double[m_NumInstances];
+    if (m_Sparse) {
+      for (int i = 0; i < result.length; i++) {
+        result[i] = value(m_Order[i], index);
+      }
+    } else {
+      double[] column = m_Columns[index];
+      for (int i = 0; i < result.length; i++) {
+        result[i] = column[m_Order[i]];
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Creates an empty set with the header and the storage layout of this one.
+   *
+   * @param capacity the number of rows to reserve
+   * @return the empty set
+   */
+  @Override
+  protected Instances emptyCopy(int capacity) {
+
+    return new ColumnarInstances(this, capacity, m_Sparse);
+  }
+
+  /**
+   * Help function needed for stratification of set.
+   *
+   * @param numFolds the number of folds for the stratification
+   */
+  @Override
+  protected void stratStep(int numFolds) {
+
+    int[] order = new int[m_Order.length];
+    int start = 0, j, n = 0;
+
+    // create stratified batch
+    while (n < m_NumInstances) {
+      j = start;
+      while (j < m_NumInstances) {
+        order[n++] = m_Order[j];
+        j = j + numFolds;
+      }
+      start++;
+    }
+    m_Order = order;
+  }
+
+  /**
+   * Returns the value of an attribute in a physical row.
+   *
+   * @param row the physical row
+   * @param attIndex the attribute's index
+   * @return the value
+   */
+  protected double value(int row, int attIndex) {
+
+    if (!m_Sparse) {
+      return m_Columns[attIndex][row];
+    }
+    int pos = locateEntry(row, attIndex);
+    if ((pos >= 0) && (m_EntryIndices[m_RowStart[row] + pos] == attIndex)) {
+      return m_EntryValues[m_RowStart[row] + pos];
+    }
+    return 0.0;
+  }
+
+  /**
+   * Locates the greatest attribute index in a sparse row that is not greater
+   * than the given index, like SparseInstance.locateIndex().
+   *
+   * @param row the physical row
+   * @param index the attribute index
+   * @return the position of the entry within the row, -1 if there is none
+   */
+  protected int locateEntry(int row, int index) {
+
+    int offset = m_RowStart[row];
+    int min = offset, max = offset + m_RowLength[row] - 1;
+
+    if (max < min) {
+      return -1;
+    }
+
+    // Binary search
+    while ((m_EntryIndices[min] <= index) && (m_EntryIndices[max] >= index)) {
+      int current = (max + min) / 2;
+      if (m_EntryIndices[current] > index) {
+        max = current - 1;
+      } else if (m_EntryIndices[current] < index) {
+        min = current + 1;
+      } else {
+        return current - offset;
+      }
+    }
+    if (m_EntryIndices[max] < index) {
+      return max - offset;
+    } else {
+      return min - 1 - offset;
+    }
+  }
+
+  /**
+   * Replaces the entries of a sparse row. The entries are written in place if
+   * they fit, otherwise the row is moved to the end of the entry arrays.
+   *
+   * @param row the physical row
+   * @param indices the attribute indices (sorted in ascending order)
+   * @param values the values
+   * @param count the number of entries
+   */
+  protected void setEntries(int row, int[] indices, double[] values, int count) {
+
+    if (count > m_RowLength[row]) {
+      ensureEntryCapacity(count);
+      m_RowStart[row] = m_NumEntries;
+      m_NumEntries += count;
+    }
+    System.arraycopy(indices, 0, m_EntryIndices, m_RowStart[row], count);
+    System.arraycopy(values, 0, m_EntryValues, m_RowStart[row], count);
+    m_RowLength[row] = count;
+  }
+
+  /**
+   * Removes an entry from a sparse row.
+   *
+   * @param row the physical row
+   * @param pos the position of the entry within the row
+   */
+  protected void removeEntry(int row, int pos) {
+
+    int start = m_RowStart[row] + pos;
+    int rest = m_RowLength[row] - pos - 1;
+    System.arraycopy(m_EntryIndices, start + 1, m_EntryIndices, start, rest);
+    System.arraycopy(m_EntryValues, start + 1, m_EntryValues, start, rest);
+    m_RowLength[row]--;
+  }
+
+  /**
+   * Allocates empty storage.
+   *
+   * @param capacity the number of rows to reserve
+   */
+  protected void allocate(int capacity) {
+
+    m_Order = new int[capacity];
+    m_Weights = new double[capacity];
+    m_NumInstances = 0;
+    m_NumRows = 0;
+    if (m_Sparse) {
+      m_RowStart = new int[capacity];
+      m_RowLength = new int[capacity];
+      m_EntryIndices = new int[capacity];
+      m_EntryValues = new double[capacity];
+      m_NumEntries = 0;
+    } else {
+      m_Columns = new double[numAttributes()][capacity];
+    }
+  }
+
+  /**
+   * Makes sure that the given number of physical rows can be stored.
+   *
+   * @param numRows the number of rows
+   */
+  protected void ensureRowCapacity(int numRows) {
+
+    if (numRows <= m_Weights.length) {
+      return;
+    }
+    int capacity = Math.max(numRows, 2 * m_Weights.length);
+    m_Weights = grow(m_Weights, capacity);
+    if (m_Sparse) {
+      m_RowStart = grow(m_RowStart, capacity);
+      m_RowLength = grow(m_RowLength, capacity);
+    } else {
+      for (int j = 0; j < m_Columns.length; j++) {
+        m_Columns[j] = grow(m_Columns[j], capacity);
+      }
+    }
+  }
+
+  /**
+   * Makes sure that the given number of entries can be appended to the entry
+   * arrays. If at least half of the used slots belong to rows that have been
+   * shortened or moved, the entries are packed first; the physical rows stay
+   * the same.
+   *
+   * @param extra the number of entries to append
+   */
+  protected void ensureEntryCapacity(int extra) {
+
+    if (m_NumEntries + extra <= m_EntryIndices.length) {
+      return;
+    }
+    int live = 0;
+    for (int row = 0; row < m_NumRows; row++) {
+      live += m_RowLength[row];
+    }
+    int capacity = m_EntryIndices.length;
+    if (live + extra > capacity / 2) {
+      capacity = Math.max(live + extra, 2 * capacity);
+    }
+    int[] indices = new int[capacity];
+    double[] values = new double[capacity];
+    int pos = 0;
+    for (int row = 0; row < m_NumRows; row++) {
+      int length = m_RowLength[row];
+      System.arraycopy(m_EntryIndices, m_RowStart[row], indices, pos, length);
+      System.arraycopy(m_EntryValues, m_RowStart[row], values, pos, length);
+      m_RowStart[row] = pos;
+      pos += length;
+    }
+    m_EntryIndices = indices;
+    m_EntryValues = values;
+    m_NumEntries = pos;
+  }
+
+  /**
+   * Returns a copy of the array with the given length.
+   *
+   * @param array the array
+   * @param length the new length
+   * @return the copy
+   */
+  protected static double[] grow(double[] array, int length) {
+
+    double[] result = new double[length];
+    System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+    return result;
+  }
+
+  /**
+   * Returns a copy of the array with the given length.
+   *
+   * @param array the array
+   * @param length the new length
+   * @return the copy
+   */
+  protected static int[] grow(int[] array, int length) {
+
+    int[] result = new int[length];
+    System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+    return result;
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+
+  /**
+   * A view of a row in the dense layout.
+   */
+  protected static class DenseRow extends Instance {
+
+    /** for serialization */
+    private static final long serialVersionUID = -2707364830282016337L;
+
+    /** The set holding the values. */
+    protected ColumnarInstances m_Store;
+
+    /** The physical row. */
+    protected int m_Row;
+
+    /**
+     * Creates a view of a row.
+     *
+     * @param store the set holding the values
+     * @param row the physical row
+     */
+    protected DenseRow(ColumnarInstances store, int row) {
+
+      m_Store = store;
+      m_Row = row;
+      m_Dataset = store;
+    }
+
+    /**
+     * Produces a shallow copy of this instance as an ordinary Instance.
+     *
+     * @return the shallow copy
+     */
+    @Override
+    public Object copy() {
+
+      Instance result = new Instance(weight(), toDoubleArray());
+      result.m_Dataset = m_Dataset;
+      return result;
+    }
+
+    /**
+     * Tests if a specific value is "missing".
+     *
+     * @param attIndex the attribute's index
+     * @return true if the value is "missing"
+     */
+    @Override
+    public boolean isMissing(int attIndex) {
+
+      return Double.isNaN(m_Store.m_Columns[attIndex][m_Row]);
+    }
+
+    /**
+     * Tests if a specific value is "missing".
+     *
+     * @param indexOfIndex the index of the attribute's index
+     * @return true if the value is "missing"
+     */
+    @Override
+    public boolean isMissingSparse(int indexOfIndex) {
+
+      return Double.isNaN(m_Store.m_Columns[indexOfIndex][m_Row]);
+    }
+
+    /**
+     * Returns the number of attributes.
+     *
+     * @return the number of attributes as an integer
+     */
+    @Override
+    public int numAttributes() {
+
+      return m_Store.m_Columns.length;
+    }
+
+    /**
+     * Returns the number of values present. Always the same as
+     * numAttributes().
+     *
+     * @return the number of values
+     */
+    @Override
+    public int numValues() {
+
+      return m_Store.m_Columns.length;
+    }
+
+    /**
+     * Replaces all missing values in the instance with the values contained
+     * in the given array.
+     *
+     * @param array containing the means and modes
+     * @throws IllegalArgumentException if numbers of attributes are unequal
+     */
+    @Override
+    public void replaceMissingValues(double[] array) {
+
+      if ((array == null) || (array.length != numAttributes())) {
+        throw new IllegalArgumentException("Unequal number of attributes!");
+      }
+      for (int i = 0; i < array.length; i++) {
+        if (isMissing(i)) {
+          m_Store.m_Columns[i][m_Row] = array[i];
+        }
+      }
+    }
+
+    /**
+     * Sets a specific value in the instance to the given value (internal
+     * floating-point format).
+     *
+     * @param attIndex the attribute's index
+     * @param value the new attribute value
+     */
+    @Override
+    public void setValue(int attIndex, double value) {
+
+      m_Store.m_Columns[attIndex][m_Row] = value;
+    }
+
+    /**
+     * Sets a specific value in the instance to the given value (internal
+     * floating-point format).
+     *
+     * @param indexOfIndex the index of the attribute's index
+     * @param value the new attribute value
+     */
+    @Override
+    public void setValueSparse(int indexOfIndex, double value) {
+
+      m_Store.m_Columns[indexOfIndex][m_Row] = value;
+    }
+
+    /**
+     * Sets the weight of the instance.
+     *
+     * @param weight the weight
+     */
+    @Override
+    public void setWeight(double weight) {
+
+      m_Store.m_Weights[m_Row] = weight;
+    }
+
+    /**
+     * Returns the values of each attribute as an array of doubles.
+     *
+     * @return an array containing all the instance attribute values
+     */
+    @Override
+    public double[] toDoubleArray() {
+
+      double[] newValues = new double[numAttributes()];
+      for (int i = 0; i < newValues.length; i++) {
+        newValues[i] = m_Store.m_Columns[i][m_Row];
+      }
+      return newValues;
+    }
+
+    /**
+     * Returns the description of one instance.
+     *
+     * @return the instance's description as a string
+     */
+    @Override
+    public String toString() {
+
+      StringBuffer text = new StringBuffer(toStringNoWeight());
+
+      if (weight() != 1.0) {
+        text.append(",{" + Utils.doubleToString(weight(), 6) + "}");
+      }
+
+      return text.toString();
+    }
+
+    /**
+     * Returns the description of one instance (without weight appended).
+     *
+     * @return the instance's description as a string
+     */
+    @Override
+    protected String toStringNoWeight() {
+
+      StringBuffer text = new StringBuffer();
+
+      for (int i = 0; i < numAttributes(); i++) {
+        if (i > 0) text.append(",");
+        text.append(toString(i));
+      }
+
+      return text.toString();
+    }
+
+    /**
+     * Returns an instance's attribute value in internal format.
+     *
+     * @param attIndex the attribute's index
+     * @return the specified value as a double
+     */
+    @Override
+    public double value(int attIndex) {
+
+      return m_Store.m_Columns[attIndex][m_Row];
+    }
+
+    /**
+     * Returns an instance's attribute value in internal format.
+     *
+     * @param indexOfIndex the index of the attribute's index
+     * @return the specified value as a double
+     */
+    @Override
+    public double valueSparse(int indexOfIndex) {
+
+      return m_Store.m_Columns[indexOfIndex][m_Row];
+    }
+
+    /**
+     * Returns the instance's weight.
+     *
+     * @return the instance's weight as a double
+     */
+    @Override
+    public double weight() {
+
+      return m_Store.m_Weights[m_Row];
+    }
+
+    /**
+     * Does nothing, the columns are updated by the set.
+     *
+     * @param position the attribute's position
+     */
+    @Override
+    void forceDeleteAttributeAt(int position) {
+    }
+
+    /**
+     * Does nothing, the columns are updated by the set.
+     *
+     * @param position the attribute's position
+     */
+    @Override
+    void forceInsertAttributeAt(int position) {
+    }
+  }
+
+  /**
+   * A view of a row in the sparse (CSR) layout.
+   */
+  protected static class SparseRow extends SparseInstance {
+
+    /** for serialization */
+    private static final long serialVersionUID = 6361420947823536307L;
+
+    /** The set holding the values. */
+    protected ColumnarInstances m_Store;
+
+    /** The physical row. */
+    protected int m_Row;
+
+    /**
+     * Creates a view of a row.
+     *
+     * @param store the set holding the values
+     * @param row the physical row
+     */
+    protected SparseRow(ColumnarInstances store, int row) {
+
+      m_Store = store;
+      m_Row = row;
+      m_Dataset = store;
+    }
+
+    /**
+     * Returns the attribute associated with the internal index.
+     *
+     * @param indexOfIndex the index of the attribute's index
+     * @return the attribute at the given position
+     */
+    @Override
+    public Attribute attributeSparse(int indexOfIndex) {
+
+      return m_Dataset.attribute(index(indexOfIndex));
+    }
+
+    /**
+     * Produces a shallow copy of this instance as an ordinary
+     * SparseInstance.
+     *
+     * @return the shallow copy
+     */
+    @Override
+    public Object copy() {
+
+      int numValues = numValues();
+      int[] indices = new int[numValues];
+      double[] values = new double[numValues];
+      System.arraycopy(m_Store.m_EntryIndices, m_Store.m_RowStart[m_Row],
+        indices, 0, numValues);
+      System.arraycopy(m_Store.m_EntryValues, m_Store.m_RowStart[m_Row],
+        values, 0, numValues);
+      SparseInstance result = new SparseInstance(weight(), values, indices,
+        numAttributes());
+      result.m_Dataset = m_Dataset;
+      return result;
+    }
+
+    /**
+     * Returns the index of the attribute stored at the given position.
+     *
+     * @param position the position
+     * @return the index of the attribute stored at the given position
+     */
+    @Override
+    public int index(int position) {
+
+      return m_Store.m_EntryIndices[m_Store.m_RowStart[m_Row] + position];
+    }
+
+    /**
+     * Tests if a specific value is "missing".
+     *
+     * @param indexOfIndex the index of the attribute's index
+     * @return true if the value is "missing"
+     */
+    @Override
+    public boolean isMissingSparse(int indexOfIndex) {
+
+      return Double.isNaN(valueSparse(indexOfIndex));
+    }
+
+    /**
+     * Locates the greatest index that is not greater than the given index.
+     *
+     * @param index the attribute index
+     * @return the internal index of the attribute index. Returns -1 if no
+     *         index with this property could be found
+     */
+    @Override
+    public int locateIndex(int index) {
+
+      return m_Store.locateEntry(m_Row, index);
+    }
+
+    /**
+     * Returns the number of attributes.
+     *
+     * @return the number of attributes as an integer
+     */
+    @Override
+    public int numAttributes() {
+
+      return m_Store.numAttributes();
+    }
+
+    /**
+     * Returns the number of values in the sparse vector.
+     *
+     * @return the number of values
+     */
+    @Override
+    public int numValues() {
+
+      return m_Store.m_RowLength[m_Row];
+    }
+
+    /**
+     * Replaces all missing values in the instance with the values contained
+     * in the given array.
+     *
+     * @param array containing the means and modes
+     * @throws IllegalArgumentException if numbers of attributes are unequal
+     */
+    @Override
+    public void replaceMissingValues(double[] array) {
+
+      if ((array == null) || (array.length != numAttributes())) {
+        throw new IllegalArgumentException("Unequal number of attributes!");
+      }
+      int numValues = numValues();
+      double[] tempValues = new double[numValues];
+      int[] tempIndices = new int[numValues];
+      int vals = 0;
+      for (int i = 0; i < numValues; i++) {
+        int index = index(i);
+        if (isMissingValue(valueSparse(i))) {
+          if (array[index] != 0) {
+            tempValues[vals] = array[index];
+            tempIndices[vals] = index;
+            vals++;
+          }
+        } else {
+          tempValues[vals] = valueSparse(i);
+          tempIndices[vals] = index;
+          vals++;
+        }
+      }
+      m_Store.setEntries(m_Row, tempIndices, tempValues, vals);
+    }
+
+    /**
+     * Sets a specific value in the instance to the given value (internal
+     * floating-point format). Setting a value to zero removes its entry.
+     *
+     * @param attIndex the attribute's index
+     * @param value the new attribute value
+     */
+    @Override
+    public void setValue(int attIndex, double value) {
+
+      int index = locateIndex(attIndex);
+
+      if ((index >= 0) && (index(index) == attIndex)) {
+        if (value != 0) {
+          m_Store.m_EntryValues[m_Store.m_RowStart[m_Row] + index] = value;
+        } else {
+          m_Store.removeEntry(m_Row, index);
+        }
+      } else if (value != 0) {
+        int numValues = numValues();
+        int start = m_Store.m_RowStart[m_Row];
+        double[] tempValues = new double[numValues + 1];
+        int[] tempIndices = new int[numValues + 1];
+        System.arraycopy(m_Store.m_EntryValues, start, tempValues, 0,
+          index + 1);
+        System.arraycopy(m_Store.m_EntryIndices, start, tempIndices, 0,
+          index + 1);
+        tempIndices[index + 1] = attIndex;
+        tempValues[index + 1] = value;
+        System.arraycopy(m_Store.m_EntryValues, start + index + 1, tempValues,
+          index + 2, numValues - index - 1);
+        System.arraycopy(m_Store.m_EntryIndices, start + index + 1,
+          tempIndices, index + 2, numValues - index - 1);
+        m_Store.setEntries(m_Row, tempIndices, tempValues, numValues + 1);
+      }
+    }
+
+    /**
+     * Sets a specific value in the instance to the given value (internal
+     * floating-point format). Setting a value to zero removes its entry.
+     *
+     * @param indexOfIndex the index of the attribute's index
+     * @param value the new attribute value
+     */
+    @Override
+    public void setValueSparse(int indexOfIndex, double value) {
+
+      if (value != 0) {
+        m_Store.m_EntryValues[m_Store.m_RowStart[m_Row] + indexOfIndex] = value;
+      } else {
+        m_Store.removeEntry(m_Row, indexOfIndex);
+      }
+    }
+
+    /**
+     * Sets the weight of the instance.
+     *
+     * @param weight the weight
+     */
+    @Override
+    public void setWeight(double weight) {
+
+      m_Store.m_Weights[m_Row] = weight;
+    }
+
+    /**
+     * Returns the values of each attribute as an array of doubles.
+     *
+     * @return an array containing all the instance attribute values
+     */
+    @Override
+    public double[] toDoubleArray() {
+
+      double[] newValues = new double[numAttributes()];
+      int start = m_Store.m_RowStart[m_Row];
+      for (int i = 0; i < numValues(); i++) {
+        newValues[m_Store.m_EntryIndices[start + i]] = m_Store.m_EntryValues[start
+          + i];
+      }
+      return newValues;
+    }
+
+    /**
+     * Returns the description of one instance in sparse format.
+     *
+     * @return the instance's description as a string
+     */
+    @Override
+    public String toString() {
+
+      StringBuffer text = new StringBuffer();
+
+      text.append('{');
+      for (int i = 0; i < numValues(); i++) {
+        if (i > 0) text.append(",");
+        int index = index(i);
+        Attribute att = (m_Dataset == null) ? null : m_Dataset.attribute(index);
+        if (isMissingValue(valueSparse(i))) {
+          text.append(index + " ?");
+        } else if (att == null) {
+          text.append(index + " " + Utils.doubleToString(valueSparse(i), 6));
+        } else if (att.isNominal() || att.isString() || att.isDate()) {
+          text.append(index + " " + Utils.quote(stringValue(index)));
+        } else if (att.isRelationValued()) {
+          text.append(index + " "
+            + Utils.quote(att.relation((int) valueSparse(i))
+              .stringWithoutHeader()));
+        } else {
+          text.append(index + " " + Utils.doubleToString(valueSparse(i), 6));
+        }
+      }
+      text.append('}');
+      if (weight() != 1.0) {
+        text.append(",{" + Utils.doubleToString(weight(), 6) + "}");
+      }
+
+      return text.toString();
+    }
+
+    /**
+     * Returns the description of the stored values (without weight
+     * appended), like Instance.toStringNoWeight() does for a
+     * SparseInstance.
+     *
+     * @return the instance's description as a string
+     */
+    @Override
+    protected String toStringNoWeight() {
+
+      StringBuffer text = new StringBuffer();
+
+      for (int i = 0; i < numValues(); i++) {
+        if (i > 0) text.append(",");
+        text.append(toString(i));
+      }
+
+      return text.toString();
+    }
+
+    /**
+     * Returns an instance's attribute value in internal format.
+     *
+     * @param attIndex the attribute's index
+     * @return the specified value as a double
+     */
+    @Override
+    public double value(int attIndex) {
+
+      return m_Store.value(m_Row, attIndex);
+    }
+
+    /**
+     * Returns an instance's attribute value in internal format, given an
+     * index in the sparse representation.
+     *
+     * @param indexOfIndex the index of the attribute's index
+     * @return the specified value as a double
+     */
+    @Override
+    public double valueSparse(int indexOfIndex) {
+
+      return m_Store.m_EntryValues[m_Store.m_RowStart[m_Row] + indexOfIndex];
+    }
+
+    /**
+     * Returns the instance's weight.
+     *
+     * @return the instance's weight as a double
+     */
+    @Override
+    public double weight() {
+
+      return m_Store.m_Weights[m_Row];
+    }
+
+    /**
+     * Does nothing, the entries are updated by the set.
+     *
+     * @param position the attribute's position
+     */
+    @Override
+    void forceDeleteAttributeAt(int position) {
+    }
+
+    /**
+     * Does nothing, the entries are updated by the set.
+     *
+     * @param position the attribute's position
+     */
+    @Override
+    void forceInsertAttributeAt(int position) {
+    }
+  }
+}
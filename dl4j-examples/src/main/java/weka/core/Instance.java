@@ -98,8 +98,9 @@ public class Instance
   //@ ensures m_Dataset == null;
   public Instance(/*@non_null@*/ Instance instance) {
     
-    m_AttValues = instance.m_AttValues;
-    m_Weight = instance.m_Weight;
+    m_AttValues = (instance.m_AttValues != null) ? instance.m_AttValues
+      : instance.toDoubleArray();
+    m_Weight = instance.weight();
     m_Dataset = null;
   }
 
@@ -754,7 +755,7 @@ public class Instance
    *
    * @param weight the weight
    */
-  public final void setWeight(double weight) {
+  public void setWeight(double weight) {
 
     m_Weight = weight;
   }
@@ -932,7 +933,7 @@ public class Instance
      text.append("?");
    } else {
      if (m_Dataset == null) {
-       text.append(Utils.doubleToString(m_AttValues[attIndex],6));
+       text.append(Utils.doubleToString(value(attIndex),6));
      } else {
        switch (m_Dataset.attribute(attIndex).type()) {
        case Attribute.NOMINAL:
@@ -1014,7 +1015,7 @@ public class Instance
    *
    * @return the instance's weight as a double
    */
-  public final /*@pure@*/ double weight() {
+  public /*@pure@*/ double weight() {
 
     return m_Weight;
   }
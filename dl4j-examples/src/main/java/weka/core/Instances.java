@@ -1023,7 +1023,7 @@ public class Instances implements Serializable, RevisionHandler {
    */
   public Instances resample(Random random) {
 
-    Instances newData = new Instances(this, numInstances());
+    Instances newData = emptyCopy(numInstances());
     while (newData.numInstances() < numInstances()) {
       newData.add(instance(random.nextInt(numInstances())));
     }
@@ -1104,7 +1104,7 @@ public class Instances implements Serializable, RevisionHandler {
       throw new IllegalArgumentException("weights.length != numInstances.");
     }
 
-    Instances newData = new Instances(this, numInstances());
+    Instances newData = emptyCopy(numInstances());
     if (numInstances() == 0) {
       return newData;
     }
@@ -1332,7 +1332,7 @@ public class Instances implements Serializable, RevisionHandler {
     } else {
       offset = numInstances() % numFolds;
     }
-    test = new Instances(this, numInstForFold);
+    test = emptyCopy(numInstForFold);
     first = numFold * (numInstances() / numFolds) + offset;
     copyInstances(first, test, numInstForFold);
     return test;
@@ -1411,7 +1411,7 @@ public class Instances implements Serializable, RevisionHandler {
     } else {
       offset = numInstances() % numFolds;
     }
-    train = new Instances(this, numInstances() - numInstForFold);
+    train = emptyCopy(numInstances() - numInstForFold);
     first = numFold * (numInstances() / numFolds) + offset;
     copyInstances(0, train, first);
     copyInstances(first + numInstForFold, train, numInstances() - first
@@ -1657,6 +1657,19 @@ public class Instances implements Serializable, RevisionHandler {
     }
   }
 
+  /**
+   * Creates an empty set with the header information of this set. Used for
+   * the subsets created by resample(), trainCV() and testCV(), so that
+   * subclasses can keep their own storage.
+   * 
+   * @param capacity the capacity of the new set
+   * @return the empty set
+   */
+  protected Instances emptyCopy(int capacity) {
+
+    return new Instances(this, capacity);
+  }
+
   /**
    * Replaces the attribute information by a clone of itself.
    */
@@ -118,6 +118,17 @@ import weka.core.TechnicalInformation.Type;
  * provided, there is no need to override the <code>evaluateHessian()</code>
  * function.<p/>
  *
+ * The method above keeps a dense approximation of the Hessian, i.e. it needs
+ * O(N^2) memory and time per iteration for N variables.  For problems with
+ * many variables a limited-memory BFGS (L-BFGS) method can be selected
+ * instead with <code>setHistorySize()</code>: only the last m pairs of
+ * variable and gradient changes are kept, and the search direction is
+ * computed with the two-loop recursion in O(m*N).  Bound constraints are
+ * handled as in L-BFGS-B by projection: variables on a bound whose gradient
+ * points outwards are held fixed for the direction, and the line search
+ * backtracks along the projected path until the function decreases
+ * sufficiently.<p/>
+ *
  * REFERENCES (see also the <code>getTechnicalInformation()</code> method):<br/>
  * The whole model algorithm is adapted from Chapter 5 and other related
  * chapters in Gill, Murray and Wright(1981) "Practical Optimization", Academic
@@ -157,6 +168,9 @@ public abstract class Optimization
     
     protected int m_MAXITS = 200;
     
+    /** Number of corrections kept by L-BFGS, 0 for the BFGS with the full matrix */
+    protected int m_HistorySize = 0;
+    
     protected static boolean m_Debug = false;
     
     /** function value */
@@ -247,6 +261,23 @@ public abstract class Optimization
       additional.setValue(Field.NUMBER, "126");
       additional.setValue(Field.PAGES, "505-535");
       
+      additional = result.add(Type.ARTICLE);
+      additional.setValue(Field.AUTHOR, "D. C. Liu and J. Nocedal");
+      additional.setValue(Field.YEAR, "1989");
+      additional.setValue(Field.TITLE, "On the limited memory BFGS method for large scale optimization");
+      additional.setValue(Field.JOURNAL, "Mathematical Programming");
+      additional.setValue(Field.VOLUME, "45");
+      additional.setValue(Field.PAGES, "503-528");
+      
+      additional = result.add(Type.ARTICLE);
+      additional.setValue(Field.AUTHOR, "R. H. Byrd and P. Lu and J. Nocedal and C. Zhu");
+      additional.setValue(Field.YEAR, "1995");
+      additional.setValue(Field.TITLE, "A limited memory algorithm for bound constrained optimization");
+      additional.setValue(Field.JOURNAL, "SIAM Journal on Scientific Computing");
+      additional.setValue(Field.VOLUME, "16");
+      additional.setValue(Field.NUMBER, "5");
+      additional.setValue(Field.PAGES, "1190-1208");
+      
       return result;
     }
     
@@ -302,6 +333,25 @@ public abstract class Optimization
       m_MAXITS=it;
     }
       
+    /**
+     * Set the number of corrections kept by the limited-memory BFGS method.
+     * 0 (the default) uses the BFGS method with the full inverse Hessian.
+     *
+     * @param size the history size, 0 for the full BFGS method
+     */
+    public void setHistorySize(int size) {
+      m_HistorySize = size;
+    }
+      
+    /**
+     * Get the number of corrections kept by the limited-memory BFGS method.
+     *
+     * @return the history size, 0 for the full BFGS method
+     */
+    public int getHistorySize() {
+      return m_HistorySize;
+    }
+      
     /**
      * Set whether in debug mode
      *
@@ -820,6 +870,9 @@ public abstract class Optimization
      */
     public double[] findArgmin(double[] initX, double[][] constraints) 
 	throws Exception{
+	if (m_HistorySize > 0)
+	    return findArgminLimitedMemory(initX, constraints);
+	
 	int l = initX.length;
 	
 	// Initially all variables are free, all bounds are constraints of
@@ -1085,6 +1138,209 @@ public abstract class Optimization
 	return null;
     }
     
+    /**
+     * Limited-memory BFGS with projection on the bound constraints, used by
+     * findArgmin() if the history size is positive.  See Liu and Nocedal
+     * (1989) for the two-loop recursion and Byrd et al. (1995) for the
+     * treatment of the bounds.
+     *
+     * @param initX initial point of x
+     * @param constraints the bound constraints of each variable
+     *                    constraints[0] is the lower bounds and 
+     *                    constraints[1] is the upper bounds
+     * @return the solution of x, null if number of iterations not enough
+     * @throws Exception if an error occurs
+     */
+    protected double[] findArgminLimitedMemory(double[] initX, double[][] constraints) 
+	throws Exception{
+	int l = initX.length, m = m_HistorySize;
+	
+	// The last m corrections, as a ring buffer
+	double[][] s = new double[m][], y = new double[m][];
+	double[] rho = new double[m], alpha = new double[m];
+	int numCorrections = 0, newest = -1;
+	
+	double[] x = new double[l];
+	for(int i=0; i<l; i++)
+	    x[i] = project(initX[i], constraints, i);
+	
+	m_f = objectiveFunction(x);
+	if(Double.isNaN(m_f))
+	    throw new Exception("Objective function value is NaN!");
+	double[] grad = evaluateGradient(x), direct = new double[l];
+	boolean[] isFree = new boolean[l];
+	
+	for(int step=0; step < m_MAXITS; step++){
+	    if (m_Debug)
+		System.err.println("\nIteration # " + step + ":");
+	    
+	    // Variables on a bound with the gradient pointing outwards are
+	    // held fixed.  Check convergence of the other gradients.
+	    double test = 0.0;
+	    for(int i=0; i<l; i++){
+		isFree[i] = 
+		    !((!Double.isNaN(constraints[0][i]) && (x[i] <= constraints[0][i]) && (grad[i] > 0.0)) ||
+		      (!Double.isNaN(constraints[1][i]) && (x[i] >= constraints[1][i]) && (grad[i] < 0.0)));
+		if(isFree[i]){
+		    double tmp = Math.abs(grad[i])*Math.max(Math.abs(x[i]),1.0)/
+			Math.max(Math.abs(m_f),1.0);
+		    if(tmp > test) test = tmp;
+		}
+	    }
+	    if(test < m_Zero){
+		if (m_Debug)
+		    System.err.println("Gradient converge: "+test);
+		return x;
+	    }
+	    
+	    // Two-loop recursion: direct = -H*grad
+	    for(int i=0; i<l; i++)
+		direct[i] = -grad[i];
+	    for(int c=0, k=newest; c<numCorrections; c++, k=(k+m-1)%m){
+		alpha[k] = rho[k]*dot(s[k], direct);
+		axpy(-alpha[k], y[k], direct);
+	    }
+	    if(numCorrections > 0){
+		double gamma = 1.0/(rho[newest]*dot(y[newest], y[newest]));
+		for(int i=0; i<l; i++)
+		    direct[i] *= gamma;
+	    }
+	    for(int c=0, k=(newest+m-numCorrections+1)%m; c<numCorrections; c++, k=(k+1)%m){
+		double beta = rho[k]*dot(y[k], direct);
+		axpy(alpha[k]-beta, s[k], direct);
+	    }
+	    
+	    double slope = 0.0;
+	    for(int i=0; i<l; i++){
+		if(!isFree[i])
+		    direct[i] = 0.0;
+		slope += grad[i]*direct[i];
+	    }
+	    if(!(slope < 0.0)){ // Not a descent direction: restart
+		if (m_Debug)
+		    System.err.println("g'*p="+slope+" -- reset the history.");
+		numCorrections = 0;
+		slope = 0.0;
+		for(int i=0; i<l; i++){
+		    direct[i] = isFree[i] ? -grad[i] : 0.0;
+		    slope += grad[i]*direct[i];
+		}
+	    }
+	    
+	    // Backtracking line search along the projected path, the first
+	    // step without curvature information has unit length
+	    double alam = 1.0;
+	    if(numCorrections == 0)
+		alam = Math.min(1.0, 1.0/Math.sqrt(-slope));
+	    double[] newX = new double[l];
+	    double fnew;
+	    for(;;){
+		double decrease = 0.0;
+		test = 0.0;
+		for(int i=0; i<l; i++){
+		    newX[i] = isFree[i] ? project(x[i]+alam*direct[i], constraints, i) : x[i];
+		    decrease += grad[i]*(newX[i]-x[i]);
+		    double tmp = Math.abs(newX[i]-x[i])/Math.max(Math.abs(x[i]),1.0);
+		    if(tmp > test) test = tmp;
+		}
+		if(test < m_Zero){ // Converge on delta(x)
+		    if (m_Debug)
+			System.err.println("\nDeltaX converge: "+test);
+		    return x;
+		}
+		
+		fnew = objectiveFunction(newX);
+		if(Double.isNaN(fnew))
+		    throw new Exception("Objective function value is NaN!");
+		if (m_Debug)
+		    System.err.println("alam: " + Utils.doubleToString(alam,10,7) + 
+				       " obj. function: " + Utils.doubleToString(fnew,10,7));
+		
+		if(!Double.isInfinite(fnew) && (fnew <= m_f+m_ALF*decrease))
+		    break; // Sufficient function decrease
+		
+		if(Double.isInfinite(fnew) || (decrease >= 0.0))
+		    alam *= 0.5;
+		else{ // Quadratic interpolation, within [0.1, 0.5]*lambda_old
+		    double tmplam = -0.5*decrease*alam/(fnew-m_f-decrease);
+		    alam = Math.max(0.1*alam, Math.min(0.5*alam, tmplam));
+		}
+	    }
+	    
+	    double[] newGrad = evaluateGradient(newX);
+	    
+	    // Keep the correction if the curvature is positive
+	    double[] sk = new double[l], yk = new double[l];
+	    for(int i=0; i<l; i++){
+		sk[i] = newX[i]-x[i];
+		yk[i] = newGrad[i]-grad[i];
+	    }
+	    double sy = dot(sk, yk), yy = dot(yk, yk);
+	    if(sy > m_Epsilon*yy){
+		newest = (newest+1)%m;
+		s[newest] = sk;
+		y[newest] = yk;
+		rho[newest] = 1.0/sy;
+		if(numCorrections < m)
+		    numCorrections++;
+	    }
+	    else if (m_Debug)
+		System.err.println("dg'*dx="+sy+" -- skip the update.");
+	    
+	    x = newX;
+	    grad = newGrad;
+	    m_f = fnew;
+	}
+	
+	if(m_Debug)
+	    System.err.println("Cannot find minimum"+
+			       " -- too many interations!");
+	m_X = x;
+	return null;
+    }
+    
+    /**
+     * Projects a value on the bound constraints of a variable.
+     *
+     * @param value the value
+     * @param constraints the bound constraints, NaN if there is no bound
+     * @param index the index of the variable
+     * @return the value within the bounds
+     */
+    private static double project(double value, double[][] constraints, int index){
+	if(!Double.isNaN(constraints[0][index]) && (value < constraints[0][index]))
+	    return constraints[0][index];
+	if(!Double.isNaN(constraints[1][index]) && (value > constraints[1][index]))
+	    return constraints[1][index];
+	return value;
+    }
+    
+    /**
+     * Dot product of two vectors.
+     *
+     * @param a the first vector
+     * @param b the second vector
+     * @return a'*b
+     */
+    private static double dot(double[] a, double[] b){
+	double sum = 0.0;
+	for(int i=0; i<a.length; i++)
+	    sum += a[i]*b[i];
+	return sum;
+    }
+    
+    /**
+     * Adds a multiple of a vector to another one, y = y + a*x.
+     *
+     * @param a the factor
+     * @param x the vector to add
+     * @param y the vector to add to
+     */
+    private static void axpy(double a, double[] x, double[] y){
+	for(int i=0; i<x.length; i++)
+	    y[i] += a*x[i];
+    }
+    
     /** 
      * Solve the linear equation of TX=B where T is a triangle matrix
      * It can be solved using back/forward substitution, with O(N^2) 
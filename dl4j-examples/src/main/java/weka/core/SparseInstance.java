@@ -64,10 +64,11 @@ public class SparseInstance
    */
   public SparseInstance(Instance instance) {
     
-    m_Weight = instance.m_Weight;
+    m_Weight = instance.weight();
     m_Dataset = null;
     m_NumAttributes = instance.numAttributes();
-    if (instance instanceof SparseInstance) {
+    if ((instance instanceof SparseInstance)
+	&& (((SparseInstance)instance).m_Indices != null)) {
       m_AttValues = ((SparseInstance)instance).m_AttValues;
       m_Indices = ((SparseInstance)instance).m_Indices;
     } else {
@@ -99,11 +100,7 @@ public class SparseInstance
    */
   public SparseInstance(SparseInstance instance) {
     
-    m_AttValues = instance.m_AttValues;
-    m_Indices = instance.m_Indices;
-    m_Weight = instance.m_Weight;
-    m_NumAttributes = instance.m_NumAttributes;
-    m_Dataset = null;
+    this((Instance)instance);
   }
 
   /**
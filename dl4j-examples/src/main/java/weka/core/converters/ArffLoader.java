@@ -32,6 +32,7 @@ import weka.core.SparseInstance;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -39,6 +40,8 @@ import java.io.Reader;
 import java.io.StreamTokenizer;
 import java.io.StringReader;
 import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.text.ParseException;
 
 
@@ -73,6 +76,15 @@ public class ArffLoader
   /** The parser for the ARFF file */
   protected transient ArffReader m_ArffReader = null;
 
+  /** The channel of the source file, if reading from a plain file. */
+  protected transient FileChannel m_sourceChannel = null;
+
+  /** The position of the data in the source channel. */
+  protected transient long m_sourceStart = 0;
+
+  /** The number of threads to use for parsing the data in batch mode. */
+  protected int m_numExecutionSlots = 1;
+
   /**
    * Reads data from an ARFF file, either in incremental or batch mode. <p/>
    *
@@ -963,6 +975,46 @@ public class ArffLoader
     m_URL = "http://";
 
     m_sourceReader = new BufferedReader(new InputStreamReader(in));
+
+    // plain files can be parsed directly from the bytes in batch mode
+    m_sourceChannel = null;
+    if ((in instanceof FileInputStream)
+	&& FastArffReader.isSupported(Charset.defaultCharset())) {
+      m_sourceChannel = ((FileInputStream) in).getChannel();
+      m_sourceStart   = m_sourceChannel.position();
+    }
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of threads to use for parsing the data of plain "
+      + "ARFF files in batch mode.";
+  }
+
+  /**
+   * Sets the number of threads to use for parsing the data.
+   *
+   * @param value the number of threads (>= 1)
+   * @throws Exception if the value is less than 1
+   */
+  public void setNumExecutionSlots(int value) throws Exception {
+    if (value < 1)
+      throw new Exception("Number of execution slots needs to be >= 1!");
+    m_numExecutionSlots = value;
+  }
+
+  /**
+   * Returns the number of threads to use for parsing the data.
+   *
+   * @return the number of threads
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
   }
 
   /**
@@ -1008,6 +1060,25 @@ public class ArffLoader
         throw new IOException("Cannot mix getting Instances in both incremental and batch modes");
       }
       setRetrieval(BATCH);
+
+      // parse plain files from the bytes, unless the header can't be
+      // found that way (the tokenizer reports the error then)
+      if ((m_structure == null) && (m_sourceChannel != null)) {
+	FastArffReader reader = null;
+	try {
+	  reader = new FastArffReader(m_sourceChannel, m_sourceStart,
+	      Charset.defaultCharset());
+	}
+	catch (Exception e) {
+	  reader = null;
+	}
+	if (reader != null) {
+	  insts       = reader.getData(m_numExecutionSlots);
+	  m_structure = new Instances(insts, 0);
+	  return insts;
+	}
+      }
+
       if (m_structure == null) {
         getStructure();
       }
@@ -0,0 +1,976 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+/*
+ *    FastArffReader.java
+ *
+ */
+
+package weka.core.converters;
+
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+import weka.core.SparseInstance;
+
+import java.io.IOException;
+import java.io.StreamTokenizer;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reads ARFF files from a FileChannel, working on the raw bytes instead of
+ * going through a Reader and a StreamTokenizer. The tokens are the same as
+ * the ones of ArffLoader.ArffReader (whitespace, commas, % comments, quotes
+ * with escapes, braces), numbers are parsed without creating Strings where
+ * possible, and nominal values are looked up by their bytes. The header is
+ * still parsed by ArffLoader.ArffReader, so the structure and the data are
+ * identical to what ArffLoader.ArffReader produces.<p/>
+ *
+ * The data section is split into chunks at line ends, which are parsed by
+ * several threads if requested and if all attributes are numeric or
+ * nominal (string, date and relational values are added to the header while
+ * parsing, so they have to be read in order).<p/>
+ *
+ * Only charsets that encode ASCII characters (and nothing else) as single
+ * bytes below 128 are supported, see <code>isSupported(Charset)</code>.
+ *
+ * @version $Revision$
+ */
+public class FastArffReader
+  implements RevisionHandler {
+
+  /** the size of the chunks the data section is parsed in */
+  protected static final int CHUNK_SIZE = 4 * 1024 * 1024;
+
+  /** the channel to read from */
+  protected FileChannel m_Channel;
+
+  /** the position of the header in the channel */
+  protected long m_Start;
+
+  /** the position of the data section in the channel */
+  protected long m_DataStart;
+
+  /** the size of the channel */
+  protected long m_End;
+
+  /** the charset of the file */
+  protected Charset m_Charset;
+
+  /** the header */
+  protected Instances m_Structure;
+
+  /** the encoded nominal values, by attribute (hash tables) */
+  protected byte[][][] m_NominalKeys;
+
+  /** the indices of the nominal values in the hash tables */
+  protected int[][] m_NominalIndices;
+
+  /**
+   * Reads the header of the ARFF file in the given channel.
+   *
+   * @param channel	the channel to read from
+   * @param start	the position of the file's start in the channel
+   * @param charset	the charset of the file
+   * @throws IOException	if the header can't be read
+   */
+  public FastArffReader(FileChannel channel, long start, Charset charset)
+    throws IOException {
+
+    if (!isSupported(charset))
+      throw new IOException("Charset " + charset + " not supported!");
+
+    m_Channel = channel;
+    m_Start   = start;
+    m_End     = channel.size();
+    m_Charset = charset;
+
+    readHeader();
+    initNominalKeys();
+  }
+
+  /**
+   * Returns whether files in the given charset can be read: ASCII characters
+   * have to be encoded as their ASCII bytes, and no byte of any other
+   * character may look like an ASCII byte.
+   *
+   * @param charset	the charset to check
+   * @return		true if the charset is supported
+   */
+  public static boolean isSupported(Charset charset) {
+    if (charset.name().equals("UTF-8"))
+      return true;
+    if (!charset.canEncode() || (charset.newEncoder().maxBytesPerChar() != 1))
+      return false;
+
+    byte[] bytes = new byte[256];
+    for (int i = 0; i < bytes.length; i++)
+      bytes[i] = (byte) i;
+    String decoded = new String(bytes, charset);
+    if (decoded.length() != bytes.length)
+      return false;
+    for (int i = 0; i < bytes.length; i++) {
+      char c = decoded.charAt(i);
+      if ((i < 128) ? (c != i) : (c < 128))
+	return false;
+    }
+    return true;
+  }
+
+  /**
+   * Finds the end of the @data keyword and parses everything before it with
+   * ArffLoader.ArffReader.
+   *
+   * @throws IOException	if the header can't be read
+   */
+  protected void readHeader() throws IOException {
+    int size = 64 * 1024;
+    while (true) {
+      int length = (int) Math.min(size, m_End - m_Start);
+      byte[] bytes = read(m_Start, length);
+      Parser parser = new Parser(bytes, 0, length, m_Start);
+      boolean lineStart = true;
+      int type;
+      while ((type = parser.nextToken()) != StreamTokenizer.TT_EOF) {
+	if (lineStart && ((type == StreamTokenizer.TT_WORD) || (type == '\'') || (type == '"'))
+	    && Instances.ARFF_DATA.equalsIgnoreCase(parser.sval())) {
+	  // the data may not start in this buffer, don't cut a token
+	  if ((parser.m_Pos == length) && (m_Start + length < m_End))
+	    break;
+	  String header = new String(bytes, 0, parser.m_Pos, m_Charset);
+	  ArffLoader.ArffReader reader =
+	    new ArffLoader.ArffReader(new StringReader(header), 0);
+	  m_Structure = reader.getStructure();
+	  m_DataStart = m_Start + parser.m_Pos;
+	  return;
+	}
+	lineStart = (type == StreamTokenizer.TT_EOL);
+      }
+      if (m_Start + length >= m_End)
+	throw new IOException("keyword " + Instances.ARFF_DATA + " expected");
+      size *= 2;
+    }
+  }
+
+  /**
+   * Sets up the hash tables of the encoded nominal values.
+   */
+  protected void initNominalKeys() {
+    m_NominalKeys    = new byte[m_Structure.numAttributes()][][];
+    m_NominalIndices = new int[m_Structure.numAttributes()][];
+
+    for (int i = 0; i < m_Structure.numAttributes(); i++) {
+      Attribute att = m_Structure.attribute(i);
+      if (!att.isNominal())
+	continue;
+      int size = 4;
+      while (size < 2 * att.numValues())
+	size *= 2;
+      m_NominalKeys[i]    = new byte[size][];
+      m_NominalIndices[i] = new int[size];
+      for (int n = 0; n < att.numValues(); n++) {
+	byte[] key = att.value(n).getBytes(m_Charset);
+	// values that can't be encoded are looked up as Strings
+	if (!new String(key, m_Charset).equals(att.value(n)))
+	  continue;
+	int slot = hash(key, 0, key.length) & (size - 1);
+	while (m_NominalKeys[i][slot] != null)
+	  slot = (slot + 1) & (size - 1);
+	m_NominalKeys[i][slot]    = key;
+	m_NominalIndices[i][slot] = n;
+      }
+    }
+  }
+
+  /**
+   * Returns the hash code of a range of bytes.
+   *
+   * @param bytes	the bytes
+   * @param start	the start of the range
+   * @param end		the end of the range (exclusive)
+   * @return		the hash code
+   */
+  protected static int hash(byte[] bytes, int start, int end) {
+    int h = 0;
+    for (int i = start; i < end; i++)
+      h = 31 * h + bytes[i];
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Reads a range of bytes from the channel.
+   *
+   * @param position	the position to start at
+   * @param length	the number of bytes
+   * @return		the bytes
+   * @throws IOException	if reading fails
+   */
+  protected byte[] read(long position, int length) throws IOException {
+    byte[] result = new byte[length];
+    ByteBuffer buffer = ByteBuffer.wrap(result);
+    while (buffer.hasRemaining()) {
+      int n = m_Channel.read(buffer, position + buffer.position());
+      if (n < 0)
+	throw new IOException("premature end of file");
+    }
+    return result;
+  }
+
+  /**
+   * Returns the header.
+   *
+   * @return		the header format
+   */
+  public Instances getStructure() {
+    return new Instances(m_Structure, 0);
+  }
+
+  /**
+   * Returns the start of the first line after the given position that
+   * can't be part of a quoted value, or the end of the channel.
+   *
+   * @param position	the position to start looking at
+   * @return		the start of the line
+   * @throws IOException	if reading fails
+   */
+  protected long lineStart(long position) throws IOException {
+    int window = 64 * 1024;
+    long from = Math.max(m_DataStart, position - 2);
+    while (from < m_End) {
+      int length = (int) Math.min(window, m_End - from);
+      byte[] bytes = read(from, length);
+      for (int i = (int) (position - from); i < length; i++) {
+	if (bytes[i] != '\n')
+	  continue;
+	// a backslash before the line end may escape it within quotes
+	boolean escaped = (i > 0) && ((bytes[i - 1] == '\\')
+	    || ((bytes[i - 1] == '\r') && (i > 1) && (bytes[i - 2] == '\\')));
+	if ((i < 2) && (from + i > m_DataStart + 1))
+	  escaped = true;
+	if (!escaped)
+	  return from + i + 1;
+      }
+      position = from + length;
+      from = position - 2;
+      if (position >= m_End)
+	break;
+    }
+    return m_End;
+  }
+
+  /**
+   * Reads the data section.
+   *
+   * @param numExecutionSlots	the number of threads to use
+   * @return		the data
+   * @throws IOException	if reading or parsing fails
+   */
+  public Instances getData(int numExecutionSlots) throws IOException {
+    // split the data at line ends
+    List<long[]> chunks = new ArrayList<long[]>();
+    long start = m_DataStart;
+    while (start < m_End) {
+      long end = (m_End - start > CHUNK_SIZE)
+	? lineStart(start + CHUNK_SIZE) : m_End;
+      chunks.add(new long[]{start, end});
+      start = end;
+    }
+
+    boolean parallel = (numExecutionSlots > 1) && (chunks.size() > 1);
+    for (int i = 0; i < m_Structure.numAttributes(); i++) {
+      if (!m_Structure.attribute(i).isNominal()
+	  && !m_Structure.attribute(i).isNumeric())
+	parallel = false;
+    }
+
+    List<List<Instance>> parsed = new ArrayList<List<Instance>>();
+    if (!parallel) {
+      for (long[] chunk : chunks)
+	parsed.add(parseChunk(chunk[0], chunk[1]));
+    }
+    else {
+      ExecutorService pool = Executors.newFixedThreadPool(numExecutionSlots);
+      try {
+	List<Future<List<Instance>>> results =
+	  new ArrayList<Future<List<Instance>>>();
+	for (final long[] chunk : chunks) {
+	  results.add(pool.submit(new Callable<List<Instance>>() {
+	    public List<Instance> call() throws Exception {
+	      return parseChunk(chunk[0], chunk[1]);
+	    }
+	  }));
+	}
+	for (Future<List<Instance>> result : results)
+	  parsed.add(result.get());
+      }
+      catch (ExecutionException e) {
+	if (e.getCause() instanceof IOException)
+	  throw (IOException) e.getCause();
+	if (e.getCause() instanceof RuntimeException)
+	  throw (RuntimeException) e.getCause();
+	throw new IOException(e.getCause().toString());
+      }
+      catch (InterruptedException e) {
+	throw new IOException(e.toString());
+      }
+      finally {
+	pool.shutdownNow();
+      }
+    }
+
+    int numInstances = 0;
+    for (List<Instance> list : parsed)
+      numInstances += list.size();
+    Instances result = new Instances(m_Structure, numInstances);
+    for (int i = 0; i < parsed.size(); i++) {
+      for (Instance inst : parsed.get(i))
+	result.add(inst);
+      parsed.set(i, null);
+    }
+
+    return result;
+  }
+
+  /**
+   * Parses the instances in a range of the data section.
+   *
+   * @param start	the start of the range
+   * @param end		the end of the range (exclusive)
+   * @return		the instances
+   * @throws IOException	if reading or parsing fails
+   */
+  protected List<Instance> parseChunk(long start, long end) throws IOException {
+    byte[] bytes = read(start, (int) (end - start));
+    Parser parser = new Parser(bytes, 0, bytes.length, start);
+    List<Instance> result = new ArrayList<Instance>();
+    Instance inst;
+    while ((inst = parser.readInstance()) != null)
+      result.add(inst);
+    return result;
+  }
+
+  /**
+   * Returns the line (starting at 1) of the given position in the channel.
+   *
+   * @param position	the position
+   * @return		the line number
+   * @throws IOException	if reading fails
+   */
+  protected int lineNumber(long position) throws IOException {
+    int line = 1;
+    boolean cr = false;
+    for (long from = m_Start; from < position; from += CHUNK_SIZE) {
+      byte[] bytes = read(from, (int) Math.min(CHUNK_SIZE, position - from));
+      for (int i = 0; i < bytes.length; i++) {
+	if ((bytes[i] == '\r') || ((bytes[i] == '\n') && !cr))
+	  line++;
+	cr = (bytes[i] == '\r');
+      }
+    }
+    return line;
+  }
+
+  /**
+   * Tokenizes and parses a range of bytes, the same way as
+   * ArffLoader.ArffReader does with its StreamTokenizer.
+   */
+  protected class Parser {
+
+    /** the bytes */
+    protected byte[] m_Bytes;
+
+    /** the current position */
+    protected int m_Pos;
+
+    /** the end of the range (exclusive) */
+    protected int m_End;
+
+    /** the position of the bytes in the channel */
+    protected long m_Offset;
+
+    /** the type of the current token (as ArffReader sees it) */
+    protected int m_Type;
+
+    /** whether the current token was quoted */
+    protected boolean m_Quoted;
+
+    /** the value of a quoted token */
+    protected String m_QuotedValue;
+
+    /** the start of an unquoted word */
+    protected int m_WordStart;
+
+    /** the buffer for the values of sparse instances */
+    protected double[] m_ValueBuffer;
+
+    /** the buffer for the indices of sparse instances */
+    protected int[] m_IndicesBuffer;
+
+    /**
+     * Creates a parser for a range of bytes.
+     *
+     * @param bytes	the bytes
+     * @param start	the start of the range
+     * @param end	the end of the range (exclusive)
+     * @param offset	the position of the bytes in the channel
+     */
+    public Parser(byte[] bytes, int start, int end, long offset) {
+      m_Bytes  = bytes;
+      m_Pos    = start;
+      m_End    = end;
+      m_Offset = offset;
+    }
+
+    /**
+     * Reads the next token, like StreamTokenizer.nextToken().
+     *
+     * @return		the type of the token
+     */
+    public int nextToken() {
+      m_Quoted      = false;
+      m_QuotedValue = null;
+      m_WordStart   = -1;
+      while (m_Pos < m_End) {
+	int c = m_Bytes[m_Pos] & 0xFF;
+	if (c == '\n') {
+	  m_Pos++;
+	  return m_Type = StreamTokenizer.TT_EOL;
+	}
+	if (c == '\r') {
+	  m_Pos++;
+	  if ((m_Pos < m_End) && (m_Bytes[m_Pos] == '\n'))
+	    m_Pos++;
+	  return m_Type = StreamTokenizer.TT_EOL;
+	}
+	if ((c <= ' ') || (c == ',')) {
+	  m_Pos++;
+	  continue;
+	}
+	if (c == '%') {
+	  while ((m_Pos < m_End) && (m_Bytes[m_Pos] != '\n') && (m_Bytes[m_Pos] != '\r'))
+	    m_Pos++;
+	  continue;
+	}
+	if ((c == '{') || (c == '}')) {
+	  m_Pos++;
+	  return m_Type = c;
+	}
+	if ((c == '"') || (c == '\'')) {
+	  readQuoted(c);
+	  return m_Type = c;
+	}
+	m_WordStart = m_Pos;
+	while ((m_Pos < m_End) && isWordByte(m_Bytes[m_Pos] & 0xFF))
+	  m_Pos++;
+	return m_Type = StreamTokenizer.TT_WORD;
+      }
+      return m_Type = StreamTokenizer.TT_EOF;
+    }
+
+    /**
+     * Returns whether a byte continues a word.
+     *
+     * @param c		the byte
+     * @return		true if part of a word
+     */
+    protected boolean isWordByte(int c) {
+      return (c > ' ') && (c != ',') && (c != '%') && (c != '"')
+	&& (c != '\'') && (c != '{') && (c != '}');
+    }
+
+    /**
+     * Reads a quoted value, which ends at the closing quote or the end of
+     * the line, and processes the escapes like StreamTokenizer.
+     *
+     * @param quote	the quote character
+     */
+    protected void readQuoted(int quote) {
+      int start = ++m_Pos;
+      boolean escapes = false;
+      while (m_Pos < m_End) {
+	int c = m_Bytes[m_Pos] & 0xFF;
+	if ((c == quote) || (c == '\n') || (c == '\r'))
+	  break;
+	if (c == '\\') {
+	  escapes = true;
+	  m_Pos++;
+	  if (m_Pos == m_End)
+	    break;
+	}
+	m_Pos++;
+      }
+      String raw = new String(m_Bytes, start, m_Pos - start, m_Charset);
+      if ((m_Pos < m_End) && ((m_Bytes[m_Pos] & 0xFF) == quote))
+	m_Pos++;
+      m_Quoted      = true;
+      m_QuotedValue = escapes ? unescape(raw) : raw;
+    }
+
+    /**
+     * Processes the escapes in a quoted value like StreamTokenizer.
+     *
+     * @param raw	the value as in the file
+     * @return		the value
+     */
+    protected String unescape(String raw) {
+      StringBuffer result = new StringBuffer(raw.length());
+      int n = raw.length();
+      int i = 0;
+      while (i < n) {
+	int c = raw.charAt(i++);
+	if (c == '\\') {
+	  c = (i < n) ? raw.charAt(i++) : -1;
+	  int first = c;
+	  if ((c >= '0') && (c <= '7')) {
+	    c = c - '0';
+	    int c2 = (i < n) ? raw.charAt(i) : -1;
+	    if (('0' <= c2) && (c2 <= '7')) {
+	      i++;
+	      c = (c << 3) + (c2 - '0');
+	      c2 = (i < n) ? raw.charAt(i) : -1;
+	      if (('0' <= c2) && (c2 <= '7') && (first <= '3')) {
+		i++;
+		c = (c << 3) + (c2 - '0');
+	      }
+	    }
+	  }
+	  else {
+	    switch (c) {
+	      case 'a': c = 0x7; break;
+	      case 'b': c = '\b'; break;
+	      case 'f': c = 0xC; break;
+	      case 'n': c = '\n'; break;
+	      case 'r': c = '\r'; break;
+	      case 't': c = '\t'; break;
+	      case 'v': c = 0xB; break;
+	    }
+	  }
+	}
+	result.append((char) c);
+      }
+      return result.toString();
+    }
+
+    /**
+     * Returns the String value of the current token (null for braces, line
+     * ends and the end of the data), like StreamTokenizer.sval.
+     *
+     * @return		the value
+     */
+    public String sval() {
+      if (m_Quoted)
+	return m_QuotedValue;
+      if (m_WordStart == -1)
+	return null;
+      return new String(m_Bytes, m_WordStart, m_Pos - m_WordStart, m_Charset);
+    }
+
+    /**
+     * Throws an exception with the given message, the current token and
+     * the line number.
+     *
+     * @param msg	the error message
+     * @throws IOException	always
+     */
+    protected void errorMessage(String msg) throws IOException {
+      String token;
+      if (m_Type == StreamTokenizer.TT_EOF)
+	token = "EOF";
+      else if (m_Type == StreamTokenizer.TT_EOL)
+	token = "EOL";
+      else if ((m_Type == StreamTokenizer.TT_WORD) || (m_Type == '?'))
+	token = sval();
+      else
+	token = "\'" + (char) m_Type + "\'";
+      throw new IOException(msg + ", read Token[" + token + "], line "
+	  + lineNumber(m_Offset + m_Pos));
+    }
+
+    /**
+     * Turns quoted tokens into words and an unquoted "?" into '?'.
+     */
+    protected void convertToken() {
+      if (m_Quoted)
+	m_Type = StreamTokenizer.TT_WORD;
+      else if ((m_Type == StreamTokenizer.TT_WORD)
+	  && (m_Pos - m_WordStart == 1) && (m_Bytes[m_WordStart] == '?'))
+	m_Type = '?';
+    }
+
+    /**
+     * Gets the next token, which may not be a line end or the end of the
+     * data (like ArffReader.getNextToken()).
+     *
+     * @throws IOException	if it is
+     */
+    protected void getNextToken() throws IOException {
+      nextToken();
+      if (m_Type == StreamTokenizer.TT_EOL)
+	errorMessage("premature end of line");
+      if (m_Type == StreamTokenizer.TT_EOF)
+	errorMessage("premature end of file");
+      convertToken();
+    }
+
+    /**
+     * Reads the next instance (like ArffReader.readInstance()).
+     *
+     * @return		the instance or null if the end of the data is reached
+     * @throws IOException	if the data can't be parsed
+     */
+    public Instance readInstance() throws IOException {
+      while (nextToken() == StreamTokenizer.TT_EOL) {};
+      if (m_Type == StreamTokenizer.TT_EOF)
+	return null;
+      convertToken();
+
+      if (m_Type == '{')
+	return readInstanceSparse();
+      else
+	return readInstanceFull();
+    }
+
+    /**
+     * Reads a sparse instance, after the opening brace.
+     *
+     * @return		the instance
+     * @throws IOException	if the data can't be parsed
+     */
+    protected Instance readInstanceSparse() throws IOException {
+      if (m_ValueBuffer == null) {
+	m_ValueBuffer   = new double[m_Structure.numAttributes()];
+	m_IndicesBuffer = new int[m_Structure.numAttributes()];
+      }
+      int numValues = 0, maxIndex = -1;
+
+      do {
+	// Get index
+	nextToken();
+	if (m_Type == StreamTokenizer.TT_EOL)
+	  errorMessage("premature end of line");
+	if (m_Type == StreamTokenizer.TT_EOF)
+	  errorMessage("premature end of file");
+	if (m_Type == '}')
+	  break;
+
+	// Is index valid?
+	try {
+	  m_IndicesBuffer[numValues] = parseIndex();
+	}
+	catch (NumberFormatException e) {
+	  errorMessage("index number expected");
+	}
+	if (m_IndicesBuffer[numValues] <= maxIndex)
+	  errorMessage("indices have to be ordered");
+	if ((m_IndicesBuffer[numValues] < 0) ||
+	    (m_IndicesBuffer[numValues] >= m_Structure.numAttributes()))
+	  errorMessage("index out of bounds");
+	maxIndex = m_IndicesBuffer[numValues];
+
+	// Get value
+	getNextToken();
+	if (m_Type == '?') {
+	  m_ValueBuffer[numValues] = Instance.missingValue();
+	}
+	else {
+	  if (m_Type != StreamTokenizer.TT_WORD)
+	    errorMessage("not a valid value");
+	  m_ValueBuffer[numValues] = value(m_IndicesBuffer[numValues]);
+	}
+	numValues++;
+      } while (true);
+
+      double weight = readWeight();
+
+      double[] tempValues = new double[numValues];
+      int[] tempIndices = new int[numValues];
+      System.arraycopy(m_ValueBuffer, 0, tempValues, 0, numValues);
+      System.arraycopy(m_IndicesBuffer, 0, tempIndices, 0, numValues);
+      Instance inst = new SparseInstance(weight, tempValues, tempIndices,
+	  m_Structure.numAttributes());
+      inst.setDataset(m_Structure);
+
+      return inst;
+    }
+
+    /**
+     * Reads a full instance, starting with the current token.
+     *
+     * @return		the instance
+     * @throws IOException	if the data can't be parsed
+     */
+    protected Instance readInstanceFull() throws IOException {
+      double[] instance = new double[m_Structure.numAttributes()];
+
+      for (int i = 0; i < instance.length; i++) {
+	if (i > 0)
+	  getNextToken();
+
+	if (m_Type == '?') {
+	  instance[i] = Instance.missingValue();
+	}
+	else {
+	  if (m_Type != StreamTokenizer.TT_WORD)
+	    errorMessage("not a valid value");
+	  instance[i] = value(i);
+	}
+      }
+
+      double weight = readWeight();
+
+      Instance inst = new Instance(weight, instance);
+      inst.setDataset(m_Structure);
+
+      return inst;
+    }
+
+    /**
+     * Reads the optional instance weight and the end of the line (like
+     * ArffReader.getInstanceWeight() and getLastToken()).
+     *
+     * @return		the weight
+     * @throws IOException	if the weight can't be parsed
+     */
+    protected double readWeight() throws IOException {
+      double weight = Double.NaN;
+      nextToken();
+      if (m_Type == '{') {
+	nextToken();
+	String weightS = sval();
+	boolean parsed = true;
+	try {
+	  weight = Double.parseDouble(weightS);
+	}
+	catch (NumberFormatException e) {
+	  // quietly ignore
+	  parsed = false;
+	}
+	if (parsed) {
+	  // see if we have the closing brace
+	  nextToken();
+	  if (m_Type != '}')
+	    errorMessage("Problem reading instance weight");
+	}
+	if (!Double.isNaN(weight)) {
+	  nextToken();
+	  if ((m_Type != StreamTokenizer.TT_EOL) && (m_Type != StreamTokenizer.TT_EOF))
+	    errorMessage("end of line expected");
+	}
+      }
+      return Double.isNaN(weight) ? 1.0 : weight;
+    }
+
+    /**
+     * Returns the internal value of the current token for an attribute.
+     *
+     * @param index	the attribute's index
+     * @return		the value
+     * @throws IOException	if the token isn't a valid value
+     */
+    protected double value(int index) throws IOException {
+      Attribute att = m_Structure.attribute(index);
+      double result = 0;
+      switch (att.type()) {
+	case Attribute.NOMINAL:
+	  int valIndex = nominalIndex(index);
+	  if (valIndex == -1)
+	    errorMessage("nominal value not declared in header");
+	  result = valIndex;
+	  break;
+	case Attribute.NUMERIC:
+	  try {
+	    result = parseNumber();
+	  }
+	  catch (NumberFormatException e) {
+	    errorMessage("number expected");
+	  }
+	  break;
+	case Attribute.STRING:
+	  result = att.addStringValue(sval());
+	  break;
+	case Attribute.DATE:
+	  try {
+	    result = att.parseDate(sval());
+	  }
+	  catch (ParseException e) {
+	    errorMessage("unparseable date: " + sval());
+	  }
+	  break;
+	case Attribute.RELATIONAL:
+	  try {
+	    ArffLoader.ArffReader arff = new ArffLoader.ArffReader(
+		new StringReader(sval()), att.relation(), 0);
+	    result = att.addRelation(arff.getData());
+	  }
+	  catch (Exception e) {
+	    throw new IOException(e.toString() + " of line "
+		+ lineNumber(m_Offset + m_Pos));
+	  }
+	  break;
+	default:
+	  errorMessage("unknown attribute type in column " + index);
+      }
+      return result;
+    }
+
+    /**
+     * Looks up the current token among the values of a nominal attribute.
+     *
+     * @param index	the attribute's index
+     * @return		the index of the value, -1 if not declared
+     */
+    protected int nominalIndex(int index) {
+      if (!m_Quoted) {
+	byte[][] keys = m_NominalKeys[index];
+	int slot = hash(m_Bytes, m_WordStart, m_Pos) & (keys.length - 1);
+	int length = m_Pos - m_WordStart;
+	while (keys[slot] != null) {
+	  byte[] key = keys[slot];
+	  if (key.length == length) {
+	    int i = 0;
+	    while ((i < length) && (key[i] == m_Bytes[m_WordStart + i]))
+	      i++;
+	    if (i == length)
+	      return m_NominalIndices[index][slot];
+	  }
+	  slot = (slot + 1) & (keys.length - 1);
+	}
+      }
+      return m_Structure.attribute(index).indexOfValue(sval());
+    }
+
+    /**
+     * Parses the current token as an index, like Integer.valueOf().
+     *
+     * @return		the index
+     * @throws NumberFormatException	if the token isn't an integer
+     */
+    protected int parseIndex() {
+      if (!m_Quoted && (m_WordStart != -1)
+	  && (m_Pos - m_WordStart > 0) && (m_Pos - m_WordStart < 10)) {
+	int result = 0;
+	int i;
+	for (i = m_WordStart; i < m_Pos; i++) {
+	  int d = m_Bytes[i] - '0';
+	  if ((d < 0) || (d > 9))
+	    break;
+	  result = 10 * result + d;
+	}
+	if (i == m_Pos)
+	  return result;
+      }
+      return Integer.valueOf(sval()).intValue();
+    }
+
+    /**
+     * Parses the current token as a number, like Double.valueOf(). Plain
+     * decimal numbers with up to 18 digits whose value is exactly the
+     * quotient or product of two doubles are parsed directly (giving the
+     * correctly rounded result), everything else via Double.valueOf().
+     *
+     * @return		the number
+     * @throws NumberFormatException	if the token isn't a number
+     */
+    protected double parseNumber() {
+      if (!m_Quoted) {
+	int i = m_WordStart;
+	boolean negative = false;
+	if ((i < m_Pos) && ((m_Bytes[i] == '-') || (m_Bytes[i] == '+'))) {
+	  negative = (m_Bytes[i] == '-');
+	  i++;
+	}
+	long mantissa = 0;
+	int digits = 0;
+	int exponent = 0;
+	boolean point = false;
+	for (; i < m_Pos; i++) {
+	  int d = m_Bytes[i] - '0';
+	  if ((d >= 0) && (d <= 9)) {
+	    mantissa = 10 * mantissa + d;
+	    digits++;
+	    if (point)
+	      exponent--;
+	  }
+	  else if ((m_Bytes[i] == '.') && !point) {
+	    point = true;
+	  }
+	  else {
+	    break;
+	  }
+	}
+	boolean valid = (digits > 0) && (digits <= 18);
+	if (valid && (i < m_Pos) && ((m_Bytes[i] == 'e') || (m_Bytes[i] == 'E'))) {
+	  i++;
+	  boolean negExp = false;
+	  if ((i < m_Pos) && ((m_Bytes[i] == '-') || (m_Bytes[i] == '+'))) {
+	    negExp = (m_Bytes[i] == '-');
+	    i++;
+	  }
+	  int exp = 0;
+	  int expDigits = 0;
+	  for (; (i < m_Pos) && (expDigits < 5); i++) {
+	    int d = m_Bytes[i] - '0';
+	    if ((d < 0) || (d > 9))
+	      break;
+	    exp = 10 * exp + d;
+	    expDigits++;
+	  }
+	  valid = (expDigits > 0);
+	  exponent += negExp ? -exp : exp;
+	}
+	if (valid && (i == m_Pos) && (mantissa <= (1L << 53))) {
+	  double result = Double.NaN;
+	  if (mantissa == 0)
+	    result = 0.0;
+	  else if ((exponent >= 0) && (exponent <= 22))
+	    result = mantissa * POWERS_OF_TEN[exponent];
+	  else if ((exponent < 0) && (exponent >= -22))
+	    result = mantissa / POWERS_OF_TEN[-exponent];
+	  if (!Double.isNaN(result))
+	    return negative ? -result : result;
+	}
+      }
+      return Double.valueOf(sval()).doubleValue();
+    }
+  }
+
+  /** the powers of ten that are exactly representable as doubles */
+  protected static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+  /**
+   * Returns the revision string.
+   *
+   * @return		the revision
+   */
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
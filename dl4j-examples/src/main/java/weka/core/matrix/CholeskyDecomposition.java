@@ -70,6 +70,18 @@ public class CholeskyDecomposition
     n = Arg.getRowDimension();
     L = new double[n][n];
     isspd = (Arg.getColumnDimension() == n);
+    // Blocked decomposition for large matrices.
+    if (isspd && ((long) n*n*n/6 >= MatrixKernels.MIN_KERNEL_WORK)) {
+      for (int j = 0; j < n; j++) {
+        for (int k = 0; k < j; k++) {
+          isspd = isspd & (A[k][j] == A[j][k]);
+        }
+      }
+      double[] l = new double[n*n];
+      isspd = MatrixKernels.cholesky(MatrixKernels.pack(A,n,n), l, n) & isspd;
+      MatrixKernels.unpack(l, L, n, n);
+      return;
+    }
     // Main loop.
     for (int j = 0; j < n; j++) {
       double[] Lrowj = L[j];
@@ -128,6 +140,14 @@ public class CholeskyDecomposition
     double[][] X = B.getArrayCopy();
     int nx = B.getColumnDimension();
 
+    // Blocked solve for large systems.
+    if ((long) n*n*nx >= MatrixKernels.MIN_KERNEL_WORK) {
+      double[] x = MatrixKernels.pack(X,n,nx);
+      MatrixKernels.solveCholesky(MatrixKernels.pack(L,n,n), x, n, nx);
+      MatrixKernels.unpack(x, X, n, nx);
+      return new Matrix(X,n,nx);
+    }
+
     // Solve L*Y = B;
     for (int k = 0; k < n; k++) {
       for (int j = 0; j < nx; j++) {
@@ -247,6 +247,14 @@ public class LUDecomposition
     Matrix Xmat = B.getMatrix(piv,0,nx-1);
     double[][] X = Xmat.getArray();
 
+    // Blocked solve for large systems.
+    if ((m == n) && ((long) n*n*nx >= MatrixKernels.MIN_KERNEL_WORK)) {
+      double[] x = MatrixKernels.pack(X,n,nx);
+      MatrixKernels.solveLU(MatrixKernels.pack(LU,n,n), x, n, nx);
+      MatrixKernels.unpack(x, X, n, nx);
+      return Xmat;
+    }
+
     // Solve L*Y = B(piv,:)
     for (int k = 0; k < n; k++) {
       for (int i = k+1; i < n; i++) {
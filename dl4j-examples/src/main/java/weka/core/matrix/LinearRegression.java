@@ -88,8 +88,8 @@ public class LinearRegression
     m_Coefficients = new double[nc];
     Matrix solution;
 
-    Matrix ss = aTa(a);
-    Matrix bb = aTy(a, y);
+    Matrix ss = a.transposeTimes(a);
+    Matrix bb = a.transposeTimes(y);
 
     boolean success = true;
 
@@ -112,55 +112,6 @@ public class LinearRegression
     } while (!success);
   }
   
-  /**
-   * Return aTa (a' * a)
-   */
-  private static Matrix aTa(Matrix a) {
-    int cols = a.getColumnDimension();
-    double[][] A = a.getArray();
-    Matrix x = new Matrix(cols, cols);
-    double[][] X = x.getArray();
-    double[] Acol = new double[a.getRowDimension()];
-    for (int col1 = 0; col1 < cols; col1++) {
-      // cache the column for faster access later
-      for (int row = 0; row < Acol.length; row++) {
-        Acol[row] = A[row][col1];
-      }
-      // reference the row for faster lookup
-      double[] Xrow = X[col1];
-      for (int row = 0; row < Acol.length; row++) {
-        double[] Arow = A[row];
-        for (int col2 = col1; col2 < Xrow.length; col2++) {
-          Xrow[col2] += Acol[row] * Arow[col2];
-        }
-      }
-      // result is symmetric
-      for (int col2 = col1 + 1; col2 < Xrow.length; col2++) {
-        X[col2][col1] = Xrow[col2];
-      }
-    }
-    return x;
-  }
-
-  /**
-   * Return aTy (a' * y)
-   */
-  private static Matrix aTy(Matrix a, Matrix y) {
-    double[][] A = a.getArray();
-    double[][] Y = y.getArray();
-    Matrix x = new Matrix(a.getColumnDimension(), 1);
-    double[][] X = x.getArray();
-    for (int row = 0; row < A.length; row++) {
-      // reference the rows for faster lookup
-      double[] Arow = A[row];
-      double[] Yrow = Y[row];
-      for (int col = 0; col < Arow.length; col++) {
-        X[col][0] += Arow[col] * Yrow[0];
-      }
-    }
-    return x;
-  }
-
   /**
    * returns the calculated coefficients
    *
@@ -860,6 +860,12 @@ public class Matrix
     }
     Matrix X = new Matrix(m,B.n);
     double[][] C = X.getArray();
+    if ((long) m*n*B.n >= MatrixKernels.MIN_KERNEL_WORK) {
+      double[] c = MatrixKernels.multiply(MatrixKernels.pack(A,m,n),
+          MatrixKernels.pack(B.A,n,B.n), m, n, B.n);
+      MatrixKernels.unpack(c, C, m, B.n);
+      return X;
+    }
     double[] Bcolj = new double[n];
     for (int j = 0; j < B.n; j++) {
       for (int k = 0; k < n; k++) {
@@ -877,6 +883,40 @@ public class Matrix
     return X;
   }
 
+  /** 
+   * Linear algebraic multiplication of the transpose, A' * B, without
+   * forming A'. If B is this matrix, only half of the symmetric result
+   * is computed.
+   * @param B    another matrix
+   * @return     Matrix product, A' * B
+   * @throws  IllegalArgumentException Matrix row dimensions must agree.
+   */
+  public Matrix transposeTimes(Matrix B) {
+    if (B.m != m) {
+      throw new IllegalArgumentException("Matrix row dimensions must agree.");
+    }
+    Matrix X = new Matrix(n,B.n);
+    double[][] C = X.getArray();
+    if ((long) m*n*B.n >= MatrixKernels.MIN_KERNEL_WORK) {
+      double[] a = MatrixKernels.pack(A,m,n);
+      double[] b = (B == this) ? a : MatrixKernels.pack(B.A,m,B.n);
+      MatrixKernels.unpack(MatrixKernels.transposeMultiply(a, b, m, n, B.n), C, n, B.n);
+      return X;
+    }
+    for (int k = 0; k < m; k++) {
+      double[] Arowk = A[k];
+      double[] Browk = B.A[k];
+      for (int i = 0; i < n; i++) {
+        double[] Crowi = C[i];
+        double s = Arowk[i];
+        for (int j = 0; j < B.n; j++) {
+          Crowi[j] += s*Browk[j];
+        }
+      }
+    }
+    return X;
+  }
+
   /** 
    * LU Decomposition
    * @return     LUDecomposition
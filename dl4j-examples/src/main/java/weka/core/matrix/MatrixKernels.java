@@ -0,0 +1,612 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+/*
+ * MatrixKernels.java
+ *
+ */
+
+package weka.core.matrix;
+
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Cache-blocked dense kernels on matrices stored as contiguous row-major
+ * arrays (element (i, j) of an m-by-n matrix at index i*n + j): matrix
+ * multiplication, transpose multiplication, Cholesky decomposition and
+ * triangular solves. Large problems are split into independent blocks of
+ * rows (or of right hand side columns) that are executed in the common
+ * fork-join pool.
+ * <p/>
+ * Every element is computed with exactly the same sequence of floating
+ * point operations as the plain JAMA loops in Matrix, CholeskyDecomposition
+ * and LUDecomposition, so the results do not depend on the blocking or on
+ * the number of threads. These classes use the kernels for large matrices,
+ * by packing their double[][] storage into row-major arrays.
+ *
+ * @version $Revision$
+ */
+public class MatrixKernels
+  implements RevisionHandler {
+
+  /** Number of columns of the left operand (rows of the right) in a block. */
+  protected static final int BLOCK_INNER = 128;
+
+  /** Number of result columns in a block. */
+  protected static final int BLOCK_COLUMNS = 256;
+
+  /** Number of columns handled in one panel of the Cholesky decomposition. */
+  protected static final int BLOCK_PANEL = 32;
+
+  /** Number of right hand side columns in a block of the triangular solves. */
+  protected static final int BLOCK_RHS = 64;
+
+  /** Approximate number of multiply-adds below which a task isn't split. */
+  protected static final long MIN_TASK_WORK = 1L << 17;
+
+  /**
+   * Problems with fewer multiply-adds than this are faster with the simple
+   * loops, packing the operands doesn't pay off.
+   */
+  public static final long MIN_KERNEL_WORK = 1L << 15;
+
+  /**
+   * Executes a range of rows (or columns) of a kernel.
+   */
+  protected static abstract class RangeTask
+    extends RecursiveAction {
+
+    /** for serialization */
+    private static final long serialVersionUID = 6244716924707581315L;
+
+    /** The first index of the range. */
+    protected final int m_From;
+
+    /** The index after the last one of the range. */
+    protected final int m_To;
+
+    /** The smallest range that is split further. */
+    protected final int m_Grain;
+
+    /**
+     * Initializes the task.
+     *
+     * @param from the first index
+     * @param to the index after the last one
+     * @param grain the smallest range that is split further
+     */
+    protected RangeTask(int from, int to, int grain) {
+      m_From = from;
+      m_To = to;
+      m_Grain = grain;
+    }
+
+    /**
+     * Creates a task for a part of the range.
+     *
+     * @param from the first index
+     * @param to the index after the last one
+     * @return the task
+     */
+    protected abstract RangeTask subTask(int from, int to);
+
+    /**
+     * Processes the given part of the range.
+     *
+     * @param from the first index
+     * @param to the index after the last one
+     */
+    protected abstract void process(int from, int to);
+
+    /**
+     * Splits the range in two halves until it is small enough.
+     */
+    protected void compute() {
+      if (m_To - m_From <= m_Grain) {
+        process(m_From, m_To);
+      } else {
+        int middle = (m_From + m_To) >>> 1;
+        invokeAll(subTask(m_From, middle), subTask(middle, m_To));
+      }
+    }
+  }
+
+  /**
+   * Runs the task in the current thread if there is too little work for
+   * parallelism, otherwise in the common fork-join pool.
+   *
+   * @param task the task
+   * @param work the approximate number of multiply-adds of the task
+   */
+  protected static void run(RangeTask task, long work) {
+    if ((work < 2 * MIN_TASK_WORK)
+        || (ForkJoinPool.getCommonPoolParallelism() < 2)) {
+      task.process(task.m_From, task.m_To);
+    } else {
+      ForkJoinPool.commonPool().invoke(task);
+    }
+  }
+
+  /**
+   * Returns the number of indices in a task, such that each task has about
+   * MIN_TASK_WORK multiply-adds.
+   *
+   * @param workPerIndex the multiply-adds for one index of the range
+   * @return the grain size, at least 1
+   */
+  protected static int grain(long workPerIndex) {
+    return (int) Math.max(1, MIN_TASK_WORK / Math.max(1, workPerIndex));
+  }
+
+  /**
+   * Copies the first m rows and n columns of a two-dimensional array into
+   * a row-major array.
+   *
+   * @param A the array
+   * @param m the number of rows
+   * @param n the number of columns
+   * @return the row-major array
+   */
+  public static double[] pack(double[][] A, int m, int n) {
+    double[] a = new double[m * n];
+    for (int i = 0; i < m; i++) {
+      System.arraycopy(A[i], 0, a, i * n, n);
+    }
+    return a;
+  }
+
+  /**
+   * Copies a row-major array into the first m rows and n columns of a
+   * two-dimensional array.
+   *
+   * @param a the row-major array
+   * @param A the array to fill
+   * @param m the number of rows
+   * @param n the number of columns
+   */
+  public static void unpack(double[] a, double[][] A, int m, int n) {
+    for (int i = 0; i < m; i++) {
+      System.arraycopy(a, i * n, A[i], 0, n);
+    }
+  }
+
+  /**
+   * Transposes an m-by-n matrix, in blocks.
+   *
+   * @param a the m-by-n matrix
+   * @param m the number of rows
+   * @param n the number of columns
+   * @return the n-by-m transpose
+   */
+  public static double[] transpose(double[] a, int m, int n) {
+    double[] t = new double[m * n];
+    for (int i0 = 0; i0 < m; i0 += BLOCK_PANEL) {
+      int i1 = Math.min(i0 + BLOCK_PANEL, m);
+      for (int j0 = 0; j0 < n; j0 += BLOCK_PANEL) {
+        int j1 = Math.min(j0 + BLOCK_PANEL, n);
+        for (int i = i0; i < i1; i++) {
+          for (int j = j0; j < j1; j++) {
+            t[j * m + i] = a[i * n + j];
+          }
+        }
+      }
+    }
+    return t;
+  }
+
+  /**
+   * Computes c = a*b. Every element of c is accumulated in increasing order
+   * of the inner index, starting from zero.
+   *
+   * @param a the m-by-n left operand
+   * @param b the n-by-p right operand
+   * @param m the number of rows of a
+   * @param n the number of columns of a
+   * @param p the number of columns of b
+   * @return the m-by-p product
+   */
+  public static double[] multiply(double[] a, double[] b, int m, int n, int p) {
+    double[] c = new double[m * p];
+    multiply(a, b, c, m, n, p, false);
+    return c;
+  }
+
+  /**
+   * Computes a'*b. For a'*a (b being the same array as a) only the upper
+   * triangle is computed and mirrored.
+   *
+   * @param a the n-by-m left operand
+   * @param b the n-by-p right operand
+   * @param n the number of rows of a and b
+   * @param m the number of columns of a
+   * @param p the number of columns of b
+   * @return the m-by-p product
+   */
+  public static double[] transposeMultiply(double[] a, double[] b, int n, int m, int p) {
+    boolean symmetric = (a == b);
+    double[] c = new double[m * p];
+    multiply(transpose(a, n, m), b, c, m, n, p, symmetric);
+    if (symmetric) {
+      for (int i = 0; i < m; i++) {
+        for (int j = i + 1; j < m; j++) {
+          c[j * m + i] = c[i * m + j];
+        }
+      }
+    }
+    return c;
+  }
+
+  /**
+   * Adds a*b to c, blocked over the inner index and the columns of c, in
+   * parallel over the rows of c.
+   *
+   * @param a the m-by-n left operand
+   * @param b the n-by-p right operand
+   * @param c the m-by-p result, initially zero
+   * @param m the number of rows of a
+   * @param n the number of columns of a
+   * @param p the number of columns of b
+   * @param upper whether to compute only the upper triangle of c
+   */
+  protected static void multiply(final double[] a, final double[] b, final double[] c,
+      final int m, final int n, final int p, final boolean upper) {
+
+    class MultiplyTask extends RangeTask {
+      private static final long serialVersionUID = -1290811569862364183L;
+      MultiplyTask(int from, int to) {
+        super(from, to, Math.max(4, grain((long) n * p)));
+      }
+      protected RangeTask subTask(int from, int to) {
+        return new MultiplyTask(from, to);
+      }
+      protected void process(int from, int to) {
+        multiplyRows(a, b, c, n, p, from, to, upper);
+      }
+    }
+
+    run(new MultiplyTask(0, m), (long) m * n * p);
+  }
+
+  /**
+   * Adds rows from to to-1 of a*b to c.
+   *
+   * @param a the left operand with n columns
+   * @param b the n-by-p right operand
+   * @param c the result with p columns
+   * @param n the number of columns of a
+   * @param p the number of columns of b
+   * @param from the first row
+   * @param to the row after the last one
+   * @param upper whether to compute only the upper triangle of c
+   */
+  protected static void multiplyRows(double[] a, double[] b, double[] c,
+      int n, int p, int from, int to, boolean upper) {
+
+    for (int k0 = 0; k0 < n; k0 += BLOCK_INNER) {
+      int k1 = Math.min(k0 + BLOCK_INNER, n);
+      for (int j0 = 0; j0 < p; j0 += BLOCK_COLUMNS) {
+        int j1 = Math.min(j0 + BLOCK_COLUMNS, p);
+        int i = from;
+
+        // four rows at a time, sharing the loads of b (in the upper triangle
+        // mode the rows below the first may get elements of the lower
+        // triangle too, they are overwritten by the mirroring)
+        for (; i + 3 < to; i += 4) {
+          int start = upper ? Math.max(j0, i) : j0;
+          if (start >= j1) {
+            continue;
+          }
+          int c0 = i * p, c1 = c0 + p, c2 = c1 + p, c3 = c2 + p;
+          int a0 = i * n, a1 = a0 + n, a2 = a1 + n, a3 = a2 + n;
+          for (int k = k0; k < k1; k++) {
+            double x0 = a[a0 + k], x1 = a[a1 + k], x2 = a[a2 + k], x3 = a[a3 + k];
+            int bk = k * p;
+            for (int j = start; j < j1; j++) {
+              double bkj = b[bk + j];
+              c[c0 + j] += x0 * bkj;
+              c[c1 + j] += x1 * bkj;
+              c[c2 + j] += x2 * bkj;
+              c[c3 + j] += x3 * bkj;
+            }
+          }
+        }
+
+        for (; i < to; i++) {
+          int start = upper ? Math.max(j0, i) : j0;
+          if (start >= j1) {
+            continue;
+          }
+          int ci = i * p;
+          int ai = i * n;
+          for (int k = k0; k < k1; k++) {
+            double aik = a[ai + k];
+            int bk = k * p;
+            for (int j = start; j < j1; j++) {
+              c[ci + j] += aik * b[bk + j];
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Computes the Cholesky factor of a symmetric matrix, as
+   * CholeskyDecomposition does: a left-looking decomposition in panels of
+   * columns, where the rows below a panel are computed in parallel. Only the
+   * lower triangle of a is used. If the matrix isn't positive definite, the
+   * partial decomposition of CholeskyDecomposition is returned.
+   *
+   * @param a the n-by-n matrix
+   * @param l the n-by-n array for the lower triangular factor, initially zero
+   * @param n the dimension
+   * @return true if all pivots were positive
+   */
+  public static boolean cholesky(final double[] a, final double[] l, final int n) {
+    boolean positive = true;
+
+    for (int p0 = 0; p0 < n; p0 += BLOCK_PANEL) {
+      final int p1 = Math.min(p0 + BLOCK_PANEL, n);
+
+      // the diagonal block
+      for (int j = p0; j < p1; j++) {
+        int lj = j * n;
+        choleskyRow(a, l, n, j, p0, j);
+        double d = 0.0;
+        for (int k = 0; k < j; k++) {
+          double s = l[lj + k];
+          d = d + s * s;
+        }
+        d = a[lj + j] - d;
+        positive = positive & (d > 0.0);
+        l[lj + j] = Math.sqrt(Math.max(d, 0.0));
+      }
+
+      // the rows below the diagonal block
+      if (p1 < n) {
+        final int from = p0;
+
+        class PanelTask extends RangeTask {
+          private static final long serialVersionUID = 4718052311652790651L;
+          PanelTask(int from, int to, int grain) {
+            super(from, to, grain);
+          }
+          protected RangeTask subTask(int from, int to) {
+            return new PanelTask(from, to, m_Grain);
+          }
+          protected void process(int start, int end) {
+            for (int j = start; j < end; j++) {
+              choleskyRow(a, l, n, j, from, p1);
+            }
+          }
+        }
+
+        long work = (long) (p1 - p0) * p1;
+        run(new PanelTask(p1, n, grain(work)), work * (n - p1));
+      }
+    }
+
+    return positive;
+  }
+
+  /**
+   * Computes the elements from to to-1 of row j of the Cholesky factor.
+   * The earlier elements of the row and the rows of the columns must have
+   * been computed.
+   *
+   * @param a the matrix
+   * @param l the factor
+   * @param n the dimension
+   * @param j the row
+   * @param from the first column
+   * @param to the column after the last one
+   */
+  protected static void choleskyRow(double[] a, double[] l, int n, int j, int from, int to) {
+    int lj = j * n;
+    for (int k = from; k < to; k++) {
+      int lk = k * n;
+      double s = 0.0;
+      for (int i = 0; i < k; i++) {
+        s += l[lk + i] * l[lj + i];
+      }
+      l[lj + k] = (a[lj + k] - s) / l[lk + k];
+    }
+  }
+
+  /**
+   * Solves l*y = x and then l'*z = y, overwriting x with z, as
+   * CholeskyDecomposition.solve() does. The columns of x are solved in
+   * parallel blocks.
+   *
+   * @param l the n-by-n lower triangular factor
+   * @param x the n-by-nx right hand side
+   * @param n the dimension
+   * @param nx the number of right hand sides
+   */
+  public static void solveCholesky(final double[] l, final double[] x, final int n, final int nx) {
+
+    class SolveTask extends RangeTask {
+      private static final long serialVersionUID = -4377123540553128412L;
+      SolveTask(int from, int to) {
+        super(from, to, Math.max(BLOCK_RHS, grain((long) n * n)));
+      }
+      protected RangeTask subTask(int from, int to) {
+        return new SolveTask(from, to);
+      }
+      protected void process(int from, int to) {
+        for (int j0 = from; j0 < to; j0 += BLOCK_RHS) {
+          int j1 = Math.min(j0 + BLOCK_RHS, to);
+          solveLower(l, x, n, nx, j0, j1);
+          solveLowerTranspose(l, x, n, nx, j0, j1);
+        }
+      }
+    }
+
+    run(new SolveTask(0, nx), (long) n * n * nx);
+  }
+
+  /**
+   * Solves l*y = x for the columns from to to-1 of x, in place.
+   *
+   * @param l the n-by-n lower triangular matrix
+   * @param x the n-by-nx right hand side
+   * @param n the dimension
+   * @param nx the number of columns of x
+   * @param from the first column
+   * @param to the column after the last one
+   */
+  protected static void solveLower(double[] l, double[] x, int n, int nx, int from, int to) {
+    for (int k = 0; k < n; k++) {
+      int lk = k * n;
+      int xk = k * nx;
+      for (int i = 0; i < k; i++) {
+        double lki = l[lk + i];
+        int xi = i * nx;
+        for (int j = from; j < to; j++) {
+          x[xk + j] -= x[xi + j] * lki;
+        }
+      }
+      double lkk = l[lk + k];
+      for (int j = from; j < to; j++) {
+        x[xk + j] /= lkk;
+      }
+    }
+  }
+
+  /**
+   * Solves l'*z = y for the columns from to to-1 of y, in place.
+   *
+   * @param l the n-by-n lower triangular matrix
+   * @param x the n-by-nx right hand side
+   * @param n the dimension
+   * @param nx the number of columns of x
+   * @param from the first column
+   * @param to the column after the last one
+   */
+  protected static void solveLowerTranspose(double[] l, double[] x, int n, int nx, int from, int to) {
+    for (int k = n - 1; k >= 0; k--) {
+      int xk = k * nx;
+      for (int i = k + 1; i < n; i++) {
+        double lik = l[i * n + k];
+        int xi = i * nx;
+        for (int j = from; j < to; j++) {
+          x[xk + j] -= x[xi + j] * lik;
+        }
+      }
+      double lkk = l[k * n + k];
+      for (int j = from; j < to; j++) {
+        x[xk + j] /= lkk;
+      }
+    }
+  }
+
+  /**
+   * Solves l*y = x and then u*z = y, overwriting x with z, with l and u
+   * stored in one array as LUDecomposition does (l has a unit diagonal).
+   * The columns of x are solved in parallel blocks.
+   *
+   * @param lu the n-by-n LU factors
+   * @param x the n-by-nx (pivoted) right hand side
+   * @param n the dimension
+   * @param nx the number of right hand sides
+   */
+  public static void solveLU(final double[] lu, final double[] x, final int n, final int nx) {
+
+    class SolveTask extends RangeTask {
+      private static final long serialVersionUID = 8313750160213862301L;
+      SolveTask(int from, int to) {
+        super(from, to, Math.max(BLOCK_RHS, grain((long) n * n)));
+      }
+      protected RangeTask subTask(int from, int to) {
+        return new SolveTask(from, to);
+      }
+      protected void process(int from, int to) {
+        for (int j0 = from; j0 < to; j0 += BLOCK_RHS) {
+          int j1 = Math.min(j0 + BLOCK_RHS, to);
+          solveUnitLower(lu, x, n, nx, j0, j1);
+          solveUpper(lu, x, n, nx, j0, j1);
+        }
+      }
+    }
+
+    run(new SolveTask(0, nx), (long) n * n * nx);
+  }
+
+  /**
+   * Solves l*y = x for the columns from to to-1 of x, in place, where l is
+   * the strict lower triangle of lu plus a unit diagonal.
+   *
+   * @param lu the n-by-n LU factors
+   * @param x the n-by-nx right hand side
+   * @param n the dimension
+   * @param nx the number of columns of x
+   * @param from the first column
+   * @param to the column after the last one
+   */
+  protected static void solveUnitLower(double[] lu, double[] x, int n, int nx, int from, int to) {
+    for (int k = 0; k < n; k++) {
+      int xk = k * nx;
+      for (int i = k + 1; i < n; i++) {
+        double luik = lu[i * n + k];
+        int xi = i * nx;
+        for (int j = from; j < to; j++) {
+          x[xi + j] -= x[xk + j] * luik;
+        }
+      }
+    }
+  }
+
+  /**
+   * Solves u*z = y for the columns from to to-1 of y, in place, where u is
+   * the upper triangle of lu.
+   *
+   * @param lu the n-by-n LU factors
+   * @param x the n-by-nx right hand side
+   * @param n the dimension
+   * @param nx the number of columns of x
+   * @param from the first column
+   * @param to the column after the last one
+   */
+  protected static void solveUpper(double[] lu, double[] x, int n, int nx, int from, int to) {
+    for (int k = n - 1; k >= 0; k--) {
+      int xk = k * nx;
+      double lukk = lu[k * n + k];
+      for (int j = from; j < to; j++) {
+        x[xk + j] /= lukk;
+      }
+      for (int i = 0; i < k; i++) {
+        double luik = lu[i * n + k];
+        int xi = i * nx;
+        for (int j = from; j < to; j++) {
+          x[xi + j] -= x[xk + j] * luik;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return		the revision
+   */
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+/*
+ * ApproximatePerformanceStats.java
+ */
+
+package weka.core.neighboursearch;
+
+import weka.core.RevisionUtils;
+
+import java.util.Enumeration;
+import java.util.Vector;
+
+/**
+ * The class that measures the performance of an approximate nearest
+ * neighbour search algorithm. In addition to the points and coordinates
+ * looked at and the time taken, it keeps the recall (the fraction of the
+ * true k nearest neighbours that were found) of the queries that were
+ * checked against an exact search.
+ *
+ * @version $Revision$
+ */
+public class ApproximatePerformanceStats
+  extends PerformanceStats {
+
+  /** for serialization. */
+  private static final long serialVersionUID = 3471283525178102547L;
+
+  /** The number of queries whose recall was determined. */
+  protected int m_NumRecallQueries;
+
+  /** The sum of the recalls. */
+  protected double m_SumRecall;
+
+  /** The squared sum of the recalls. */
+  protected double m_SumSqRecall;
+
+  /** The minimum and maximum recall. */
+  protected double m_MinRecall, m_MaxRecall;
+
+  /**
+   * Default constructor.
+   */
+  public ApproximatePerformanceStats() {
+    reset();
+  }
+
+  /**
+   * Resets all internal fields/counters.
+   */
+  public void reset() {
+    super.reset();
+    m_NumRecallQueries = 0;
+    m_SumRecall = m_SumSqRecall = 0;
+    m_MinRecall = 1;
+    m_MaxRecall = 0;
+  }
+
+  /**
+   * Records the recall of a query.
+   *
+   * @param recall The fraction of the true nearest neighbours found.
+   */
+  public void recallQuery(double recall) {
+    m_NumRecallQueries++;
+    m_SumRecall += recall;  m_SumSqRecall += recall*recall;
+    if (recall < m_MinRecall) m_MinRecall = recall;
+    if (recall > m_MaxRecall) m_MaxRecall = recall;
+  }
+
+  /**
+   * Adds the statistics of the queries counted by the given object
+   * (e.g., by another thread answering a part of a batch of queries).
+   *
+   * @param other The statistics to add.
+   */
+  public void add(PerformanceStats other) {
+    super.add(other);
+    if (!(other instanceof ApproximatePerformanceStats))
+      return;
+    ApproximatePerformanceStats stats = (ApproximatePerformanceStats) other;
+    m_NumRecallQueries += stats.m_NumRecallQueries;
+    m_SumRecall += stats.m_SumRecall;  m_SumSqRecall += stats.m_SumSqRecall;
+    if (stats.m_MinRecall < m_MinRecall) m_MinRecall = stats.m_MinRecall;
+    if (stats.m_MaxRecall > m_MaxRecall) m_MaxRecall = stats.m_MaxRecall;
+  }
+
+  /**
+   * Returns the number of queries whose recall was determined.
+   *
+   * @return The number of queries.
+   */
+  public int getNumRecallQueries() {
+    return m_NumRecallQueries;
+  }
+
+  /**
+   * Returns the mean recall.
+   *
+   * @return The mean recall.
+   */
+  public double getMeanRecall() {
+    return m_SumRecall/(double)m_NumRecallQueries;
+  }
+
+  /**
+   * Returns the standard deviation of the recall.
+   *
+   * @return The standard deviation.
+   */
+  public double getStdDevRecall() {
+    return Math.sqrt((m_SumSqRecall - (m_SumRecall*m_SumRecall)/(double)m_NumRecallQueries)/(m_NumRecallQueries-1));
+  }
+
+  /**
+   * Returns the minimum recall.
+   *
+   * @return The minimum.
+   */
+  public double getMinRecall() {
+    return m_MinRecall;
+  }
+
+  /**
+   * Returns the maximum recall.
+   *
+   * @return The maximum.
+   */
+  public double getMaxRecall() {
+    return m_MaxRecall;
+  }
+
+  /**
+   * Returns an enumeration of the additional measure names.
+   *
+   * @return An enumeration of the measure names.
+   */
+  public Enumeration enumerateMeasures() {
+    Vector newVector = new Vector();
+    Enumeration en = super.enumerateMeasures();
+    while(en.hasMoreElements())
+      newVector.addElement(en.nextElement());
+
+    newVector.addElement("measureNum_recall_queries");
+    newVector.addElement("measureMean_recall");
+    newVector.addElement("measureStdDev_recall");
+    newVector.addElement("measureMin_recall");
+    newVector.addElement("measureMax_recall");
+
+    return newVector.elements();
+  }
+
+  /**
+   * Returns the value of the named measure.
+   *
+   * @param additionalMeasureName The name of the measure to query for
+   * its value.
+   * @return The value of the named measure.
+   * @throws IllegalArgumentException If the named measure is not
+   * supported.
+   */
+  public double getMeasure(String additionalMeasureName) throws IllegalArgumentException {
+    if (additionalMeasureName.compareToIgnoreCase("measureNum_recall_queries") == 0) {
+      return (double) getNumRecallQueries();
+    } else if (additionalMeasureName.compareToIgnoreCase("measureMean_recall") == 0) {
+      return getMeanRecall();
+    } else if (additionalMeasureName.compareToIgnoreCase("measureStdDev_recall") == 0) {
+      return getStdDevRecall();
+    } else if (additionalMeasureName.compareToIgnoreCase("measureMin_recall") == 0) {
+      return getMinRecall();
+    } else if (additionalMeasureName.compareToIgnoreCase("measureMax_recall") == 0) {
+      return getMaxRecall();
+    } else {
+      return super.getMeasure(additionalMeasureName);
+    }
+  }
+
+  /**
+   * Returns a string representation of the statistics.
+   *
+   * @return The statistics as string.
+   */
+  public String getStats() {
+    StringBuffer buf = new StringBuffer(super.getStats());
+
+    buf.append("Recall:    "+getMinRecall()+", "+getMaxRecall()+","+m_SumRecall+
+	       ","+getMeanRecall()+", "+getStdDevRecall()+"\n");
+
+    return buf.toString();
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return		the revision
+   */
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -0,0 +1,1079 @@
+/*
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 2 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program; if not, write to the Free Software
+ *    Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+/*
+ * HNSW.java
+ */
+
+package weka.core.neighboursearch;
+
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Option;
+import weka.core.RevisionUtils;
+import weka.core.TechnicalInformation;
+import weka.core.TechnicalInformationHandler;
+import weka.core.Utils;
+import weka.core.TechnicalInformation.Field;
+import weka.core.TechnicalInformation.Type;
+
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Random;
+import java.util.Vector;
+
+/**
+ <!-- globalinfo-start -->
+ * Class implementing approximate nearest neighbour search with a hierarchical navigable small world graph (HNSW). Each instance is a node that is linked to close instances on its level and all levels below, where the levels are drawn from an exponentially decaying distribution. A query descends greedily from the top level and then does a best-first search on the bottom level. Works with any distance function and does not degrade to a linear scan for high-dimensional data, but may miss some of the true nearest neighbours.<br/>
+ * <br/>
+ * For more information see:<br/>
+ * <br/>
+ * Yu. A. Malkov, D. A. Yashunin: Efficient and robust approximate nearest neighbor search using Hierarchical Navigable Small World graphs. CoRR. abs/1603.09320, 2016.
+ * <p/>
+ <!-- globalinfo-end -->
+ *
+ <!-- technical-bibtex-start -->
+ * BibTeX:
+ * <pre>
+ * &#64;article{Malkov2016,
+ *    author = {Yu. A. Malkov and D. A. Yashunin},
+ *    journal = {CoRR},
+ *    title = {Efficient and robust approximate nearest neighbor search using Hierarchical Navigable Small World graphs},
+ *    volume = {abs/1603.09320},
+ *    year = {2016},
+ *    HTTP = {http://arxiv.org/abs/1603.09320}
+ * }
+ * </pre>
+ * <p/>
+ <!-- technical-bibtex-end -->
+ *
+ <!-- options-start -->
+ * Valid options are: <p/>
+ *
+ * <pre> -M &lt;num&gt;
+ *  The maximum number of links of a node per level
+ *  (twice that on the bottom level, default 16).</pre>
+ *
+ * <pre> -C &lt;num&gt;
+ *  The size of the candidate list while building the graph
+ *  (default 100).</pre>
+ *
+ * <pre> -E &lt;num&gt;
+ *  The size of the candidate list while searching, at least k
+ *  (default 50).</pre>
+ *
+ * <pre> -S &lt;num&gt;
+ *  The seed for the levels of the nodes
+ *  (default 1).</pre>
+ *
+ * <pre> -R &lt;num&gt;
+ *  Check every n-th query against a linear scan to measure the
+ *  recall, if performance statistics are calculated
+ *  (default 0 - i.e. never).</pre>
+ *
+ <!-- options-end -->
+ *
+ * @version $Revision$
+ */
+public class HNSW
+  extends NearestNeighbourSearch
+  implements TechnicalInformationHandler {
+
+  /** for serialization. */
+  private static final long serialVersionUID = -5378260853520271931L;
+
+  /** The maximum number of links of a node per level. */
+  protected int m_MaxLinks = 16;
+
+  /** The size of the candidate list while building the graph. */
+  protected int m_EfConstruction = 100;
+
+  /** The size of the candidate list while searching. */
+  protected int m_EfSearch = 50;
+
+  /** The seed for the levels of the nodes. */
+  protected int m_Seed = 1;
+
+  /** Every how many queries the recall is measured (0 = never). */
+  protected int m_RecallSampleRate = 0;
+
+  /** The random number generator for the levels. */
+  protected Random m_Random;
+
+  /** The number of nodes in the graph. */
+  protected int m_NumNodes;
+
+  /** The links of each node, by node and level. */
+  protected int[][][] m_Links;
+
+  /** The node the searches start at (on the top level). */
+  protected int m_EntryPoint = -1;
+
+  /** The top level of the graph. */
+  protected int m_MaxLevel = -1;
+
+  /** Array holding the distances of the nearest neighbours of the last query. */
+  protected double[] m_Distances;
+
+  /** The number of queries answered, for measuring the recall. */
+  protected int m_NumQueries;
+
+  /** The marks of the nodes visited by the current search. */
+  protected transient int[] m_Visited;
+
+  /** The mark of the current search. */
+  protected transient int m_VisitedMark;
+
+  /**
+   * A heap of nodes and their distances, with the closest (or the furthest)
+   * node on top.
+   */
+  protected static class NodeHeap {
+
+    /** The nodes. */
+    protected int[] m_Nodes = new int[16];
+
+    /** The distances of the nodes. */
+    protected double[] m_Dists = new double[16];
+
+    /** The number of nodes. */
+    protected int m_Size;
+
+    /** Whether the furthest node is on top. */
+    protected boolean m_Max;
+
+    /**
+     * Creates an empty heap.
+     *
+     * @param max	whether the furthest node is on top
+     */
+    public NodeHeap(boolean max) {
+      m_Max = max;
+    }
+
+    /**
+     * Returns whether a should be above b.
+     *
+     * @param a		the distance of a node
+     * @param b		the distance of another node
+     * @return		true if a should be closer to the top
+     */
+    protected boolean above(double a, double b) {
+      return m_Max ? (a > b) : (a < b);
+    }
+
+    /**
+     * Adds a node.
+     *
+     * @param node	the node
+     * @param dist	its distance
+     */
+    public void add(int node, double dist) {
+      if (m_Size == m_Nodes.length) {
+        int[] nodes = new int[2 * m_Size];
+        double[] dists = new double[2 * m_Size];
+        System.arraycopy(m_Nodes, 0, nodes, 0, m_Size);
+        System.arraycopy(m_Dists, 0, dists, 0, m_Size);
+        m_Nodes = nodes;
+        m_Dists = dists;
+      }
+      int i = m_Size++;
+      while ((i > 0) && above(dist, m_Dists[(i - 1) / 2])) {
+        m_Nodes[i] = m_Nodes[(i - 1) / 2];
+        m_Dists[i] = m_Dists[(i - 1) / 2];
+        i = (i - 1) / 2;
+      }
+      m_Nodes[i] = node;
+      m_Dists[i] = dist;
+    }
+
+    /**
+     * Removes the top node.
+     */
+    public void remove() {
+      m_Size--;
+      int node = m_Nodes[m_Size];
+      double dist = m_Dists[m_Size];
+      int i = 0;
+      while (2 * i + 1 < m_Size) {
+        int child = 2 * i + 1;
+        if ((child + 1 < m_Size) && above(m_Dists[child + 1], m_Dists[child]))
+          child++;
+        if (!above(m_Dists[child], dist))
+          break;
+        m_Nodes[i] = m_Nodes[child];
+        m_Dists[i] = m_Dists[child];
+        i = child;
+      }
+      m_Nodes[i] = node;
+      m_Dists[i] = dist;
+    }
+
+    /**
+     * Returns the top node.
+     *
+     * @return		the node
+     */
+    public int topNode() {
+      return m_Nodes[0];
+    }
+
+    /**
+     * Returns the distance of the top node.
+     *
+     * @return		the distance
+     */
+    public double topDist() {
+      return m_Dists[0];
+    }
+
+    /**
+     * Returns the number of nodes.
+     *
+     * @return		the size
+     */
+    public int size() {
+      return m_Size;
+    }
+  }
+
+  /**
+   * Constructor. Needs setInstances(Instances)
+   * to be called before the class is usable.
+   */
+  public HNSW() {
+    super();
+  }
+
+  /**
+   * Returns a string describing this nearest neighbour search algorithm.
+   *
+   * @return 		a description of the algorithm for displaying in the
+   * 			explorer/experimenter gui
+   */
+  public String globalInfo() {
+    return
+        "Class implementing approximate nearest neighbour search with a "
+      + "hierarchical navigable small world graph (HNSW). Each instance is a "
+      + "node that is linked to close instances on its level and all levels "
+      + "below, where the levels are drawn from an exponentially decaying "
+      + "distribution. A query descends greedily from the top level and then "
+      + "does a best-first search on the bottom level. Works with any distance "
+      + "function and does not degrade to a linear scan for high-dimensional "
+      + "data, but may miss some of the true nearest neighbours.\n\n"
+      + "For more information see:\n\n"
+      + getTechnicalInformation().toString();
+  }
+
+  /**
+   * Returns an instance of a TechnicalInformation object, containing detailed
+   * information about the technical background of this class, e.g., paper
+   * reference or book this class is based on.
+   *
+   * @return 		the technical information about this class
+   */
+  public TechnicalInformation getTechnicalInformation() {
+    TechnicalInformation result;
+
+    result = new TechnicalInformation(Type.ARTICLE);
+    result.setValue(Field.AUTHOR, "Yu. A. Malkov and D. A. Yashunin");
+    result.setValue(Field.TITLE, "Efficient and robust approximate nearest neighbor search using Hierarchical Navigable Small World graphs");
+    result.setValue(Field.JOURNAL, "CoRR");
+    result.setValue(Field.VOLUME, "abs/1603.09320");
+    result.setValue(Field.YEAR, "2016");
+    result.setValue(Field.HTTP, "http://arxiv.org/abs/1603.09320");
+
+    return result;
+  }
+
+  /**
+   * Returns an enumeration describing the available options.
+   *
+   * @return 		an enumeration of all the available options.
+   */
+  public Enumeration listOptions() {
+    Vector newVector = new Vector();
+
+    newVector.addElement(new Option(
+	"\tThe maximum number of links of a node per level\n"
+	+ "\t(twice that on the bottom level, default 16).",
+	"M", 1, "-M <num>"));
+
+    newVector.addElement(new Option(
+	"\tThe size of the candidate list while building the graph\n"
+	+ "\t(default 100).",
+	"C", 1, "-C <num>"));
+
+    newVector.addElement(new Option(
+	"\tThe size of the candidate list while searching, at least k\n"
+	+ "\t(default 50).",
+	"E", 1, "-E <num>"));
+
+    newVector.addElement(new Option(
+	"\tThe seed for the levels of the nodes\n"
+	+ "\t(default 1).",
+	"S", 1, "-S <num>"));
+
+    newVector.addElement(new Option(
+	"\tCheck every n-th query against a linear scan to measure the\n"
+	+ "\trecall, if performance statistics are calculated\n"
+	+ "\t(default 0 - i.e. never).",
+	"R", 1, "-R <num>"));
+
+    return newVector.elements();
+  }
+
+  /**
+   * Parses a given list of options. <p/>
+   *
+   <!-- options-start -->
+   * Valid options are: <p/>
+   *
+   * <pre> -M &lt;num&gt;
+   *  The maximum number of links of a node per level
+   *  (twice that on the bottom level, default 16).</pre>
+   *
+   * <pre> -C &lt;num&gt;
+   *  The size of the candidate list while building the graph
+   *  (default 100).</pre>
+   *
+   * <pre> -E &lt;num&gt;
+   *  The size of the candidate list while searching, at least k
+   *  (default 50).</pre>
+   *
+   * <pre> -S &lt;num&gt;
+   *  The seed for the levels of the nodes
+   *  (default 1).</pre>
+   *
+   * <pre> -R &lt;num&gt;
+   *  Check every n-th query against a linear scan to measure the
+   *  recall, if performance statistics are calculated
+   *  (default 0 - i.e. never).</pre>
+   *
+   <!-- options-end -->
+   *
+   * @param options 	the list of options as an array of strings
+   * @throws Exception	if an option is not supported
+   */
+  public void setOptions(String[] options) throws Exception {
+    super.setOptions(options);
+
+    String optionString = Utils.getOption('M', options);
+    if (optionString.length() != 0)
+      setMaxLinks(Integer.parseInt(optionString));
+    else
+      setMaxLinks(16);
+
+    optionString = Utils.getOption('C', options);
+    if (optionString.length() != 0)
+      setEfConstruction(Integer.parseInt(optionString));
+    else
+      setEfConstruction(100);
+
+    optionString = Utils.getOption('E', options);
+    if (optionString.length() != 0)
+      setEfSearch(Integer.parseInt(optionString));
+    else
+      setEfSearch(50);
+
+    optionString = Utils.getOption('S', options);
+    if (optionString.length() != 0)
+      setSeed(Integer.parseInt(optionString));
+    else
+      setSeed(1);
+
+    optionString = Utils.getOption('R', options);
+    if (optionString.length() != 0)
+      setRecallSampleRate(Integer.parseInt(optionString));
+    else
+      setRecallSampleRate(0);
+  }
+
+  /**
+   * Gets the current settings.
+   *
+   * @return 		an array of strings suitable for passing to setOptions
+   */
+  public String[] getOptions() {
+    Vector<String>	result;
+    String[]		options;
+    int			i;
+
+    result = new Vector<String>();
+
+    options = super.getOptions();
+    for (i = 0; i < options.length; i++)
+      result.add(options[i]);
+
+    result.add("-M");
+    result.add("" + getMaxLinks());
+
+    result.add("-C");
+    result.add("" + getEfConstruction());
+
+    result.add("-E");
+    result.add("" + getEfSearch());
+
+    result.add("-S");
+    result.add("" + getSeed());
+
+    result.add("-R");
+    result.add("" + getRecallSampleRate());
+
+    return result.toArray(new String[result.size()]);
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return 		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String maxLinksTipText() {
+    return "The maximum number of links of a node per level (twice that on "
+      + "the bottom level); more links give a higher recall but a larger "
+      + "graph.";
+  }
+
+  /**
+   * Gets the maximum number of links of a node per level.
+   *
+   * @return		the maximum number of links
+   */
+  public int getMaxLinks() {
+    return m_MaxLinks;
+  }
+
+  /**
+   * Sets the maximum number of links of a node per level.
+   *
+   * @param value	the maximum number of links (>= 2)
+   */
+  public void setMaxLinks(int value) {
+    if (value >= 2)
+      m_MaxLinks = value;
+    else
+      System.err.println("Maximum number of links has to be at least 2!");
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return 		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String efConstructionTipText() {
+    return "The size of the candidate list while building the graph; larger "
+      + "values give a better graph but take longer to build.";
+  }
+
+  /**
+   * Gets the size of the candidate list while building the graph.
+   *
+   * @return		the size
+   */
+  public int getEfConstruction() {
+    return m_EfConstruction;
+  }
+
+  /**
+   * Sets the size of the candidate list while building the graph.
+   *
+   * @param value	the size (>= 1)
+   */
+  public void setEfConstruction(int value) {
+    if (value >= 1)
+      m_EfConstruction = value;
+    else
+      System.err.println("Size of the candidate list has to be at least 1!");
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return 		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String efSearchTipText() {
+    return "The size of the candidate list while searching (at least k is "
+      + "used); larger values give a higher recall but slower queries.";
+  }
+
+  /**
+   * Gets the size of the candidate list while searching.
+   *
+   * @return		the size
+   */
+  public int getEfSearch() {
+    return m_EfSearch;
+  }
+
+  /**
+   * Sets the size of the candidate list while searching.
+   *
+   * @param value	the size (>= 1)
+   */
+  public void setEfSearch(int value) {
+    if (value >= 1)
+      m_EfSearch = value;
+    else
+      System.err.println("Size of the candidate list has to be at least 1!");
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return 		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String seedTipText() {
+    return "The seed for drawing the levels of the nodes.";
+  }
+
+  /**
+   * Gets the seed for the levels of the nodes.
+   *
+   * @return		the seed
+   */
+  public int getSeed() {
+    return m_Seed;
+  }
+
+  /**
+   * Sets the seed for the levels of the nodes.
+   *
+   * @param value	the seed
+   */
+  public void setSeed(int value) {
+    m_Seed = value;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return 		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String recallSampleRateTipText() {
+    return "If performance statistics are calculated, every n-th query is "
+      + "also answered by a linear scan to measure the recall (0 = never).";
+  }
+
+  /**
+   * Gets every how many queries the recall is measured.
+   *
+   * @return		the rate (0 = never)
+   */
+  public int getRecallSampleRate() {
+    return m_RecallSampleRate;
+  }
+
+  /**
+   * Sets every how many queries the recall is measured.
+   *
+   * @param value	the rate (0 = never)
+   */
+  public void setRecallSampleRate(int value) {
+    if (value >= 0)
+      m_RecallSampleRate = value;
+    else
+      System.err.println("Recall sample rate has to be at least 0!");
+  }
+
+  /**
+   * Sets whether to calculate the performance statistics or not.
+   *
+   * @param measurePerformance	if true then the performance is calculated
+   */
+  public void setMeasurePerformance(boolean measurePerformance) {
+    m_MeasurePerformance = measurePerformance;
+    if (m_MeasurePerformance) {
+      if (m_Stats == null)
+        m_Stats = new ApproximatePerformanceStats();
+    }
+    else
+      m_Stats = null;
+  }
+
+  /**
+   * Returns the distance between two instances (before post processing),
+   * counting it in the statistics. Distances larger than the cut-off value
+   * are returned as Double.POSITIVE_INFINITY (if the distance function
+   * supports it).
+   *
+   * @param first	the first instance
+   * @param second	the second instance
+   * @param cutOffValue	the distance beyond which the exact value isn't needed
+   * @param stats	the statistics to count in, may be null
+   * @return		the distance
+   */
+  protected double distance(Instance first, Instance second,
+      double cutOffValue, PerformanceStats stats) {
+    if (stats != null)
+      stats.incrPointCount();
+    return m_DistanceFunction.distance(first, second, cutOffValue, stats);
+  }
+
+  /**
+   * Returns the maximum number of links of a node on a level.
+   *
+   * @param level	the level
+   * @return		the maximum number of links
+   */
+  protected int maxLinks(int level) {
+    return (level == 0) ? 2 * m_MaxLinks : m_MaxLinks;
+  }
+
+  /**
+   * Starts a new search, i.e., forgets the visited nodes.
+   */
+  protected void newSearch() {
+    if ((m_Visited == null) || (m_Visited.length < m_Links.length)) {
+      m_Visited = new int[m_Links.length];
+      m_VisitedMark = 0;
+    }
+    m_VisitedMark++;
+    if (m_VisitedMark == Integer.MAX_VALUE) {
+      Arrays.fill(m_Visited, 0);
+      m_VisitedMark = 1;
+    }
+  }
+
+  /**
+   * Moves greedily to the node closest to the target on a level.
+   *
+   * @param target	the target
+   * @param node	the node to start at
+   * @param dist	the distance of that node
+   * @param level	the level
+   * @param stats	the statistics to count in, may be null
+   * @return		the node and its distance
+   */
+  protected double[] greedySearch(Instance target, int node, double dist,
+      int level, PerformanceStats stats) {
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      int[] links = m_Links[node][level];
+      for (int i = 0; i < links.length; i++) {
+        double d = distance(target, m_Instances.instance(links[i]), dist, stats);
+        if (d < dist) {
+          dist = d;
+          node = links[i];
+          changed = true;
+        }
+      }
+    }
+    return new double[]{node, dist};
+  }
+
+  /**
+   * Does a best-first search on a level, starting at the given nodes.
+   *
+   * @param target	the target
+   * @param start	the nodes to start at
+   * @param ef		the number of closest nodes to keep
+   * @param level	the level
+   * @param stats	the statistics to count in, may be null
+   * @return		the ef closest nodes found, furthest on top
+   */
+  protected NodeHeap searchLevel(Instance target, NodeHeap start, int ef,
+      int level, PerformanceStats stats) {
+    newSearch();
+    NodeHeap candidates = new NodeHeap(false);
+    NodeHeap result = new NodeHeap(true);
+    for (int i = 0; i < start.size(); i++) {
+      m_Visited[start.m_Nodes[i]] = m_VisitedMark;
+      candidates.add(start.m_Nodes[i], start.m_Dists[i]);
+      result.add(start.m_Nodes[i], start.m_Dists[i]);
+    }
+    while (result.size() > ef)
+      result.remove();
+
+    while (candidates.size() > 0) {
+      int node = candidates.topNode();
+      if (candidates.topDist() > result.topDist())
+        break;
+      candidates.remove();
+      int[] links = m_Links[node][level];
+      for (int i = 0; i < links.length; i++) {
+        int other = links[i];
+        if (m_Visited[other] == m_VisitedMark)
+          continue;
+        m_Visited[other] = m_VisitedMark;
+        double d = distance(target, m_Instances.instance(other),
+            (result.size() < ef) ? Double.POSITIVE_INFINITY : result.topDist(), stats);
+        if ((result.size() < ef) || (d < result.topDist())) {
+          candidates.add(other, d);
+          result.add(other, d);
+          if (result.size() > ef)
+            result.remove();
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Selects the links of a node from the given candidates with the
+   * heuristic of the paper: a candidate is kept if it is closer to the node
+   * than to all candidates kept before, the closest of the others fill up
+   * the remaining links.
+   *
+   * @param candidates	the candidates
+   * @param max		the maximum number of links
+   * @return		the selected nodes
+   */
+  protected int[] selectLinks(NodeHeap candidates, int max) {
+    // sort the candidates by increasing distance
+    int n = candidates.size();
+    int[] nodes = new int[n];
+    double[] dists = new double[n];
+    NodeHeap copy = new NodeHeap(true);
+    for (int i = 0; i < n; i++)
+      copy.add(candidates.m_Nodes[i], candidates.m_Dists[i]);
+    for (int i = n - 1; i >= 0; i--) {
+      nodes[i] = copy.topNode();
+      dists[i] = copy.topDist();
+      copy.remove();
+    }
+    if (n <= max)
+      return nodes;
+
+    int[] selected = new int[max];
+    boolean[] used = new boolean[n];
+    int count = 0;
+    for (int i = 0; (i < n) && (count < max); i++) {
+      Instance inst = m_Instances.instance(nodes[i]);
+      boolean keep = true;
+      for (int j = 0; keep && (j < count); j++) {
+        if (distance(inst, m_Instances.instance(selected[j]), dists[i], null) < dists[i])
+          keep = false;
+      }
+      if (keep) {
+        selected[count++] = nodes[i];
+        used[i] = true;
+      }
+    }
+    for (int i = 0; (i < n) && (count < max); i++) {
+      if (!used[i])
+        selected[count++] = nodes[i];
+    }
+
+    return selected;
+  }
+
+  /**
+   * Adds a link from one node to another on a level, selecting the links
+   * again if the node has too many.
+   *
+   * @param node	the node to add the link to
+   * @param other	the node to link to
+   * @param level	the level
+   */
+  protected void addLink(int node, int other, int level) {
+    int[] links = m_Links[node][level];
+    int[] newLinks = new int[links.length + 1];
+    System.arraycopy(links, 0, newLinks, 0, links.length);
+    newLinks[links.length] = other;
+
+    if (newLinks.length > maxLinks(level)) {
+      Instance inst = m_Instances.instance(node);
+      NodeHeap candidates = new NodeHeap(true);
+      for (int i = 0; i < newLinks.length; i++)
+        candidates.add(newLinks[i],
+            distance(inst, m_Instances.instance(newLinks[i]),
+                Double.POSITIVE_INFINITY, null));
+      newLinks = selectLinks(candidates, maxLinks(level));
+    }
+    m_Links[node][level] = newLinks;
+  }
+
+  /**
+   * Adds a node for an instance of the neighbourhood to the graph.
+   *
+   * @param node	the index of the instance
+   */
+  protected void insert(int node) {
+    if (node >= m_Links.length) {
+      int[][][] links = new int[Math.max(16, 2 * m_Links.length)][][];
+      System.arraycopy(m_Links, 0, links, 0, m_Links.length);
+      m_Links = links;
+    }
+
+    double mL = 1.0 / Math.log(m_MaxLinks);
+    int level = (int) (-Math.log(1.0 - m_Random.nextDouble()) * mL);
+    m_Links[node] = new int[level + 1][];
+    for (int l = 0; l <= level; l++)
+      m_Links[node][l] = new int[0];
+    m_NumNodes = node + 1;
+
+    if (m_EntryPoint == -1) {
+      m_EntryPoint = node;
+      m_MaxLevel = level;
+      return;
+    }
+
+    Instance inst = m_Instances.instance(node);
+    int current = m_EntryPoint;
+    double dist = distance(inst, m_Instances.instance(current),
+        Double.POSITIVE_INFINITY, null);
+    for (int l = m_MaxLevel; l > level; l--) {
+      double[] closest = greedySearch(inst, current, dist, l, null);
+      current = (int) closest[0];
+      dist = closest[1];
+    }
+
+    NodeHeap start = new NodeHeap(true);
+    start.add(current, dist);
+    for (int l = Math.min(level, m_MaxLevel); l >= 0; l--) {
+      NodeHeap found = searchLevel(inst, start, m_EfConstruction, l, null);
+      int[] links = selectLinks(found, m_MaxLinks);
+      m_Links[node][l] = links;
+      for (int i = 0; i < links.length; i++)
+        addLink(links[i], node, l);
+      start = found;
+    }
+
+    if (level > m_MaxLevel) {
+      m_EntryPoint = node;
+      m_MaxLevel = level;
+    }
+  }
+
+  /**
+   * Sets the instances comprising the current neighbourhood and builds the
+   * graph.
+   *
+   * @param insts 	The set of instances on which the nearest neighbour
+   * 			search is carried out. Usually this set is the
+   * 			training set.
+   * @throws Exception	if setting of instances fails
+   */
+  public void setInstances(Instances insts) throws Exception {
+    super.setInstances(insts);
+    m_DistanceFunction.setInstances(insts);
+
+    m_Random = new Random(m_Seed);
+    m_Links = new int[insts.numInstances()][][];
+    m_NumNodes = 0;
+    m_EntryPoint = -1;
+    m_MaxLevel = -1;
+    m_Visited = null;
+    for (int i = 0; i < insts.numInstances(); i++)
+      insert(i);
+  }
+
+  /**
+   * Returns the nearest instance in the current neighbourhood to the supplied
+   * instance.
+   *
+   * @param target 	The instance to find the nearest neighbour for.
+   * @return		the nearest instance
+   * @throws Exception 	if the nearest neighbour could not be found.
+   */
+  public Instance nearestNeighbour(Instance target) throws Exception {
+    return (kNearestNeighbours(target, 1)).instance(0);
+  }
+
+  /**
+   * Returns (approximately) the k nearest instances in the current
+   * neighbourhood to the supplied instance.
+   *
+   * @param target 	The instance to find the k nearest neighbours for.
+   * @param kNN		The number of nearest neighbours to find.
+   * @return		the k nearest neighbors
+   * @throws Exception  if the neighbours could not be found.
+   */
+  public Instances kNearestNeighbours(Instance target, int kNN) throws Exception {
+    // instances deleted by the caller (e.g., IBk's window)
+    if (m_Instances.numInstances() != m_NumNodes)
+      setInstances(m_Instances);
+
+    if (m_Stats != null)
+      m_Stats.searchStart();
+
+    NodeHeap found = new NodeHeap(true);
+    if (m_EntryPoint != -1) {
+      int current = m_EntryPoint;
+      double dist = distance(target, m_Instances.instance(current),
+          Double.POSITIVE_INFINITY, m_Stats);
+      for (int l = m_MaxLevel; l > 0; l--) {
+        double[] closest = greedySearch(target, current, dist, l, m_Stats);
+        current = (int) closest[0];
+        dist = closest[1];
+      }
+      NodeHeap start = new NodeHeap(true);
+      start.add(current, dist);
+      // one more in case the target itself is in the neighbourhood
+      found = searchLevel(target, start, Math.max(m_EfSearch, kNN + 1), 0, m_Stats);
+    }
+
+    // the k closest, without the target itself (for hold-one-out
+    // cross-validation)
+    while (found.size() > kNN + 1)
+      found.remove();
+    int[] indices = new int[found.size()];
+    double[] dists = new double[found.size()];
+    int n = 0;
+    for (int i = found.size() - 1; i >= 0; i--) {
+      if (m_Instances.instance(found.topNode()) != target) {
+        indices[i] = found.topNode();
+        dists[i] = found.topDist();
+        n++;
+      }
+      else {
+        indices[i] = -1;
+      }
+      found.remove();
+    }
+
+    m_Distances = new double[Math.min(n, kNN)];
+    Instances neighbours = new Instances(m_Instances, m_Distances.length);
+    for (int i = 0, j = 0; j < m_Distances.length; i++) {
+      if (indices[i] == -1)
+        continue;
+      m_Distances[j] = dists[i];
+      neighbours.add(m_Instances.instance(indices[i]));
+      j++;
+    }
+
+    if (m_Stats != null) {
+      m_Stats.searchFinish();
+      m_NumQueries++;
+      if ((m_RecallSampleRate > 0) && (m_NumQueries % m_RecallSampleRate == 0)
+          && (m_Stats instanceof ApproximatePerformanceStats))
+        ((ApproximatePerformanceStats) m_Stats).recallQuery(
+            recall(target, m_Distances));
+    }
+
+    m_DistanceFunction.postProcessDistances(m_Distances);
+
+    return neighbours;
+  }
+
+  /**
+   * Returns the fraction of the true k nearest neighbours of the target
+   * that were found, determined with a linear scan.
+   *
+   * @param target	the target
+   * @param found	the distances of the neighbours found (before post
+   * 			processing)
+   * @return		the recall
+   */
+  protected double recall(Instance target, double[] found) {
+    if (found.length == 0)
+      return 1;
+
+    // the distance of the true k-th nearest neighbour
+    NodeHeap nearest = new NodeHeap(true);
+    for (int i = 0; i < m_Instances.numInstances(); i++) {
+      if (m_Instances.instance(i) == target)
+        continue;
+      double d = m_DistanceFunction.distance(target, m_Instances.instance(i),
+          (nearest.size() < found.length)
+          ? Double.POSITIVE_INFINITY : nearest.topDist(), null);
+      if (nearest.size() < found.length) {
+        nearest.add(i, d);
+      }
+      else if (d < nearest.topDist()) {
+        nearest.remove();
+        nearest.add(i, d);
+      }
+    }
+
+    int count = 0;
+    for (int i = 0; i < found.length; i++) {
+      if (found[i] <= nearest.topDist())
+        count++;
+    }
+    return (double) count / (double) found.length;
+  }
+
+  /**
+   * Returns the distances of the k nearest neighbours. The kNearestNeighbours
+   * or nearestNeighbour must always be called before calling this function.
+   *
+   * @return 		array containing the distances of the
+   * 			nearestNeighbours. The length and ordering of the
+   * 			array is the same as that of the instances returned
+   * 			by nearestNeighbour functions.
+   * @throws Exception 	if called before calling kNearestNeighbours
+   *            	or nearestNeighbours.
+   */
+  public double[] getDistances() throws Exception {
+    if (m_Distances == null)
+      throw new Exception("No distances available. Please call either "+
+                          "kNearestNeighbours or nearestNeighbours first.");
+    return m_Distances;
+  }
+
+  /**
+   * Adds the new instance, which has already been added to the
+   * neighbourhood by the caller, to the graph.
+   *
+   * @param ins 	The instance to add. Usually this is the instance that
+   * 			is added to our neighbourhood i.e. the training
+   * 			instances.
+   * @throws Exception	if the given instances are null
+   */
+  public void update(Instance ins) throws Exception {
+    if (m_Instances == null)
+      throw new Exception("No instances supplied yet. Cannot update without"+
+                          "supplying a set of instances first.");
+    m_DistanceFunction.update(ins);
+    if (m_Instances.numInstances() == m_NumNodes + 1)
+      insert(m_NumNodes);
+    else
+      setInstances(m_Instances);
+  }
+
+  /**
+   * Adds the given instance info. This implementation updates the range
+   * datastructures of the DistanceFunction class.
+   *
+   * @param ins 	The instance to add the information of. Usually this is
+   * 			the test instance supplied to update the range of
+   * 			attributes in the  distance function.
+   */
+  public void addInstanceInfo(Instance ins) {
+    if (m_Instances != null)
+      m_DistanceFunction.update(ins);
+  }
+
+  /**
+   * Returns a shallow copy of this object for answering a part of a batch
+   * of queries in another thread, with its own marks of visited nodes.
+   *
+   * @return		the copy
+   * @throws Exception	if the copy cannot be made
+   */
+  protected NearestNeighbourSearch batchWorker() throws Exception {
+    HNSW worker = (HNSW) super.batchWorker();
+    worker.m_Visited = null;
+    return worker;
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return		the revision
+   */
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -33,8 +33,15 @@ import weka.core.RevisionUtils;
 import weka.core.Utils;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Abstract class for nearest neighbour search. All algorithms (classes) that
@@ -45,7 +52,7 @@ import java.util.Vector;
  */
 public abstract class NearestNeighbourSearch
   implements Serializable, OptionHandler, AdditionalMeasureProducer,
-             RevisionHandler {
+             RevisionHandler, Cloneable {
 
   /**
    * A class for a heap to store the nearest k neighbours to an instance. 
@@ -545,6 +552,9 @@ public abstract class NearestNeighbourSearch
   /** Should we measure Performance. */
   protected boolean m_MeasurePerformance = false;
   
+  /** The number of threads used for answering batches of queries. */
+  protected int m_NumExecutionSlots = 1;
+  
   /**
    * Constructor.
    */
@@ -592,6 +602,11 @@ public abstract class NearestNeighbourSearch
 	"\tCalculate performance statistics.",
 	"P", 0,"-P"));
     
+    newVector.add(new Option(
+	"\tNumber of execution slots for answering batches of queries.\n"
+	+ "\t(default 1 - i.e. no parallelism)",
+	"num-slots", 1,"-num-slots <num>"));
+    
     return newVector.elements();
   }
   
@@ -623,6 +638,12 @@ public abstract class NearestNeighbourSearch
     }
     
     setMeasurePerformance(Utils.getFlag('P',options));
+    
+    String slots = Utils.getOption("num-slots", options);
+    if (slots.length() != 0)
+      setNumExecutionSlots(Integer.parseInt(slots));
+    else
+      setNumExecutionSlots(1);
   }
 
   /**
@@ -642,6 +663,11 @@ public abstract class NearestNeighbourSearch
     if(getMeasurePerformance())
       result.add("-P");
     
+    if (getNumExecutionSlots() > 1) {
+      result.add("-num-slots");
+      result.add("" + getNumExecutionSlots());
+    }
+    
     return result.toArray(new String[result.size()]);
   }
 
@@ -709,6 +735,38 @@ public abstract class NearestNeighbourSearch
     else
       m_Stats = null;
   }
+
+  /** 
+   * Returns the tip text for this property.
+   * 
+   * @return 		tip text for this property suitable for
+   *         		displaying in the explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of threads to use for answering batches of queries " +
+           "(e.g., all the test instances of IBk).";
+  }
+  
+  /**
+   * Gets the number of threads used for answering batches of queries.
+   * 
+   * @return		the number of execution slots
+   */
+  public int getNumExecutionSlots() {
+    return m_NumExecutionSlots;
+  }
+  
+  /**
+   * Sets the number of threads used for answering batches of queries.
+   * 
+   * @param numSlots	the number of execution slots
+   * @throws Exception	if the number is less than 1
+   */
+  public void setNumExecutionSlots(int numSlots) throws Exception {
+    if (numSlots < 1)
+      throw new Exception("Number of execution slots needs to be >= 1!");
+    m_NumExecutionSlots = numSlots;
+  }
     
   /** 
    * Returns the nearest instance in the current neighbourhood to the supplied
@@ -741,6 +799,94 @@ public abstract class NearestNeighbourSearch
    */
   public abstract double[] getDistances() throws Exception;
   
+  /**
+   * Returns the k nearest instances in the current neighbourhood to each of
+   * the supplied instances, the same as kNearestNeighbours(Instance, int)
+   * for each of them. With more than one execution slot the queries are
+   * answered in parallel, by shallow copies of this object that share the
+   * data structure and have their own heaps, distances and statistics 
+   * (which are added to the ones of this object afterwards). The first query
+   * is answered before the threads are started, so that anything initialized 
+   * lazily by the search or the distance function is set up only once.
+   * 
+   * @param targets	the instances to find the k nearest neighbours for
+   * @param k		the number of nearest neighbours to find
+   * @param distances	the array to store the distances of the neighbours 
+   * 			of each target in, as returned by getDistances()
+   * @return		the k nearest neighbours of each target
+   * @throws Exception	if the neighbours could not be found
+   */
+  public Instances[] kNearestNeighbours(final Instances targets, final int k,
+      final double[][] distances) throws Exception {
+    
+    final Instances[] neighbours = new Instances[targets.numInstances()];
+    if (neighbours.length == 0)
+      return neighbours;
+    
+    neighbours[0] = kNearestNeighbours(targets.instance(0), k);
+    distances[0] = getDistances().clone();
+    
+    int numTasks = Math.min(m_NumExecutionSlots, neighbours.length - 1);
+    if (numTasks <= 1) {
+      for (int i = 1; i < neighbours.length; i++) {
+        neighbours[i] = kNearestNeighbours(targets.instance(i), k);
+        distances[i] = getDistances().clone();
+      }
+      return neighbours;
+    }
+    
+    ExecutorService pool = Executors.newFixedThreadPool(numTasks);
+    try {
+      List<Future<NearestNeighbourSearch>> results = 
+        new ArrayList<Future<NearestNeighbourSearch>>();
+      for (int t = 0; t < numTasks; t++) {
+        final int start = 1 + (int) ((long) (neighbours.length - 1) * t / numTasks);
+        final int end = 1 + (int) ((long) (neighbours.length - 1) * (t + 1) / numTasks);
+        final NearestNeighbourSearch worker = batchWorker();
+        results.add(pool.submit(new Callable<NearestNeighbourSearch>() {
+          public NearestNeighbourSearch call() throws Exception {
+            for (int i = start; i < end; i++) {
+              neighbours[i] = worker.kNearestNeighbours(targets.instance(i), k);
+              distances[i] = worker.getDistances().clone();
+            }
+            return worker;
+          }
+        }));
+      }
+      for (Future<NearestNeighbourSearch> result : results) {
+        NearestNeighbourSearch worker = result.get();
+        if ((m_Stats != null) && (worker.m_Stats != null))
+          m_Stats.add(worker.m_Stats);
+      }
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception)
+        throw (Exception) e.getCause();
+      throw e;
+    }
+    finally {
+      pool.shutdownNow();
+    }
+    
+    return neighbours;
+  }
+  
+  /**
+   * Returns a shallow copy of this object for answering a part of a batch
+   * of queries in another thread, with its own performance statistics.
+   * Searches that keep other state between queries must override this 
+   * method.
+   * 
+   * @return		the copy
+   * @throws Exception	if the copy cannot be made
+   */
+  protected NearestNeighbourSearch batchWorker() throws Exception {
+    NearestNeighbourSearch worker = (NearestNeighbourSearch) clone();
+    worker.m_Stats = null;
+    worker.setMeasurePerformance(m_MeasurePerformance);
+    return worker;
+  }
+  
   /**
    * Updates the NearNeighbourSearch algorithm for the new added instance.
    * P.S.: The method assumes the instance has already been added to the 
@@ -82,6 +82,14 @@ public class PerformanceStats
    */
   public double m_CoordCount;
   
+  //Time-stats variables
+  /** The time (System.nanoTime()) the current/last query was started at. */
+  protected long m_StartTime;
+  /** The maximum time in milliseconds taken by a query. */
+  public double m_MaxTime;
+  /** The sum of the times in milliseconds taken by all the queries. */
+  public double m_SumTime;
+  
   /**
    * default constructor.
    */
@@ -102,6 +110,8 @@ public class PerformanceStats
     m_SumC = m_SumSqC = m_CoordCount = 0;
     m_MinC = Integer.MAX_VALUE;
     m_MaxC = Integer.MIN_VALUE;
+    //time stats
+    m_SumTime = m_MaxTime = 0;
   }
   
   /**
@@ -111,6 +121,7 @@ public class PerformanceStats
   public void searchStart() {
     m_PointCount = 0;
     m_CoordCount = 0;
+    m_StartTime = System.nanoTime();
   }
   
   /**
@@ -126,6 +137,31 @@ public class PerformanceStats
     m_SumC += coordsPerPt; m_SumSqC += coordsPerPt*coordsPerPt; 
     if(coordsPerPt < m_MinC) m_MinC = coordsPerPt;
     if(coordsPerPt > m_MaxC) m_MaxC = coordsPerPt;
+    //time stats
+    double time = (System.nanoTime() - m_StartTime) / 1.0e6;
+    m_SumTime += time;
+    if(time > m_MaxTime) m_MaxTime = time;
+  }
+  
+  /**
+   * Adds the statistics of the queries counted by the given object 
+   * (e.g., by another thread answering a part of a batch of queries).
+   * 
+   * @param other The statistics to add.
+   */
+  public void add(PerformanceStats other) {
+    m_NumQueries += other.m_NumQueries;
+    //point stats
+    m_SumP += other.m_SumP;  m_SumSqP += other.m_SumSqP;
+    if (other.m_MinP < m_MinP) m_MinP = other.m_MinP;
+    if (other.m_MaxP > m_MaxP) m_MaxP = other.m_MaxP;
+    //coord stats
+    m_SumC += other.m_SumC;  m_SumSqC += other.m_SumSqC;
+    if (other.m_MinC < m_MinC) m_MinC = other.m_MinC;
+    if (other.m_MaxC > m_MaxC) m_MaxC = other.m_MaxC;
+    //time stats
+    m_SumTime += other.m_SumTime;
+    if (other.m_MaxTime > m_MaxTime) m_MaxTime = other.m_MaxTime;
   }
   
   /**
@@ -255,6 +291,35 @@ public class PerformanceStats
     return m_MaxC;
   }
 
+  /*************----------Time Stat functions---------**************/
+  
+  /**
+   * Returns the total time in milliseconds taken by the queries.
+   * 
+   * @return The total time.
+   */
+  public double getTotalQueryTime() {
+    return m_SumTime;
+  }
+  
+  /**
+   * Returns the mean time in milliseconds taken by a query.
+   * 
+   * @return The mean time.
+   */
+  public double getMeanQueryTime() {
+    return m_SumTime/(double)m_NumQueries;
+  }
+  
+  /**
+   * Returns the maximum time in milliseconds taken by a query.
+   * 
+   * @return The maximum time.
+   */
+  public double getMaxQueryTime() {
+    return m_MaxTime;
+  }
+
   /*****----MiscFunctions----****/
   
   /**
@@ -276,6 +341,10 @@ public class PerformanceStats
     newVector.addElement("measureStdDevCoordsPerPoint");
     newVector.addElement("measureMinCoordsPerPoint");
     newVector.addElement("measureMaxCoordsPerPoint");
+    //time stats
+    newVector.addElement("measureTotal_query_time");
+    newVector.addElement("measureMean_query_time");
+    newVector.addElement("measureMax_query_time");
     
     return newVector.elements();
   }
@@ -312,6 +381,14 @@ public class PerformanceStats
       return (double) getMinCoordsPerPoint();
     } else if (additionalMeasureName.compareToIgnoreCase("measureMaxCoordsPerPoint") == 0) {
       return (double) getMaxCoordsPerPoint();
+    }
+    //time stats
+    else if (additionalMeasureName.compareToIgnoreCase("measureTotal_query_time") == 0) {
+      return getTotalQueryTime();
+    } else if (additionalMeasureName.compareToIgnoreCase("measureMean_query_time") == 0) {
+      return getMeanQueryTime();
+    } else if (additionalMeasureName.compareToIgnoreCase("measureMax_query_time") == 0) {
+      return getMaxQueryTime();
     } else {
       throw new IllegalArgumentException(additionalMeasureName 
 			  + " not supported by PerformanceStats.");
@@ -122,6 +122,27 @@ public class TreePerformanceStats
     if (m_IntNodeCount > m_MaxIntNodes) m_MaxIntNodes = m_IntNodeCount;
   }
   
+  /**
+   * Adds the statistics of the queries counted by the given object 
+   * (e.g., by another thread answering a part of a batch of queries).
+   * 
+   * @param other The statistics to add.
+   */
+  public void add(PerformanceStats other) {
+    super.add(other);
+    if (!(other instanceof TreePerformanceStats))
+      return;
+    TreePerformanceStats stats = (TreePerformanceStats) other;
+    //leaf stats
+    m_SumLeaves += stats.m_SumLeaves;  m_SumSqLeaves += stats.m_SumSqLeaves;
+    if (stats.m_MinLeaves < m_MinLeaves) m_MinLeaves = stats.m_MinLeaves;
+    if (stats.m_MaxLeaves > m_MaxLeaves) m_MaxLeaves = stats.m_MaxLeaves;
+    //internal node stats
+    m_SumIntNodes += stats.m_SumIntNodes;  m_SumSqIntNodes += stats.m_SumSqIntNodes;
+    if (stats.m_MinIntNodes < m_MinIntNodes) m_MinIntNodes = stats.m_MinIntNodes;
+    if (stats.m_MaxIntNodes > m_MaxIntNodes) m_MaxIntNodes = stats.m_MaxIntNodes;
+  }
+  
   /**
    * Increments the leaf count.
    */
@@ -33,6 +33,7 @@ import weka.core.Range;
 import weka.core.RevisionHandler;
 import weka.core.RevisionUtils;
 import weka.core.SelectedTag;
+import weka.core.SerializedObject;
 import weka.core.SparseInstance;
 import weka.core.Stopwords;
 import weka.core.Tag;
@@ -47,15 +48,21 @@ import weka.filters.UnsupervisedFilter;
 
 import java.io.File;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.TreeMap;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /** 
  <!-- globalinfo-start -->
- * Converts String attributes into a set of attributes representing word occurrence (depending on the tokenizer) information from the text contained in the strings. The set of words (attributes) is determined by the first batch filtered (typically training data).
+ * Converts String attributes into a set of attributes representing word occurrence (depending on the tokenizer) information from the text contained in the strings. The set of words (attributes) is determined by the first batch filtered (typically training data). Alternatively, the words can be hashed into a fixed number of attributes, in which case no dictionary is needed and the instances are converted as they are input.
  * <p/>
  <!-- globalinfo-end -->
  * 
@@ -130,6 +137,16 @@ import java.util.Vector;
  *  The tokenizing algorihtm (classname plus parameters) to use.
  *  (default: weka.core.tokenizers.WordTokenizer)</pre>
  * 
+ * <pre> -hash-buckets &lt;num&gt;
+ *  Hash the words into the given number of attributes instead of
+ *  building a dictionary (-W, -prune-rate, -M and -O are ignored).
+ *  The instances are converted as they are input.
+ *  (default: 0, i.e. build a dictionary)</pre>
+ * 
+ * <pre> -num-slots &lt;num&gt;
+ *  Number of execution slots for tokenizing when hashing.
+ *  (default 1 - i.e. no parallelism)</pre>
+ * 
  <!-- options-end -->
  *
  * @author Len Trigg (len@reeltwo.com)
@@ -234,6 +251,33 @@ public class StringToWordVector
   /** the tokenizer algorithm to use. */
   private Tokenizer m_Tokenizer = new WordTokenizer();
 
+  /** The number of instances per execution slot tokenized at a time when
+   * hashing in parallel. */
+  protected static final int HASHING_CHUNK_SIZE = 256;
+
+  /** The number of attributes the words are hashed into (0 to build a
+   * dictionary instead). */
+  private int m_NumHashBuckets = 0;
+
+  /** The number of threads used for tokenizing when hashing. */
+  private int m_NumExecutionSlots = 1;
+
+  /** The threads tokenizing when hashing, kept until the batch is finished. */
+  private transient ExecutorService m_ExecutorPool = null;
+
+  /** The input instances waiting to be hashed. */
+  private Vector m_PendingInput = new Vector();
+
+  /** The hashed instances of the first batch that wait for its document
+   * frequencies or average length. */
+  private Vector m_HeldOutput = new Vector();
+
+  /** The summed lengths of the hashed documents of the first batch. */
+  private double m_SumDocLength;
+
+  /** The stopwords used when hashing. */
+  private transient Stopwords m_StopwordList;
+
   /**
    * Default constructor. Targets 1000 words in the output.
    */
@@ -332,6 +376,18 @@ public class StringToWordVector
 	+ "\t(default: " + WordTokenizer.class.getName() + ")",
 	"tokenizer", 1, "-tokenizer <spec>"));
 
+    result.addElement(new Option(
+	"\tHash the words into the given number of attributes instead of\n"
+	+ "\tbuilding a dictionary (-W, -prune-rate, -M and -O are ignored).\n"
+	+ "\tThe instances are converted as they are input.\n"
+	+ "\t(default: 0, i.e. build a dictionary)",
+	"hash-buckets", 1, "-hash-buckets <num>"));
+
+    result.addElement(new Option(
+	"\tNumber of execution slots for tokenizing when hashing.\n"
+	+ "\t(default 1 - i.e. no parallelism)",
+	"num-slots", 1, "-num-slots <num>"));
+
     return result.elements();
   }
 
@@ -409,6 +465,16 @@ public class StringToWordVector
          *  The tokenizing algorihtm (classname plus parameters) to use.
          *  (default: weka.core.tokenizers.WordTokenizer)</pre>
          * 
+         * <pre> -hash-buckets &lt;num&gt;
+         *  Hash the words into the given number of attributes instead of
+         *  building a dictionary (-W, -prune-rate, -M and -O are ignored).
+         *  The instances are converted as they are input.
+         *  (default: 0, i.e. build a dictionary)</pre>
+         * 
+         * <pre> -num-slots &lt;num&gt;
+         *  Number of execution slots for tokenizing when hashing.
+         *  (default 1 - i.e. no parallelism)</pre>
+         * 
          <!-- options-end -->
    *
    * @param options the list of options as an array of strings
@@ -504,6 +570,18 @@ public class StringToWordVector
 	((OptionHandler) tokenizer).setOptions(tokenizerSpec);
       setTokenizer(tokenizer);
     }
+
+    value = Utils.getOption("hash-buckets", options);
+    if (value.length() != 0)
+      setNumHashBuckets(Integer.parseInt(value));
+    else
+      setNumHashBuckets(0);
+
+    value = Utils.getOption("num-slots", options);
+    if (value.length() != 0)
+      setNumExecutionSlots(Integer.parseInt(value));
+    else
+      setNumExecutionSlots(1);
   }
 
   /**
@@ -578,6 +656,14 @@ public class StringToWordVector
 	  ((OptionHandler) getTokenizer()).getOptions());
     result.add(spec.trim());
 
+    if (getNumHashBuckets() > 0) {
+      result.add("-hash-buckets");
+      result.add(String.valueOf(getNumHashBuckets()));
+    }
+
+    result.add("-num-slots");
+    result.add(String.valueOf(getNumExecutionSlots()));
+
     return (String[]) result.toArray(new String[result.size()]);
   }
 
@@ -659,10 +745,16 @@ public class StringToWordVector
   public boolean setInputFormat(Instances instanceInfo) 
   throws Exception {
 
+    shutdownExecutorPool();
     super.setInputFormat(instanceInfo);
     m_SelectedRange.setUpper(instanceInfo.numAttributes() - 1);
     m_AvgDocLength = -1;
     m_NumInstances = -1;
+    if (m_NumHashBuckets > 0) {
+      // the output format does not depend on the data
+      determineHashedFormat();
+      return true;
+    }
     return false;
   }
 
@@ -684,7 +776,17 @@ public class StringToWordVector
       resetQueue();
       m_NewBatch = false;
     }
-    if (isFirstBatchDone()) {
+    if (m_NumHashBuckets > 0) {
+      if (m_NumExecutionSlots == 1) {
+	m_PendingInput.addElement(instance);
+      } else {
+	m_PendingInput.addElement(instance.copy());
+      }
+      if (m_PendingInput.size() >= hashingChunkSize()) {
+	hashPendingInput();
+      }
+      return (numPendingOutput() != 0);
+    } else if (isFirstBatchDone()) {
       FastVector fv = new FastVector();
       int firstCopy = convertInstancewoDocNorm(instance, fv);
       Instance inst = (Instance)fv.elementAt(0);
@@ -713,10 +815,23 @@ public class StringToWordVector
       throw new IllegalStateException("No input instance format defined");
     }
 
+    // When hashing, the instances still pending are converted, and the
+    // statistics of the first batch are completed.
+    if (m_NumHashBuckets > 0) {
+      try {
+	hashPendingInput();
+      } finally {
+	shutdownExecutorPool();
+      }
+      if (!isFirstBatchDone()) {
+	finishHashedBatch();
+      }
+    }
+
     // We only need to do something in this method
     // if the first batch hasn't been processed. Otherwise
     // input() has already done all the work.
-    if (!isFirstBatchDone()) {
+    else if (!isFirstBatchDone()) {
       
       // turn of per-class mode if the class is not nominal (or is all missing)!
       if (getInputFormat().classIndex() >= 0) {
@@ -784,7 +899,10 @@ public class StringToWordVector
     "Converts String attributes into a set of attributes representing "
     + "word occurrence (depending on the tokenizer) information from the "
     + "text contained in the strings. The set of words (attributes) is "
-    + "determined by the first batch filtered (typically training data).";
+    + "determined by the first batch filtered (typically training data). "
+    + "Alternatively, the words can be hashed into a fixed number of "
+    + "attributes, in which case no dictionary is needed and the instances "
+    + "are converted as they are input.";
   }  
 
   /**
@@ -1318,6 +1436,74 @@ public class StringToWordVector
     return "The tokenizing algorithm to use on the strings.";
   }
 
+  /**
+   * Sets the number of attributes the words are hashed into, 0 to build a
+   * dictionary instead.
+   *
+   * @param value     the number of hash buckets
+   */
+  public void setNumHashBuckets(int value) {
+    m_NumHashBuckets = Math.max(0, value);
+  }
+
+  /**
+   * Returns the number of attributes the words are hashed into.
+   *
+   * @return          the number of hash buckets, 0 if a dictionary is built
+   */
+  public int getNumHashBuckets() {
+    return m_NumHashBuckets;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String numHashBucketsTipText() {
+    return "If greater than 0, the words are hashed into this number of "
+      + "attributes instead of building a dictionary (wordsToKeep, "
+      + "periodicPruning, minTermFreq and doNotOperateOnPerClassBasis are "
+      + "then ignored). No memory is needed for the vocabulary and the "
+      + "instances are converted as they are input, unless the IDF "
+      + "transform or the normalization of all data needs the statistics "
+      + "of the first batch.";
+  }
+
+  /**
+   * Sets the number of execution slots (threads) used for tokenizing.
+   *
+   * @param value     the number of execution slots
+   * @throws Exception if the number is less than 1
+   */
+  public void setNumExecutionSlots(int value) throws Exception {
+    if (value < 1)
+      throw new Exception("Number of execution slots needs to be >= 1!");
+    m_NumExecutionSlots = value;
+  }
+
+  /**
+   * Returns the number of execution slots (threads) used for tokenizing.
+   *
+   * @return          the number of execution slots
+   */
+  public int getNumExecutionSlots() {
+    return m_NumExecutionSlots;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of execution slots (threads) to use for tokenizing "
+      + "when the words are hashed. The instances are then converted in "
+      + "chunks.";
+  }
+
   /**
    * sorts an array.
    * 
@@ -1374,10 +1560,11 @@ public class StringToWordVector
   }
 
   /**
-   * determines the dictionary.
+   * initializes the stopwords.
+   * 
+   * @return the default stopwords, or those in the stopwords file
    */
-  private void determineDictionary() {
-    // initialize stopwords
+  private Stopwords initStopwords() {
     Stopwords stopwords = new Stopwords();
     if (getUseStoplist()) {
       try {
@@ -1388,6 +1575,15 @@ public class StringToWordVector
 	e.printStackTrace();
       }
     }
+    return stopwords;
+  }
+
+  /**
+   * determines the dictionary.
+   */
+  private void determineDictionary() {
+    // initialize stopwords
+    Stopwords stopwords = initStopwords();
 
     // Operate on a per-class basis if class attribute is set
     int classInd = getInputFormat().classIndex();
@@ -1587,51 +1783,7 @@ public class StringToWordVector
     TreeMap contained = new TreeMap();
 
     // Copy all non-converted attributes from input to output
-    int firstCopy = 0;
-    for (int i = 0; i < getInputFormat().numAttributes(); i++) {
-      if (!m_SelectedRange.isInRange(i)) { 
-	if (getInputFormat().attribute(i).type() != Attribute.STRING && 
-            getInputFormat().attribute(i).type() != Attribute.RELATIONAL) {
-	  // Add simple nominal and numeric attributes directly
-	  if (instance.value(i) != 0.0) {
-	    contained.put(new Integer(firstCopy), 
-		new Double(instance.value(i)));
-	  } 
-	} else {
-	  if (instance.isMissing(i)) {
-	    contained.put(new Integer(firstCopy),
-		new Double(Instance.missingValue()));
-	  } else if (getInputFormat().attribute(i).type() == Attribute.STRING) {
-
-	    // If this is a string attribute, we have to first add
-	    // this value to the range of possible values, then add
-	    // its new internal index.
-	    if (outputFormatPeek().attribute(firstCopy).numValues() == 0) {
-	      // Note that the first string value in a
-	      // SparseInstance doesn't get printed.
-	      outputFormatPeek().attribute(firstCopy)
-	      .addStringValue("Hack to defeat SparseInstance bug");
-	    }
-	    int newIndex = outputFormatPeek().attribute(firstCopy)
-	    .addStringValue(instance.stringValue(i));
-	    contained.put(new Integer(firstCopy), 
-		new Double(newIndex));
-	  } else {
-	    // relational
-            if (outputFormatPeek().attribute(firstCopy).numValues() == 0) {
-              Instances relationalHeader = outputFormatPeek().attribute(firstCopy).relation();
-              
-              // hack to defeat sparse instances bug
-              outputFormatPeek().attribute(firstCopy).addRelation(relationalHeader);
-            }
-            int newIndex = outputFormatPeek().attribute(firstCopy)
-              .addRelation(instance.relationalValue(i));
-            contained.put(new Integer(firstCopy), new Double(newIndex));
-	  }
-	}
-	firstCopy++;
-      }     
-    }
+    int firstCopy = copyAttributes(instance, contained);
 
     for (int j = 0; j < instance.numAttributes(); j++) { 
       //if ((getInputFormat().attribute(j).type() == Attribute.STRING) 
@@ -1709,6 +1861,393 @@ public class StringToWordVector
     return firstCopy;    
   }
 
+  /**
+   * Copies the attributes that are not converted into the given map,
+   * keyed by their index in the output.
+   * 
+   * @param instance the instance to copy from
+   * @param contained the map of output indices and values to add to
+   * @return the number of attributes that are not converted
+   */
+  private int copyAttributes(Instance instance, TreeMap contained) {
+
+    int firstCopy = 0;
+    for (int i = 0; i < getInputFormat().numAttributes(); i++) {
+      if (!m_SelectedRange.isInRange(i)) { 
+	if (getInputFormat().attribute(i).type() != Attribute.STRING && 
+            getInputFormat().attribute(i).type() != Attribute.RELATIONAL) {
+	  // Add simple nominal and numeric attributes directly
+	  if (instance.value(i) != 0.0) {
+	    contained.put(new Integer(firstCopy), 
+		new Double(instance.value(i)));
+	  } 
+	} else {
+	  if (instance.isMissing(i)) {
+	    contained.put(new Integer(firstCopy),
+		new Double(Instance.missingValue()));
+	  } else if (getInputFormat().attribute(i).type() == Attribute.STRING) {
+
+	    // If this is a string attribute, we have to first add
+	    // this value to the range of possible values, then add
+	    // its new internal index.
+	    if (outputFormatPeek().attribute(firstCopy).numValues() == 0) {
+	      // Note that the first string value in a
+	      // SparseInstance doesn't get printed.
+	      outputFormatPeek().attribute(firstCopy)
+	      .addStringValue("Hack to defeat SparseInstance bug");
+	    }
+	    int newIndex = outputFormatPeek().attribute(firstCopy)
+	    .addStringValue(instance.stringValue(i));
+	    contained.put(new Integer(firstCopy), 
+		new Double(newIndex));
+	  } else {
+	    // relational
+            if (outputFormatPeek().attribute(firstCopy).numValues() == 0) {
+              Instances relationalHeader = outputFormatPeek().attribute(firstCopy).relation();
+              
+              // hack to defeat sparse instances bug
+              outputFormatPeek().attribute(firstCopy).addRelation(relationalHeader);
+            }
+            int newIndex = outputFormatPeek().attribute(firstCopy)
+              .addRelation(instance.relationalValue(i));
+            contained.put(new Integer(firstCopy), new Double(newIndex));
+	  }
+	}
+	firstCopy++;
+      }     
+    }
+
+    return firstCopy;
+  }
+
+  /**
+   * determines the output format when hashing: the attributes that are not
+   * converted, followed by one attribute per hash bucket.
+   */
+  private void determineHashedFormat() {
+
+    m_StopwordList = initStopwords();
+
+    // Make sure we know which fields to convert
+    determineSelectedRange();
+
+    FastVector attributes = new FastVector(m_NumHashBuckets +
+	getInputFormat().numAttributes());
+
+    // Add the non-converted attributes 
+    int classIndex = -1;
+    for (int i = 0; i < getInputFormat().numAttributes(); i++) {
+      if (!m_SelectedRange.isInRange(i)) { 
+	if (getInputFormat().classIndex() == i) {
+	  classIndex = attributes.size();
+	}
+	attributes.addElement(getInputFormat().attribute(i).copy());
+      }     
+    }
+
+    // Add the hash bucket attributes
+    for (int i = 0; i < m_NumHashBuckets; i++) {
+      attributes.addElement(new Attribute(m_Prefix + "hash" + i));
+    }
+
+    m_DocsCounts = new int[attributes.size()];
+    m_NumInstances = 0;
+    m_SumDocLength = 0;
+    m_PendingInput.removeAllElements();
+    m_HeldOutput.removeAllElements();
+
+    Instances outputFormat = new Instances(getInputFormat().relationName(), 
+	attributes, 0);
+    outputFormat.setClassIndex(classIndex);
+    setOutputFormat(outputFormat);
+  }
+
+  /**
+   * Returns the number of instances tokenized at a time when hashing.
+   * 
+   * @return the number of instances
+   */
+  private int hashingChunkSize() {
+    if (m_NumExecutionSlots == 1)
+      return 1;
+    return m_NumExecutionSlots * HASHING_CHUNK_SIZE;
+  }
+
+  /**
+   * Stops the threads tokenizing when hashing, if there are any.
+   */
+  private void shutdownExecutorPool() {
+    if (m_ExecutorPool != null) {
+      m_ExecutorPool.shutdownNow();
+      m_ExecutorPool = null;
+    }
+  }
+
+  /**
+   * Hashes the pending input instances, tokenizing them in parallel if
+   * there is more than one execution slot (on threads kept until the batch
+   * is finished). The converted instances are pushed to the output, unless
+   * they are of the first batch and wait for its document frequencies or
+   * average length.
+   * 
+   * @throws Exception if tokenizing fails
+   */
+  private void hashPendingInput() throws Exception {
+
+    if (m_PendingInput.size() == 0)
+      return;
+    final Instance[] pending = new Instance[m_PendingInput.size()];
+    m_PendingInput.copyInto(pending);
+    m_PendingInput.removeAllElements();
+    if (m_StopwordList == null)
+      m_StopwordList = initStopwords();
+
+    // tokenize
+    final int[][] buckets = new int[pending.length][];
+    int slots = Math.min(m_NumExecutionSlots, pending.length);
+    if (slots == 1) {
+      for (int i = 0; i < pending.length; i++)
+	buckets[i] = hashTokens(pending[i], m_Tokenizer, m_Stemmer);
+    } else {
+      if (m_ExecutorPool == null)
+	m_ExecutorPool = Executors.newFixedThreadPool(m_NumExecutionSlots);
+      try {
+	Future<Object>[] results = new Future[slots];
+	for (int t = 0; t < slots; t++) {
+	  final int from = (int) ((long) pending.length * t / slots);
+	  final int to = (int) ((long) pending.length * (t + 1) / slots);
+	  // tokenizers and stemmers keep state, each thread gets copies
+	  final Tokenizer tokenizer = 
+	    (Tokenizer) new SerializedObject(m_Tokenizer).getObject();
+	  final Stemmer stemmer = 
+	    (Stemmer) new SerializedObject(m_Stemmer).getObject();
+	  results[t] = m_ExecutorPool.submit(new Callable<Object>() {
+	    public Object call() throws Exception {
+	      for (int i = from; i < to; i++)
+		buckets[i] = hashTokens(pending[i], tokenizer, stemmer);
+	      return null;
+	    }
+	  });
+	}
+	for (int t = 0; t < slots; t++) {
+	  try {
+	    results[t].get();
+	  } catch (ExecutionException e) {
+	    if (e.getCause() instanceof Exception)
+	      throw (Exception) e.getCause();
+	    throw e;
+	  }
+	}
+      } catch (Exception e) {
+	shutdownExecutorPool();
+	throw e;
+      }
+    }
+
+    // convert in order
+    int firstCopy = outputFormatPeek().numAttributes() - m_NumHashBuckets;
+    boolean hold = m_IDFTransform || (m_filterType == FILTER_NORMALIZE_ALL);
+    for (int i = 0; i < pending.length; i++) {
+      Instance inst = convertHashed(pending[i], buckets[i], firstCopy);
+      if (isFirstBatchDone()) {
+	if (m_filterType != FILTER_NONE) {
+	  normalizeInstance(inst, firstCopy);
+	}
+	push(inst);
+      } else {
+	m_NumInstances++;
+	for (int j = 0; j < inst.numValues(); j++) {
+	  if (inst.index(j) >= firstCopy)
+	    m_DocsCounts[inst.index(j)]++;
+	}
+	if (hold) {
+	  m_HeldOutput.addElement(inst);
+	} else {
+	  if (m_filterType != FILTER_NONE)
+	    m_SumDocLength += docLength(inst, firstCopy);
+	  push(inst);
+	}
+      }
+    }
+  }
+
+  /**
+   * Completes the first batch when hashing: the held instances get their
+   * IDF transform and normalization, now that the document frequencies and
+   * the average document length are known.
+   * 
+   * @throws Exception if normalizing fails
+   */
+  private void finishHashedBatch() throws Exception {
+
+    int firstCopy = outputFormatPeek().numAttributes() - m_NumHashBuckets;
+    for (int i = 0; i < m_HeldOutput.size(); i++) {
+      Instance inst = (Instance) m_HeldOutput.elementAt(i);
+      if (m_IDFTransform) {
+	for (int j = 0; j < inst.numValues(); j++) {
+	  if (inst.index(j) >= firstCopy) {
+	    inst.setValueSparse(j, inst.valueSparse(j) * Math.log(m_NumInstances
+		/ (double) m_DocsCounts[inst.index(j)]));
+	  }
+	}
+      }
+      if (m_filterType != FILTER_NONE)
+	m_SumDocLength += docLength(inst, firstCopy);
+    }
+
+    if (m_filterType != FILTER_NONE)
+      m_AvgDocLength = m_SumDocLength / m_NumInstances;
+
+    for (int i = 0; i < m_HeldOutput.size(); i++) {
+      Instance inst = (Instance) m_HeldOutput.elementAt(i);
+      if (m_filterType == FILTER_NORMALIZE_ALL)
+	normalizeInstance(inst, firstCopy);
+      push(inst);
+    }
+    m_HeldOutput.removeAllElements();
+  }
+
+  /**
+   * Tokenizes the selected string attributes of an instance and hashes
+   * the words.
+   * 
+   * @param instance the instance to tokenize
+   * @param tokenizer the tokenizer to use
+   * @param stemmer the stemmer to use
+   * @return the sorted hash buckets of the words (with repetitions)
+   */
+  private int[] hashTokens(Instance instance, Tokenizer tokenizer,
+      Stemmer stemmer) {
+
+    int[] buckets = new int[16];
+    int count = 0;
+    for (int j = 0; j < instance.numAttributes(); j++) { 
+      if (m_SelectedRange.isInRange(j) && (instance.isMissing(j) == false)) {
+	tokenizer.tokenize(instance.stringValue(j));
+	while (tokenizer.hasMoreElements()) {
+	  String word = (String) tokenizer.nextElement();
+	  if (m_lowerCaseTokens)
+	    word = word.toLowerCase();
+	  word = stemmer.stem(word);
+	  if (m_useStoplist && m_StopwordList.is(word))
+	    continue;
+	  if (count == buckets.length)
+	    buckets = Arrays.copyOf(buckets, 2 * count);
+	  buckets[count++] = (hash(word) & Integer.MAX_VALUE) % m_NumHashBuckets;
+	}
+      }
+    }
+    buckets = Arrays.copyOf(buckets, count);
+    Arrays.sort(buckets);
+    return buckets;
+  }
+
+  /**
+   * Converts an instance whose words have been hashed, w/o normalization.
+   * 
+   * @param instance the instance to convert
+   * @param buckets the sorted hash buckets of its words
+   * @param firstCopy the index of the first hash bucket attribute
+   * @return the converted instance
+   */
+  private Instance convertHashed(Instance instance, int[] buckets,
+      int firstCopy) {
+
+    TreeMap contained = new TreeMap();
+    copyAttributes(instance, contained);
+
+    int distinct = 0;
+    for (int j = 0; j < buckets.length; j++) {
+      if (j == 0 || buckets[j] != buckets[j - 1])
+	distinct++;
+    }
+    double [] values = new double [contained.size() + distinct];
+    int [] indices = new int [contained.size() + distinct];
+    int pos = 0;
+    Iterator it = contained.keySet().iterator();
+    while (it.hasNext()) {
+      Integer index = (Integer) it.next();
+      values[pos] = ((Double) contained.get(index)).doubleValue();
+      indices[pos] = index.intValue();
+      pos++;
+    }
+    for (int j = 0; j < buckets.length; ) {
+      int end = j + 1;
+      while (end < buckets.length && buckets[end] == buckets[j])
+	end++;
+      int index = firstCopy + buckets[j];
+      double val = m_OutputCounts ? end - j : 1;
+      if (m_TFTransform)
+	val = Math.log(val + 1);
+      if (m_IDFTransform && isFirstBatchDone()) {
+	// buckets not seen in the first batch count as seen once
+	val = val * Math.log(m_NumInstances /
+	    (double) Math.max(1, m_DocsCounts[index]));
+      }
+      values[pos] = val;
+      indices[pos] = index;
+      pos++;
+      j = end;
+    }
+
+    Instance inst = new SparseInstance(instance.weight(), values, indices, 
+	outputFormatPeek().numAttributes());
+    inst.setDataset(outputFormatPeek());
+    return inst;
+  }
+
+  /**
+   * Returns the length of the converted part of a document vector.
+   * 
+   * @param inst the converted instance
+   * @param firstCopy the index of the first converted attribute
+   * @return the length
+   */
+  private static double docLength(Instance inst, int firstCopy) {
+    double docLength = 0;
+    for (int j = 0; j < inst.numValues(); j++) {
+      if (inst.index(j) >= firstCopy) {
+	docLength += inst.valueSparse(j) * inst.valueSparse(j);
+      }
+    }
+    return Math.sqrt(docLength);
+  }
+
+  /**
+   * A fast, non-cryptographic hash of a word (32 bit MurmurHash3 of its
+   * characters).
+   * 
+   * @param word the word to hash
+   * @return the hash code
+   */
+  protected static int hash(String word) {
+    int h = 0;
+    int n = word.length();
+    for (int i = 1; i < n; i += 2) {
+      int k = word.charAt(i - 1) | (word.charAt(i) << 16);
+      k *= 0xcc9e2d51;
+      k = Integer.rotateLeft(k, 15);
+      k *= 0x1b873593;
+      h ^= k;
+      h = Integer.rotateLeft(h, 13);
+      h = h * 5 + 0xe6546b64;
+    }
+    if ((n & 1) == 1) {
+      int k = word.charAt(n - 1);
+      k *= 0xcc9e2d51;
+      k = Integer.rotateLeft(k, 15);
+      k *= 0x1b873593;
+      h ^= k;
+    }
+    h ^= 2 * n;
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+
   /**
    * Normalizes given instance to average doc length (only the newly
    * constructed attributes).